@@ -77,6 +77,11 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   /** Default value for IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE */
   public static final int IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_DEFAULT =
       100;
+  /** Number of requests a reader decodes from a connection at once. */
+  public static final String IPC_SERVER_RPC_READ_BATCH_SIZE_KEY =
+      "ipc.server.read.batch.size";
+  /** Default value for IPC_SERVER_RPC_READ_BATCH_SIZE_KEY. */
+  public static final int IPC_SERVER_RPC_READ_BATCH_SIZE_DEFAULT = 1;
 
   /** Max request size a server will accept. */
   public static final String IPC_MAXIMUM_DATA_LENGTH =
@@ -96,6 +101,43 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
     "ipc.server.handler.queue.size";
   /** Default value for IPC_SERVER_HANDLER_QUEUE_SIZE_KEY */
   public static final int     IPC_SERVER_HANDLER_QUEUE_SIZE_DEFAULT = 100;
+  /**
+   * Whether to process the calls on virtual threads rather than on a fixed
+   * pool of handler threads. Needs a JVM with virtual threads.
+   */
+  public static final String IPC_SERVER_HANDLER_VIRTUAL_THREADS_ENABLED_KEY =
+      "ipc.server.handler.virtual-threads.enabled";
+  /** Default value for IPC_SERVER_HANDLER_VIRTUAL_THREADS_ENABLED_KEY. */
+  public static final boolean
+      IPC_SERVER_HANDLER_VIRTUAL_THREADS_ENABLED_DEFAULT = false;
+  /** How many calls are processed on virtual threads at once. */
+  public static final String
+      IPC_SERVER_HANDLER_VIRTUAL_THREADS_MAX_CALLS_KEY =
+      "ipc.server.handler.virtual-threads.max-concurrent-calls";
+  /** Default value for IPC_SERVER_HANDLER_VIRTUAL_THREADS_MAX_CALLS_KEY. */
+  public static final int
+      IPC_SERVER_HANDLER_VIRTUAL_THREADS_MAX_CALLS_DEFAULT = 1000;
+
+  /**
+   * Whether to read the requests and serialize the protobuf responses into
+   * pooled buffers rather than allocating a buffer for each call.
+   */
+  public static final String IPC_SERVER_BUFFER_POOL_ENABLED_KEY =
+      "ipc.server.buffer-pool.enabled";
+  /** Default value for IPC_SERVER_BUFFER_POOL_ENABLED_KEY. */
+  public static final boolean IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT = false;
+  /** The size of the largest pooled buffers. */
+  public static final String IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY =
+      "ipc.server.buffer-pool.max-buffer-size";
+  /** Default value for IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY. */
+  public static final int IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_DEFAULT =
+      64 * 1024;
+  /** The maximum total size of the free buffers kept in the pool. */
+  public static final String IPC_SERVER_BUFFER_POOL_MAX_POOLED_BYTES_KEY =
+      "ipc.server.buffer-pool.max-pooled-bytes";
+  /** Default value for IPC_SERVER_BUFFER_POOL_MAX_POOLED_BYTES_KEY. */
+  public static final long IPC_SERVER_BUFFER_POOL_MAX_POOLED_BYTES_DEFAULT =
+      64L * 1024 * 1024;
 
   /**
    * CallQueue related settings. These are not used directly, but rather
@@ -114,6 +156,11 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
       "callqueue.overflow.trigger.failover";
   public static final boolean IPC_CALLQUEUE_SERVER_FAILOVER_ENABLE_DEFAULT =
       false;
+  /** Reject the calls which would miss the deadlines set by the clients. */
+  public static final String IPC_CALLQUEUE_ADMISSION_CONTROL_ENABLE =
+      "callqueue.admission-control.enable";
+  public static final boolean IPC_CALLQUEUE_ADMISSION_CONTROL_ENABLE_DEFAULT =
+      false;
   /** Callqueue subqueue capacity weights. */
   public static final String IPC_CALLQUEUE_CAPACITY_WEIGHTS_KEY =
       "callqueue.capacity.weights";
@@ -355,6 +402,22 @@ public class CommonConfigurationKeys extends CommonConfigurationKeysPublic {
   public static final String  IPC_CLIENT_ASYNC_CALLS_MAX_KEY =
       "ipc.client.async.calls.max";
   public static final int     IPC_CLIENT_ASYNC_CALLS_MAX_DEFAULT = 100;
+  /**
+   * The number of connections a client spreads the calls to the same remote
+   * address, protocol and user over.
+   */
+  public static final String  IPC_CLIENT_CONNECTION_POOL_SIZE_KEY =
+      "ipc.client.connection.pool.size";
+  public static final int     IPC_CLIENT_CONNECTION_POOL_SIZE_DEFAULT = 1;
+  /** The maximum number of calls in flight on a connection; 0 is no limit. */
+  public static final String  IPC_CLIENT_CONNECTION_MAX_IN_FLIGHT_CALLS_KEY =
+      "ipc.client.connection.max-in-flight-calls";
+  public static final int     IPC_CLIENT_CONNECTION_MAX_IN_FLIGHT_CALLS_DEFAULT =
+      0;
+  /** How long a synchronous call waits for its response; 0 is no limit. */
+  public static final String  IPC_CLIENT_CALL_DEADLINE_MS_KEY =
+      "ipc.client.call.deadline.ms";
+  public static final long    IPC_CLIENT_CALL_DEADLINE_MS_DEFAULT = 0;
   public static final String  IPC_CLIENT_FALLBACK_TO_SIMPLE_AUTH_ALLOWED_KEY = "ipc.client.fallback-to-simple-auth-allowed";
   public static final boolean IPC_CLIENT_FALLBACK_TO_SIMPLE_AUTH_ALLOWED_DEFAULT = false;
 
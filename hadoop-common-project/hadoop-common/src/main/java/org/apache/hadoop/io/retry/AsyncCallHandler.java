@@ -25,13 +25,18 @@
 import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.concurrent.AsyncGet;
+import org.apache.hadoop.util.concurrent.HadoopThreadPoolExecutor;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
 import java.util.Iterator;
 import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
@@ -47,6 +52,29 @@ public class AsyncCallHandler {
       LOWER_LAYER_ASYNC_RETURN = new ThreadLocal<>();
   private static final ThreadLocal<AsyncGet<Object, Throwable>>
       ASYNC_RETURN = new ThreadLocal<>();
+  private static final ThreadLocal<CompletableFuture<Object>>
+      ASYNC_RETURN_FUTURE = new ThreadLocal<>();
+  /** The number of threads completing the futures. */
+  private static final int FUTURE_COMPLETER_THREADS = 4;
+  /**
+   * Completes the futures, so their actions do not hold up the processor.
+   * Completions beyond the busy threads are queued rather than rejected, and
+   * idle threads exit.
+   */
+  private static final ThreadPoolExecutor FUTURE_COMPLETER =
+      createFutureCompleter();
+
+  private static ThreadPoolExecutor createFutureCompleter() {
+    final ThreadPoolExecutor completer = new HadoopThreadPoolExecutor(
+        FUTURE_COMPLETER_THREADS, FUTURE_COMPLETER_THREADS,
+        60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("AsyncCallHandler future completer #%d")
+            .build());
+    completer.allowCoreThreadTimeOut(true);
+    return completer;
+  }
 
   /**
    * @return the async return value from {@link AsyncCallHandler}.
@@ -59,12 +87,44 @@ public static <R, T extends  Throwable> AsyncGet<R, T> getAsyncReturn() {
     final AsyncGet<R, T> asyncGet = (AsyncGet<R, T>)ASYNC_RETURN.get();
     if (asyncGet != null) {
       ASYNC_RETURN.set(null);
+      ASYNC_RETURN_FUTURE.set(null);
       return asyncGet;
     } else {
       return (AsyncGet<R, T>) getLowerLayerAsyncReturn();
     }
   }
 
+  /**
+   * Get the async return value from {@link AsyncCallHandler} as a future.
+   * The future is completed once the call, including its retries, is done,
+   * so that no thread has to wait for the call. The future is completed on
+   * a small shared pool rather than by the thread processing the async
+   * calls, so the actions depending on the future do not delay the other
+   * calls.
+   * <p>
+   * The non-async dependent stages added before the call is done run on a
+   * thread of that pool, and those added afterwards run on the thread adding
+   * them. Such stages should not block, since they hold up the completion of
+   * the other futures; blocking actions should use the async variants with
+   * an executor of their own, e.g.
+   * {@link CompletableFuture#thenApplyAsync(java.util.function.Function,
+   * java.util.concurrent.Executor)}.
+   *
+   * @return the async return value of the last call of this thread.
+   * @param <R> the type of the return value.
+   */
+  @InterfaceStability.Unstable
+  @SuppressWarnings("unchecked")
+  public static <R> CompletableFuture<R> getAsyncReturnFuture() {
+    final CompletableFuture<R> future =
+        (CompletableFuture<R>) ASYNC_RETURN_FUTURE.get();
+    Preconditions.checkState(future != null,
+        "The last call was not an async call of a retry proxy");
+    ASYNC_RETURN_FUTURE.set(null);
+    ASYNC_RETURN.set(null);
+    return future;
+  }
+
   /**
    * For the lower rpc layers to set the async return value.
    * @param asyncReturn asyncReturn.
@@ -160,12 +220,18 @@ void tryStart() {
             @Override
             public void run() {
               for (; isRunning(this);) {
+                synchronized (AsyncCallHandler.this) {
+                  callDone = false;
+                }
                 final long waitTime = checkCalls();
                 tryStop(this);
 
                 try {
                   synchronized (AsyncCallHandler.this) {
-                    AsyncCallHandler.this.wait(waitTime);
+                    // do not wait if a call was done while checking.
+                    if (!callDone) {
+                      AsyncCallHandler.this.wait(waitTime);
+                    }
                   }
                 } catch (InterruptedException e) {
                   kill(this);
@@ -232,6 +298,7 @@ static class AsyncCall extends RetryInvocationHandler.Call {
     private final AsyncCallHandler asyncCallHandler;
 
     private final AsyncValue<CallReturn> asyncCallReturn = new AsyncValue<>();
+    private final CompletableFuture<Object> future = new CompletableFuture<>();
     private AsyncGet<?, Exception> lowerLayerAsyncGet;
 
     AsyncCall(Method method, Object[] args, boolean isRpc, int callId,
@@ -250,6 +317,7 @@ boolean isDone() {
         case RETURNED:
         case EXCEPTION:
           asyncCallReturn.set(r); // the async call is done
+          complete(r);
           return true;
         case RETRY:
           invokeOnce();
@@ -265,6 +333,16 @@ boolean isDone() {
       return false;
     }
 
+    private void complete(CallReturn r) {
+      try {
+        final Object value = r.getReturnValue();
+        asyncCallHandler.hasSuccessfulCall = true;
+        FUTURE_COMPLETER.execute(() -> future.complete(value));
+      } catch (Throwable t) {
+        FUTURE_COMPLETER.execute(() -> future.completeExceptionally(t));
+      }
+    }
+
     @Override
     CallReturn processWaitTimeAndRetryInfo() {
       final Long waitTime = getWaitTime(Time.monotonicNow());
@@ -308,6 +386,7 @@ CallReturn invoke() throws Throwable {
           // first async attempt, initialize
           LOG.trace("#{} invoke: initAsyncCall", getCallId());
           asyncCallHandler.initAsyncCall(this, asyncCallReturn);
+          ASYNC_RETURN_FUTURE.set(future);
         }
         return CallReturn.ASYNC_INVOKED;
       } finally {
@@ -318,6 +397,8 @@ CallReturn invoke() throws Throwable {
 
   private final AsyncCallQueue asyncCalls = new AsyncCallQueue();
   private volatile boolean hasSuccessfulCall = false;
+  // set when a lower layer call is done, guarded by this.
+  private boolean callDone = false;
 
   AsyncCall newAsyncCall(Method method, Object[] args, boolean isRpc,
                          int callId,
@@ -352,6 +433,17 @@ public boolean isDone() {
     ASYNC_RETURN.set(asyncGet);
   }
 
+  /**
+   * For the lower rpc layers to tell that one of the calls of this handler
+   * is done, so that the call is processed without waiting for the next
+   * check of the calls.
+   */
+  @InterfaceStability.Unstable
+  public synchronized void notifyCallDone() {
+    callDone = true;
+    notify();
+  }
+
   @VisibleForTesting
   public static long getGracePeriod() {
     return AsyncCallQueue.Processor.GRACE_PERIOD;
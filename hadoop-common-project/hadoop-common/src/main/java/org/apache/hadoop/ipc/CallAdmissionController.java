@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.ipc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.util.Preconditions;
+
+/**
+ * Decides whether a call is worth queueing. A call is rejected when the
+ * server does not expect to respond before the client stops waiting for it,
+ * since processing it would only take handlers away from the calls which can
+ * still be answered in time.
+ *
+ * The time to respond is estimated as the time to process the calls queued
+ * ahead of it, spread over the calls processed at once, plus the time to
+ * process the call itself. Both come from moving averages of the processing
+ * times of the previous calls, kept for each method and overall.
+ */
+@InterfaceAudience.Private
+class CallAdmissionController {
+  // a new processing time weighs 1/2^WEIGHT_SHIFT in the averages.
+  private static final int WEIGHT_SHIFT = 3;
+  // bounds the methods the averages are kept for.
+  @VisibleForTesting
+  static final int MAX_METHODS = 1024;
+
+  private final int concurrency;
+  private final AtomicLong avgProcessingNanos = new AtomicLong();
+  private final ConcurrentMap<String, AtomicLong> methodProcessingNanos =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @param concurrency the number of calls the server processes at once.
+   */
+  CallAdmissionController(int concurrency) {
+    Preconditions.checkArgument(concurrency > 0,
+        "concurrency must be positive: %s", concurrency);
+    this.concurrency = concurrency;
+  }
+
+  /**
+   * Account the processing time of a call.
+   *
+   * @param name the name of the method called.
+   * @param processingNanos the time spent processing the call.
+   */
+  void addProcessingTime(String name, long processingNanos) {
+    update(avgProcessingNanos, processingNanos);
+    if (name == null) {
+      return;
+    }
+    AtomicLong avg = methodProcessingNanos.get(name);
+    if (avg == null && methodProcessingNanos.size() < MAX_METHODS) {
+      avg = methodProcessingNanos.computeIfAbsent(name, k -> new AtomicLong());
+    }
+    if (avg != null) {
+      update(avg, processingNanos);
+    }
+  }
+
+  private static void update(AtomicLong avg, long sampleNanos) {
+    // the first sample starts the average.
+    avg.accumulateAndGet(sampleNanos,
+        (a, x) -> a == 0 ? x : a + ((x - a) >> WEIGHT_SHIFT));
+  }
+
+  /**
+   * Estimate how long the server takes to respond to a call.
+   *
+   * @param call the call.
+   * @param queuedAhead the number of calls queued ahead of it.
+   * @return the expected time to respond in nanoseconds.
+   */
+  long getExpectedResponseNanos(Schedulable call, int queuedAhead) {
+    long avgNanos = avgProcessingNanos.get();
+    long processingNanos = avgNanos;
+    String name = call.getMethodName();
+    if (name != null) {
+      AtomicLong methodAvg = methodProcessingNanos.get(name);
+      if (methodAvg != null) {
+        processingNanos = methodAvg.get();
+      }
+    }
+    return queuedAhead * avgNanos / concurrency + processingNanos;
+  }
+
+  /**
+   * Check whether the server may respond to a call in time.
+   *
+   * @param call the call.
+   * @param queuedAhead the number of calls queued ahead of it.
+   * @return false if the call is expected to miss its deadline.
+   */
+  boolean admit(Schedulable call, int queuedAhead) {
+    long remainingNanos = call.getRemainingTimeNanos();
+    return remainingNanos < 0 ||
+        getExpectedResponseNanos(call, queuedAhead) <= remainingNanos;
+  }
+
+  @VisibleForTesting
+  long getAvgProcessingNanos(String name) {
+    AtomicLong avg =
+        name == null ? avgProcessingNanos : methodProcessingNanos.get(name);
+    return avg == null ? 0 : avg.get();
+  }
+}
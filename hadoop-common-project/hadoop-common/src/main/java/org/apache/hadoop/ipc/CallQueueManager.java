@@ -28,12 +28,14 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.ipc.ProcessingDetails.Timing;
 import org.apache.hadoop.ipc.protobuf.RpcHeaderProtos.RpcResponseHeaderProto.RpcStatusProto;
 
 import org.apache.hadoop.security.UserGroupInformation;
@@ -74,6 +76,8 @@ static Class<? extends RpcScheduler> convertSchedulerClass(
   private final AtomicReference<BlockingQueue<E>> takeRef;
 
   private RpcScheduler scheduler;
+  // rejects the calls which would miss their deadlines, if set.
+  private volatile CallAdmissionController admissionController;
 
   public CallQueueManager(Class<? extends BlockingQueue<E>> backingClass,
                           Class<? extends RpcScheduler> schedulerClass,
@@ -255,6 +259,11 @@ boolean shouldBackOff(Schedulable e) {
 
   void addResponseTime(String name, Schedulable e, ProcessingDetails details) {
     scheduler.addResponseTime(name, e, details);
+    CallAdmissionController controller = admissionController;
+    if (controller != null) {
+      controller.addProcessingTime(name,
+          details.get(Timing.PROCESSING, TimeUnit.NANOSECONDS));
+    }
   }
 
   // This should be only called once per call and cached in the call object
@@ -279,6 +288,32 @@ void setClientBackoffEnabled(boolean value) {
     clientBackOffEnabled = value;
   }
 
+  void setAdmissionController(CallAdmissionController controller) {
+    admissionController = controller;
+  }
+
+  CallAdmissionController getAdmissionController() {
+    return admissionController;
+  }
+
+  // Reject the call if it is not expected to be processed before the client
+  // stops waiting for it.
+  private void checkAdmission(E e) {
+    CallAdmissionController controller = admissionController;
+    if (controller != null && !controller.admit(e, getQueuedAhead(e))) {
+      throw CallQueueOverflowException.DEADLINE;
+    }
+  }
+
+  // the calls taken before e, at least.
+  private int getQueuedAhead(E e) {
+    BlockingQueue<E> q = putRef.get();
+    if (q instanceof FairCallQueue) {
+      return ((FairCallQueue<E>) q).size(e.getPriorityLevel());
+    }
+    return q.size();
+  }
+
   /**
    * Insert e into the backing queue or block until we can.  If client
    * backoff is enabled this method behaves like add which throws if
@@ -288,6 +323,7 @@ void setClientBackoffEnabled(boolean value) {
    */
   @Override
   public void put(E e) throws InterruptedException {
+    checkAdmission(e);
     if (!isClientBackoffEnabled()) {
       putRef.get().put(e);
     } else if (shouldBackOff(e)) {
@@ -303,10 +339,74 @@ public boolean add(E e) {
     return addInternal(e, true);
   }
 
+  /**
+   * Insert the calls into the backing queue in order, as put does, until one
+   * of them would be rejected. A FairCallQueue wakes up its consumers once for
+   * the calls it takes without blocking, rather than once for each.
+   *
+   * @param calls the calls to queue.
+   * @return the number of calls queued. If it is less than the number of
+   *         calls, the next one was not queued, and putting it alone throws
+   *         why.
+   * @throws InterruptedException if interrupted while blocked.
+   */
+  int putAll(List<E> calls) throws InterruptedException {
+    BlockingQueue<E> q = putRef.get();
+    FairCallQueue<E> fcq =
+        q instanceof FairCallQueue ? (FairCallQueue<E>) q : null;
+    int queued = 0;
+    int unsignalled = 0;
+    try {
+      for (E e : calls) {
+        CallAdmissionController controller = admissionController;
+        if (controller != null && !controller.admit(e, getQueuedAhead(e))) {
+          break;
+        }
+        boolean backoff = isClientBackoffEnabled();
+        if (backoff && shouldBackOff(e)) {
+          break;
+        }
+        if (fcq == null) {
+          if (!backoff) {
+            q.put(e);
+          } else {
+            try {
+              q.add(e);
+            } catch (IllegalStateException ise) {
+              break;
+            }
+          }
+        } else if (fcq.offerUnsignalled(e)) {
+          unsignalled++;
+        } else if (backoff) {
+          // put alone, it overflows and reports it.
+          break;
+        } else {
+          // the consumers must see the calls so far before put blocks.
+          if (unsignalled > 0) {
+            fcq.signalNotEmpty(unsignalled);
+            unsignalled = 0;
+          }
+          fcq.put(e);
+        }
+        queued++;
+      }
+    } finally {
+      if (unsignalled > 0) {
+        fcq.signalNotEmpty(unsignalled);
+      }
+    }
+    return queued;
+  }
+
   @VisibleForTesting
   boolean addInternal(E e, boolean checkBackoff) {
-    if (checkBackoff && isClientBackoffEnabled() && shouldBackOff(e)) {
-      throwBackoff();
+    if (checkBackoff) {
+      // put already checked it.
+      checkAdmission(e);
+      if (isClientBackoffEnabled() && shouldBackOff(e)) {
+        throwBackoff();
+      }
     }
     try {
       return putRef.get().add(e);
@@ -547,6 +647,10 @@ static class CallQueueOverflowException extends IllegalStateException {
         new CallQueueOverflowException(
             new RetriableException(TOO_BUSY + " - disconnecting"),
             RpcStatusProto.FATAL);
+    static final CallQueueOverflowException DEADLINE =
+        new CallQueueOverflowException(
+            new RetriableException(TOO_BUSY + " - call would time out"),
+            RpcStatusProto.ERROR);
     static final CallQueueOverflowException FAILOVER =
         new CallQueueOverflowException(
             new StandbyException(TOO_BUSY + " - disconnect and failover"),
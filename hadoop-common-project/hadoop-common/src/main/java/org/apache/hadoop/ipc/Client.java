@@ -32,6 +32,7 @@
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.retry.AsyncCallHandler;
 import org.apache.hadoop.io.retry.RetryPolicies;
 import org.apache.hadoop.io.retry.RetryPolicy;
 import org.apache.hadoop.io.retry.RetryPolicy.RetryAction;
@@ -165,6 +166,11 @@ public static Object getExternalHandler() {
   private final byte[] clientId;
   private final int maxAsyncCalls;
   private final AtomicInteger asyncCallCounter = new AtomicInteger(0);
+  // the number of connections the calls to a ConnectionId are spread over
+  private final int connectionPoolSize;
+  // the maximum number of calls in flight on a connection; 0 is no limit
+  private final int maxInFlightCalls;
+  private final long callDeadlineMs;
 
   /**
    * set the ping interval value in configuration
@@ -283,6 +289,8 @@ static class Call {
     boolean done;               // true when call is done
     private final Object externalHandler;
     private AlignmentContext alignmentContext;
+    private long startNanos;    // when the call was added to a connection
+    private long deadlineMs;    // how long the caller waits, 0 if unbounded
 
     private Call(RPC.RpcKind rpcKind, Writable param) {
       this.rpcKind = rpcKind;
@@ -317,7 +325,9 @@ protected synchronized void callComplete() {
       this.done = true;
       notify();                                 // notify caller
 
-      if (externalHandler != null) {
+      if (externalHandler instanceof AsyncCallHandler) {
+        ((AsyncCallHandler) externalHandler).notifyCallDone();
+      } else if (externalHandler != null) {
         synchronized (externalHandler) {
           externalHandler.notify();
         }
@@ -387,6 +397,11 @@ private class Connection extends Thread {
 
     // currently active calls
     private Hashtable<Integer, Call> calls = new Hashtable<Integer, Call>();
+    // limits the calls in flight, if they are limited
+    private final Semaphore inFlightWindow = maxInFlightCalls > 0
+        ? new Semaphore(maxInFlightCalls) : null;
+    // the moving average of the response latency, if connections are pooled
+    private volatile long avgLatencyNanos;
     private AtomicLong lastActivity = new AtomicLong();// last I/O activity time
     private AtomicBoolean shouldCloseConnection = new AtomicBoolean();  // indicate if the connection is closed
     private IOException closeException; // close reason
@@ -476,11 +491,74 @@ private void touch() {
     private synchronized boolean addCall(Call call) {
       if (shouldCloseConnection.get())
         return false;
+      if (connectionPoolSize > 1) {
+        call.startNanos = Time.monotonicNowNanos();
+      }
       calls.put(call.id, call);
       notify();
       return true;
     }
 
+    /**
+     * Wait for a call in flight to complete if the window of the connection
+     * is full.
+     */
+    private void acquireWindow() throws InterruptedIOException {
+      if (inFlightWindow != null) {
+        try {
+          inFlightWindow.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException(
+              "Interrupted waiting for a call in flight to " + server);
+        }
+      }
+    }
+
+    private void releaseWindow() {
+      if (inFlightWindow != null) {
+        inFlightWindow.release();
+      }
+    }
+
+    /** Remove a call which completed or failed. */
+    private Call removeCall(int id) {
+      final Call call = calls.remove(id);
+      if (call != null) {
+        releaseWindow();
+        if (connectionPoolSize > 1) {
+          // the receiver thread is the only writer.
+          final long latency = Time.monotonicNowNanos() - call.startNanos;
+          final long avg = avgLatencyNanos;
+          avgLatencyNanos = avg == 0 ? latency : avg + (latency - avg) / 8;
+        }
+      }
+      return call;
+    }
+
+    /** Forget a call its caller stopped waiting for. */
+    private void cancelCall(Call call) {
+      if (calls.remove(call.id, call)) {
+        releaseWindow();
+      }
+    }
+
+    /**
+     * @return the time the calls in flight are expected to take, from the
+     *         average response latency; 0 if there are none, and
+     *         Long.MAX_VALUE if the window is full.
+     */
+    private long getExpectedWaitNanos() {
+      final int inFlight = calls.size();
+      if (inFlight == 0) {
+        return 0;
+      }
+      if (inFlightWindow != null && inFlightWindow.availablePermits() == 0) {
+        return Long.MAX_VALUE;
+      }
+      return inFlight * Math.max(avgLatencyNanos, 1);
+    }
+
     /** This class sends a ping to the remote side when timeout on
      * reading. If no failure is detected, it retries until at least
      * a byte is read.
@@ -1177,7 +1255,7 @@ public void sendRpcRequest(final Call call)
       // Items '1' and '2' are prepared here. 
       RpcRequestHeaderProto header = ProtoUtil.makeRpcRequestHeader(
           call.rpcKind, OperationProto.RPC_FINAL_PACKET, call.id, call.retry,
-          clientId, call.alignmentContext);
+          clientId, call.alignmentContext, call.deadlineMs);
 
       final ResponseBuffer buf = new ResponseBuffer();
       header.writeDelimitedTo(buf);
@@ -1215,11 +1293,14 @@ private void receiveRpcResponse() {
         RpcStatusProto status = header.getStatus();
         if (status == RpcStatusProto.SUCCESS) {
           Writable value = packet.newInstance(valueClass, conf);
-          final Call call = calls.remove(callId);
-          if (call.alignmentContext != null) {
-            call.alignmentContext.receiveResponseState(header);
+          final Call call = removeCall(callId);
+          // the call is gone if its caller stopped waiting for it.
+          if (call != null) {
+            if (call.alignmentContext != null) {
+              call.alignmentContext.receiveResponseState(header);
+            }
+            call.setRpcResponse(value);
           }
-          call.setRpcResponse(value);
         }
         // verify that packet length was correct
         if (packet.remaining() > 0) {
@@ -1238,8 +1319,10 @@ private void receiveRpcResponse() {
           }
           RemoteException re = new RemoteException(exceptionClassName, errorMsg, erCode);
           if (status == RpcStatusProto.ERROR) {
-            final Call call = calls.remove(callId);
-            call.setException(re);
+            final Call call = removeCall(callId);
+            if (call != null) {
+              call.setException(re);
+            }
           } else if (status == RpcStatusProto.FATAL) {
             // Close the connection
             markClosed(re);
@@ -1311,6 +1394,7 @@ private void cleanupCalls() {
       while (itor.hasNext()) {
         Call c = itor.next().getValue(); 
         itor.remove();
+        releaseWindow();
         c.setException(closeException); // local exception
       }
     }
@@ -1341,6 +1425,15 @@ public Client(Class<? extends Writable> valueClass, Configuration conf,
     this.maxAsyncCalls = conf.getInt(
         CommonConfigurationKeys.IPC_CLIENT_ASYNC_CALLS_MAX_KEY,
         CommonConfigurationKeys.IPC_CLIENT_ASYNC_CALLS_MAX_DEFAULT);
+    this.connectionPoolSize = Math.max(1, conf.getInt(
+        CommonConfigurationKeys.IPC_CLIENT_CONNECTION_POOL_SIZE_KEY,
+        CommonConfigurationKeys.IPC_CLIENT_CONNECTION_POOL_SIZE_DEFAULT));
+    this.maxInFlightCalls = conf.getInt(
+        CommonConfigurationKeys.IPC_CLIENT_CONNECTION_MAX_IN_FLIGHT_CALLS_KEY,
+        CommonConfigurationKeys.IPC_CLIENT_CONNECTION_MAX_IN_FLIGHT_CALLS_DEFAULT);
+    this.callDeadlineMs = conf.getLong(
+        CommonConfigurationKeys.IPC_CLIENT_CALL_DEADLINE_MS_KEY,
+        CommonConfigurationKeys.IPC_CLIENT_CALL_DEADLINE_MS_DEFAULT);
   }
 
   /**
@@ -1472,6 +1565,10 @@ Writable call(RPC.RpcKind rpcKind, Writable rpcRequest,
       throws IOException {
     final Call call = createCall(rpcKind, rpcRequest);
     call.setAlignmentContext(alignmentContext);
+    if (!isAsynchronousMode()) {
+      // the asynchronous callers choose how long they wait for each call.
+      call.deadlineMs = callDeadlineMs;
+    }
     final Connection connection = getConnection(remoteId, call, serviceClass,
         fallbackToSimpleAuth);
 
@@ -1527,9 +1624,36 @@ public boolean isDone() {
 
       ASYNC_RPC_RESPONSE.set(asyncGet);
       return null;
-    } else {
+    } else if (call.deadlineMs <= 0) {
       return getRpcResponse(call, connection, -1, null);
+    } else {
+      return getRpcResponseBeforeDeadline(call, connection);
+    }
+  }
+
+  /**
+   * Wait for the response of a call until its deadline.
+   * @return the rpc response.
+   * @throws SocketTimeoutException, wrapped with the remote address, once
+   *         the deadline passes.
+   */
+  private Writable getRpcResponseBeforeDeadline(final Call call,
+      final Connection connection) throws IOException {
+    final long deadline = Time.monotonicNow() + call.deadlineMs;
+    for (long remaining = call.deadlineMs; remaining > 0;
+         remaining = deadline - Time.monotonicNow()) {
+      final Writable w = getRpcResponse(call, connection, remaining,
+          TimeUnit.MILLISECONDS);
+      if (w != null) {
+        return w;
+      }
     }
+    connection.cancelCall(call);
+    InetSocketAddress address = connection.getRemoteAddress();
+    throw NetUtils.wrapException(address.getHostName(), address.getPort(),
+        NetUtils.getHostname(), 0, new SocketTimeoutException(call
+            + " did not complete within its deadline of " + call.deadlineMs
+            + " ms"));
   }
 
   /**
@@ -1611,15 +1735,6 @@ Set<ConnectionId> getConnectionIds() {
   private Connection getConnection(ConnectionId remoteId,
       Call call, int serviceClass, AtomicBoolean fallbackToSimpleAuth)
       throws IOException {
-    final Consumer<Connection> removeMethod = c -> {
-      final boolean removed = connections.remove(remoteId, c);
-      if (removed && connections.isEmpty()) {
-        synchronized (emptyCondition) {
-          emptyCondition.notify();
-        }
-      }
-    };
-
     Connection connection;
     /* we could avoid this allocation for each RPC by having a  
      * connectionsId object and with set() method. We need to manage the
@@ -1631,18 +1746,21 @@ private Connection getConnection(ConnectionId remoteId,
           throw new IOException("Failed to get connection for " + remoteId
               + ", " + call + ": " + this + " is already stopped");
         }
-        connection = connections.computeIfAbsent(remoteId,
-            id -> new Connection(id, serviceClass, removeMethod));
+        connection = connections.computeIfAbsent(
+            selectConnectionId(remoteId), id -> new Connection(id,
+                serviceClass, c -> removeConnection(id, c)));
       }
 
+      connection.acquireWindow();
       if (connection.addCall(call)) {
         break;
       } else {
+        connection.releaseWindow();
         // This connection is closed, should be removed. But other thread could
         // have already known this closedConnection, and replace it with a new
         // connection. So we should call conditional remove to make sure we only
         // remove this closedConnection.
-        removeMethod.accept(connection);
+        removeConnection(connection.remoteId, connection);
       }
     }
 
@@ -1651,6 +1769,49 @@ private Connection getConnection(ConnectionId remoteId,
     connection.setupIOstreams(fallbackToSimpleAuth);
     return connection;
   }
+
+  private void removeConnection(ConnectionId remoteId, Connection connection) {
+    final boolean removed = connections.remove(remoteId, connection);
+    if (removed && connections.isEmpty()) {
+      synchronized (emptyCondition) {
+        emptyCondition.notify();
+      }
+    }
+  }
+
+  /**
+   * Select the connection a call to the remote goes to, when the calls are
+   * spread over several connections. An idle connection is preferred, then a
+   * new connection, then the connection whose calls in flight are expected
+   * to take the least time.
+   */
+  private ConnectionId selectConnectionId(ConnectionId remoteId) {
+    if (connectionPoolSize == 1) {
+      return remoteId;
+    }
+    ConnectionId unused = null;
+    ConnectionId best = null;
+    long bestWait = Long.MAX_VALUE;
+    for (int i = 0; i < connectionPoolSize; i++) {
+      final ConnectionId id = remoteId.getPooledId(i, connectionPoolSize);
+      final Connection connection = connections.get(id);
+      if (connection == null) {
+        if (unused == null) {
+          unused = id;
+        }
+        continue;
+      }
+      final long wait = connection.getExpectedWaitNanos();
+      if (wait == 0) {
+        return id;
+      }
+      if (best == null || wait < bestWait) {
+        best = id;
+        bestWait = wait;
+      }
+    }
+    return unused != null ? unused : best;
+  }
   
   /**
    * This class holds the address and the user ticket. The client connections
@@ -1677,6 +1838,10 @@ public static class ConnectionId {
     private final int pingInterval; // how often sends ping to the server in msecs
     private String saslQop; // here for testing
     private final Configuration conf; // used to get the expected kerberos principal name
+    // the index of the connection among the pooled connections to the remote
+    private final int index;
+    // the ids of the pooled connections, built on first use
+    private volatile ConnectionId[] pooledIds;
 
     public ConnectionId(InetSocketAddress address, Class<?> protocol,
                  UserGroupInformation ticket, int rpcTimeout,
@@ -1708,6 +1873,45 @@ public ConnectionId(InetSocketAddress address, Class<?> protocol,
           CommonConfigurationKeys.IPC_CLIENT_PING_DEFAULT);
       this.pingInterval = (doPing ? Client.getPingInterval(conf) : 0);
       this.conf = conf;
+      this.index = 0;
+    }
+
+    private ConnectionId(ConnectionId id, int index) {
+      this.address = id.address;
+      this.ticket = id.ticket;
+      this.protocol = id.protocol;
+      this.rpcTimeout = id.rpcTimeout;
+      this.maxIdleTime = id.maxIdleTime;
+      this.connectionRetryPolicy = id.connectionRetryPolicy;
+      this.maxRetriesOnSasl = id.maxRetriesOnSasl;
+      this.maxRetriesOnSocketTimeouts = id.maxRetriesOnSocketTimeouts;
+      this.tcpNoDelay = id.tcpNoDelay;
+      this.tcpLowLatency = id.tcpLowLatency;
+      this.doPing = id.doPing;
+      this.pingInterval = id.pingInterval;
+      this.saslQop = id.saslQop;
+      this.conf = id.conf;
+      this.index = index;
+    }
+
+    /**
+     * @return the id of a connection of a pool of connections to the remote,
+     *         which is this id for the first connection.
+     */
+    ConnectionId getPooledId(int i, int poolSize) {
+      if (i == 0) {
+        return this;
+      }
+      ConnectionId[] ids = pooledIds;
+      if (ids == null || ids.length != poolSize) {
+        ids = new ConnectionId[poolSize];
+        ids[0] = this;
+        for (int j = 1; j < poolSize; j++) {
+          ids[j] = new ConnectionId(this, j);
+        }
+        pooledIds = ids;
+      }
+      return ids[i];
     }
     
     InetSocketAddress getAddress() {
@@ -1837,7 +2041,8 @@ && isEqual(this.connectionRetryPolicy, that.connectionRetryPolicy)
             && isEqual(this.protocol, that.protocol)
             && this.rpcTimeout == that.rpcTimeout
             && this.tcpNoDelay == that.tcpNoDelay
-            && isEqual(this.ticket, that.ticket);
+            && isEqual(this.ticket, that.ticket)
+            && this.index == that.index;
       }
       return false;
     }
@@ -1857,6 +2062,7 @@ public int hashCode() {
       result = PRIME * result + rpcTimeout;
       result = PRIME * result + (tcpNoDelay ? 1231 : 1237);
       result = PRIME * result + ((ticket == null) ? 0 : ticket.hashCode());
+      result = PRIME * result + index;
       return result;
     }
     
@@ -76,6 +76,14 @@ private void signalNotEmpty() {
     semaphore.release();
   }
 
+  /**
+   * Signal the elements queued by {@link #offerUnsignalled}.
+   * @param count - number of elements queued
+   */
+  void signalNotEmpty(int count) {
+    semaphore.release(count);
+  }
+
   /* Multiplexer picks which queue to draw from */
   private RpcMultiplexer multiplexer;
 
@@ -266,6 +274,29 @@ private boolean offerQueues(int priority, E e, boolean includeLast) {
     return false;
   }
 
+  /**
+   * Offer the element to the queue of its priority or a lower one, like add,
+   * but without signalling it. The caller queues several elements this way,
+   * then signals them at once with {@link #signalNotEmpty(int)}, and it must
+   * do so before it may block on this queue, as the consumers cannot take
+   * the unsignalled elements. The overflows are only counted if the element
+   * is added, so that adding it again after a failure counts them once.
+   * @param e - element to add
+   * @return boolean if added to a queue
+   */
+  boolean offerUnsignalled(E e) {
+    int priorityLevel = e.getPriorityLevel();
+    for (int i = priorityLevel; i < queues.size(); i++) {
+      if (queues.get(i).offer(e)) {
+        for (int j = priorityLevel; j < i; j++) {
+          overflowedCalls.get(j).getAndIncrement();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public boolean offer(E e, long timeout, TimeUnit unit)
       throws InterruptedException {
@@ -332,6 +363,20 @@ public int size() {
     return semaphore.availablePermits();
   }
 
+  /**
+   * Returns the number of calls in the sub-queues of the given priority level
+   * and higher, which are mostly taken before a new call of that level.
+   * Note: like size, it provides no strict consistency.
+   */
+  int size(int priorityLevel) {
+    int size = 0;
+    int last = Math.min(priorityLevel, queues.size() - 1);
+    for (int i = 0; i <= last; i++) {
+      size += queues.get(i).size();
+    }
+    return size;
+  }
+
   /**
    * Iterator is not implemented, as it is not needed.
    */
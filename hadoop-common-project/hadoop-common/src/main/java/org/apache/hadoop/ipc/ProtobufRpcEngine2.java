@@ -664,6 +664,17 @@ RequestHeaderProto getRequestHeader() throws IOException {
       return requestHeader;
     }
 
+    @Override
+    void detach() {
+      try {
+        // keep the header for toString.
+        getRequestHeader();
+      } catch (IOException e) {
+        // the call already failed to decode it.
+      }
+      super.detach();
+    }
+
     @Override
     public void writeTo(ResponseBuffer out) throws IOException {
       requestHeader.writeDelimitedTo(out);
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.io.ByteBufferPool;
+import org.apache.hadoop.util.Preconditions;
+
+/**
+ * A pool of the heap buffers the RPC server reads the requests into and
+ * serializes the responses into. The buffers are kept in power of two size
+ * classes, so that getting and putting a buffer takes constant time and
+ * does not lock, unlike the {@link org.apache.hadoop.io.ElasticByteBufferPool}.
+ * The buffers larger than the largest class are not pooled, and the total
+ * size of the pooled buffers is bounded.
+ * <p>
+ * The buffers are heap buffers, since the requests are decoded and the
+ * responses are encoded with the backing arrays of the buffers.
+ */
+@InterfaceAudience.Private
+class RpcBufferPool implements ByteBufferPool {
+  /** The size of the smallest class. */
+  static final int MIN_BUFFER_SIZE = 512;
+
+  private final int maxBufferSize;
+  private final long maxPooledBytes;
+  /** The free buffers, by size class. */
+  private final ConcurrentLinkedDeque<ByteBuffer>[] freeBuffers;
+  private final AtomicLong pooledBytes = new AtomicLong();
+  private final LongAdder allocations = new LongAdder();
+  private final LongAdder reuses = new LongAdder();
+
+  /**
+   * @param maxBufferSize the size of the largest pooled buffers, which is
+   *                      rounded up to a power of two.
+   * @param maxPooledBytes the maximum total size of the free buffers.
+   */
+  @SuppressWarnings("unchecked")
+  RpcBufferPool(int maxBufferSize, long maxPooledBytes) {
+    Preconditions.checkArgument(maxBufferSize > 0,
+        "maxBufferSize must be positive");
+    Preconditions.checkArgument(maxBufferSize <= 1 << 30,
+        "maxBufferSize must be at most 1GB");
+    this.maxBufferSize = Math.max(MIN_BUFFER_SIZE,
+        Integer.highestOneBit(maxBufferSize - 1) << 1);
+    this.maxPooledBytes = maxPooledBytes;
+    this.freeBuffers = (ConcurrentLinkedDeque<ByteBuffer>[])
+        new ConcurrentLinkedDeque<?>[getSizeClass(this.maxBufferSize) + 1];
+    for (int i = 0; i < freeBuffers.length; i++) {
+      freeBuffers[i] = new ConcurrentLinkedDeque<>();
+    }
+  }
+
+  private static int getSizeClass(int length) {
+    if (length <= MIN_BUFFER_SIZE) {
+      return 0;
+    }
+    return Integer.numberOfTrailingZeros(
+        Integer.highestOneBit(length - 1) << 1)
+        - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+  }
+
+  /**
+   * Get a heap buffer, whose limit is the length and whose capacity may be
+   * larger.
+   */
+  @Override
+  public ByteBuffer getBuffer(boolean direct, int length) {
+    Preconditions.checkArgument(!direct, "Direct buffers are not pooled");
+    if (length > maxBufferSize) {
+      allocations.increment();
+      return ByteBuffer.allocate(length);
+    }
+    final int sizeClass = getSizeClass(length);
+    ByteBuffer buffer = freeBuffers[sizeClass].pollFirst();
+    if (buffer != null) {
+      pooledBytes.addAndGet(-buffer.capacity());
+      reuses.increment();
+      buffer.clear();
+    } else {
+      allocations.increment();
+      buffer = ByteBuffer.allocate(MIN_BUFFER_SIZE << sizeClass);
+    }
+    buffer.limit(length);
+    return buffer;
+  }
+
+  /**
+   * Return a buffer to the pool. The buffer must not be used afterwards.
+   * The buffers which were not got from a pool of the same sizes, and the
+   * buffers beyond the maximum total size, are left to the garbage
+   * collector.
+   */
+  @Override
+  public void putBuffer(ByteBuffer buffer) {
+    final int capacity = buffer.capacity();
+    if (!buffer.hasArray() || buffer.arrayOffset() != 0
+        || capacity < MIN_BUFFER_SIZE || capacity > maxBufferSize
+        || Integer.bitCount(capacity) != 1) {
+      return;
+    }
+    if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+      pooledBytes.addAndGet(-capacity);
+      return;
+    }
+    // reusing the most recently freed buffer keeps it in the cpu caches.
+    freeBuffers[getSizeClass(capacity)].offerFirst(buffer);
+  }
+
+  @Override
+  public void release() {
+    for (ConcurrentLinkedDeque<ByteBuffer> buffers : freeBuffers) {
+      ByteBuffer buffer;
+      while ((buffer = buffers.pollFirst()) != null) {
+        pooledBytes.addAndGet(-buffer.capacity());
+      }
+    }
+  }
+
+  /** @return the number of buffers allocated, including the unpooled ones. */
+  long getAllocations() {
+    return allocations.longValue();
+  }
+
+  /** @return the number of buffers got from the pool. */
+  long getReuses() {
+    return reuses.longValue();
+  }
+
+  /** @return the total size of the free buffers in the pool. */
+  long getPooledBytes() {
+    return pooledBytes.get();
+  }
+}
@@ -156,6 +156,14 @@ ByteBuffer getByteBuffer() {
       return bb;
     }
 
+    /**
+     * Drop the reference to the buffer, which is reused once the call is
+     * processed.  The value must have been read already.
+     */
+    void detach() {
+      bb = null;
+    }
+
     @Override
     void writeTo(ResponseBuffer out) throws IOException {
       out.ensureCapacity(bb.remaining());
@@ -44,4 +44,24 @@ default CallerContext getCallerContext() {
   }
 
   int getPriorityLevel();
+
+  /**
+   * Get how long the caller still waits for the response, as far as it told
+   * the server.
+   *
+   * @return the remaining time in nanoseconds, or -1 if unknown.
+   */
+  default long getRemainingTimeNanos() {
+    return -1;
+  }
+
+  /**
+   * Get the name of the method called, if it is known before the call is
+   * processed.
+   *
+   * @return the method name, or null if unknown.
+   */
+  default String getMethodName() {
+    return null;
+  }
 }
@@ -42,6 +42,7 @@
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -67,6 +68,8 @@
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -472,6 +475,7 @@ public static int getPriorityLevel() {
   private int handlerCount;                       // number of handler threads
   private int readThreads;                        // number of read threads
   private int readerPendingConnectionQueue;         // number of connections to queue per read thread
+  private int readBatchSize;    // number of requests to decode at once per connection
   private Class<? extends Writable> rpcRequestClass;   // class used for deserializing the rpc request
   final protected RpcMetrics rpcMetrics;
   final protected RpcDetailedMetrics rpcDetailedMetrics;
@@ -509,6 +513,12 @@ protected ResponseBuffer initialValue() {
   private Map<Integer, Listener> auxiliaryListenerMap;
   private Responder responder = null;
   private Handler[] handlers = null;
+  // creates the threads the calls are processed on, if they are virtual
+  private ThreadFactory virtualHandlerFactory;
+  private int maxVirtualHandlerCalls;
+  private final Set<Thread> virtualHandlers = ConcurrentHashMap.newKeySet();
+  // the buffers the requests and responses are kept in, if they are pooled
+  private RpcBufferPool bufferPool;
   private final AtomicInteger numInProcessHandler = new AtomicInteger();
   private final LongAdder totalRequests = new LongAdder();
   private long lastSeenTotalRequests = 0;
@@ -544,6 +554,18 @@ public long getTotalRequestsPerSecond() {
     return totalRequestsPerSecond;
   }
 
+  public long getBufferAllocations() {
+    return bufferPool != null ? bufferPool.getAllocations() : 0;
+  }
+
+  public long getBufferReuses() {
+    return bufferPool != null ? bufferPool.getReuses() : 0;
+  }
+
+  public long getBufferPooledBytes() {
+    return bufferPool != null ? bufferPool.getPooledBytes() : 0;
+  }
+
   /**
    * Sets slow RPC flag.
    * @param logSlowRPCFlag input logSlowRPCFlag.
@@ -912,6 +934,12 @@ public synchronized void refreshCallQueue(Configuration conf) {
         maxQueueSize, prefix, conf);
     callQueue.setClientBackoffEnabled(getClientBackoffEnable(
         CommonConfigurationKeys.IPC_NAMESPACE, port, conf));
+    if (!getAdmissionControlEnable(
+        CommonConfigurationKeys.IPC_NAMESPACE, port, conf)) {
+      callQueue.setAdmissionController(null);
+    } else if (callQueue.getAdmissionController() == null) {
+      callQueue.setAdmissionController(newAdmissionController());
+    }
   }
 
   /**
@@ -952,6 +980,40 @@ static boolean getClientBackoffEnable(
         CommonConfigurationKeys.IPC_BACKOFF_ENABLE_DEFAULT);
   }
 
+  /**
+   * Return boolean value configured by property
+   * 'ipc.<port>.callqueue.admission-control.enable' if it is present. If the
+   * config is not present, default config (without port) is used to derive
+   * class i.e 'ipc.callqueue.admission-control.enable', and derived value is
+   * returned if configured. Otherwise, default value
+   * {@link CommonConfigurationKeys#IPC_CALLQUEUE_ADMISSION_CONTROL_ENABLE_DEFAULT}
+   * is returned.
+   *
+   * @param namespace Namespace "ipc".
+   * @param port Server's listener port.
+   * @param conf Configuration properties.
+   * @return Value returned based on configuration.
+   */
+  static boolean getAdmissionControlEnable(
+      String namespace, int port, Configuration conf) {
+    String name = namespace + "." + port + "." +
+        CommonConfigurationKeys.IPC_CALLQUEUE_ADMISSION_CONTROL_ENABLE;
+    if (conf.get(name) != null) {
+      return conf.getBoolean(name,
+          CommonConfigurationKeys.IPC_CALLQUEUE_ADMISSION_CONTROL_ENABLE_DEFAULT);
+    }
+    return conf.getBoolean(namespace + "."
+            + CommonConfigurationKeys.IPC_CALLQUEUE_ADMISSION_CONTROL_ENABLE,
+        CommonConfigurationKeys.IPC_CALLQUEUE_ADMISSION_CONTROL_ENABLE_DEFAULT);
+  }
+
+  // the estimates assume the calls are processed by all the handlers, or at
+  // most maxVirtualHandlerCalls virtual threads, at once.
+  private CallAdmissionController newAdmissionController() {
+    return new CallAdmissionController(virtualHandlerFactory != null ?
+        maxVirtualHandlerCalls : handlerCount);
+  }
+
   /** A generic call queued for handling. */
   public static class Call implements Schedulable,
   PrivilegedExceptionAction<Void> {
@@ -962,6 +1024,7 @@ public static class Call implements Schedulable,
     final int callId;            // the client's call id
     final int retryCount;        // the retry count of the call
     private final long timestampNanos; // time the call was received
+    private long timeoutNanos = -1; // how long the client waits, if known
     long responseTimestampNanos; // time the call was served
     private AtomicInteger responseWaitCount = new AtomicInteger(1);
     final RPC.RpcKind rpcKind;
@@ -1166,6 +1229,23 @@ public void setDeferredError(Throwable t) {
     public long getTimestampNanos() {
       return timestampNanos;
     }
+
+    void setTimeout(long timeout, TimeUnit unit) {
+      this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    @Override
+    public long getRemainingTimeNanos() {
+      if (timeoutNanos < 0) {
+        return -1;
+      }
+      long elapsedNanos = Time.monotonicNowNanos() - timestampNanos;
+      return Math.max(0, timeoutNanos - elapsedNanos);
+    }
+
+    /** Release the buffers of the request once the call is processed. */
+    void releaseRequest() {
+    }
   }
 
   /** A RPC extended call queued for handling. */
@@ -1173,6 +1253,9 @@ private class RpcCall extends Call {
     final Connection connection;  // connection to client
     final Writable rpcRequest;    // Serialized Rpc request from client
     ByteBuffer rpcResponse;       // the response for this call
+    // the pooled buffers the request was read into and the response is in
+    private ByteBuffer requestBuffer;
+    private boolean responsePooled;
 
     private ResponseParams responseParams; // the response params
     private Writable rv;                   // the byte response
@@ -1208,6 +1291,19 @@ boolean isOpen() {
       return connection.channel.isOpen();
     }
 
+    @Override
+    public String getMethodName() {
+      if (rpcRequest instanceof ProtobufRpcEngine2.RpcProtobufRequest) {
+        try {
+          return ((ProtobufRpcEngine2.RpcProtobufRequest) rpcRequest)
+              .getRequestHeader().getMethodName();
+        } catch (IOException e) {
+          // the handler reports the malformed header.
+        }
+      }
+      return null;
+    }
+
     void setResponseFields(Writable returnValue,
                            ResponseParams responseParams) {
       this.rv = returnValue;
@@ -1301,7 +1397,37 @@ private void populateResponseParamsOnError(Throwable t,
     }
 
     void setResponse(ByteBuffer response) throws IOException {
+      setResponse(response, false);
+    }
+
+    /**
+     * @param pooled whether the response is a buffer of the buffer pool,
+     *               which is returned to the pool once it is sent.
+     */
+    void setResponse(ByteBuffer response, boolean pooled) {
       this.rpcResponse = response;
+      this.responsePooled = pooled;
+    }
+
+    /** Drop the response once it is sent or replaced. */
+    void releaseResponse() {
+      if (responsePooled) {
+        bufferPool.putBuffer(rpcResponse);
+        responsePooled = false;
+      }
+      rpcResponse = null;
+    }
+
+    @Override
+    void releaseRequest() {
+      if (requestBuffer != null) {
+        // the request must not read the buffer once it is reused.
+        if (rpcRequest instanceof RpcWritable.Buffer) {
+          ((RpcWritable.Buffer) rpcRequest).detach();
+        }
+        bufferPool.putBuffer(requestBuffer);
+        requestBuffer = null;
+      }
     }
 
     @Override
@@ -1864,16 +1990,19 @@ private boolean processResponse(LinkedList<RpcCall> responseQueue,
 
           LOG.debug("{}: responding to {}.", Thread.currentThread().getName(), call);
           //
-          // Send as much data as we can in the non-blocking fashion
+          // Send as much data as we can in the non-blocking fashion, along
+          // with the small responses queued after this one.
           //
-          int numBytes = channelWrite(channel, call.rpcResponse);
+          int numBytes = channelWrite(channel, call.rpcResponse,
+              responseQueue);
           if (numBytes < 0) {
             return true;
           }
           if (!call.rpcResponse.hasRemaining()) {
             //Clear out the response buffer so it can be collected
-            call.rpcResponse = null;
+            call.releaseResponse();
             call.connection.decRpcCount();
+            numElements -= completeWrittenResponses(responseQueue);
             if (numElements == 1) {    // last call fully processes.
               done = true;             // no more data for this channel.
             } else {
@@ -1920,6 +2049,20 @@ private boolean processResponse(LinkedList<RpcCall> responseQueue,
       return done;
     }
 
+    // Removes the queued responses which were written out along with the
+    // previous one. Returns the number of the responses removed.
+    private int completeWrittenResponses(LinkedList<RpcCall> responseQueue) {
+      int numCompleted = 0;
+      while (!responseQueue.isEmpty()
+          && !responseQueue.getFirst().rpcResponse.hasRemaining()) {
+        RpcCall call = responseQueue.removeFirst();
+        call.releaseResponse();
+        call.connection.decRpcCount();
+        numCompleted++;
+      }
+      return numCompleted;
+    }
+
     //
     // Enqueue a response from the application.
     //
@@ -2011,6 +2154,12 @@ public class Connection {
 
     private SocketChannel channel;
     private ByteBuffer data;
+    // the pooled buffer of the request being processed, until a call takes
+    // it over
+    private ByteBuffer pooledRequest;
+    // the calls decoded by readAndProcess, which queues them at once, or
+    // null if each call is queued once decoded.
+    private final List<Call> pendingCalls;
     private final ByteBuffer dataLengthBuffer;
     private LinkedList<RpcCall> responseQueue;
     // number of outstanding rpcs
@@ -2090,6 +2239,8 @@ public Connection(SocketChannel channel, long lastContact,
       }
       this.remotePort = socket.getPort();
       this.responseQueue = new LinkedList<RpcCall>();
+      this.pendingCalls =
+          readBatchSize > 1 ? new ArrayList<>(readBatchSize) : null;
       if (socketSendBufferSize != 0) {
         try {
           socket.setSendBufferSize(socketSendBufferSize);
@@ -2482,6 +2633,29 @@ private void checkDataLength(int dataLength) throws IOException {
      * @throws InterruptedException - if the thread is interrupted.
      */
     public int readAndProcess() throws IOException, InterruptedException {
+      if (pendingCalls == null) {
+        return readAndDecode();
+      }
+      int count;
+      try {
+        count = readAndDecode();
+      } catch (IOException | InterruptedException | RuntimeException e) {
+        // queue the calls decoded before the failure, as if each was queued
+        // once decoded, but report the failure.
+        try {
+          queuePendingCalls();
+        } catch (IOException | InterruptedException | RuntimeException qe) {
+          e.addSuppressed(qe);
+        }
+        throw e;
+      }
+      queuePendingCalls();
+      return count;
+    }
+
+    // reads and processes up to readBatchSize rpc-requests.
+    private int readAndDecode() throws IOException, InterruptedException {
+      int requests = 0;
       while (!shouldClose()) { // stop if a fatal response has been sent.
         // dataLengthBuffer is used to read "hrpc" or the rpc-packet length
         int count = -1;
@@ -2545,7 +2719,9 @@ public int readAndProcess() throws IOException, InterruptedException {
           dataLength = dataLengthBuffer.getInt();
           checkDataLength(dataLength);
           // Set buffer for reading EXACTLY the RPC-packet length and no more.
-          data = ByteBuffer.allocate(dataLength);
+          data = bufferPool != null
+              ? bufferPool.getBuffer(false, dataLength)
+              : ByteBuffer.allocate(dataLength);
         }
         // Now read the RPC packet
         count = channelRead(channel, data);
@@ -2556,10 +2732,19 @@ public int readAndProcess() throws IOException, InterruptedException {
           ByteBuffer requestData = data;
           data = null; // null out in case processOneRpc throws.
           boolean isHeaderRead = connectionContextRead;
-          processOneRpc(requestData);
+          pooledRequest = bufferPool != null ? requestData : null;
+          try {
+            processOneRpc(requestData);
+          } finally {
+            // the request was processed by the reader, or failed.
+            if (pooledRequest != null) {
+              bufferPool.putBuffer(pooledRequest);
+              pooledRequest = null;
+            }
+          }
           // the last rpc-request we processed could have simply been the
           // connectionContext; if so continue to read the first RPC.
-          if (!isHeaderRead) {
+          if (!isHeaderRead || ++requests < readBatchSize) {
             continue;
           }
         } 
@@ -2814,18 +2999,23 @@ private void processOneRpc(ByteBuffer bb)
       } catch (RpcServerException rse) {
         // inform client of error, but do not rethrow else non-fatal
         // exceptions will close connection!
-        LOG.debug("{}: processOneRpc from client {} threw exception [{}]",
-            Thread.currentThread().getName(), this, rse);
-        // use the wrapped exception if there is one.
-        Throwable t = (rse.getCause() != null) ? rse.getCause() : rse;
-        final RpcCall call = new RpcCall(this, callId, retry);
-        setupResponse(call,
-            rse.getRpcStatusProto(), rse.getRpcErrorCodeProto(), null,
-            t.getClass().getName(), t.getMessage());
-        sendResponse(call);
+        sendErrorResponse(callId, retry, rse);
       }
     }
 
+    private void sendErrorResponse(int callId, int retry,
+        RpcServerException rse) throws IOException {
+      LOG.debug("{}: processOneRpc from client {} threw exception [{}]",
+          Thread.currentThread().getName(), this, rse);
+      // use the wrapped exception if there is one.
+      Throwable t = (rse.getCause() != null) ? rse.getCause() : rse;
+      final RpcCall call = new RpcCall(this, callId, retry);
+      setupResponse(call,
+          rse.getRpcStatusProto(), rse.getRpcErrorCodeProto(), null,
+          t.getClass().getName(), t.getMessage());
+      sendResponse(call);
+    }
+
     /**
      * Verify RPC header is valid
      * @param header - RPC request header
@@ -2934,6 +3124,9 @@ private void processRpcRequest(RpcRequestHeaderProto header,
       // Save the priority level assignment by the scheduler
       call.setPriorityLevel(callQueue.getPriorityLevel(call));
       call.markCallCoordinated(false);
+      if (header.hasTimeoutMs()) {
+        call.setTimeout(header.getTimeoutMs(), TimeUnit.MILLISECONDS);
+      }
       if(alignmentContext != null && call.rpcRequest != null &&
           (call.rpcRequest instanceof ProtobufRpcEngine2.RpcProtobufRequest)) {
         // if call.rpcRequest is not RpcProtobufRequest, will skip the following
@@ -2962,17 +3155,73 @@ private void processRpcRequest(RpcRequestHeaderProto header,
         }
       }
 
+      // the call takes over the pooled buffer the request is decoded from,
+      // and returns it once processed.
+      call.requestBuffer = pooledRequest;
+      pooledRequest = null;
+      if (pendingCalls != null) {
+        // queued with the other calls read at once.
+        pendingCalls.add(call);
+      } else {
+        queueRpcCall(call);
+      }
+    }
+
+    private void queueRpcCall(RpcCall call)
+        throws RpcServerException, InterruptedException {
+      boolean queued = false;
       try {
         internalQueueCall(call);
+        queued = true;
       } catch (RpcServerException rse) {
         throw rse;
       } catch (IOException ioe) {
         throw new FatalRpcServerException(
             RpcErrorCodeProto.ERROR_RPC_SERVER, ioe);
+      } finally {
+        // a rejected call is never processed to return its buffer.
+        if (!queued) {
+          call.releaseRequest();
+        }
       }
       incRpcCount();  // Increment the rpc count
     }
 
+    /**
+     * Queue the calls decoded by the last read at once. A call the queue
+     * rejects is queued alone to send its client the error, as when each call
+     * is queued once decoded, and the following calls are queued again at
+     * once.
+     * @throws IOException - failure to respond to a rejected call
+     * @throws InterruptedException
+     */
+    private void queuePendingCalls() throws IOException, InterruptedException {
+      try {
+        int size = pendingCalls.size();
+        int next = 0;
+        // stop if a fatal response has been sent.
+        while (next < size && !shouldClose()) {
+          int queued = internalQueueCalls(pendingCalls.subList(next, size));
+          rpcCount.addAndGet(queued);
+          next += queued;
+          if (next < size) {
+            RpcCall call = (RpcCall) pendingCalls.get(next++);
+            try {
+              queueRpcCall(call);
+            } catch (RpcServerException rse) {
+              sendErrorResponse(call.callId, call.retryCount, rse);
+            }
+          }
+        }
+        // the calls left are dropped with the connection.
+        for (; next < size; next++) {
+          pendingCalls.get(next).releaseRequest();
+        }
+      } finally {
+        pendingCalls.clear();
+      }
+    }
+
     /**
      * Establish RPC connection setup by negotiating SASL if required, then
      * reading and authorizing the connection header
@@ -3131,7 +3380,11 @@ private void internalQueueCall(Call call, boolean blocking)
       // honor RetriableException and retry depends the client and its policy.
       // For example, IPC clients using FailoverOnNetworkExceptionRetry handle
       // RetriableException.
-      rpcMetrics.incrClientBackoff();
+      if (cqe == CallQueueOverflowException.DEADLINE) {
+        rpcMetrics.incrAdmissionRejected();
+      } else {
+        rpcMetrics.incrClientBackoff();
+      }
       // Clients that are directly put into lowest priority queue are backed off and disconnected.
       if (cqe.getCause() instanceof RpcServerException) {
         RpcServerException ex = (RpcServerException) cqe.getCause();
@@ -3144,6 +3397,22 @@ private void internalQueueCall(Call call, boolean blocking)
     }
   }
 
+  /**
+   * Queue the calls at once, until one would be rejected.
+   * @return the number of calls queued.
+   */
+  private int internalQueueCalls(List<Call> calls)
+      throws InterruptedException {
+    int queued = callQueue.putAll(calls);
+    long now = Time.monotonicNowNanos();
+    for (int i = 0; i < queued; i++) {
+      Call call = calls.get(i);
+      call.getProcessingDetails().set(Timing.ENQUEUE,
+          now - call.timestampNanos, TimeUnit.NANOSECONDS);
+    }
+    return queued;
+  }
+
   /** Handles queued calls . */
   private class Handler extends Thread {
     public Handler(int instanceNumber) {
@@ -3157,92 +3426,155 @@ public void run() {
       LOG.debug("{}: starting", Thread.currentThread().getName());
       SERVER.set(Server.this);
       while (running) {
-        TraceScope traceScope = null;
-        Call call = null;
-        long startTimeNanos = 0;
-        // True iff the connection for this call has been dropped.
-        // Set to true by default and update to false later if the connection
-        // can be succesfully read.
-        boolean connDropped = true;
-
         try {
-          call = callQueue.take(); // pop the queue; maybe blocked here
-          numInProcessHandler.incrementAndGet();
-          startTimeNanos = Time.monotonicNowNanos();
-          if (alignmentContext != null && call.isCallCoordinated() &&
-              call.getClientStateId() > alignmentContext.getLastSeenStateId()) {
-            /*
-             * The call processing should be postponed until the client call's
-             * state id is aligned (<=) with the server state id.
-
-             * NOTE:
-             * Inserting the call back to the queue can change the order of call
-             * execution comparing to their original placement into the queue.
-             * This is not a problem, because Hadoop RPC does not have any
-             * constraints on ordering the incoming rpc requests.
-             * In case of Observer, it handles only reads, which are
-             * commutative.
-             */
-            // Re-queue the call and continue
-            requeueCall(call);
-            call = null;
-            continue;
-          }
-          LOG.debug("{}: {} for RpcKind {}.", Thread.currentThread().getName(), call, call.rpcKind);
-          CurCall.set(call);
-          if (call.span != null) {
-            traceScope = tracer.activateSpan(call.span);
-            call.span.addTimelineAnnotation("called");
-          }
-          // always update the current call context
-          CallerContext.setCurrent(call.callerContext);
-          UserGroupInformation remoteUser = call.getRemoteUser();
-          connDropped = !call.isOpen();
-          if (remoteUser != null) {
-            remoteUser.doAs(call);
-          } else {
-            call.run();
-          }
+          processCall(callQueue.take()); // pop the queue; maybe blocked here
         } catch (InterruptedException e) {
           if (running) {                          // unexpected -- log it
             LOG.info(Thread.currentThread().getName() + " unexpectedly interrupted", e);
-            if (traceScope != null) {
-              traceScope.addTimelineAnnotation("unexpectedly interrupted: " +
-                  StringUtils.stringifyException(e));
-            }
           }
-        } catch (Exception e) {
-          LOG.info(Thread.currentThread().getName() + " caught an exception", e);
-          if (traceScope != null) {
-            traceScope.addTimelineAnnotation("Exception: " +
-                StringUtils.stringifyException(e));
+        }
+      }
+      LOG.debug("{}: exiting", Thread.currentThread().getName());
+    }
+  }
+
+  /**
+   * Takes the calls from the call queue and processes each on a new virtual
+   * thread, at most maxVirtualHandlerCalls at once. A call is only taken
+   * when it can be processed, so the calls are processed in the order of
+   * the call queue and the queue fills up as it does with handler threads.
+   */
+  private class VirtualHandlerDispatcher extends Handler {
+    private final Semaphore permits = new Semaphore(maxVirtualHandlerCalls);
+
+    VirtualHandlerDispatcher() {
+      super(0);
+      this.setName("IPC Server virtual handler dispatcher on default port "
+          + port);
+    }
+
+    @Override
+    public void run() {
+      LOG.debug("{}: starting", Thread.currentThread().getName());
+      while (running) {
+        try {
+          permits.acquire();
+          final Call call;
+          try {
+            call = callQueue.take(); // pop the queue; maybe blocked here
+          } catch (InterruptedException e) {
+            permits.release();
+            throw e;
           }
-        } finally {
-          CurCall.set(null);
-          numInProcessHandler.decrementAndGet();
-          IOUtils.cleanupWithLogger(LOG, traceScope);
-          if (call != null) {
-            updateMetrics(call, startTimeNanos, connDropped);
-            ProcessingDetails.LOG.debug("Served: [{}]{} name={} user={} details={}",
-                call, (call.isResponseDeferred() ? ", deferred" : ""),
-                call.getDetailedMetricsName(), call.getRemoteUser(),
-                call.getProcessingDetails());
+          final Thread handler = virtualHandlerFactory.newThread(() -> {
+            SERVER.set(Server.this);
+            try {
+              processCall(call);
+            } finally {
+              virtualHandlers.remove(Thread.currentThread());
+              permits.release();
+            }
+          });
+          virtualHandlers.add(handler);
+          handler.start();
+        } catch (InterruptedException e) {
+          if (running) {                          // unexpected -- log it
+            LOG.info(Thread.currentThread().getName() + " unexpectedly interrupted", e);
           }
         }
       }
       LOG.debug("{}: exiting", Thread.currentThread().getName());
     }
+  }
 
-    private void requeueCall(Call call)
-        throws IOException, InterruptedException {
-      try {
-        internalQueueCall(call, false);
-        rpcMetrics.incrRequeueCalls();
-      } catch (RpcServerException rse) {
-        call.doResponse(rse.getCause(), rse.getRpcStatusProto());
+  /**
+   * Process a call taken from the call queue on the current handler thread.
+   */
+  private void processCall(Call call) {
+    TraceScope traceScope = null;
+    long startTimeNanos = 0;
+    // True iff the connection for this call has been dropped.
+    // Set to true by default and update to false later if the connection
+    // can be succesfully read.
+    boolean connDropped = true;
+    // True iff the call was put back into the queue to be processed later.
+    boolean requeued = false;
+
+    try {
+      numInProcessHandler.incrementAndGet();
+      startTimeNanos = Time.monotonicNowNanos();
+      if (alignmentContext != null && call.isCallCoordinated() &&
+          call.getClientStateId() > alignmentContext.getLastSeenStateId()) {
+        /*
+         * The call processing should be postponed until the client call's
+         * state id is aligned (<=) with the server state id.
+
+         * NOTE:
+         * Inserting the call back to the queue can change the order of call
+         * execution comparing to their original placement into the queue.
+         * This is not a problem, because Hadoop RPC does not have any
+         * constraints on ordering the incoming rpc requests.
+         * In case of Observer, it handles only reads, which are
+         * commutative.
+         */
+        // Re-queue the call and continue
+        requeueCall(call);
+        requeued = true;
+        return;
+      }
+      LOG.debug("{}: {} for RpcKind {}.", Thread.currentThread().getName(), call, call.rpcKind);
+      CurCall.set(call);
+      if (call.span != null) {
+        traceScope = tracer.activateSpan(call.span);
+        call.span.addTimelineAnnotation("called");
+      }
+      // always update the current call context
+      CallerContext.setCurrent(call.callerContext);
+      UserGroupInformation remoteUser = call.getRemoteUser();
+      connDropped = !call.isOpen();
+      if (remoteUser != null) {
+        remoteUser.doAs(call);
+      } else {
+        call.run();
+      }
+    } catch (InterruptedException e) {
+      if (running) {                          // unexpected -- log it
+        LOG.info(Thread.currentThread().getName() + " unexpectedly interrupted", e);
+        if (traceScope != null) {
+          traceScope.addTimelineAnnotation("unexpectedly interrupted: " +
+              StringUtils.stringifyException(e));
+        }
+      }
+    } catch (Exception e) {
+      LOG.info(Thread.currentThread().getName() + " caught an exception", e);
+      if (traceScope != null) {
+        traceScope.addTimelineAnnotation("Exception: " +
+            StringUtils.stringifyException(e));
+      }
+    } finally {
+      CurCall.set(null);
+      numInProcessHandler.decrementAndGet();
+      IOUtils.cleanupWithLogger(LOG, traceScope);
+      if (!requeued) {
+        updateMetrics(call, startTimeNanos, connDropped);
+        ProcessingDetails.LOG.debug("Served: [{}]{} name={} user={} details={}",
+            call, (call.isResponseDeferred() ? ", deferred" : ""),
+            call.getDetailedMetricsName(), call.getRemoteUser(),
+            call.getProcessingDetails());
+        call.releaseRequest();
       }
     }
+  }
 
+  private void requeueCall(Call call)
+      throws IOException, InterruptedException {
+    try {
+      internalQueueCall(call, false);
+      rpcMetrics.incrRequeueCalls();
+    } catch (RpcServerException rse) {
+      call.releaseRequest();
+      call.doResponse(rse.getCause(), rse.getRpcStatusProto());
+    }
   }
 
   @VisibleForTesting
@@ -3346,6 +3678,9 @@ protected Server(String bindAddress, int port,
     this.readerPendingConnectionQueue = conf.getInt(
         CommonConfigurationKeys.IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_KEY,
         CommonConfigurationKeys.IPC_SERVER_RPC_READ_CONNECTION_QUEUE_SIZE_DEFAULT);
+    this.readBatchSize = Math.max(1, conf.getInt(
+        CommonConfigurationKeys.IPC_SERVER_RPC_READ_BATCH_SIZE_KEY,
+        CommonConfigurationKeys.IPC_SERVER_RPC_READ_BATCH_SIZE_DEFAULT));
 
     // Setup appropriate callqueue
     final String prefix = getQueueClassPrefix();
@@ -3368,6 +3703,37 @@ protected Server(String bindAddress, int port,
     listener = new Listener(port);
     // set the server port to the default listener port.
     this.port = listener.getAddress().getPort();
+    if (conf.getBoolean(
+        CommonConfigurationKeys.IPC_SERVER_HANDLER_VIRTUAL_THREADS_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_SERVER_HANDLER_VIRTUAL_THREADS_ENABLED_DEFAULT)) {
+      this.virtualHandlerFactory = newVirtualThreadFactory(
+          "IPC Server virtual handler on default port " + this.port + " #");
+      this.maxVirtualHandlerCalls = Math.max(handlerCount, conf.getInt(
+          CommonConfigurationKeys.IPC_SERVER_HANDLER_VIRTUAL_THREADS_MAX_CALLS_KEY,
+          CommonConfigurationKeys.IPC_SERVER_HANDLER_VIRTUAL_THREADS_MAX_CALLS_DEFAULT));
+      if (virtualHandlerFactory != null) {
+        LOG.info("Processing at most {} calls at once on virtual threads",
+            maxVirtualHandlerCalls);
+      } else {
+        LOG.warn("Virtual threads are not supported by the JVM, using {}"
+            + " handler threads", handlerCount);
+      }
+    }
+    if (conf.getBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY,
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_DEFAULT)) {
+      this.bufferPool = new RpcBufferPool(
+          conf.getInt(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY,
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_DEFAULT),
+          conf.getLong(
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_POOLED_BYTES_KEY,
+              CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_POOLED_BYTES_DEFAULT));
+    }
+    if (getAdmissionControlEnable(
+        CommonConfigurationKeys.IPC_NAMESPACE, port, conf)) {
+      callQueue.setAdmissionController(newAdmissionController());
+    }
     connectionManager = new ConnectionManager();
     this.rpcMetrics = RpcMetrics.create(this, conf);
     this.rpcDetailedMetrics = RpcDetailedMetrics.create(this.port);
@@ -3552,17 +3918,20 @@ private void setupResponse(
 
   private void setupResponse(RpcCall call,
       RpcResponseHeaderProto header, Writable rv) throws IOException {
-    final byte[] response;
+    final ByteBuffer response;
+    final boolean pooled;
     if (rv == null || (rv instanceof RpcWritable.ProtobufWrapper)) {
       response = setupResponseForProtobuf(header, rv);
+      pooled = bufferPool != null;
     } else {
-      response = setupResponseForWritable(header, rv);
+      response = ByteBuffer.wrap(setupResponseForWritable(header, rv));
+      pooled = false;
     }
-    if (response.length > maxRespSize) {
-      LOG.warn("Large response size " + response.length + " for call "
+    if (response.remaining() > maxRespSize) {
+      LOG.warn("Large response size " + response.remaining() + " for call "
           + call.toString());
     }
-    call.setResponse(ByteBuffer.wrap(response));
+    call.setResponse(response, pooled);
   }
 
   private byte[] setupResponseForWritable(
@@ -3585,8 +3954,8 @@ private byte[] setupResponseForWritable(
 
 
   // writing to a pre-allocated array is the most efficient way to construct
-  // a protobuf response.
-  private byte[] setupResponseForProtobuf(
+  // a protobuf response.  the array is taken from the buffer pool, if any.
+  private ByteBuffer setupResponseForProtobuf(
       RpcResponseHeaderProto header, Writable rv) throws IOException {
     Message payload = (rv != null)
         ? ((RpcWritable.ProtobufWrapper)rv).getMessage() : null;
@@ -3594,8 +3963,11 @@ private byte[] setupResponseForProtobuf(
     if (payload != null) {
       length += getDelimitedLength(payload);
     }
-    byte[] buf = new byte[length + 4];
-    CodedOutputStream cos = CodedOutputStream.newInstance(buf);
+    final ByteBuffer response = bufferPool != null
+        ? bufferPool.getBuffer(false, length + 4)
+        : ByteBuffer.allocate(length + 4);
+    CodedOutputStream cos = CodedOutputStream.newInstance(
+        response.array(), response.arrayOffset(), length + 4);
     // the stream only supports little endian ints
     cos.writeRawByte((byte)((length >>> 24) & 0xFF));
     cos.writeRawByte((byte)((length >>> 16) & 0xFF));
@@ -3607,7 +3979,7 @@ private byte[] setupResponseForProtobuf(
       cos.writeUInt32NoTag(payload.getSerializedSize());
       payload.writeTo(cos);
     }
-    return buf;
+    return response;
   }
 
   private static int getDelimitedLength(Message message) {
@@ -3644,12 +4016,17 @@ private void setupResponseOldVersionFatal(ByteArrayOutputStream response,
 
   private void wrapWithSasl(RpcCall call) throws IOException {
     if (call.connection.saslServer != null) {
-      byte[] token = call.rpcResponse.array();
+      final ByteBuffer response = call.rpcResponse;
+      byte[] token;
       // synchronization may be needed since there can be multiple Handler
       // threads using saslServer to wrap responses.
       synchronized (call.connection.saslServer) {
-        token = call.connection.saslServer.wrap(token, 0, token.length);
+        token = call.connection.saslServer.wrap(response.array(),
+            response.arrayOffset() + response.position(),
+            response.remaining());
       }
+      // the wrapped token is a copy of the response.
+      call.releaseResponse();
       LOG.debug("Adding saslServer wrapped token of size {} as call response.", token.length);
       // rebuild with sasl header and payload
       RpcResponseHeaderProto saslHeader = RpcResponseHeaderProto.newBuilder()
@@ -3688,25 +4065,69 @@ public synchronized void start() {
       }
     }
 
-    handlers = new Handler[handlerCount];
-    
-    for (int i = 0; i < handlerCount; i++) {
-      handlers[i] = new Handler(i);
-      handlers[i].start();
+    if (virtualHandlerFactory != null) {
+      handlers = new Handler[] {new VirtualHandlerDispatcher()};
+    } else {
+      handlers = new Handler[handlerCount];
+      for (int i = 0; i < handlerCount; i++) {
+        handlers[i] = new Handler(i);
+      }
+    }
+    for (Handler handler : handlers) {
+      handler.start();
+    }
+  }
+
+  /**
+   * @param namePrefix the prefix of the names of the threads, which are
+   *                   numbered from 0.
+   * @return a factory of virtual threads, or null if the JVM has none.
+   */
+  private static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+    try {
+      // Thread.ofVirtual().name(namePrefix, 0).factory(), on Java 21+.
+      final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = builderClass.getMethod("name", String.class, long.class)
+          .invoke(builder, namePrefix, 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOG.debug("Failed to create a virtual thread factory", e);
+      return null;
     }
   }
 
+  /**
+   * @return true if the calls are processed on virtual threads.
+   */
+  @VisibleForTesting
+  boolean isUsingVirtualHandlers() {
+    return virtualHandlerFactory != null;
+  }
+
+  /**
+   * @return the pool of the request and response buffers, or null if the
+   *         buffers are not pooled.
+   */
+  @VisibleForTesting
+  RpcBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
   /** Stops the service.  No new calls will be handled after this is called. */
   public synchronized void stop() {
     LOG.info("Stopping server on " + port);
     running = false;
     if (handlers != null) {
-      for (int i = 0; i < handlerCount; i++) {
-        if (handlers[i] != null) {
-          handlers[i].interrupt();
+      for (Handler handler : handlers) {
+        if (handler != null) {
+          handler.interrupt();
         }
       }
     }
+    for (Thread handler : virtualHandlers) {
+      handler.interrupt();
+    }
     listener.interrupt();
     listener.doStop();
     if (auxiliaryListenerMap != null && auxiliaryListenerMap.size() > 0) {
@@ -3913,6 +4334,9 @@ public int getNumReaders() {
    * be smaller.
    */
   private static int NIO_BUFFER_LIMIT = 8*1024; //should not be more than 64KB.
+
+  /** The maximum number of responses written out by one gathering write. */
+  private static final int MAX_GATHERED_RESPONSES = 16;
   
   /**
    * This is a wrapper around {@link WritableByteChannel#write(ByteBuffer)}.
@@ -3934,6 +4358,43 @@ private int channelWrite(WritableByteChannel channel,
     }
     return count;
   }
+
+  /**
+   * Writes the response along with the small responses queued after it, by
+   * one gathering write. The total size of the responses written at once is
+   * bounded by NIO_BUFFER_LIMIT, like that of the single writes.
+   *
+   * @see GatheringByteChannel#write(ByteBuffer[], int, int)
+   */
+  private int channelWrite(WritableByteChannel channel, ByteBuffer buffer,
+      LinkedList<RpcCall> queued) throws IOException {
+    if (queued.isEmpty() || buffer.remaining() >= NIO_BUFFER_LIMIT
+        || !(channel instanceof GatheringByteChannel)) {
+      return channelWrite(channel, buffer);
+    }
+    ByteBuffer[] buffers = new ByteBuffer[
+        Math.min(queued.size() + 1, MAX_GATHERED_RESPONSES)];
+    buffers[0] = buffer;
+    int numBuffers = 1;
+    long length = buffer.remaining();
+    for (RpcCall call : queued) {
+      if (numBuffers == buffers.length || length
+          + call.rpcResponse.remaining() > NIO_BUFFER_LIMIT) {
+        break;
+      }
+      buffers[numBuffers++] = call.rpcResponse;
+      length += call.rpcResponse.remaining();
+    }
+    if (numBuffers == 1) {
+      return channelWrite(channel, buffer);
+    }
+    int count = (int) ((GatheringByteChannel) channel).write(
+        buffers, 0, numBuffers);
+    if (count > 0) {
+      rpcMetrics.incrSentBytes(count);
+    }
+    return count;
+  }
   
   
   /**
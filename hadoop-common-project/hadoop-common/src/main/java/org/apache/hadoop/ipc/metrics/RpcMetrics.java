@@ -143,6 +143,8 @@ public static RpcMetrics create(Server server, Configuration conf) {
   MutableCounterLong rpcClientBackoff;
   @Metric("Number of disconnected client backoff requests")
   MutableCounterLong rpcClientBackoffDisconnected;
+  @Metric("Number of calls rejected as they would miss their deadlines")
+  MutableCounterLong rpcAdmissionRejected;
   @Metric("Number of slow RPC calls")
   MutableCounterLong rpcSlowCalls;
   @Metric("Number of requeue calls")
@@ -182,6 +184,21 @@ public long getTotalRequestsPerSecond() {
     return server.getTotalRequestsPerSecond();
   }
 
+  @Metric("Number of request and response buffers allocated")
+  public long getRpcBufferAllocations() {
+    return server.getBufferAllocations();
+  }
+
+  @Metric("Number of request and response buffers reused from the pool")
+  public long getRpcBufferReuses() {
+    return server.getBufferReuses();
+  }
+
+  @Metric("Total size of the free buffers in the pool")
+  public long getRpcBufferPooledBytes() {
+    return server.getBufferPooledBytes();
+  }
+
   public TimeUnit getMetricsTimeUnit() {
     return metricsTimeUnit;
   }
@@ -359,6 +376,21 @@ public long getClientBackoffDisconnected() {
     return rpcClientBackoffDisconnected.value();
   }
 
+  /**
+   * A call was rejected as it would miss its deadline.
+   */
+  public void incrAdmissionRejected() {
+    rpcAdmissionRejected.incr();
+  }
+
+  /**
+   * Returns the number of calls rejected as they would miss their deadlines.
+   * @return long
+   */
+  public long getAdmissionRejected() {
+    return rpcAdmissionRejected.value();
+  }
+
 
   /**
    * Increments the Slow RPC counter.
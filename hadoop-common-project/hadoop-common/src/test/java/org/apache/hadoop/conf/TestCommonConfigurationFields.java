@@ -152,6 +152,10 @@ public void initializeMemberVariables() {
     // Properties in enable callqueue overflow trigger failover for stateless servers.
     xmlPropsToSkipCompare.add("ipc.[port_number].callqueue.overflow.trigger.failover");
     xmlPropsToSkipCompare.add("ipc.callqueue.overflow.trigger.failover");
+    // Properties in enable callqueue admission control.
+    xmlPropsToSkipCompare.add(
+        "ipc.[port_number].callqueue.admission-control.enable");
+    xmlPropsToSkipCompare.add("ipc.callqueue.admission-control.enable");
 
     // FairCallQueue configs that includes dynamic ports in its keys
     xmlPropsToSkipCompare.add("ipc.[port_number].backoff.enable");
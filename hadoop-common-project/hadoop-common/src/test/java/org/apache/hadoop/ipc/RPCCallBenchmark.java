@@ -65,6 +65,8 @@ private static class MyOptions {
     private int port = 0;
     public int secondsToRun = 15;
     private int msgSize = 1024;
+    private int callLatencyMs = 0;
+    private int virtualHandlerCalls = 0;
     public Class<? extends RpcEngine> rpcEngine =
         ProtobufRpcEngine2.class;
     
@@ -146,6 +148,24 @@ private Options buildOptions() {
           .desc("host to listen or connect on")
           .build());
       
+      opts.addOption(
+          Option.builder("l")
+          .longOpt("callLatency")
+          .hasArg(true)
+          .argName("ms")
+          .desc("time each call blocks its handler on the server, instead of"
+              + " echoing the message")
+          .build());
+
+      opts.addOption(
+          Option.builder("v")
+          .longOpt("virtualHandlers")
+          .hasArg(true)
+          .argName("maxcalls")
+          .desc("process at most this many calls at once on virtual threads,"
+              + " instead of on the server threads")
+          .build());
+
       opts.addOption(
           Option.builder("e")
           .longOpt("engine")
@@ -197,6 +217,12 @@ private void processOptions(CommandLine line, Options opts)
       if (line.hasOption('h')) {
         host = line.getOptionValue('h');
       }
+      if (line.hasOption('l')) {
+        callLatencyMs = Integer.parseInt(line.getOptionValue('l'));
+      }
+      if (line.hasOption('v')) {
+        virtualHandlerCalls = Integer.parseInt(line.getOptionValue('v'));
+      }
       if (line.hasOption('e')) {
         String eng = line.getOptionValue('e');
         if ("protobuf".equals(eng)) {
@@ -228,7 +254,9 @@ public String toString() {
       return "rpcEngine=" + rpcEngine + "\nserverThreads=" + serverThreads
           + "\nserverReaderThreads=" + serverReaderThreads + "\nclientThreads="
           + clientThreads + "\nhost=" + host + "\nport=" + getPort()
-          + "\nsecondsToRun=" + secondsToRun + "\nmsgSize=" + msgSize;
+          + "\nsecondsToRun=" + secondsToRun + "\nmsgSize=" + msgSize
+          + "\ncallLatencyMs=" + callLatencyMs
+          + "\nvirtualHandlerCalls=" + virtualHandlerCalls;
     }
   }
 
@@ -240,6 +268,13 @@ private Server startServer(MyOptions opts) throws IOException {
     }
     conf.setInt(CommonConfigurationKeys.IPC_SERVER_RPC_READ_THREADS_KEY,
         opts.serverReaderThreads);
+    if (opts.virtualHandlerCalls > 0) {
+      conf.setBoolean(CommonConfigurationKeys
+          .IPC_SERVER_HANDLER_VIRTUAL_THREADS_ENABLED_KEY, true);
+      conf.setInt(CommonConfigurationKeys
+          .IPC_SERVER_HANDLER_VIRTUAL_THREADS_MAX_CALLS_KEY,
+          opts.virtualHandlerCalls);
+    }
     
     RPC.Server server;
     // Get RPC server for server side implementation
@@ -307,7 +342,8 @@ public int run(String[] args) throws Exception {
             (totalCalls * 1000000000)/(veryEnd - veryStart);
           long cpuNanosClient = getTotalCpuTime(ctx.getTestThreads());
           long cpuNanosServer = -1;
-          if (server != null) {
+          // the cpu time of virtual threads is not available.
+          if (server != null && opts.virtualHandlerCalls <= 0) {
             cpuNanosServer = getTotalCpuTime(server.getHandlers());
           }
           System.out.println("====== Results ======");
@@ -315,7 +351,7 @@ public int run(String[] args) throws Exception {
           System.out.println("Total calls per second: " + callsPerSec);
           System.out.println("CPU time per call on client: " +
               (cpuNanosClient / totalCalls) + " ns");
-          if (server != null) {
+          if (cpuNanosServer >= 0) {
             System.out.println("CPU time per call on server: " +
                 (cpuNanosServer / totalCalls) + " ns");
           }
@@ -375,7 +411,11 @@ public RpcServiceWrapper run() throws Exception {
       ctx.addThread(new MultithreadedTestUtil.RepeatingTestThread(ctx) {
         @Override
         public void doAnAction() throws Exception {
-          proxy.doEcho(echoMessage);
+          if (opts.callLatencyMs > 0) {
+            proxy.doSleep(opts.callLatencyMs);
+          } else {
+            proxy.doEcho(echoMessage);
+          }
           callCount.incrementAndGet();
         }
       });
@@ -389,6 +429,7 @@ public void doAnAction() throws Exception {
    */
   private interface RpcServiceWrapper {
     public String doEcho(String msg) throws Exception;
+    public void doSleep(int ms) throws Exception;
   }
 
   /**
@@ -408,6 +449,11 @@ public String doEcho(String msg) throws Exception {
           EchoResponseProto responseProto = proxy.echo(null, req);
           return responseProto.getMessage();
         }
+
+        @Override
+        public void doSleep(int ms) throws Exception {
+          proxy.sleep(null, newSleepRequest(ms));
+        }
       };
     } else {
       throw new RuntimeException("unsupported engine: " + opts.rpcEngine);
@@ -234,6 +234,19 @@ public void testAsyncCall() throws IOException, InterruptedException,
     internalTestAsyncCall(3, true, 2, 5, 10);
   }
 
+  @Test(timeout = 60000)
+  public void testAsyncCallReadBatch() throws IOException,
+      InterruptedException, ExecutionException {
+    conf.setInt(CommonConfigurationKeys.IPC_SERVER_RPC_READ_BATCH_SIZE_KEY, 16);
+    internalTestAsyncCall(3, false, 2, 5, 100);
+    // the readers queue the calls at once in a FairCallQueue.
+    conf.set(CommonConfigurationKeys.IPC_NAMESPACE + "."
+        + CommonConfigurationKeys.IPC_CALLQUEUE_IMPL_KEY,
+        FairCallQueue.class.getName());
+    internalTestAsyncCall(3, false, 2, 5, 100);
+    internalTestAsyncCall(3, true, 2, 5, 10);
+  }
+
   @Test(timeout = 60000)
   public void testAsyncCallLimit() throws IOException,
       InterruptedException, ExecutionException {
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.Test;
+
+/**
+ * Tests {@link CallAdmissionController}.
+ */
+public class TestCallAdmissionController {
+
+  static class DeadlineCall implements Schedulable {
+    private final String methodName;
+    private final long remainingNanos;
+
+    DeadlineCall(String methodName, long remainingNanos) {
+      this.methodName = methodName;
+      this.remainingNanos = remainingNanos;
+    }
+
+    @Override
+    public UserGroupInformation getUserGroupInformation() {
+      return null;
+    }
+
+    @Override
+    public int getPriorityLevel() {
+      return 0;
+    }
+
+    @Override
+    public long getRemainingTimeNanos() {
+      return remainingNanos;
+    }
+
+    @Override
+    public String getMethodName() {
+      return methodName;
+    }
+  }
+
+  private static long millis(long ms) {
+    return TimeUnit.MILLISECONDS.toNanos(ms);
+  }
+
+  @Test
+  public void testProcessingTimes() {
+    CallAdmissionController controller = new CallAdmissionController(1);
+    controller.addProcessingTime("a", 800);
+    assertEquals(800, controller.getAvgProcessingNanos("a"));
+    controller.addProcessingTime("a", 1600);
+    assertEquals(900, controller.getAvgProcessingNanos("a"));
+    controller.addProcessingTime("b", 100);
+    assertEquals(100, controller.getAvgProcessingNanos("b"));
+    controller.addProcessingTime(null, 1600);
+    // 800 -> 900 -> 800 -> 900
+    assertEquals(900, controller.getAvgProcessingNanos(null));
+    assertEquals(0, controller.getAvgProcessingNanos("c"));
+  }
+
+  @Test
+  public void testMaxMethods() {
+    CallAdmissionController controller = new CallAdmissionController(1);
+    for (int i = 0; i < CallAdmissionController.MAX_METHODS; i++) {
+      controller.addProcessingTime("m" + i, 10);
+    }
+    controller.addProcessingTime("extra", 10);
+    assertEquals(0, controller.getAvgProcessingNanos("extra"));
+    assertEquals(10, controller.getAvgProcessingNanos(null));
+  }
+
+  @Test
+  public void testAdmit() {
+    CallAdmissionController controller = new CallAdmissionController(2);
+    // nothing is rejected before the processing times are known.
+    assertTrue(controller.admit(new DeadlineCall("slow", 0), 100));
+
+    controller.addProcessingTime("fast", millis(1));
+    controller.addProcessingTime("slow", millis(100));
+    long avgNanos = controller.getAvgProcessingNanos(null);
+
+    // the calls without deadlines are always admitted.
+    assertTrue(controller.admit(new DeadlineCall("slow", -1), 1000));
+
+    assertTrue(controller.admit(new DeadlineCall("fast", millis(50)), 0));
+    assertFalse(controller.admit(new DeadlineCall("slow", millis(50)), 0));
+    assertTrue(controller.admit(new DeadlineCall("slow", millis(150)), 0));
+
+    // the calls queued ahead are processed two at a time.
+    assertEquals(10 * avgNanos / 2 + millis(1),
+        controller.getExpectedResponseNanos(new DeadlineCall("fast", 0), 10));
+    assertFalse(controller.admit(new DeadlineCall("fast", millis(50)), 10));
+
+    // unknown methods are expected to take the average processing time.
+    assertEquals(avgNanos,
+        controller.getExpectedResponseNanos(new DeadlineCall("other", 0), 0));
+    assertEquals(avgNanos,
+        controller.getExpectedResponseNanos(new DeadlineCall(null, 0), 0));
+  }
+}
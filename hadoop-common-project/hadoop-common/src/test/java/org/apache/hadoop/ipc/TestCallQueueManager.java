@@ -31,8 +31,10 @@
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CommonConfigurationKeys;
@@ -519,6 +521,75 @@ public void testCallQueueOverflowExceptions() throws Exception {
     verify(queue, times(0)).add(call);
   }
 
+  @Test
+  public void testPutAll() throws InterruptedException {
+    RpcScheduler scheduler = Mockito.mock(RpcScheduler.class);
+    FairCallQueue<Schedulable> fcq = new FairCallQueue<>(2, 4, "ns", conf);
+    CallQueueManager<Schedulable> cqm =
+        new CallQueueManager<>(fcq, scheduler, true, false);
+    List<Schedulable> calls = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      calls.add(new FakeCall(i));
+    }
+    // the calls overflow to the lower priority queue, then the last one
+    // overflows it too.
+    assertEquals(4, cqm.putAll(calls));
+    assertEquals(4, cqm.size());
+    assertEquals(2, fcq.getOverflowedCalls()[0]);
+    assertEquals(0, fcq.getOverflowedCalls()[1]);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(calls.contains(cqm.take()));
+    }
+    assertEquals(0, cqm.size());
+
+    // the calls are queued until one is backed off.
+    Mockito.doReturn(true).when(scheduler).shouldBackOff(calls.get(2));
+    assertEquals(2, cqm.putAll(calls));
+    assertEquals(2, cqm.size());
+
+    // other queues take the calls one by one.
+    reset(scheduler);
+    CallQueueManager<Schedulable> fifo = new CallQueueManager<>(
+        new LinkedBlockingQueue<>(3), scheduler, true, false);
+    assertEquals(3, fifo.putAll(calls));
+    assertEquals(3, fifo.size());
+  }
+
+  @Test
+  public void testAdmissionControl() {
+    RpcScheduler scheduler = Mockito.mock(RpcScheduler.class);
+    CallQueueManager<Schedulable> cqm = new CallQueueManager<>(
+        new LinkedBlockingQueue<>(), scheduler, false, false);
+    CallAdmissionController controller = new CallAdmissionController(1);
+    cqm.setAdmissionController(controller);
+
+    // the processing times are taken from the completed calls.
+    ProcessingDetails details = new ProcessingDetails(TimeUnit.NANOSECONDS);
+    details.set(ProcessingDetails.Timing.PROCESSING, 10, TimeUnit.MILLISECONDS);
+    cqm.addResponseTime("m", new FakeCall(0), details);
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10),
+        controller.getAvgProcessingNanos("m"));
+
+    long deadlineNanos = TimeUnit.MILLISECONDS.toNanos(25);
+    assertTrue(cqm.add(new TestCallAdmissionController.DeadlineCall(
+        "m", deadlineNanos)));
+    assertTrue(cqm.add(new TestCallAdmissionController.DeadlineCall(
+        "m", deadlineNanos)));
+    // 2 calls of 10ms are queued ahead.
+    try {
+      cqm.add(new TestCallAdmissionController.DeadlineCall("m", deadlineNanos));
+      fail("didn't throw");
+    } catch (CallQueueOverflowException cqe) {
+      assertSame(CallQueueOverflowException.DEADLINE, cqe);
+    }
+    assertTrue(cqm.add(new FakeCall(1)));
+    assertEquals(3, cqm.size());
+
+    cqm.setAdmissionController(null);
+    assertTrue(cqm.add(new TestCallAdmissionController.DeadlineCall(
+        "m", deadlineNanos)));
+  }
+
   @Test
   public void testCallQueueOverEnabled() {
     // default ipc.callqueue.overflow.trigger.failover' configure false.
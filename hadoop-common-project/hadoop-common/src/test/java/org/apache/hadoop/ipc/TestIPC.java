@@ -372,6 +372,39 @@ public void internalTestSerial(int handlerCount, boolean handlerSleep,
     server.stop();
   }
 
+  @Test(timeout=60000)
+  public void testConnectionPool() throws IOException, InterruptedException {
+    Server server = new TestServer(5, true);
+    InetSocketAddress addr = NetUtils.getConnectAddress(server);
+    server.start();
+
+    Configuration clientConf = new Configuration(conf);
+    clientConf.setInt(
+        CommonConfigurationKeys.IPC_CLIENT_CONNECTION_POOL_SIZE_KEY, 3);
+    clientConf.setInt(
+        CommonConfigurationKeys.IPC_CLIENT_CONNECTION_MAX_IN_FLIGHT_CALLS_KEY,
+        2);
+    Client client = new Client(LongWritable.class, clientConf);
+    try {
+      SerialCaller[] callers = new SerialCaller[5];
+      for (int i = 0; i < callers.length; i++) {
+        callers[i] = new SerialCaller(client, addr, 3);
+        callers[i].start();
+      }
+      for (SerialCaller caller : callers) {
+        caller.join();
+        assertFalse(caller.failed);
+      }
+      // the concurrent calls are spread over the connections.
+      int numConnections = client.getConnectionIds().size();
+      assertTrue("connections: " + numConnections,
+          numConnections > 1 && numConnections <= 3);
+    } finally {
+      client.stop();
+      server.stop();
+    }
+  }
+
   @Test
   public void testAuxiliaryPorts() throws IOException, InterruptedException {
     int defaultPort = 9000;
@@ -730,6 +763,42 @@ public void testIpcTimeout() throws IOException {
     client.stop();
   }
 
+  @Test(timeout=60000)
+  public void testIpcCallDeadline() throws IOException {
+    // start server
+    Server server = new TestServer(1, true);
+    InetSocketAddress addr = NetUtils.getConnectAddress(server);
+    server.start();
+
+    // set the deadline to be less than MIN_SLEEP_TIME, while the connection
+    // is kept alive by the pings.
+    Configuration deadlineConf = new Configuration(conf);
+    deadlineConf.setLong(
+        CommonConfigurationKeys.IPC_CLIENT_CALL_DEADLINE_MS_KEY,
+        MIN_SLEEP_TIME / 2);
+    Client client = new Client(LongWritable.class, deadlineConf);
+    for (int i = 0; i < 2; i++) {
+      // the late responses of the earlier calls are dropped.
+      try {
+        call(client, new LongWritable(RANDOM.nextLong()), addr, 0,
+            deadlineConf);
+        fail("Expected an exception to have been thrown");
+      } catch (SocketTimeoutException e) {
+        LOG.info("Get a SocketTimeoutException ", e);
+      }
+    }
+    client.stop();
+
+    // set the deadline to be bigger than the longest sleep.
+    deadlineConf.setLong(
+        CommonConfigurationKeys.IPC_CLIENT_CALL_DEADLINE_MS_KEY,
+        3 * PING_INTERVAL + MIN_SLEEP_TIME);
+    client = new Client(LongWritable.class, deadlineConf);
+    call(client, new LongWritable(RANDOM.nextLong()), addr, 0, deadlineConf);
+    client.stop();
+    server.stop();
+  }
+
   @Test(timeout=60000)
   public void testIpcConnectTimeout() throws IOException {
     // start server
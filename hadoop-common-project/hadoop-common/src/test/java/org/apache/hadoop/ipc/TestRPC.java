@@ -107,6 +107,7 @@
 import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
 import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
@@ -1405,6 +1406,118 @@ public void testNumInProcessHandlerMetrics() throws Exception {
     }
   }
 
+  /**
+   * Test that the calls are processed beyond the number of handlers when
+   * they are processed on virtual threads.
+   */
+  @Test(timeout=30000)
+  public void testVirtualThreadHandlers() throws Exception {
+    UserGroupInformation ugi = UserGroupInformation.
+        createUserForTesting("user123", new String[0]);
+    Configuration serverConf = new Configuration(conf);
+    serverConf.setBoolean(CommonConfigurationKeys
+        .IPC_SERVER_HANDLER_VIRTUAL_THREADS_ENABLED_KEY, true);
+    serverConf.setInt(CommonConfigurationKeys
+        .IPC_SERVER_HANDLER_VIRTUAL_THREADS_MAX_CALLS_KEY, 4);
+    final Server server = setupTestServer(serverConf, 1);
+    TestRpcService proxy = null;
+    try {
+      // the JVMs without virtual threads fall back to the single handler.
+      final int numCalls = server.isUsingVirtualHandlers() ? 4 : 1;
+      final CountDownLatch latch = new CountDownLatch(numCalls);
+      List<ExternalCall<String>> calls = new ArrayList<>();
+      for (int i = 0; i < numCalls; i++) {
+        calls.add(newExtCall(ugi, () -> {
+          // all the calls must be in progress to complete.
+          latch.countDown();
+          latch.await();
+          return UserGroupInformation.getCurrentUser().getUserName();
+        }));
+      }
+      for (ExternalCall<String> call : calls) {
+        server.queueCall(call);
+      }
+      for (ExternalCall<String> call : calls) {
+        assertEquals("user123", call.get());
+      }
+
+      proxy = getClient(addr, conf);
+      proxy.ping(null, newEmptyRequest());
+    } finally {
+      stop(server, proxy);
+    }
+  }
+
+  @Test
+  public void testBufferPool() throws Exception {
+    Configuration serverConf = new Configuration(conf);
+    serverConf.setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY, true);
+    serverConf.setInt(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_MAX_BUFFER_SIZE_KEY,
+        1024);
+    final Server server = setupTestServer(serverConf, 2);
+    TestRpcService proxy = null;
+    try {
+      assertNotNull(server.getBufferPool());
+      proxy = getClient(addr, conf);
+      char[] large = new char[4096];
+      Arrays.fill(large, 'x');
+      for (String message : new String[] {"", "hello", new String(large)}) {
+        for (int i = 0; i < 5; i++) {
+          assertEquals(message,
+              proxy.echo(null, newEchoRequest(message)).getMessage());
+        }
+      }
+      try {
+        proxy.error(null, newEmptyRequest());
+        fail("Expected an exception");
+      } catch (ServiceException e) {
+        // expected
+      }
+      assertEquals("hello",
+          proxy.echo(null, newEchoRequest("hello")).getMessage());
+
+      // the small requests and responses reuse the buffers.
+      assertTrue(server.getBufferReuses() > 0);
+      MetricsRecordBuilder rb = getMetrics(server.getRpcMetrics().name());
+      assertTrue(MetricsAsserts.getLongGauge("RpcBufferReuses", rb) > 0);
+      assertTrue(MetricsAsserts.getLongGauge("RpcBufferAllocations", rb) > 0);
+    } finally {
+      stop(server, proxy);
+    }
+  }
+
+  @Test
+  public void testBufferPoolRejectedCalls() throws Exception {
+    Configuration serverConf = new Configuration(conf);
+    serverConf.setBoolean(
+        CommonConfigurationKeys.IPC_SERVER_BUFFER_POOL_ENABLED_KEY, true);
+    final Server server = setupTestServer(serverConf, 2);
+    CallQueueManager<Call> spy = spy(server.getCallQueue());
+    server.setCallQueue(spy);
+    Mockito.doThrow(CallQueueManager.CallQueueOverflowException.KEEPALIVE)
+        .when(spy).put(any());
+    TestRpcService proxy = null;
+    try {
+      proxy = getClient(addr, conf);
+      int calls = 10;
+      for (int i = 0; i < calls; i++) {
+        try {
+          proxy.echo(null, newEchoRequest("hello"));
+          fail("Expected an exception");
+        } catch (ServiceException e) {
+          // expected
+        }
+      }
+      // the rejected calls return their request buffers to the pool.
+      assertTrue(server.getBufferReuses() > 0);
+      assertTrue(server.getBufferAllocations() < calls);
+    } finally {
+      stop(server, proxy);
+    }
+  }
+
   /**
    * Test the rpcCallSucesses metric in RpcMetrics.
    */
@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.ipc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RpcBufferPool}.
+ */
+public class TestRpcBufferPool {
+
+  @Test
+  public void testSizeClasses() {
+    RpcBufferPool pool = new RpcBufferPool(3000, 1 << 20);
+    ByteBuffer buffer = pool.getBuffer(false, 1);
+    assertEquals(RpcBufferPool.MIN_BUFFER_SIZE, buffer.capacity());
+    assertEquals(1, buffer.limit());
+    assertEquals(0, buffer.position());
+    assertTrue(buffer.hasArray());
+
+    assertEquals(1024, pool.getBuffer(false, 513).capacity());
+    assertEquals(1024, pool.getBuffer(false, 1024).capacity());
+    // the largest class is rounded up to a power of two.
+    assertEquals(4096, pool.getBuffer(false, 4096).capacity());
+    assertEquals(5000, pool.getBuffer(false, 5000).capacity());
+    assertEquals(5, pool.getAllocations());
+    assertEquals(0, pool.getReuses());
+  }
+
+  @Test
+  public void testReuse() {
+    RpcBufferPool pool = new RpcBufferPool(4096, 1 << 20);
+    ByteBuffer buffer = pool.getBuffer(false, 600);
+    buffer.position(100);
+    pool.putBuffer(buffer);
+    assertEquals(1024, pool.getPooledBytes());
+
+    ByteBuffer reused = pool.getBuffer(false, 1000);
+    assertSame(buffer, reused);
+    assertEquals(0, reused.position());
+    assertEquals(1000, reused.limit());
+    assertEquals(0, pool.getPooledBytes());
+    assertEquals(1, pool.getReuses());
+
+    // a buffer of another class is allocated.
+    assertNotSame(buffer, pool.getBuffer(false, 100));
+    assertEquals(2, pool.getAllocations());
+
+    // the foreign and unpooled buffers are dropped.
+    pool.putBuffer(ByteBuffer.allocate(1000));
+    pool.putBuffer(ByteBuffer.allocateDirect(1024));
+    pool.putBuffer(pool.getBuffer(false, 5000));
+    assertEquals(0, pool.getPooledBytes());
+
+    pool.putBuffer(reused);
+    pool.release();
+    assertEquals(0, pool.getPooledBytes());
+  }
+
+  @Test
+  public void testMaxPooledBytes() {
+    RpcBufferPool pool = new RpcBufferPool(4096, 2048);
+    ByteBuffer[] buffers = new ByteBuffer[3];
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = pool.getBuffer(false, 1024);
+    }
+    for (ByteBuffer buffer : buffers) {
+      pool.putBuffer(buffer);
+    }
+    assertEquals(2048, pool.getPooledBytes());
+    pool.getBuffer(false, 1024);
+    pool.getBuffer(false, 1024);
+    assertEquals(0, pool.getPooledBytes());
+    assertEquals(2, pool.getReuses());
+    assertEquals(3, pool.getAllocations());
+  }
+}
@@ -0,0 +1,348 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.InvalidPathException;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.ParentNotDirectoryException;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathIsNotEmptyDirectoryException;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSOpsCountStatistics.OpType;
+import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.DSQuotaExceededException;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
+import org.apache.hadoop.hdfs.protocol.QuotaByStorageTypeExceededException;
+import org.apache.hadoop.hdfs.protocol.SnapshotAccessControlException;
+import org.apache.hadoop.hdfs.protocol.UnresolvedPathException;
+import org.apache.hadoop.hdfs.server.namenode.SafeModeException;
+import org.apache.hadoop.io.retry.AsyncCallHandler;
+import org.apache.hadoop.ipc.Client;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.security.AccessControlException;
+
+/**
+ * The namespace operations of a {@link DistributedFileSystem} which do not
+ * wait for the response of the NameNode. Each operation returns a
+ * {@link CompletableFuture} which is completed once the call, including its
+ * retries, is done, so that many calls can be in flight without a thread
+ * waiting for each of them.
+ * <p>
+ * The futures are completed on a small shared pool of the client as soon as
+ * the responses arrive, so an action depending on a future does not delay
+ * the other calls. Actions added before a future is completed run on a
+ * thread of that pool and should not block; blocking actions should be
+ * added with the async variants of {@link CompletableFuture} and an
+ * executor of their own. The number of calls in flight is limited by
+ * {@value CommonConfigurationKeys#IPC_CLIENT_ASYNC_CALLS_MAX_KEY}, beyond
+ * which calls fail with
+ * {@link org.apache.hadoop.ipc.AsyncCallLimitExceededException}.
+ * <p>
+ * Unlike {@link DistributedFileSystem}, symlinks are not resolved.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Unstable
+public class AsyncDistributedFileSystem {
+
+  /** A call to the NameNode, which is made in asynchronous mode. */
+  @FunctionalInterface
+  private interface NamenodeCall {
+    void invoke(ClientProtocol namenode) throws IOException;
+  }
+
+  private final DistributedFileSystem dfs;
+
+  AsyncDistributedFileSystem(final DistributedFileSystem dfs) {
+    this.dfs = dfs;
+  }
+
+  /**
+   * Make the given call in asynchronous mode.
+   * @param call the call to the NameNode.
+   * @param lookupTypes the exceptions to unwrap from a RemoteException.
+   * @return the future of the return value of the call.
+   */
+  private <T> CompletableFuture<T> invoke(NamenodeCall call,
+      Class<?>... lookupTypes) {
+    final CompletableFuture<T> returnFuture;
+    final boolean isAsync = Client.isAsynchronousMode();
+    Client.setAsynchronousMode(true);
+    try {
+      dfs.getClient().checkOpen();
+      call.invoke(dfs.getClient().getNamenode());
+      returnFuture = AsyncCallHandler.getAsyncReturnFuture();
+    } catch (IOException e) {
+      final CompletableFuture<T> failed = new CompletableFuture<>();
+      failed.completeExceptionally(unwrap(e, lookupTypes));
+      return failed;
+    } finally {
+      Client.setAsynchronousMode(isAsync);
+    }
+
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    returnFuture.whenComplete((value, t) -> {
+      if (t == null) {
+        future.complete(value);
+      } else {
+        future.completeExceptionally(unwrap(t, lookupTypes));
+      }
+    });
+    return future;
+  }
+
+  private static Throwable unwrap(Throwable t, Class<?>... lookupTypes) {
+    if (t instanceof CompletionException && t.getCause() != null) {
+      t = t.getCause();
+    }
+    if (t instanceof RemoteException) {
+      return ((RemoteException) t).unwrapRemoteException(lookupTypes);
+    }
+    return t;
+  }
+
+  private String getPathName(Path p) {
+    return dfs.getPathName(dfs.makeQualified(p));
+  }
+
+  /**
+   * Get the status of a file or directory.
+   *
+   * @param f the path of the file or directory.
+   * @return a future of the status, which fails with a
+   *         {@link FileNotFoundException} if the path does not exist.
+   * @see DistributedFileSystem#getFileStatus(Path)
+   */
+  public CompletableFuture<FileStatus> getFileStatus(final Path f) {
+    dfs.getFsStatistics().incrementReadOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.GET_FILE_STATUS);
+    final Path absF = dfs.makeQualified(f);
+    final String src = dfs.getPathName(absF);
+    return this.<HdfsFileStatus>invoke(nn -> nn.getFileInfo(src),
+        AccessControlException.class,
+        FileNotFoundException.class,
+        UnresolvedPathException.class)
+        .thenApply(fi -> {
+          if (fi == null) {
+            throw new CompletionException(
+                new FileNotFoundException("File does not exist: " + absF));
+          }
+          return fi.makeQualified(dfs.getUri(), absF);
+        });
+  }
+
+  /**
+   * List the statuses of the files and directories in the given directory.
+   * A large directory is listed with several calls, each of them made once
+   * the previous one is done.
+   *
+   * @param f the path of the directory.
+   * @return a future of the statuses.
+   * @see DistributedFileSystem#listStatus(Path)
+   */
+  public CompletableFuture<FileStatus[]> listStatus(final Path f) {
+    final Path absF = dfs.makeQualified(f);
+    return listStatus(dfs.getPathName(absF), absF, HdfsFileStatus.EMPTY_NAME,
+        new ArrayList<>());
+  }
+
+  private CompletableFuture<FileStatus[]> listStatus(final String src,
+      final Path p, final byte[] startAfter, final List<FileStatus> listing) {
+    dfs.getFsStatistics().incrementReadOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.LIST_STATUS);
+    return this.<DirectoryListing>invoke(
+        nn -> nn.getListing(src, startAfter, false),
+        AccessControlException.class,
+        FileNotFoundException.class,
+        UnresolvedPathException.class)
+        .thenCompose(thisListing -> {
+          if (thisListing == null) { // the directory does not exist
+            throw new CompletionException(
+                new FileNotFoundException("File " + p + " does not exist."));
+          }
+          for (HdfsFileStatus fileStatus : thisListing.getPartialListing()) {
+            listing.add(fileStatus.makeQualified(dfs.getUri(), p));
+          }
+          if (!thisListing.hasMore()) {
+            return CompletableFuture.completedFuture(
+                listing.toArray(new FileStatus[listing.size()]));
+          }
+          return listStatus(src, p, thisListing.getLastName(), listing);
+        });
+  }
+
+  /**
+   * Create a directory and its missing parents.
+   *
+   * @param f the path of the directory.
+   * @param permission the permission of the directory, which is masked with
+   *                   the umask of the client.
+   * @return a future of whether the directory was created.
+   * @see DistributedFileSystem#mkdirs(Path, FsPermission)
+   */
+  public CompletableFuture<Boolean> mkdirs(final Path f,
+      final FsPermission permission) {
+    dfs.getFsStatistics().incrementWriteOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.MKDIRS);
+    final String src = getPathName(f);
+    final FsPermission masked = dfs.getClient().applyUMaskDir(permission);
+    return invoke(nn -> nn.mkdirs(src, masked, true),
+        AccessControlException.class,
+        InvalidPathException.class,
+        FileAlreadyExistsException.class,
+        FileNotFoundException.class,
+        ParentNotDirectoryException.class,
+        SafeModeException.class,
+        NSQuotaExceededException.class,
+        DSQuotaExceededException.class,
+        QuotaByStorageTypeExceededException.class,
+        UnresolvedPathException.class,
+        SnapshotAccessControlException.class);
+  }
+
+  /**
+   * Delete a file or directory.
+   *
+   * @param f the path to delete.
+   * @param recursive whether to delete a non-empty directory.
+   * @return a future of whether the path was deleted.
+   * @see DistributedFileSystem#delete(Path, boolean)
+   */
+  public CompletableFuture<Boolean> delete(final Path f,
+      final boolean recursive) {
+    dfs.getFsStatistics().incrementWriteOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.DELETE);
+    final String src = getPathName(f);
+    return invoke(nn -> nn.delete(src, recursive),
+        AccessControlException.class,
+        FileNotFoundException.class,
+        SafeModeException.class,
+        UnresolvedPathException.class,
+        SnapshotAccessControlException.class,
+        PathIsNotEmptyDirectoryException.class);
+  }
+
+  /**
+   * Rename a file or directory. The rename is atomic.
+   *
+   * @param src the path to rename.
+   * @param dst the new path.
+   * @param options the rename options.
+   * @return a future which is completed once the path is renamed.
+   * @see DistributedFileSystem#rename(Path, Path, Options.Rename...)
+   */
+  public CompletableFuture<Void> rename(final Path src, final Path dst,
+      final Options.Rename... options) {
+    dfs.getFsStatistics().incrementWriteOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.RENAME);
+    final String srcPath = getPathName(src);
+    final String dstPath = getPathName(dst);
+    return invoke(nn -> nn.rename2(srcPath, dstPath, options),
+        AccessControlException.class,
+        DSQuotaExceededException.class,
+        QuotaByStorageTypeExceededException.class,
+        FileAlreadyExistsException.class,
+        FileNotFoundException.class,
+        ParentNotDirectoryException.class,
+        SafeModeException.class,
+        NSQuotaExceededException.class,
+        UnresolvedPathException.class,
+        SnapshotAccessControlException.class);
+  }
+
+  /**
+   * Get the content summary of a path.
+   *
+   * @param f the path.
+   * @return a future of the content summary.
+   * @see DistributedFileSystem#getContentSummary(Path)
+   */
+  public CompletableFuture<ContentSummary> getContentSummary(final Path f) {
+    dfs.getFsStatistics().incrementReadOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(
+        OpType.GET_CONTENT_SUMMARY);
+    final String src = getPathName(f);
+    return invoke(nn -> nn.getContentSummary(src),
+        AccessControlException.class,
+        FileNotFoundException.class,
+        UnresolvedPathException.class);
+  }
+
+  /**
+   * Set the permission of a path.
+   *
+   * @param p the path.
+   * @param permission the new permission.
+   * @return a future which is completed once the permission is set.
+   * @see DistributedFileSystem#setPermission(Path, FsPermission)
+   */
+  public CompletableFuture<Void> setPermission(final Path p,
+      final FsPermission permission) {
+    dfs.getFsStatistics().incrementWriteOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.SET_PERMISSION);
+    final String src = getPathName(p);
+    return invoke(nn -> nn.setPermission(src, permission),
+        AccessControlException.class,
+        FileNotFoundException.class,
+        SafeModeException.class,
+        UnresolvedPathException.class,
+        SnapshotAccessControlException.class);
+  }
+
+  /**
+   * Set the owner of a path.
+   *
+   * @param p the path.
+   * @param username the new owner, or null to keep the owner.
+   * @param groupname the new group, or null to keep the group.
+   * @return a future which is completed once the owner is set.
+   * @see DistributedFileSystem#setOwner(Path, String, String)
+   */
+  public CompletableFuture<Void> setOwner(final Path p, final String username,
+      final String groupname) {
+    if (username == null && groupname == null) {
+      final CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(
+          new IOException("username == null && groupname == null"));
+      return failed;
+    }
+    dfs.getFsStatistics().incrementWriteOps(1);
+    dfs.getDFSOpsCountStatistics().incrementOpCounter(OpType.SET_OWNER);
+    final String src = getPathName(p);
+    return invoke(nn -> nn.setOwner(src, username, groupname),
+        AccessControlException.class,
+        FileNotFoundException.class,
+        SafeModeException.class,
+        UnresolvedPathException.class,
+        SnapshotAccessControlException.class);
+  }
+}
@@ -1238,7 +1238,7 @@ private FsPermission applyUMask(FsPermission permission) {
     return FsCreateModes.applyUMask(permission, dfsClientConf.getUMask());
   }
 
-  private FsPermission applyUMaskDir(FsPermission permission) {
+  FsPermission applyUMaskDir(FsPermission permission) {
     if (permission == null) {
       permission = FsPermission.getDirDefault();
     }
@@ -1360,6 +1360,116 @@ public DFSOutputStream primitiveCreate(String src, FsPermission absPermission,
     return result;
   }
 
+  /**
+   * Create many small files with their contents. All the files are created
+   * with one call to the namenode and completed with another one, instead
+   * of a create and a complete call for each file. The data of each file is
+   * still written to its own block through its own pipeline, one file after
+   * the other. The files are always replicated, even in an erasure coded
+   * directory.
+   *
+   * The files the namenode fails to create in the batch, e.g. because of a
+   * quota, are created one by one, which reports why they fail. If writing
+   * a file fails, the files written before it are not completed; their
+   * leases are recovered by the namenode.
+   *
+   * @param files the contents of the files, by the path of the files
+   * @param permission The permission of the files
+   * @param overwrite whether to overwrite the files which exist already
+   * @param replication block replication
+   * @param blockSize maximum block size, which must be at least the length
+   *                  of the largest file
+   *
+   * @see ClientProtocol#createFiles for the exceptions of the create call
+   */
+  public void createSmallFiles(Map<String, byte[]> files,
+      FsPermission permission, boolean overwrite, short replication,
+      long blockSize) throws IOException {
+    checkOpen();
+    if (files.isEmpty()) {
+      return;
+    }
+    final FsPermission masked = applyUMask(permission);
+    final String[] srcs = files.keySet().toArray(new String[files.size()]);
+    for (String src : srcs) {
+      if (files.get(src).length > blockSize) {
+        throw new HadoopIllegalArgumentException("The length of " + src +
+            " exceeds the block size " + blockSize);
+      }
+    }
+    final EnumSet<CreateFlag> flag = overwrite ?
+        EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE) :
+        EnumSet.of(CreateFlag.CREATE);
+    try (TraceScope ignored = tracer.newScope("createSmallFiles")) {
+      final HdfsFileStatus[] stats;
+      try {
+        stats = namenode.createFiles(srcs, masked, clientName,
+            new EnumSetWritable<>(flag), true, replication, blockSize);
+      } catch (RemoteException re) {
+        throw re.unwrapRemoteException(AccessControlException.class,
+            DSQuotaExceededException.class,
+            QuotaByStorageTypeExceededException.class,
+            FileAlreadyExistsException.class,
+            FileNotFoundException.class,
+            ParentNotDirectoryException.class,
+            NSQuotaExceededException.class,
+            SafeModeException.class,
+            UnresolvedPathException.class,
+            SnapshotAccessControlException.class);
+      }
+
+      final DataChecksum checksum = dfsClientConf.createChecksum(null);
+      final List<String> batchSrcs = new ArrayList<>(srcs.length);
+      final List<ExtendedBlock> last = new ArrayList<>(srcs.length);
+      final List<Long> fileIds = new ArrayList<>(srcs.length);
+      final List<String> failedSrcs = new ArrayList<>();
+      for (int i = 0; i < srcs.length; i++) {
+        if (stats[i] == null) {
+          failedSrcs.add(srcs[i]);
+          continue;
+        }
+        final DFSOutputStream out = DFSOutputStream.newStreamForBatch(this,
+            srcs[i], stats[i], flag, checksum);
+        beginFileLease(out.getUniqKey(), out);
+        try {
+          out.write(files.get(srcs[i]));
+        } catch (IOException e) {
+          out.abort();
+          throw e;
+        }
+        batchSrcs.add(srcs[i]);
+        last.add(out.closeForBatch());
+        fileIds.add(stats[i].getFileId());
+      }
+
+      if (!batchSrcs.isEmpty()) {
+        try {
+          DFSOutputStream.completeFiles(this,
+              batchSrcs.toArray(new String[batchSrcs.size()]),
+              last.toArray(new ExtendedBlock[last.size()]),
+              fileIds.stream().mapToLong(Long::longValue).toArray());
+        } catch (RemoteException re) {
+          throw re.unwrapRemoteException(AccessControlException.class,
+              FileNotFoundException.class,
+              SafeModeException.class,
+              UnresolvedPathException.class);
+        }
+      }
+
+      // the batch is completed first, so that the files created in it are
+      // not left open if one of the others fails.
+      final EnumSet<CreateFlag> singleFlag = EnumSet.copyOf(flag);
+      singleFlag.add(CreateFlag.SHOULD_REPLICATE);
+      for (String src : failedSrcs) {
+        try (OutputStream out = create(src, permission, singleFlag, true,
+            replication, blockSize, null, dfsClientConf.getIoBufferSize(),
+            null)) {
+          out.write(files.get(src));
+        }
+      }
+    }
+  }
+
   /**
    * Creates a symbolic link.
    *
@@ -1738,6 +1848,23 @@ public DirectoryListing listPaths(String src,  byte[] startAfter,
     }
   }
 
+  /**
+   * Get a partial recursive listing of the indicated directory
+   *
+   * @see ClientProtocol#getRecursiveListing(String, byte[], boolean)
+   */
+  public DirectoryListing listPathsRecursive(String src, byte[] startAfter,
+      boolean needLocation) throws IOException {
+    checkOpen();
+    try (TraceScope ignored = newPathTraceScope("listPathsRecursive", src)) {
+      return namenode.getRecursiveListing(src, startAfter, needLocation);
+    } catch (RemoteException re) {
+      throw re.unwrapRemoteException(AccessControlException.class,
+          FileNotFoundException.class,
+          UnresolvedPathException.class);
+    }
+  }
+
   /**
    * Get a batched listing for the indicated directories
    *
@@ -22,7 +22,9 @@
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop.HadoopIllegalArgumentException;
@@ -337,6 +339,18 @@ static DFSOutputStream newStreamForCreate(DFSClient dfsClient, String src,
     }
   }
 
+  /**
+   * Construct a new output stream for one of the files created by
+   * {@link org.apache.hadoop.hdfs.protocol.ClientProtocol#createFiles}.
+   */
+  static DFSOutputStream newStreamForBatch(DFSClient dfsClient, String src,
+      HdfsFileStatus stat, EnumSet<CreateFlag> flag, DataChecksum checksum) {
+    final DFSOutputStream out = new DFSOutputStream(dfsClient, src, stat,
+        flag, null, checksum, null, true);
+    out.start();
+    return out;
+  }
+
   /** Construct a new output stream for append. */
   private DFSOutputStream(DFSClient dfsClient, String src,
       EnumSet<CreateFlag> flags, Progressable progress, LocatedBlock lastBlock,
@@ -930,6 +944,33 @@ protected synchronized void closeImpl() throws IOException {
     }
   }
 
+  /**
+   * Flush all the data to the datanodes and close the stream without
+   * completing the file, so that the files of a batch can be completed
+   * together by {@link #completeFiles}.
+   * @return the last block of the file.
+   */
+  synchronized ExtendedBlock closeForBatch() throws IOException {
+    checkClosed();
+    try (TraceScope ignored = dfsClient.newPathTraceScope(
+        "DFSOutputStream#closeForBatch", src)) {
+      flushBuffer();       // flush from all upper layers
+
+      if (currentPacket != null) {
+        enqueueCurrentPacket();
+      }
+
+      if (getStreamer().getBytesCurBlock() != 0) {
+        setCurrentPacketToEmpty();
+      }
+
+      flushInternal();             // flush all data to Datanodes
+      return getStreamer().getBlock();
+    } finally {
+      closeThreads(true);
+    }
+  }
+
   /**
    * If recoverLeaseOnCloseException is true and an exception occurs when
    * closing a file, recover lease.
@@ -1027,6 +1068,74 @@ protected void completeFile(ExtendedBlock last) throws IOException {
     }
   }
 
+  /**
+   * Complete the files of a batch, retrying the files whose last block does
+   * not have enough replicas yet like {@link #completeFile(ExtendedBlock)}.
+   */
+  static void completeFiles(DFSClient dfsClient, String[] srcs,
+      ExtendedBlock[] last, long[] fileIds) throws IOException {
+    long localstart = Time.monotonicNow();
+    final DfsClientConf conf = dfsClient.getConf();
+    long sleeptime = conf.getBlockWriteLocateFollowingInitialDelayMs();
+    long maxSleepTime = conf.getBlockWriteLocateFollowingMaxDelayMs();
+    int retries = conf.getNumBlockWriteLocateFollowingRetry();
+    while (true) {
+      final Boolean[] completed = dfsClient.namenode.completeFiles(srcs,
+          dfsClient.clientName, last, fileIds);
+      final List<Integer> pending = new ArrayList<>();
+      for (int i = 0; i < completed.length; i++) {
+        if (completed[i] == null) {
+          // complete the file on its own, which throws the error.
+          completed[i] = dfsClient.namenode.complete(srcs[i],
+              dfsClient.clientName, last[i], fileIds[i]);
+        }
+        if (!completed[i]) {
+          pending.add(i);
+        }
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
+      final int hdfsTimeout = conf.getHdfsTimeout();
+      if (!dfsClient.clientRunning
+          || (hdfsTimeout > 0
+              && localstart + hdfsTimeout < Time.monotonicNow())) {
+        String msg = "Unable to close files because dfsclient " +
+            " was unable to contact the HDFS servers. clientRunning " +
+            dfsClient.clientRunning + " hdfsTimeout " + hdfsTimeout;
+        DFSClient.LOG.info(msg);
+        throw new IOException(msg);
+      }
+      if (retries == 0) {
+        throw new IOException("Unable to close " + pending.size() +
+            " files, e.g. " + srcs[pending.get(0)] + ", because their last " +
+            "block does not have enough number of replicas.");
+      }
+      retries--;
+      try {
+        Thread.sleep(sleeptime);
+      } catch (InterruptedException ie) {
+        DFSClient.LOG.warn("Caught exception ", ie);
+      }
+      sleeptime = calculateDelayForNextRetry(sleeptime, maxSleepTime);
+      if (Time.monotonicNow() - localstart > 5000) {
+        DFSClient.LOG.info("Could not complete {} files, retrying...",
+            pending.size());
+      }
+      final String[] pendingSrcs = new String[pending.size()];
+      final ExtendedBlock[] pendingLast = new ExtendedBlock[pending.size()];
+      final long[] pendingIds = new long[pending.size()];
+      for (int i = 0; i < pendingSrcs.length; i++) {
+        pendingSrcs[i] = srcs[pending.get(i)];
+        pendingLast[i] = last[pending.get(i)];
+        pendingIds[i] = fileIds[pending.get(i)];
+      }
+      srcs = pendingSrcs;
+      last = pendingLast;
+      fileIds = pendingIds;
+    }
+  }
+
   @VisibleForTesting
   public void setArtificialSlowdown(long period) {
     getStreamer().setArtificialSlowdown(period);
@@ -129,6 +129,7 @@
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -634,6 +635,39 @@ public HdfsDataOutputStream next(final FileSystem fs, final Path p)
     }.resolve(this, absF);
   }
 
+  /**
+   * Create many small files with their contents, using one namenode call to
+   * create all the files and one to complete them instead of a create and a
+   * complete call for each file. Missing parent directories are created.
+   * The files are always replicated; files in an encryption zone are
+   * rejected. The number of files of one call is limited by the namenode.
+   *
+   * @param files the contents of the files, by the path of the files
+   * @param permission the permission of the files
+   * @param overwrite whether to overwrite the files which exist already
+   * @param replication the replication of the files
+   * @param blockSize the block size of the files, which must be at least the
+   *                  length of the largest file
+   * @throws IOException if the files could not be created
+   * @see DFSClient#createSmallFiles
+   */
+  public void createSmallFiles(final Map<Path, byte[]> files,
+      final FsPermission permission, final boolean overwrite,
+      final short replication, final long blockSize) throws IOException {
+    statistics.incrementWriteOps(1);
+    storageStatistics.incrementOpCounter(OpType.CREATE);
+    final Map<String, byte[]> contents = new LinkedHashMap<>();
+    long bytes = 0;
+    for (Map.Entry<Path, byte[]> file : files.entrySet()) {
+      contents.put(getPathName(fixRelativePart(file.getKey())),
+          file.getValue());
+      bytes += file.getValue().length;
+    }
+    dfs.createSmallFiles(contents, permission, overwrite, replication,
+        blockSize);
+    statistics.incrementBytesWritten(bytes);
+  }
+
   @Override
   protected HdfsDataOutputStream primitiveCreate(Path f,
       FsPermission absolutePermission, EnumSet<CreateFlag> flag, int bufferSize,
@@ -1256,6 +1290,67 @@ public RemoteIterator<FileStatus> next(final FileSystem fs, final Path p)
 
   }
 
+  /**
+   * Returns a remote iterator over the file status of all the files and
+   * directories under the given path, in depth-first pre-order. The entries
+   * are fetched from the namenode in large batches, each of which covers
+   * many directories.
+   *
+   * @param p target path
+   * @return remote iterator
+   */
+  public RemoteIterator<FileStatus> listStatusRecursive(final Path p)
+      throws IOException {
+    Path absF = fixRelativePart(p);
+    return new FileSystemLinkResolver<RemoteIterator<FileStatus>>() {
+      @Override
+      public RemoteIterator<FileStatus> doCall(final Path p)
+          throws IOException {
+        return new DirListingIterator<>(p, null, false, true);
+      }
+
+      @Override
+      public RemoteIterator<FileStatus> next(final FileSystem fs, final Path p)
+          throws IOException {
+        if (fs instanceof DistributedFileSystem) {
+          return ((DistributedFileSystem)fs).listStatusRecursive(p);
+        }
+        throw new UnsupportedOperationException("Cannot perform recursive " +
+            "listing through a symlink to a non-DistributedFileSystem: " + p);
+      }
+    }.resolve(this, absF);
+  }
+
+  /**
+   * Returns a remote iterator over the located file status of all the files
+   * and directories under the given path, in depth-first pre-order.
+   *
+   * @param p target path
+   * @return remote iterator
+   * @see #listStatusRecursive(Path)
+   */
+  public RemoteIterator<LocatedFileStatus> listLocatedStatusRecursive(
+      final Path p) throws IOException {
+    Path absF = fixRelativePart(p);
+    return new FileSystemLinkResolver<RemoteIterator<LocatedFileStatus>>() {
+      @Override
+      public RemoteIterator<LocatedFileStatus> doCall(final Path p)
+          throws IOException {
+        return new DirListingIterator<>(p, null, true, true);
+      }
+
+      @Override
+      public RemoteIterator<LocatedFileStatus> next(final FileSystem fs,
+          final Path p) throws IOException {
+        if (fs instanceof DistributedFileSystem) {
+          return ((DistributedFileSystem)fs).listLocatedStatusRecursive(p);
+        }
+        throw new UnsupportedOperationException("Cannot perform recursive " +
+            "listing through a symlink to a non-DistributedFileSystem: " + p);
+      }
+    }.resolve(this, absF);
+  }
+
   /**
    * This class defines an iterator that returns
    * the file status of each file/subdirectory of a directory
@@ -1274,16 +1369,22 @@ public RemoteIterator<FileStatus> next(final FileSystem fs, final Path p)
     private T curStat = null;
     private PathFilter filter;
     private boolean needLocation;
+    private boolean recursive;
 
     private DirListingIterator(Path p, PathFilter filter,
         boolean needLocation) throws IOException {
+      this(p, filter, needLocation, false);
+    }
+
+    private DirListingIterator(Path p, PathFilter filter,
+        boolean needLocation, boolean recursive) throws IOException {
       this.p = p;
       this.src = getPathName(p);
       this.filter = filter;
       this.needLocation = needLocation;
+      this.recursive = recursive;
       // fetch the first batch of entries in the directory
-      thisListing = dfs.listPaths(src, HdfsFileStatus.EMPTY_NAME,
-          needLocation);
+      thisListing = listPaths(HdfsFileStatus.EMPTY_NAME);
       statistics.incrementReadOps(1);
       if (needLocation) {
         storageStatistics.incrementOpCounter(OpType.LIST_LOCATED_STATUS);
@@ -1329,8 +1430,7 @@ private boolean hasNextNoFilter() throws IOException {
       if (i >= thisListing.getPartialListing().length
           && thisListing.hasMore()) {
         // current listing is exhausted & fetch a new listing
-        thisListing = dfs.listPaths(src, thisListing.getLastName(),
-            needLocation);
+        thisListing = listPaths(thisListing.getLastName());
         statistics.incrementReadOps(1);
         if (thisListing == null) {
           throw new FileNotFoundException("File " + p + " does not exist.");
@@ -1349,6 +1449,13 @@ public T next() throws IOException {
       }
       throw new java.util.NoSuchElementException("No more entry in " + p);
     }
+
+    private DirectoryListing listPaths(byte[] startAfter) throws IOException {
+      if (recursive) {
+        return dfs.listPathsRecursive(src, startAfter, needLocation);
+      }
+      return dfs.listPaths(src, startAfter, needLocation);
+    }
   }
 
   @Override
@@ -1546,6 +1653,27 @@ public DFSClient getClient() {
     return dfs;
   }
 
+  Statistics getFsStatistics() {
+    return statistics;
+  }
+
+  DFSOpsCountStatistics getDFSOpsCountStatistics() {
+    return storageStatistics;
+  }
+
+  /**
+   * Get the namespace operations of this file system which return a
+   * {@link java.util.concurrent.CompletableFuture} instead of waiting for
+   * the response of the NameNode.
+   *
+   * @return the asynchronous namespace operations of this file system.
+   * @see AsyncDistributedFileSystem
+   */
+  @InterfaceStability.Unstable
+  public AsyncDistributedFileSystem getAsyncDistributedFileSystem() {
+    return new AsyncDistributedFileSystem(this);
+  }
+
   @Override
   public FsStatus getStatus(Path p) throws IOException {
     statistics.incrementReadOps(1);
@@ -92,6 +92,7 @@
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -645,6 +646,57 @@ public RemoteIterator<FileStatus> listStatusIterator(final Path p)
         .listStatusIterator(mountPathInfo.getPathOnTarget());
   }
 
+  @Override
+  public RemoteIterator<FileStatus> listStatusRecursive(final Path p)
+      throws IOException {
+    if (this.vfs == null) {
+      return super.listStatusRecursive(p);
+    }
+    ViewFileSystemOverloadScheme.MountPathInfo<FileSystem> mountPathInfo =
+        this.vfs.getMountPathInfo(p, getConf());
+    checkDFS(mountPathInfo.getTargetFs(), "listStatusRecursive");
+    return ((DistributedFileSystem) mountPathInfo.getTargetFs())
+        .listStatusRecursive(mountPathInfo.getPathOnTarget());
+  }
+
+  @Override
+  public RemoteIterator<LocatedFileStatus> listLocatedStatusRecursive(
+      final Path p) throws IOException {
+    if (this.vfs == null) {
+      return super.listLocatedStatusRecursive(p);
+    }
+    ViewFileSystemOverloadScheme.MountPathInfo<FileSystem> mountPathInfo =
+        this.vfs.getMountPathInfo(p, getConf());
+    checkDFS(mountPathInfo.getTargetFs(), "listLocatedStatusRecursive");
+    return ((DistributedFileSystem) mountPathInfo.getTargetFs())
+        .listLocatedStatusRecursive(mountPathInfo.getPathOnTarget());
+  }
+
+  @Override
+  public void createSmallFiles(final Map<Path, byte[]> files,
+      final FsPermission permission, final boolean overwrite,
+      final short replication, final long blockSize) throws IOException {
+    if (this.vfs == null) {
+      super.createSmallFiles(files, permission, overwrite, replication,
+          blockSize);
+      return;
+    }
+    // create the files of each mount target with one batch.
+    Map<FileSystem, Map<Path, byte[]>> batches = new HashMap<>();
+    for (Map.Entry<Path, byte[]> file : files.entrySet()) {
+      ViewFileSystemOverloadScheme.MountPathInfo<FileSystem> mountPathInfo =
+          this.vfs.getMountPathInfo(file.getKey(), getConf());
+      checkDFS(mountPathInfo.getTargetFs(), "createSmallFiles");
+      batches.computeIfAbsent(mountPathInfo.getTargetFs(),
+          fs -> new LinkedHashMap<>())
+          .put(mountPathInfo.getPathOnTarget(), file.getValue());
+    }
+    for (Map.Entry<FileSystem, Map<Path, byte[]>> batch : batches.entrySet()) {
+      ((DistributedFileSystem) batch.getKey()).createSmallFiles(
+          batch.getValue(), permission, overwrite, replication, blockSize);
+    }
+  }
+
   @Override
   public RemoteIterator<PartialListing<FileStatus>> batchedListStatusIterator(
       final List<Path> paths) throws IOException {
@@ -716,6 +768,19 @@ public DFSClient getClient() {
     return defaultDFS.getClient();
   }
 
+  /**
+   * The asynchronous operations are not resolved through the mount table,
+   * they are made on the default file system.
+   */
+  @Override
+  public AsyncDistributedFileSystem getAsyncDistributedFileSystem() {
+    if (this.vfs == null) {
+      return super.getAsyncDistributedFileSystem();
+    }
+    checkDefaultDFS(defaultDFS, "getAsyncDistributedFileSystem");
+    return defaultDFS.getAsyncDistributedFileSystem();
+  }
+
   @Override
   public FsStatus getStatus(Path p) throws IOException {
     if (this.vfs == null) {
@@ -215,6 +215,51 @@ HdfsFileStatus create(String src, FsPermission masked,
       String storagePolicy)
       throws IOException;
 
+  /**
+   * Create many new file entries in the namespace at once.
+   * <p>
+   * This is the batched form of
+   * {@link #create(String, FsPermission, String, EnumSetWritable, boolean,
+   * short, long, CryptoProtocolVersion[], String, String)} for the many small
+   * files of an ingest pipeline: all the files are created under one lock
+   * acquisition and with one sync of the edit log. The paths are checked
+   * before any file is created. A file which still fails to be created, e.g.
+   * because of a quota, does not fail the call: the other files are created
+   * and the status of the file is null, so that the client can create it on
+   * its own to find out why.
+   * <p>
+   * The files are always replicated, as if they were created with
+   * {@link CreateFlag#SHOULD_REPLICATE}; files in an encryption zone are
+   * rejected.
+   *
+   * @param srcs paths of the files being created.
+   * @param masked masked permission.
+   * @param clientName name of the current client.
+   * @param flag indicates whether the files should be overwritten if they
+   *             already exist or created if they do not exist.
+   * @param createParent create missing parent directories if true
+   * @param replication block replication factor.
+   * @param blockSize maximum block size.
+   *
+   * @return the status of the files, in the order of the paths, or null for
+   *         the files which were not created.
+   * @throws org.apache.hadoop.security.AccessControlException If access is
+   *           denied
+   * @throws org.apache.hadoop.fs.FileAlreadyExistsException If one of the
+   *           files already exists
+   * @throws java.io.FileNotFoundException If the parent of a file does not
+   *           exist and <code>createParent</code> is false
+   * @throws org.apache.hadoop.hdfs.server.namenode.SafeModeException create not
+   *           allowed in safemode
+   * @throws IOException If an I/O error occurred, or if there are more paths
+   *           than the NameNode allows in one call
+   */
+  @AtMostOnce
+  HdfsFileStatus[] createFiles(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize)
+      throws IOException;
+
   /**
    * Append to the end of the file.
    * @param src path of the file being created.
@@ -503,6 +548,33 @@ boolean complete(String src, String clientName,
                           ExtendedBlock last, long fileId)
       throws IOException;
 
+  /**
+   * The client is done writing data to the given files, and would like to
+   * complete them. This is the batched form of
+   * {@link #complete(String, String, ExtendedBlock, long)}; all the files are
+   * completed under one lock acquisition and with one sync of the edit log.
+   *
+   * @param srcs the files being created
+   * @param clientName the name of the client that created the files
+   * @param last the last block info of each file
+   * @param fileIds the ids uniquely identifying the files
+   *
+   * @return for each file, true if all its blocks are minimally replicated,
+   *         false if they are not yet, in which case the caller should try to
+   *         complete it again, or null if the file could not be completed,
+   *         in which case the caller completes it on its own to get the
+   *         error. The other files are completed regardless.
+   * @throws org.apache.hadoop.security.AccessControlException If access is
+   *           denied
+   * @throws org.apache.hadoop.hdfs.server.namenode.SafeModeException complete
+   *           not allowed in safemode
+   * @throws IOException If too many files are given, a path is too long,
+   *           or an I/O error occurred
+   */
+  @Idempotent
+  Boolean[] completeFiles(String[] srcs, String clientName,
+      ExtendedBlock[] last, long[] fileIds) throws IOException;
+
   /**
    * The client wants to report corrupted blocks (blocks with specified
    * locations on datanodes).
@@ -716,6 +788,25 @@ BatchedDirectoryListing getBatchedListing(
       byte[] startAfter,
       boolean needLocation) throws IOException;
 
+  /**
+   * Get a partial listing of all the files and directories under the input
+   * directory, in depth-first pre-order. The local name of each returned
+   * status is its path relative to the input directory.
+   *
+   * @param src the input directory
+   * @param startAfter the relative path to start listing after encoded in
+   *                   Java UTF8
+   * @param needLocation if the FileStatus should contain block locations
+   *
+   * @return a partial listing starting after startAfter. Its remaining
+   *   entries are 0 if there are no more entries to list.
+   * @throws IOException if an I/O error occurred
+   */
+  @Idempotent
+  @ReadOnly(isCoordinated = true)
+  DirectoryListing getRecursiveListing(String src, byte[] startAfter,
+      boolean needLocation) throws IOException;
+
   /**
    * Get the list of snapshottable directories that are owned
    * by the current user. Return all the snapshottable directories if the
@@ -26,6 +26,7 @@
 
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -105,13 +106,20 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AppendResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CachePoolEntryProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CheckAccessRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteFileProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteFilesRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteFilesResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ConcatRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateFileResultProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateFilesRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateFilesResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateSnapshotRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateSymlinkRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DeleteRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DeleteResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DeleteSnapshotRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.DisallowSnapshotRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.FinalizeUpgradeRequestProto;
@@ -122,6 +130,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetBlockLocationsResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetContentSummaryRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetContentSummaryResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetCurrentEditLogTxidRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetDataEncryptionKeyRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetDataEncryptionKeyResponseProto;
@@ -141,6 +150,8 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLinkTargetResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetListingRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetListingResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetRecursiveListingRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetRecursiveListingResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetPreferredBlockSizeRequestProto;
@@ -169,6 +180,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ListOpenFilesResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.MetaSaveRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.MkdirsRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.MkdirsResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ModifyCacheDirectiveRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ModifyCachePoolRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.MsyncRequestProto;
@@ -382,6 +394,30 @@ public HdfsFileStatus create(String src, FsPermission masked,
     return res.hasFs() ? PBHelperClient.convert(res.getFs()) : null;
   }
 
+  @Override
+  public HdfsFileStatus[] createFiles(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize)
+      throws IOException {
+    CreateFilesRequestProto req = CreateFilesRequestProto.newBuilder()
+        .addAllSrc(Arrays.asList(srcs))
+        .setMasked(PBHelperClient.convert(masked))
+        .setClientName(clientName)
+        .setCreateFlag(PBHelperClient.convertCreateFlag(flag))
+        .setCreateParent(createParent)
+        .setReplication(replication)
+        .setBlockSize(blockSize)
+        .build();
+    CreateFilesResponseProto res =
+        ipc(() -> rpcProxy.createFiles(null, req));
+    HdfsFileStatus[] result = new HdfsFileStatus[res.getResultsCount()];
+    for (int i = 0; i < result.length; i++) {
+      CreateFileResultProto file = res.getResults(i);
+      result[i] = file.hasFs() ? PBHelperClient.convert(file.getFs()) : null;
+    }
+    return result;
+  }
+
   @Override
   public boolean truncate(String src, long newLength, String clientName)
       throws IOException {
@@ -434,14 +470,23 @@ public void setPermission(String src, FsPermission permission)
   }
 
   private void setAsyncReturnValue() {
+    setAsyncReturnValue(response -> null);
+  }
+
+  /**
+   * Set the async return value of the last call, which converts the
+   * response message of the call into the value.
+   */
+  @SuppressWarnings("unchecked")
+  private <M extends Message, T> void setAsyncReturnValue(
+      Function<M, T> converter) {
     final AsyncGet<Message, Exception> asyncReturnMessage
         = ProtobufRpcEngine2.getAsyncReturnMessage();
-    final AsyncGet<Void, Exception> asyncGet
-        = new AsyncGet<Void, Exception>() {
+    final AsyncGet<T, Exception> asyncGet
+        = new AsyncGet<T, Exception>() {
       @Override
-      public Void get(long timeout, TimeUnit unit) throws Exception {
-        asyncReturnMessage.get(timeout, unit);
-        return null;
+      public T get(long timeout, TimeUnit unit) throws Exception {
+        return converter.apply((M) asyncReturnMessage.get(timeout, unit));
       }
 
       @Override
@@ -532,6 +577,38 @@ public boolean complete(String src, String clientName,
     return ipc(() -> rpcProxy.complete(null, req.build())).getResult();
   }
 
+  @Override
+  public Boolean[] completeFiles(String[] srcs, String clientName,
+      ExtendedBlock[] last, long[] fileIds) throws IOException {
+    CompleteFilesRequestProto.Builder req =
+        CompleteFilesRequestProto.newBuilder().setClientName(clientName);
+    for (int i = 0; i < srcs.length; i++) {
+      CompleteFileProto.Builder file = CompleteFileProto.newBuilder()
+          .setSrc(srcs[i])
+          .setFileId(fileIds[i]);
+      if (last[i] != null) {
+        file.setLast(PBHelperClient.convert(last[i]));
+      }
+      req.addFiles(file);
+    }
+    CompleteFilesResponseProto res =
+        ipc(() -> rpcProxy.completeFiles(null, req.build()));
+    Boolean[] result = new Boolean[res.getResultCount()];
+    for (int i = 0; i < result.length; i++) {
+      switch (res.getResult(i)) {
+      case COMPLETED:
+        result[i] = true;
+        break;
+      case PENDING:
+        result[i] = false;
+        break;
+      default:
+        result[i] = null;
+      }
+    }
+    return result;
+  }
+
   @Override
   public void reportBadBlocks(LocatedBlock[] blocks) throws IOException {
     ReportBadBlocksRequestProto req = ReportBadBlocksRequestProto.newBuilder()
@@ -593,6 +670,11 @@ public void concat(String trg, String[] srcs) throws IOException {
   public boolean delete(String src, boolean recursive) throws IOException {
     DeleteRequestProto req = DeleteRequestProto.newBuilder().setSrc(src)
         .setRecursive(recursive).build();
+    if (Client.isAsynchronousMode()) {
+      ipc(() -> rpcProxy.delete(null, req));
+      setAsyncReturnValue(DeleteResponseProto::getResult);
+      return false;
+    }
     return ipc(() -> rpcProxy.delete(null, req).getResult());
   }
 
@@ -608,6 +690,11 @@ public boolean mkdirs(String src, FsPermission masked, boolean createParent)
       builder.setUnmasked(PBHelperClient.convert(unmasked));
     }
     MkdirsRequestProto req = builder.build();
+    if (Client.isAsynchronousMode()) {
+      ipc(() -> rpcProxy.mkdirs(null, req));
+      setAsyncReturnValue(MkdirsResponseProto::getResult);
+      return false;
+    }
     return ipc(() -> rpcProxy.mkdirs(null, req)).getResult();
   }
 
@@ -618,6 +705,12 @@ public DirectoryListing getListing(String src, byte[] startAfter,
         .setSrc(src)
         .setStartAfter(ByteString.copyFrom(startAfter))
         .setNeedLocation(needLocation).build();
+    if (Client.isAsynchronousMode()) {
+      ipc(() -> rpcProxy.getListing(null, req));
+      setAsyncReturnValue((GetListingResponseProto res) -> res.hasDirList() ?
+          PBHelperClient.convert(res.getDirList()) : null);
+      return null;
+    }
     GetListingResponseProto result = ipc(() -> rpcProxy.getListing(null, req));
     if (result.hasDirList()) {
       return PBHelperClient.convert(result.getDirList());
@@ -625,6 +718,22 @@ public DirectoryListing getListing(String src, byte[] startAfter,
     return null;
   }
 
+  @Override
+  public DirectoryListing getRecursiveListing(String src, byte[] startAfter,
+      boolean needLocation) throws IOException {
+    GetRecursiveListingRequestProto req =
+        GetRecursiveListingRequestProto.newBuilder()
+            .setSrc(src)
+            .setStartAfter(ByteString.copyFrom(startAfter))
+            .setNeedLocation(needLocation).build();
+    GetRecursiveListingResponseProto result =
+        ipc(() -> rpcProxy.getRecursiveListing(null, req));
+    if (result.hasDirList()) {
+      return PBHelperClient.convert(result.getDirList());
+    }
+    return null;
+  }
+
   @Override
   public BatchedDirectoryListing getBatchedListing(
       String[] srcs, byte[] startAfter, boolean needLocation)
@@ -817,6 +926,12 @@ public HdfsFileStatus getFileInfo(String src) throws IOException {
     GetFileInfoRequestProto req = GetFileInfoRequestProto.newBuilder()
         .setSrc(src)
         .build();
+    if (Client.isAsynchronousMode()) {
+      ipc(() -> rpcProxy.getFileInfo(null, req));
+      setAsyncReturnValue((GetFileInfoResponseProto response) ->
+          response.hasFs() ? PBHelperClient.convert(response.getFs()) : null);
+      return null;
+    }
     GetFileInfoResponseProto res = ipc(() -> rpcProxy.getFileInfo(null, req));
     return res.hasFs() ? PBHelperClient.convert(res.getFs()) : null;
   }
@@ -850,6 +965,12 @@ public ContentSummary getContentSummary(String path) throws IOException {
         .newBuilder()
         .setPath(path)
         .build();
+    if (Client.isAsynchronousMode()) {
+      ipc(() -> rpcProxy.getContentSummary(null, req));
+      setAsyncReturnValue((GetContentSummaryResponseProto res) ->
+          PBHelperClient.convert(res.getSummary()));
+      return null;
+    }
     return PBHelperClient.convert(ipc(() -> rpcProxy.getContentSummary(null, req))
         .getSummary());
   }
@@ -43,6 +43,7 @@ public class RouterClientMetrics {
   @Metric private MutableCounterLong getBlockLocationsOps;
   @Metric private MutableCounterLong getServerDefaultsOps;
   @Metric private MutableCounterLong createOps;
+  @Metric private MutableCounterLong createFilesOps;
   @Metric private MutableCounterLong appendOps;
   @Metric private MutableCounterLong recoverLeaseOps;
   @Metric private MutableCounterLong setReplicationOps;
@@ -54,6 +55,7 @@ public class RouterClientMetrics {
   @Metric private MutableCounterLong getAdditionalDatanodeOps;
   @Metric private MutableCounterLong abandonBlockOps;
   @Metric private MutableCounterLong completeOps;
+  @Metric private MutableCounterLong completeFilesOps;
   @Metric private MutableCounterLong updateBlockForPipelineOps;
   @Metric private MutableCounterLong updatePipelineOps;
   @Metric private MutableCounterLong getPreferredBlockSizeOps;
@@ -66,6 +68,7 @@ public class RouterClientMetrics {
   @Metric private MutableCounterLong renewLeaseOps;
   @Metric private MutableCounterLong getListingOps;
   @Metric private MutableCounterLong getBatchedListingOps;
+  @Metric private MutableCounterLong getRecursiveListingOps;
   @Metric private MutableCounterLong getFileInfoOps;
   @Metric private MutableCounterLong isFileClosedOps;
   @Metric private MutableCounterLong getFileLinkInfoOps;
@@ -218,6 +221,9 @@ public void incInvokedMethod(Method method) {
     case "create":
       createOps.incr();
       break;
+    case "createFiles":
+      createFilesOps.incr();
+      break;
     case "append":
       appendOps.incr();
       break;
@@ -251,6 +257,9 @@ public void incInvokedMethod(Method method) {
     case "complete":
       completeOps.incr();
       break;
+    case "completeFiles":
+      completeFilesOps.incr();
+      break;
     case "updateBlockForPipeline":
       updateBlockForPipelineOps.incr();
       break;
@@ -287,6 +296,9 @@ public void incInvokedMethod(Method method) {
     case "getBatchedListing":
       getBatchedListingOps.incr();
       break;
+    case "getRecursiveListing":
+      getRecursiveListingOps.incr();
+      break;
     case "getFileInfo":
       getFileInfoOps.incr();
       break;
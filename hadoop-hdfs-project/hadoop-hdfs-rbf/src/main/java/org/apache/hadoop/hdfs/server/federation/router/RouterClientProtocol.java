@@ -312,6 +312,14 @@ public HdfsFileStatus create(String src, FsPermission masked,
     }
   }
 
+  @Override
+  public HdfsFileStatus[] createFiles(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize)
+      throws IOException {
+    throw new UnsupportedOperationException("Not implemented");
+  }
+
   /**
    * Check if an exception is caused by an unavailable subcluster or not. It
    * also checks the causes.
@@ -561,6 +569,12 @@ public boolean complete(String src, String clientName, ExtendedBlock last,
     return rpcClient.invokeSequential(locations, method, Boolean.class, null);
   }
 
+  @Override
+  public Boolean[] completeFiles(String[] srcs, String clientName,
+      ExtendedBlock[] last, long[] fileIds) throws IOException {
+    throw new UnsupportedOperationException("Not implemented");
+  }
+
   @Override
   public LocatedBlock updateBlockForPipeline(
       ExtendedBlock block, String clientName) throws IOException {
@@ -962,6 +976,12 @@ public BatchedDirectoryListing getBatchedListing(String[] srcs,
     throw new UnsupportedOperationException("Not implemented");
   }
 
+  @Override
+  public DirectoryListing getRecursiveListing(String src, byte[] startAfter,
+      boolean needLocation) throws IOException {
+    throw new UnsupportedOperationException("Not implemented");
+  }
+
   @Override
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     rpcServer.checkOperation(NameNode.OperationCategory.READ);
@@ -820,6 +820,15 @@ public HdfsFileStatus create(String src, FsPermission masked,
         replication, blockSize, supportedVersions, ecPolicyName, storagePolicy);
   }
 
+  @Override // ClientProtocol
+  public HdfsFileStatus[] createFiles(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize)
+      throws IOException {
+    return clientProto.createFiles(srcs, masked, clientName, flag,
+        createParent, replication, blockSize);
+  }
+
 
   /**
    * Get the location to create a file. It checks if the file already existed
@@ -968,6 +977,12 @@ public boolean complete(String src, String clientName, ExtendedBlock last,
     return clientProto.complete(src, clientName, last, fileId);
   }
 
+  @Override // ClientProtocol
+  public Boolean[] completeFiles(String[] srcs, String clientName,
+      ExtendedBlock[] last, long[] fileIds) throws IOException {
+    return clientProto.completeFiles(srcs, clientName, last, fileIds);
+  }
+
   @Override // ClientProtocol
   public LocatedBlock updateBlockForPipeline(
       ExtendedBlock block, String clientName) throws IOException {
@@ -1045,6 +1060,12 @@ public BatchedDirectoryListing getBatchedListing(
     throw new UnsupportedOperationException();
   }
 
+  @Override // ClientProtocol
+  public DirectoryListing getRecursiveListing(String src, byte[] startAfter,
+      boolean needLocation) throws IOException {
+    return clientProto.getRecursiveListing(src, startAfter, needLocation);
+  }
+
   @Override // ClientProtocol
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     return clientProto.getFileInfo(src);
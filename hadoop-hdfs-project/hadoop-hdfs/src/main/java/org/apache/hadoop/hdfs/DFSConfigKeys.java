@@ -255,6 +255,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final long    DFS_NAMENODE_CHECKPOINT_PERIOD_DEFAULT = 3600;
   public static final String  DFS_NAMENODE_CHECKPOINT_TXNS_KEY = "dfs.namenode.checkpoint.txns";
   public static final long    DFS_NAMENODE_CHECKPOINT_TXNS_DEFAULT = 1000000;
+  public static final String  DFS_NAMENODE_CHECKPOINT_MIN_CHURN_RATIO_KEY = "dfs.namenode.checkpoint.min-churn-ratio";
+  public static final double  DFS_NAMENODE_CHECKPOINT_MIN_CHURN_RATIO_DEFAULT = 0;
+  public static final String  DFS_NAMENODE_CHECKPOINT_MAX_PERIOD_KEY = "dfs.namenode.checkpoint.max-period";
+  public static final long    DFS_NAMENODE_CHECKPOINT_MAX_PERIOD_DEFAULT = 86400;
   public static final String  DFS_NAMENODE_CHECKPOINT_MAX_RETRIES_KEY = "dfs.namenode.checkpoint.max-retries";
   public static final int     DFS_NAMENODE_CHECKPOINT_MAX_RETRIES_DEFAULT = 3;
   public static final String  DFS_NAMENODE_MISSING_CHECKPOINT_PERIODS_BEFORE_SHUTDOWN_KEY = "dfs.namenode.missing.checkpoint.periods.before.shutdown";
@@ -339,6 +343,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       = "dfs.namenode.blockreport.queue.size";
   public static final int    DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_DEFAULT
       = 1024;
+  public static final String DFS_NAMENODE_BLOCKREPORT_RESOLVER_THREADS_KEY
+      = "dfs.namenode.blockreport.resolver.threads";
+  public static final int    DFS_NAMENODE_BLOCKREPORT_RESOLVER_THREADS_DEFAULT
+      = 0;
   public static final String DFS_NAMENODE_BLOCKREPORT_MAX_LOCK_HOLD_TIME
       = "dfs.namenode.blockreport.max.lock.hold.time";
   public static final long
@@ -428,6 +436,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.edits.asynclogging.pending.queue.size";
   public static final int
       DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE_DEFAULT = 4096;
+  public static final String
+      DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS =
+      "dfs.namenode.edits.asynclogging.group.commit.max.wait.ms";
+  public static final long
+      DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS_DEFAULT = 0;
+  public static final String DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_KEY =
+      "dfs.namenode.edits.replay.prefetch.ops";
+  public static final int DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_DEFAULT = 0;
 
   public static final String DFS_NAMENODE_PROVIDED_ENABLED = "dfs.namenode.provided.enabled";
   public static final boolean DFS_NAMENODE_PROVIDED_ENABLED_DEFAULT = false;
@@ -454,12 +470,22 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
 
   public static final String  DFS_LIST_LIMIT = "dfs.ls.limit";
   public static final int     DFS_LIST_LIMIT_DEFAULT = 1000;
+  public static final String  DFS_LIST_RECURSIVE_LIMIT =
+      "dfs.ls.recursive.limit";
+  public static final int     DFS_LIST_RECURSIVE_LIMIT_DEFAULT = 10000;
   public static final String  DFS_NAMENODE_BATCHED_LISTING_LIMIT = "dfs.batched.ls.limit";
   public static final int     DFS_NAMENODE_BATCHED_LISTING_LIMIT_DEFAULT = 100;
+  public static final String  DFS_NAMENODE_BATCHED_CREATE_LIMIT_KEY =
+      "dfs.namenode.batched.create.limit";
+  public static final int     DFS_NAMENODE_BATCHED_CREATE_LIMIT_DEFAULT = 1000;
   public static final String  DFS_CONTENT_SUMMARY_LIMIT_KEY = "dfs.content-summary.limit";
   public static final int     DFS_CONTENT_SUMMARY_LIMIT_DEFAULT = 5000;
   public static final String  DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY = "dfs.content-summary.sleep-microsec";
   public static final long    DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT = 500;
+  public static final String  DFS_CONTENT_SUMMARY_PARALLEL_THREADS_KEY = "dfs.content-summary.parallel.threads";
+  public static final int     DFS_CONTENT_SUMMARY_PARALLEL_THREADS_DEFAULT = 0;
+  public static final String  DFS_CONTENT_SUMMARY_PARALLEL_THRESHOLD_KEY = "dfs.content-summary.parallel.threshold";
+  public static final long    DFS_CONTENT_SUMMARY_PARALLEL_THRESHOLD_DEFAULT = 10000;
   public static final String  DFS_DATANODE_FAILED_VOLUMES_TOLERATED_KEY = "dfs.datanode.failed.volumes.tolerated";
   public static final int     DFS_DATANODE_FAILED_VOLUMES_TOLERATED_DEFAULT = 0;
   public static final String
@@ -643,11 +669,25 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_NAMENODE_FSLOCK_FAIR_KEY =
       "dfs.namenode.fslock.fair";
   public static final boolean DFS_NAMENODE_FSLOCK_FAIR_DEFAULT = true;
+  public static final String DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY =
+      "dfs.namenode.fslock.fine-grained.enabled";
+  public static final boolean DFS_NAMENODE_FSLOCK_FINE_GRAINED_DEFAULT = false;
+  public static final String DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_KEY =
+      "dfs.namenode.fslock.optimistic-read.enabled";
+  public static final boolean DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_DEFAULT =
+      false;
 
   public static final String  DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY =
       "dfs.namenode.lock.detailed-metrics.enabled";
   public static final boolean DFS_NAMENODE_LOCK_DETAILED_METRICS_DEFAULT =
       false;
+  public static final String DFS_NAMENODE_LOCK_PROFILER_ENABLED_KEY =
+      "dfs.namenode.lock.profiler.enabled";
+  public static final boolean DFS_NAMENODE_LOCK_PROFILER_ENABLED_DEFAULT =
+      false;
+  public static final String DFS_NAMENODE_LOCK_PROFILER_MAX_USERS_KEY =
+      "dfs.namenode.lock.profiler.max-users";
+  public static final int DFS_NAMENODE_LOCK_PROFILER_MAX_USERS_DEFAULT = 100;
   // Threshold for how long namenode locks must be held for the
   // event to be logged
   public static final String  DFS_NAMENODE_WRITE_LOCK_REPORTING_THRESHOLD_MS_KEY =
@@ -762,6 +802,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_KEY = "dfs.namenode.audit.log.token.tracking.id";
   public static final boolean DFS_NAMENODE_AUDIT_LOG_TOKEN_TRACKING_ID_DEFAULT = false;
   public static final String  DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST = "dfs.namenode.audit.log.debug.cmdlist";
+  public static final String  DFS_NAMENODE_AUDIT_BINARY_LOG_DIR_KEY =
+      "dfs.namenode.audit.binary.log.dir";
+  public static final String  DFS_NAMENODE_AUDIT_BINARY_LOG_QUEUE_SIZE_KEY =
+      "dfs.namenode.audit.binary.log.queue.size";
+  public static final int     DFS_NAMENODE_AUDIT_BINARY_LOG_QUEUE_SIZE_DEFAULT =
+      65536;
+  public static final String  DFS_NAMENODE_AUDIT_BINARY_LOG_ROLL_SIZE_KEY =
+      "dfs.namenode.audit.binary.log.roll.size";
+  public static final long    DFS_NAMENODE_AUDIT_BINARY_LOG_ROLL_SIZE_DEFAULT =
+      256 * 1024 * 1024;
+  public static final String  DFS_NAMENODE_AUDIT_BINARY_LOG_MAX_FILES_KEY =
+      "dfs.namenode.audit.binary.log.max.files";
+  public static final int     DFS_NAMENODE_AUDIT_BINARY_LOG_MAX_FILES_DEFAULT =
+      20;
   public static final String  DFS_NAMENODE_METRICS_LOGGER_PERIOD_SECONDS_KEY =
       "dfs.namenode.metrics.logger.period.seconds";
   public static final int     DFS_NAMENODE_METRICS_LOGGER_PERIOD_SECONDS_DEFAULT =
@@ -1135,6 +1189,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_IMAGE_TRANSFER_CHUNKSIZE_KEY = "dfs.image.transfer.chunksize";
   public static final int DFS_IMAGE_TRANSFER_CHUNKSIZE_DEFAULT = 64 * 1024;
 
+  // Amount of a downloaded image after which it is synced in the background
+  public static final String DFS_IMAGE_TRANSFER_WRITE_BEHIND_SIZE_KEY =
+      "dfs.image.transfer.write-behind.size";
+  public static final long DFS_IMAGE_TRANSFER_WRITE_BEHIND_SIZE_DEFAULT =
+      64L * 1024 * 1024;
+
   public static final String DFS_IMAGE_PARALLEL_LOAD_KEY =
       "dfs.image.parallel.load";
   public static final boolean DFS_IMAGE_PARALLEL_LOAD_DEFAULT = false;
@@ -1231,6 +1291,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String  DFS_SECONDARY_NAMENODE_INTERNAL_SPNEGO_USER_NAME_KEY = DFS_SECONDARY_NAMENODE_KERBEROS_INTERNAL_SPNEGO_PRINCIPAL_KEY;
   public static final String  DFS_NAMENODE_NAME_CACHE_THRESHOLD_KEY = "dfs.namenode.name.cache.threshold";
   public static final int     DFS_NAMENODE_NAME_CACHE_THRESHOLD_DEFAULT = 10;
+  public static final String  DFS_NAMENODE_NAME_DICTIONARY_ENABLED_KEY =
+      "dfs.namenode.name.dictionary.enabled";
+  public static final boolean DFS_NAMENODE_NAME_DICTIONARY_ENABLED_DEFAULT =
+      false;
   public static final String  DFS_NAMENODE_LEGACY_OIV_IMAGE_DIR_KEY = "dfs.namenode.legacy-oiv-image.dir";
 
   public static final String  DFS_NAMESERVICES =
@@ -54,6 +54,7 @@
 import org.apache.hadoop.hdfs.protocol.EncryptionZone;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicyInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
 import org.apache.hadoop.hdfs.protocol.LastBlockWithStatus;
@@ -93,10 +94,17 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.AppendResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CheckAccessRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CheckAccessResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteFileProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteFileResultProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteFilesRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteFilesResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CompleteResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ConcatRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.ConcatResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateFileResultProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateFilesRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateFilesResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.CreateSnapshotRequestProto;
@@ -149,6 +157,8 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLinkTargetResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetListingRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetListingResponseProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetRecursiveListingRequestProto;
+import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetRecursiveListingResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoRequestProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetLocatedFileInfoResponseProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.GetPreferredBlockSizeRequestProto;
@@ -365,6 +375,10 @@ public class ClientNamenodeProtocolServerSideTranslatorPB implements
   private static final GetListingResponseProto VOID_GETLISTING_RESPONSE = 
   GetListingResponseProto.newBuilder().build();
 
+  private static final GetRecursiveListingResponseProto
+      VOID_GETRECURSIVELISTING_RESPONSE =
+      GetRecursiveListingResponseProto.newBuilder().build();
+
   private static final GetBatchedListingResponseProto
       VOID_GETBATCHEDLISTING_RESPONSE =
       GetBatchedListingResponseProto.newBuilder()
@@ -519,6 +533,33 @@ public CreateResponseProto create(RpcController controller,
     }
   }
 
+  @Override
+  public CreateFilesResponseProto createFiles(RpcController controller,
+      CreateFilesRequestProto req) throws ServiceException {
+    try {
+      List<String> srcs = req.getSrcList();
+      HdfsFileStatus[] result = server.createFiles(
+          srcs.toArray(new String[srcs.size()]),
+          PBHelperClient.convert(req.getMasked()), req.getClientName(),
+          PBHelperClient.convertCreateFlag(req.getCreateFlag()),
+          req.getCreateParent(), (short) req.getReplication(),
+          req.getBlockSize());
+      CreateFilesResponseProto.Builder builder =
+          CreateFilesResponseProto.newBuilder();
+      for (HdfsFileStatus status : result) {
+        CreateFileResultProto.Builder file =
+            CreateFileResultProto.newBuilder();
+        if (status != null) {
+          file.setFs(PBHelperClient.convert(status));
+        }
+        builder.addResults(file);
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public AppendResponseProto append(RpcController controller,
       AppendRequestProto req) throws ServiceException {
@@ -654,6 +695,36 @@ public CompleteResponseProto complete(RpcController controller,
       throw new ServiceException(e);
     }
   }
+
+  @Override
+  public CompleteFilesResponseProto completeFiles(RpcController controller,
+      CompleteFilesRequestProto req) throws ServiceException {
+    try {
+      final int n = req.getFilesCount();
+      String[] srcs = new String[n];
+      ExtendedBlock[] last = new ExtendedBlock[n];
+      long[] fileIds = new long[n];
+      for (int i = 0; i < n; i++) {
+        CompleteFileProto file = req.getFiles(i);
+        srcs[i] = file.getSrc();
+        last[i] = file.hasLast() ? PBHelperClient.convert(file.getLast()) : null;
+        fileIds[i] = file.hasFileId() ?
+            file.getFileId() : HdfsConstants.GRANDFATHER_INODE_ID;
+      }
+      Boolean[] result = server.completeFiles(srcs, req.getClientName(),
+          last, fileIds);
+      CompleteFilesResponseProto.Builder builder =
+          CompleteFilesResponseProto.newBuilder();
+      for (Boolean completed : result) {
+        builder.addResult(completed == null ? CompleteFileResultProto.FAILED
+            : completed ? CompleteFileResultProto.COMPLETED
+            : CompleteFileResultProto.PENDING);
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
   
   @Override
   public ReportBadBlocksResponseProto reportBadBlocks(RpcController controller,
@@ -773,6 +844,25 @@ public GetListingResponseProto getListing(RpcController controller,
     }
   }
 
+  @Override
+  public GetRecursiveListingResponseProto getRecursiveListing(
+      RpcController controller, GetRecursiveListingRequestProto req)
+      throws ServiceException {
+    try {
+      DirectoryListing result = server.getRecursiveListing(
+          req.getSrc(), req.getStartAfter().toByteArray(),
+          req.getNeedLocation());
+      if (result != null) {
+        return GetRecursiveListingResponseProto.newBuilder().setDirList(
+            PBHelperClient.convert(result)).build();
+      } else {
+        return VOID_GETRECURSIVELISTING_RESPONSE;
+      }
+    } catch (IOException e) {
+      throw new ServiceException(e);
+    }
+  }
+
   @Override
   public GetBatchedListingResponseProto getBatchedListing(
       RpcController controller,
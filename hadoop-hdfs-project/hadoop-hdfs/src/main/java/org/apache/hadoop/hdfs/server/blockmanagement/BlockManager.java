@@ -111,6 +111,7 @@
 import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage.State;
 import org.apache.hadoop.hdfs.server.protocol.KeyUpdateCommand;
 import org.apache.hadoop.hdfs.server.protocol.ReceivedDeletedBlockInfo;
+import org.apache.hadoop.hdfs.server.protocol.StorageBlockReport;
 import org.apache.hadoop.hdfs.server.protocol.StorageReceivedDeletedBlocks;
 import org.apache.hadoop.hdfs.server.protocol.StorageReport;
 import org.apache.hadoop.hdfs.server.protocol.VolumeFailureSummary;
@@ -120,6 +121,7 @@
 import static org.apache.hadoop.hdfs.util.StripedBlockUtil.getInternalBlockLength;
 
 import org.apache.hadoop.hdfs.util.LightWeightHashSet;
+import org.apache.hadoop.hdfs.util.RwLockMode;
 import org.apache.hadoop.metrics2.util.MBeans;
 import org.apache.hadoop.net.Node;
 import org.apache.hadoop.security.UserGroupInformation;
@@ -349,6 +351,9 @@ public int getPendingSPSPaths() {
   /** Block report thread for handling async reports. */
   private final BlockReportProcessingThread blockReportThread;
 
+  /** Looks up the blocks of full block reports in parallel, if enabled. */
+  private final BlockReportResolver blockReportResolver;
+
   /**
    * Store blocks {@literal ->} datanodedescriptor(s) map of corrupt replicas.
    */
@@ -393,6 +398,14 @@ public int getPendingSPSPaths() {
   /** Stores information about block recovery attempts. */
   private final PendingRecoveryBlocks pendingRecoveryBlocks;
 
+  /**
+   * COMMITTED blocks which reached minimal replication while only the block
+   * management lock was held. Completing them updates namespace quota, so it
+   * is done once the global lock can be taken. Guarded by the block
+   * management write lock.
+   */
+  private final List<BlockInfo> pendingCompleteBlocks = new ArrayList<>();
+
   /** The maximum number of replicas allowed for a block */
   public final short maxReplication;
   /**
@@ -598,6 +611,13 @@ public BlockManager(final Namesystem namesystem, boolean haEnabled,
         DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_KEY,
         DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_QUEUE_SIZE_DEFAULT);
     this.blockReportThread = new BlockReportProcessingThread(queueSize);
+    int resolverThreads = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVER_THREADS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVER_THREADS_DEFAULT);
+    this.blockReportResolver = resolverThreads > 0
+        ? new BlockReportResolver(this, namesystem, resolverThreads,
+            maxLockHoldTime)
+        : null;
 
     this.deleteCorruptReplicaImmediately =
         conf.getBoolean(DFS_NAMENODE_CORRUPT_BLOCK_DELETE_IMMEDIATELY_ENABLED,
@@ -820,6 +840,9 @@ public void close() {
       redundancyThread.interrupt();
       blockReportThread.interrupt();
       markedDeleteBlockScrubberThread.interrupt();
+      if (blockReportResolver != null) {
+        blockReportResolver.shutdown();
+      }
       redundancyThread.join(3000);
       blockReportThread.join(3000);
       markedDeleteBlockScrubberThread.join(3000);
@@ -2101,8 +2124,12 @@ int computeInvalidateWork(int nodesToProcess) {
    */
   int computeBlockReconstructionWork(int blocksToProcess) {
     List<List<BlockInfo>> blocksToReconstruct = null;
-    namesystem.writeLock();
-    try {
+    final List<BlockInfo> deletedBlocks = new ArrayList<>();
+    // Choosing the blocks only reads the queues under their own monitor, so
+    // it does not block the namesystem. The queues are only modified under
+    // the write lock, where the chosen blocks are checked again before any
+    // work is scheduled for them, and the deleted blocks are removed.
+    synchronized (neededReconstruction) {
       boolean reset = false;
       if (replQueueResetToHeadThreshold > 0) {
         if (replQueueCallsSinceReset >= replQueueResetToHeadThreshold) {
@@ -2112,11 +2139,19 @@ int computeBlockReconstructionWork(int blocksToProcess) {
           replQueueCallsSinceReset++;
         }
       }
-        // Choose the blocks to be reconstructed
+      // Choose the blocks to be reconstructed
       blocksToReconstruct = neededReconstruction
-          .chooseLowRedundancyBlocks(blocksToProcess, reset);
-    } finally {
-      namesystem.writeUnlock("computeBlockReconstructionWork");
+          .chooseLowRedundancyBlocks(blocksToProcess, reset, deletedBlocks);
+    }
+    if (!deletedBlocks.isEmpty()) {
+      namesystem.writeLock();
+      try {
+        for (BlockInfo block : deletedBlocks) {
+          neededReconstruction.remove(block, LowRedundancyBlocks.LEVEL);
+        }
+      } finally {
+        namesystem.writeUnlock("computeBlockReconstructionWork");
+      }
     }
     return computeReconstructionWorkForBlocks(blocksToReconstruct);
   }
@@ -2895,7 +2930,24 @@ public boolean processReport(final DatanodeID nodeID,
       final DatanodeStorage storage,
       final BlockListAsLongs newReport,
       BlockReportContext context) throws IOException {
-    namesystem.writeLock();
+    return processReport(nodeID, storage, newReport, context, null);
+  }
+
+  /**
+   * The given storage is reporting all its blocks, whose stored blocks
+   * may have been looked up already by {@link #resolveBlockReports}.
+   *
+   * @param resolution the stored blocks of the report, or null.
+   * @return true if all known storages of the given DN have finished reporting.
+   * @throws IOException
+   */
+  public boolean processReport(final DatanodeID nodeID,
+      final DatanodeStorage storage,
+      final BlockListAsLongs newReport,
+      BlockReportContext context,
+      BlockReportResolver.Resolution resolution) throws IOException {
+    final RwLockMode lockMode = getBlockReportLockMode();
+    namesystem.writeLock(lockMode);
     final long startTime = Time.monotonicNow(); //after acquiring write lock
     final long endTime;
     DatanodeDescriptor node;
@@ -2934,6 +2986,10 @@ public boolean processReport(final DatanodeID nodeID,
         return !node.hasStaleStorages();
       }
 
+      if (resolution != null
+          && !resolution.isValid(blocksMap.getClearCount())) {
+        resolution = null;
+      }
       if (!storageInfo.hasReceivedBlockReport()) {
         // The first block report can be processed a lot more efficiently than
         // ordinary block reports.  This shortens restart times.
@@ -2942,18 +2998,20 @@ public boolean processReport(final DatanodeID nodeID,
             strBlockReportId, fullBrLeaseId,
             storageInfo.getStorageID(),
             nodeID);
-        processFirstBlockReport(storageInfo, newReport);
+        processFirstBlockReport(storageInfo, newReport, resolution);
       } else {
         // Block reports for provided storage are not
         // maintained by DN heartbeats
         if (!StorageType.PROVIDED.equals(storageInfo.getStorageType())) {
-          invalidatedBlocks = processReport(storageInfo, newReport);
+          invalidatedBlocks = resolution == null
+              ? processReport(storageInfo, newReport)
+              : processReport(storageInfo, newReport, resolution);
         }
       }
       storageInfo.receivedBlockReport();
     } finally {
       endTime = Time.monotonicNow();
-      namesystem.writeUnlock("processReport");
+      namesystem.writeUnlock(lockMode, "processReport");
     }
 
     if (blockLog.isDebugEnabled()) {
@@ -2978,6 +3036,65 @@ public boolean processReport(final DatanodeID nodeID,
     return !node.hasStaleStorages();
   }
 
+  /**
+   * Block reports only change block management state, except during startup
+   * safe mode where counting safe blocks may leave safe mode, which touches
+   * the namespace as well.
+   *
+   * @return the lock mode block report processing should acquire.
+   */
+  public RwLockMode getBlockReportLockMode() {
+    return bmSafeMode.isInSafeMode() ? RwLockMode.GLOBAL : RwLockMode.BM;
+  }
+
+  /**
+   * Look up the stored blocks of the given full block reports in parallel,
+   * holding only the read lock, so that processing the reports under the
+   * write lock does not have to.
+   *
+   * @return the resolution of each report, to be passed to
+   *         {@link #processReport}, or null if this is disabled.
+   */
+  public BlockReportResolver.Resolution[] resolveBlockReports(
+      StorageBlockReport[] reports) {
+    return blockReportResolver == null
+        ? null : blockReportResolver.resolve(reports);
+  }
+
+  long getBlocksMapClearCount() {
+    return blocksMap.getClearCount();
+  }
+
+  /**
+   * Complete the COMMITTED blocks which reached minimal replication while
+   * only the block management lock was held. Blocks which were deleted or
+   * completed by a client call in the meantime are skipped.
+   */
+  private void completePendingBlocks() {
+    namesystem.writeLock();
+    try {
+      for (BlockInfo block : pendingCompleteBlocks) {
+        if (block.isDeleted() ||
+            block.getBlockUCState() != BlockUCState.COMMITTED) {
+          continue;
+        }
+        NumberReplicas num = countNodes(block);
+        int numUsableReplicas = num.liveReplicas() +
+            num.decommissioning() + num.liveEnteringMaintenanceReplicas();
+        if (hasMinStorage(block, numUsableReplicas)) {
+          try {
+            completeBlock(block, null, false);
+          } catch (IOException e) {
+            LOG.warn("Failed to complete block {}", block, e);
+          }
+        }
+      }
+      pendingCompleteBlocks.clear();
+    } finally {
+      namesystem.writeUnlock("completePendingBlocks");
+    }
+  }
+
   /**
    * Remove the DN lease only when we have received block reports,
    * for all storages for a particular DN.
@@ -2997,7 +3114,7 @@ void removeDNLeaseIfNeeded(DatanodeDescriptor node) {
 
   public void removeBRLeaseIfNeeded(final DatanodeID nodeID,
       final BlockReportContext context) throws IOException {
-    namesystem.writeLock();
+    namesystem.writeLock(RwLockMode.BM);
     DatanodeDescriptor node;
     try {
       node = datanodeManager.getDatanode(nodeID);
@@ -3015,7 +3132,7 @@ public void removeBRLeaseIfNeeded(final DatanodeID nodeID,
         }
       }
     } finally {
-      namesystem.writeUnlock("removeBRLeaseIfNeeded");
+      namesystem.writeUnlock(RwLockMode.BM, "removeBRLeaseIfNeeded");
     }
   }
 
@@ -3159,6 +3276,13 @@ void processTimedOutExcessBlocks() {
   Collection<Block> processReport(
       final DatanodeStorageInfo storageInfo,
       final BlockListAsLongs report) throws IOException {
+    return processReport(storageInfo, report, null);
+  }
+
+  private Collection<Block> processReport(
+      final DatanodeStorageInfo storageInfo,
+      final BlockListAsLongs report,
+      final BlockReportResolver.Resolution resolution) throws IOException {
     // Normal case:
     // Modify the (block-->datanode) map, according to the difference
     // between the old and new block report.
@@ -3168,7 +3292,7 @@ Collection<Block> processReport(
     Collection<Block> toInvalidate = new ArrayList<>();
     Collection<BlockToMarkCorrupt> toCorrupt = new ArrayList<>();
     Collection<StatefulBlockInfo> toUC = new ArrayList<>();
-    reportDiff(storageInfo, report,
+    reportDiff(storageInfo, report, resolution,
                  toAdd, toRemove, toInvalidate, toCorrupt, toUC);
 
     DatanodeDescriptor node = storageInfo.getDatanodeDescriptor();
@@ -3207,7 +3331,7 @@ public void markBlockReplicasAsCorrupt(Block oldBlock,
       BlockInfo block,
       long oldGenerationStamp, long oldNumBytes, 
       DatanodeStorageInfo[] newStorages) throws IOException {
-    assert namesystem.hasWriteLock();
+    assert namesystem.hasWriteLock(RwLockMode.BM);
     BlockToMarkCorrupt b = null;
     if (block.getGenerationStamp() != oldGenerationStamp) {
       b = new BlockToMarkCorrupt(oldBlock, block, oldGenerationStamp,
@@ -3256,11 +3380,20 @@ public void markBlockReplicasAsCorrupt(Block oldBlock,
   void processFirstBlockReport(
       final DatanodeStorageInfo storageInfo,
       final BlockListAsLongs report) throws IOException {
+    processFirstBlockReport(storageInfo, report, null);
+  }
+
+  private void processFirstBlockReport(
+      final DatanodeStorageInfo storageInfo,
+      final BlockListAsLongs report,
+      final BlockReportResolver.Resolution resolution) throws IOException {
     if (report == null) return;
-    assert (namesystem.hasWriteLock());
+    assert (namesystem.hasWriteLock(RwLockMode.BM));
     assert (storageInfo.getBlockReportCount() == 0);
 
+    int index = 0;
     for (BlockReportReplica iblk : report) {
+      final int i = index++;
       ReplicaState reportedState = iblk.getState();
 
       if (LOG.isDebugEnabled()) {
@@ -3275,7 +3408,7 @@ void processFirstBlockReport(
         continue;
       }
 
-      BlockInfo storedBlock = getStoredBlock(iblk);
+      BlockInfo storedBlock = getStoredBlock(iblk, resolution, i);
 
       // If block does not belong to any file, we check if it violates
       // an integrity assumption of Name node
@@ -3324,6 +3457,7 @@ void processFirstBlockReport(
 
   private void reportDiff(DatanodeStorageInfo storageInfo,
       BlockListAsLongs newReport,
+      BlockReportResolver.Resolution resolution,
       Collection<BlockInfoToAdd> toAdd,     // add to DatanodeDescriptor
       Collection<BlockInfo> toRemove,       // remove from DatanodeDescriptor
       Collection<Block> toInvalidate,       // should be removed from DN
@@ -3346,12 +3480,14 @@ private void reportDiff(DatanodeStorageInfo storageInfo,
       newReport = BlockListAsLongs.EMPTY;
     }
     // scan the report and process newly reported blocks
+    int index = 0;
     for (BlockReportReplica iblk : newReport) {
       ReplicaState iState = iblk.getState();
       LOG.debug("Reported block {} on {} size {} replicaState = {}", iblk, dn,
           iblk.getNumBytes(), iState);
       BlockInfo storedBlock = processReportedBlock(storageInfo,
-          iblk, iState, toAdd, toInvalidate, toCorrupt, toUC);
+          iblk, iState, getStoredBlock(iblk, resolution, index++),
+          toAdd, toInvalidate, toCorrupt, toUC);
 
       // move block to the head of the list
       if (storedBlock != null) {
@@ -3395,6 +3531,8 @@ private void reportDiff(DatanodeStorageInfo storageInfo,
    * @param storageInfo DatanodeStorageInfo that sent the report.
    * @param block reported block replica
    * @param reportedState reported replica state
+   * @param resolvedBlock the stored block if it was looked up already,
+   *        otherwise null
    * @param toAdd add to DatanodeDescriptor
    * @param toInvalidate missing blocks (not in the blocks map)
    *        should be removed from the data-node
@@ -3407,6 +3545,7 @@ private void reportDiff(DatanodeStorageInfo storageInfo,
   private BlockInfo processReportedBlock(
       final DatanodeStorageInfo storageInfo,
       final Block block, final ReplicaState reportedState,
+      final BlockInfo resolvedBlock,
       final Collection<BlockInfoToAdd> toAdd,
       final Collection<Block> toInvalidate,
       final Collection<BlockToMarkCorrupt> toCorrupt,
@@ -3424,7 +3563,8 @@ private BlockInfo processReportedBlock(
     }
 
     // find block by blockId
-    BlockInfo storedBlock = getStoredBlock(block);
+    BlockInfo storedBlock =
+        resolvedBlock != null ? resolvedBlock : getStoredBlock(block);
     if (storedBlock == null) {
       // If blocksMap does not contain reported block id,
       // The replica should be removed from Datanode, and set NumBytes to BlockCommand.No_ACK to
@@ -3713,7 +3853,7 @@ void addStoredBlockUnderConstruction(StatefulBlockInfo ucBlock,
   private void addStoredBlockImmediate(BlockInfo storedBlock, Block reported,
       DatanodeStorageInfo storageInfo)
   throws IOException {
-    assert (storedBlock != null && namesystem.hasWriteLock());
+    assert (storedBlock != null && namesystem.hasWriteLock(RwLockMode.BM));
     if (!namesystem.isInStartupSafeMode()
         || isPopulatingReplQueues()) {
       addStoredBlock(storedBlock, reported, storageInfo, null, false);
@@ -3748,7 +3888,7 @@ private Block addStoredBlock(final BlockInfo block,
                                DatanodeDescriptor delNodeHint,
                                boolean logEveryBlock)
   throws IOException {
-    assert block != null && namesystem.hasWriteLock();
+    assert block != null && namesystem.hasWriteLock(RwLockMode.BM);
     BlockInfo storedBlock;
     DatanodeDescriptor node = storageInfo.getDatanodeDescriptor();
     if (!block.isComplete()) {
@@ -3807,7 +3947,11 @@ private Block addStoredBlock(final BlockInfo block,
     if(storedBlock.getBlockUCState() == BlockUCState.COMMITTED &&
         hasMinStorage(storedBlock, numUsableReplicas)) {
       addExpectedReplicasToPending(storedBlock);
-      completeBlock(storedBlock, null, false);
+      if (namesystem.hasWriteLock(RwLockMode.FS)) {
+        completeBlock(storedBlock, null, false);
+      } else {
+        pendingCompleteBlocks.add(storedBlock);
+      }
     } else if (storedBlock.isComplete() && result == AddBlockResult.ADDED) {
       // check whether safe replication is reached for the block
       // only complete blocks are counted towards that
@@ -4196,7 +4340,7 @@ private void processExtraRedundancyBlock(final BlockInfo block,
   private boolean processExtraRedundancyBlockWithoutPostpone(final BlockInfo block,
       final short replication, final DatanodeDescriptor addedNode,
       DatanodeDescriptor delNodeHint) {
-    assert namesystem.hasWriteLock();
+    assert namesystem.hasWriteLock(RwLockMode.BM);
     if (addedNode == delNodeHint) {
       delNodeHint = null;
     }
@@ -4240,7 +4384,7 @@ private void chooseExcessRedundancies(
       BlockInfo storedBlock, short replication,
       DatanodeDescriptor addedNode,
       DatanodeDescriptor delNodeHint) {
-    assert namesystem.hasWriteLock();
+    assert namesystem.hasWriteLock(RwLockMode.BM);
     // first form a rack to datanodes map and
     BlockCollection bc = getBlockCollection(storedBlock);
     if (storedBlock.isStriped()) {
@@ -4415,7 +4559,7 @@ private void removeStoredBlock(DatanodeStorageInfo storageInfo, Block block,
    */
   public void removeStoredBlock(BlockInfo storedBlock, DatanodeDescriptor node) {
     blockLog.debug("BLOCK* removeStoredBlock: {} from {}", storedBlock, node);
-    assert (namesystem.hasWriteLock());
+    assert (namesystem.hasWriteLock(RwLockMode.BM));
     {
       if (storedBlock == null || !blocksMap.removeNode(storedBlock, node)) {
         blockLog.debug("BLOCK* removeStoredBlock: {} has already been removed from node {}",
@@ -4568,8 +4712,8 @@ private boolean processAndHandleReportedBlock(
       return false;
     }
 
-    processReportedBlock(storageInfo, block, reportedState, toAdd, toInvalidate,
-        toCorrupt, toUC);
+    processReportedBlock(storageInfo, block, reportedState, null, toAdd,
+        toInvalidate, toCorrupt, toUC);
     // the block is only in one of the to-do lists
     // if it is in none then data-node already has it
     assert toUC.size() + toAdd.size() + toInvalidate.size() + toCorrupt
@@ -4608,7 +4752,7 @@ private boolean processAndHandleReportedBlock(
    */
   public void processIncrementalBlockReport(final DatanodeID nodeID,
       final StorageReceivedDeletedBlocks srdb) throws IOException {
-    assert namesystem.hasWriteLock();
+    assert namesystem.hasWriteLock(RwLockMode.BM);
     final DatanodeDescriptor node = datanodeManager.getDatanode(nodeID);
     if (node == null || !node.isRegistered()) {
       blockLog.warn("BLOCK* processIncrementalBlockReport"
@@ -4962,6 +5106,17 @@ public BlockInfo getStoredBlock(Block block) {
         new Block(BlockIdManager.convertToStripedID(block.getBlockId())));
   }
 
+  /**
+   * @return the stored block of the i-th replica of a block report, taken
+   *         from the resolution of the report if it has one.
+   */
+  private BlockInfo getStoredBlock(Block block,
+      BlockReportResolver.Resolution resolution, int i) {
+    BlockInfo storedBlock =
+        resolution != null ? resolution.getStoredBlock(i) : null;
+    return storedBlock != null ? storedBlock : getStoredBlock(block);
+  }
+
   public void updateLastBlock(BlockInfo lastBlock, ExtendedBlock newBlock) {
     lastBlock.setNumBytes(newBlock.getNumBytes());
     List<ReplicaUnderConstruction> staleReplicas = lastBlock
@@ -4972,7 +5127,7 @@ public void updateLastBlock(BlockInfo lastBlock, ExtendedBlock newBlock) {
   /** updates a block in needed reconstruction queue. */
   private void updateNeededReconstructions(final BlockInfo block,
       final int curReplicasDelta, int expectedReplicasDelta) {
-    namesystem.writeLock();
+    namesystem.writeLock(RwLockMode.BM);
     try {
       if (!isPopulatingReplQueues() || !block.isComplete()) {
         return;
@@ -4991,7 +5146,7 @@ private void updateNeededReconstructions(final BlockInfo block,
             repl.outOfServiceReplicas(), oldExpectedReplicas);
       }
     } finally {
-      namesystem.writeUnlock("updateNeededReconstructions");
+      namesystem.writeUnlock(RwLockMode.BM, "updateNeededReconstructions");
     }
   }
 
@@ -5628,7 +5783,9 @@ private void processQueue() {
           // batch as many operations in the write lock until the queue
           // runs dry, or the max lock hold is reached.
           int processed = 0;
-          namesystem.writeLock();
+          boolean hasPendingCompleteBlocks = false;
+          final RwLockMode lockMode = getBlockReportLockMode();
+          namesystem.writeLock(lockMode);
           metrics.setBlockOpsQueued(queue.size() + 1);
           try {
             long start = Time.monotonicNow();
@@ -5641,9 +5798,13 @@ private void processQueue() {
               action = queue.poll();
             } while (action != null);
           } finally {
-            namesystem.writeUnlock("processQueue");
+            hasPendingCompleteBlocks = !pendingCompleteBlocks.isEmpty();
+            namesystem.writeUnlock(lockMode, "processQueue");
             metrics.addBlockOpsBatched(processed - 1);
           }
+          if (hasPendingCompleteBlocks) {
+            completePendingBlocks();
+          }
         } catch (InterruptedException e) {
           // ignore unless thread was specifically interrupted.
           if (Thread.interrupted()) {
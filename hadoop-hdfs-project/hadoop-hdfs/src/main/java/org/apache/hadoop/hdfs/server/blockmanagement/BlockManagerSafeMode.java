@@ -32,6 +32,7 @@
 import org.apache.hadoop.hdfs.server.namenode.startupprogress.Status;
 import org.apache.hadoop.hdfs.server.namenode.startupprogress.Step;
 import org.apache.hadoop.hdfs.server.namenode.startupprogress.StepType;
+import org.apache.hadoop.hdfs.util.RwLockMode;
 import org.apache.hadoop.net.NetworkTopology;
 import org.apache.hadoop.util.Daemon;
 
@@ -443,7 +444,7 @@ boolean leaveSafeMode(boolean force) {
    */
   synchronized void incrementSafeBlockCount(int storageNum,
       BlockInfo storedBlock) {
-    assert namesystem.hasWriteLock();
+    assert namesystem.hasWriteLock(RwLockMode.BM);
     if (status == BMSafeModeStatus.OFF) {
       return;
     }
@@ -475,7 +476,7 @@ synchronized void incrementSafeBlockCount(int storageNum,
    * If safe mode is not currently on, this is a no-op.
    */
   synchronized void decrementSafeBlockCount(BlockInfo b) {
-    assert namesystem.hasWriteLock();
+    assert namesystem.hasWriteLock(RwLockMode.BM);
     if (status == BMSafeModeStatus.OFF) {
       return;
     }
@@ -498,7 +499,7 @@ synchronized void decrementSafeBlockCount(BlockInfo b) {
    * @param brr block report replica which belongs to no file in BlockManager
    */
   void checkBlocksWithFutureGS(BlockReportReplica brr) {
-    assert namesystem.hasWriteLock();
+    assert namesystem.hasWriteLock(RwLockMode.BM);
     if (status == BMSafeModeStatus.OFF) {
       return;
     }
@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs.BlockReportReplica;
+import org.apache.hadoop.hdfs.server.namenode.Namesystem;
+import org.apache.hadoop.hdfs.server.protocol.StorageBlockReport;
+import org.apache.hadoop.hdfs.util.RwLockMode;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Looks up the stored blocks of full block reports on a pool of worker
+ * threads, holding only the read lock, before the reports are queued for
+ * the block report processing thread. The lookups of the reports of
+ * different storages and datanodes run in parallel, so the processing
+ * thread only applies the changes under the write lock.
+ *
+ * Each stored block is checked again before it is used: a block deleted
+ * since it was looked up, or a replica that was not found, is looked up
+ * again under the write lock.
+ */
+@InterfaceAudience.Private
+public class BlockReportResolver {
+  static final Logger LOG = LoggerFactory.getLogger(BlockReportResolver.class);
+
+  /** The number of lookups between checks of the lock hold time. */
+  private static final int CHECK_INTERVAL = 1024;
+
+  /**
+   * The stored blocks of a block report, in the order of the report.
+   */
+  public static final class Resolution {
+    private final long clearCount;
+    private final BlockInfo[] storedBlocks;
+
+    Resolution(long clearCount, BlockInfo[] storedBlocks) {
+      this.clearCount = clearCount;
+      this.storedBlocks = storedBlocks;
+    }
+
+    /**
+     * @return the stored block of the i-th replica of the report, or null
+     *         if the lookup must be repeated.
+     */
+    BlockInfo getStoredBlock(int i) {
+      final BlockInfo storedBlock =
+          i < storedBlocks.length ? storedBlocks[i] : null;
+      // blocks are marked deleted before they leave the blocks map.
+      return storedBlock != null && !storedBlock.isDeleted()
+          ? storedBlock : null;
+    }
+
+    /**
+     * @return true if the blocks map was not cleared since the report was
+     *         resolved.
+     */
+    boolean isValid(long currentClearCount) {
+      return clearCount == currentClearCount;
+    }
+  }
+
+  private final BlockManager blockManager;
+  private final Namesystem namesystem;
+  private final long maxLockHoldTime;
+  private final ExecutorService executor;
+
+  BlockReportResolver(BlockManager blockManager, Namesystem namesystem,
+      int numThreads, long maxLockHoldTime) {
+    this.blockManager = blockManager;
+    this.namesystem = namesystem;
+    this.maxLockHoldTime = maxLockHoldTime;
+    this.executor = Executors.newFixedThreadPool(numThreads,
+        new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("Block report resolver #%d").build());
+  }
+
+  /**
+   * Resolve the given reports in parallel and wait for the results.
+   * @return the resolution of each report, with null for reports that
+   *         could not be resolved.
+   */
+  Resolution[] resolve(StorageBlockReport[] reports) {
+    List<Future<Resolution>> futures = new ArrayList<>(reports.length);
+    for (final StorageBlockReport report : reports) {
+      futures.add(executor.submit(new Callable<Resolution>() {
+        @Override
+        public Resolution call() {
+          return resolve(report.getBlocks());
+        }
+      }));
+    }
+    Resolution[] resolutions = new Resolution[reports.length];
+    for (int i = 0; i < resolutions.length; i++) {
+      try {
+        resolutions[i] = futures.get(i).get();
+      } catch (ExecutionException e) {
+        LOG.warn("Failed to resolve block report of {}",
+            reports[i].getStorage(), e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        for (Future<Resolution> future : futures) {
+          future.cancel(true);
+        }
+        return new Resolution[reports.length];
+      }
+    }
+    return resolutions;
+  }
+
+  /**
+   * Look up the stored block of every replica of the report, releasing the
+   * read lock after maxLockHoldTime.
+   * @return the resolution, or null if the blocks map was cleared while
+   *         the lock was released.
+   */
+  private Resolution resolve(BlockListAsLongs report) {
+    if (report == null) {
+      return null;
+    }
+    final BlockInfo[] storedBlocks = new BlockInfo[report.getNumberOfBlocks()];
+    final Iterator<BlockReportReplica> it = report.iterator();
+    long clearCount = -1;
+    int i = 0;
+    do {
+      namesystem.readLock(RwLockMode.BM);
+      try {
+        long currentClearCount = blockManager.getBlocksMapClearCount();
+        if (clearCount == -1) {
+          clearCount = currentClearCount;
+        } else if (clearCount != currentClearCount) {
+          return null;
+        }
+        long start = Time.monotonicNow();
+        while (it.hasNext() && i < storedBlocks.length) {
+          storedBlocks[i++] = blockManager.getStoredBlock(it.next());
+          if (i % CHECK_INTERVAL == 0
+              && Time.monotonicNow() - start > maxLockHoldTime) {
+            break;
+          }
+        }
+      } finally {
+        namesystem.readUnlock(RwLockMode.BM, "resolveBlockReport");
+      }
+    } while (it.hasNext() && i < storedBlocks.length);
+    return new Resolution(clearCount, storedBlocks);
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
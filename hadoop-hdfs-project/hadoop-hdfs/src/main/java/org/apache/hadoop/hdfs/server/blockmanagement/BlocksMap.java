@@ -71,6 +71,9 @@ public void remove()  {
   private final LongAdder totalReplicatedBlocks = new LongAdder();
   private final LongAdder totalECBlockGroups = new LongAdder();
 
+  /** The number of times the map was cleared so far. */
+  private long clearCount;
+
   BlocksMap(int capacity) {
     // Use 2% of total memory to size the GSet capacity
     this.capacity = capacity;
@@ -99,6 +102,7 @@ void close() {
   void clear() {
     if (blocks != null) {
       blocks.clear();
+      clearCount++;
       totalReplicatedBlocks.reset();
       totalECBlockGroups.reset();
     }
@@ -141,6 +145,15 @@ void removeBlock(BlockInfo block) {
     }
   }
 
+  /**
+   * @return the number of times the map was cleared so far. Blocks are
+   *         marked deleted before they are removed one by one, but not when
+   *         the whole map is cleared.
+   */
+  long getClearCount() {
+    return clearCount;
+  }
+
   /** Returns the block object if it exists in the map. */
   BlockInfo getStoredBlock(Block b) {
     return blocks.get(b);
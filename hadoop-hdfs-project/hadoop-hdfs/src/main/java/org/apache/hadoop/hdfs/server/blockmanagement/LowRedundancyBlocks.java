@@ -20,7 +20,6 @@
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -516,6 +515,22 @@ synchronized List<List<BlockInfo>> chooseLowRedundancyBlocks(
    */
   synchronized List<List<BlockInfo>> chooseLowRedundancyBlocks(
       int blocksToProcess, boolean resetIterators) {
+    return chooseLowRedundancyBlocks(blocksToProcess, resetIterators, null);
+  }
+
+  /**
+   * Same as {@link #chooseLowRedundancyBlocks(int, boolean)}, except that the
+   * deleted blocks are left in the queues and added to the given list, when
+   * it is not null. The queues are then not modified, so the caller need not
+   * hold the namesystem write lock which the iterators of the queues rely
+   * on; it removes the deleted blocks once it holds the lock.
+   *
+   * @param deletedBlocks - the list to add the deleted blocks to, or null to
+   *          remove them from the queues.
+   */
+  synchronized List<List<BlockInfo>> chooseLowRedundancyBlocks(
+      int blocksToProcess, boolean resetIterators,
+      List<BlockInfo> deletedBlocks) {
     final List<List<BlockInfo>> blocksToReconstruct = new ArrayList<>(LEVEL);
 
     int count = 0;
@@ -528,14 +543,18 @@ synchronized List<List<BlockInfo>> chooseLowRedundancyBlocks(
       // to look for deleted blocks if any.
       final boolean inCorruptLevel = (QUEUE_WITH_CORRUPT_BLOCKS == priority);
       final Iterator<BlockInfo> i = priorityQueues.get(priority).getBookmark();
-      final List<BlockInfo> blocks = new LinkedList<>();
+      final List<BlockInfo> blocks = new ArrayList<>();
       if (!inCorruptLevel) {
         blocksToReconstruct.add(blocks);
       }
       for(; count < blocksToProcess && i.hasNext(); count++) {
         BlockInfo block = i.next();
         if (block.isDeleted()) {
-          toRemove.add(block);
+          if (deletedBlocks != null) {
+            deletedBlocks.add(block);
+          } else {
+            toRemove.add(block);
+          }
           continue;
         }
         if (!inCorruptLevel) {
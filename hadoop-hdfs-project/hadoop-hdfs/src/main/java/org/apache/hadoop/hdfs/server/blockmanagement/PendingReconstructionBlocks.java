@@ -24,8 +24,8 @@
 import java.sql.Time;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -49,6 +49,10 @@
 class PendingReconstructionBlocks {
   private static final Logger LOG = BlockManager.LOG;
 
+  /**
+   * The pending reconstructions, ordered by their timestamps, so the oldest
+   * ones are at the head.
+   */
   private final Map<BlockInfo, PendingBlockInfo> pendingReconstructions;
   private final ArrayList<BlockInfo> timedOutItems;
   Daemon timerThread = null;
@@ -67,7 +71,7 @@ class PendingReconstructionBlocks {
     if ( timeoutPeriod > 0 ) {
       this.timeout = timeoutPeriod;
     }
-    pendingReconstructions = new HashMap<>();
+    pendingReconstructions = new LinkedHashMap<>();
     timedOutItems = new ArrayList<>();
   }
 
@@ -97,6 +101,9 @@ void increment(BlockInfo block, DatanodeStorageInfo... targets) {
       } else {
         found.incrementReplicas(targets);
         found.setTimeStamp();
+        // move it to the tail to keep the map ordered by timestamp.
+        pendingReconstructions.remove(block);
+        pendingReconstructions.put(block, found);
       }
     }
   }
@@ -272,7 +279,9 @@ public void run() {
     }
 
     /**
-     * Iterate through all items and detect timed-out items
+     * Iterate through the oldest items and detect timed-out items. The scan
+     * stops at the first item which has not timed out, so it does not hold
+     * the lock for all the pending reconstructions.
      */
     void pendingReconstructionCheck() {
       synchronized (pendingReconstructions) {
@@ -291,6 +300,8 @@ void pendingReconstructionCheck() {
             LOG.warn("PendingReconstructionMonitor timed out " + block);
             NameNode.getNameNodeMetrics().incTimeoutReReplications();
             iter.remove();
+          } else {
+            break;
           }
         }
       }
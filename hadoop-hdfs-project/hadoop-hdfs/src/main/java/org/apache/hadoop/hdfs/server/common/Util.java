@@ -35,11 +35,17 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.server.namenode.ImageServlet;
 import org.apache.hadoop.hdfs.server.protocol.StorageReport;
 import org.apache.hadoop.hdfs.util.DataTransferThrottler;
@@ -49,6 +55,7 @@
 import org.apache.hadoop.net.NetUtils;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.security.authentication.client.AuthenticationException;
+import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.Lists;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.Time;
@@ -72,6 +79,13 @@ public final class Util {
   public final static String CONTENT_TRANSFER_ENCODING = "Content-Transfer-Encoding";
 
   public final static int IO_FILE_BUFFER_SIZE;
+
+  /**
+   * Amount of received data after which it is flushed to disk in the
+   * background, so that the final fsync does not have to write back a whole
+   * image that may have accumulated in the page cache.
+   */
+  private static final long WRITE_BEHIND_BYTES;
   private static final boolean isSpnegoEnabled;
   public static final URLConnectionFactory connectionFactory;
 
@@ -81,6 +95,9 @@ public final class Util {
         .newDefaultURLConnectionFactory(conf);
     isSpnegoEnabled = UserGroupInformation.isSecurityEnabled();
     IO_FILE_BUFFER_SIZE = DFSUtilClient.getIoFileBufferSize(conf);
+    WRITE_BEHIND_BYTES = new HdfsConfiguration().getLongBytes(
+        DFSConfigKeys.DFS_IMAGE_TRANSFER_WRITE_BEHIND_SIZE_KEY,
+        DFSConfigKeys.DFS_IMAGE_TRANSFER_WRITE_BEHIND_SIZE_DEFAULT);
   }
 
   /**
@@ -201,6 +218,24 @@ public static MD5Hash receiveFile(String url, List<File> localPaths,
       MD5Hash advertisedDigest, String fsImageName, InputStream stream,
       DataTransferThrottler throttler) throws
       IOException {
+    return receiveFile(url, localPaths, dstStorage, getChecksum,
+        advertisedSize, advertisedDigest, fsImageName, stream, throttler,
+        WRITE_BEHIND_BYTES);
+  }
+
+  /**
+   * Receives file at the url location from the input stream and puts them in
+   * the specified destination storage location.
+   * @param writeBehindBytes amount of received data after which it is
+   *                         flushed to disk in the background, or 0 to only
+   *                         flush it once the file is received.
+   */
+  @VisibleForTesting
+  static MD5Hash receiveFile(String url, List<File> localPaths,
+      Storage dstStorage, boolean getChecksum, long advertisedSize,
+      MD5Hash advertisedDigest, String fsImageName, InputStream stream,
+      DataTransferThrottler throttler, long writeBehindBytes)
+      throws IOException {
     long startTime = Time.monotonicNow();
     Map<FileOutputStream, File> streamPathMap = new HashMap<>();
     StringBuilder xferStats = new StringBuilder();
@@ -233,6 +268,9 @@ public static MD5Hash receiveFile(String url, List<File> localPaths,
     int num = 1;
 
     List<FileOutputStream> outputStreams = Lists.newArrayList();
+    ExecutorService writeBehind = null;
+    Future<?> pendingSync = null;
+    long syncedUpTo = 0;
 
     try {
       if (localPaths != null) {
@@ -273,6 +311,18 @@ public static MD5Hash receiveFile(String url, List<File> localPaths,
           if (throttler != null) {
             throttler.throttle(num);
           }
+          if (!outputStreams.isEmpty() && writeBehindBytes > 0 &&
+              received - syncedUpTo >= writeBehindBytes &&
+              (pendingSync == null || pendingSync.isDone())) {
+            if (writeBehind == null) {
+              writeBehind = Executors.newSingleThreadExecutor(
+                  new Daemon.DaemonFactory());
+            }
+            final List<FileOutputStream> toSync =
+                new ArrayList<>(outputStreams);
+            pendingSync = writeBehind.submit(() -> syncQuietly(toSync));
+            syncedUpTo = received;
+          }
         }
       }
       finishedReceiving = true;
@@ -285,17 +335,30 @@ public static MD5Hash receiveFile(String url, List<File> localPaths,
               xferSec, xferKb / xferSec));
     } finally {
       stream.close();
-      for (FileOutputStream fos : outputStreams) {
-        long flushStartTime = Time.monotonicNow();
-        fos.getChannel().force(true);
-        fos.close();
-        double writeSec = Math.max(((float)
-            (Time.monotonicNow() - flushStartTime)) / 1000.0, 0.001);
-        xferCombined += writeSec;
-        xferStats.append(String
-            .format(" Synchronous (fsync) write to disk of " +
-                streamPathMap.get(fos).getAbsolutePath() +
-                " took %.2fs.", writeSec));
+      // an interrupt would close the files in the middle of the fsync, so it
+      // is only restored once the files are synced.
+      boolean interrupted = Thread.interrupted();
+      try {
+        if (writeBehind != null) {
+          interrupted |= awaitQuietly(pendingSync);
+          writeBehind.shutdown();
+        }
+        for (FileOutputStream fos : outputStreams) {
+          long flushStartTime = Time.monotonicNow();
+          fos.getChannel().force(true);
+          fos.close();
+          double writeSec = Math.max(((float)
+              (Time.monotonicNow() - flushStartTime)) / 1000.0, 0.001);
+          xferCombined += writeSec;
+          xferStats.append(String
+              .format(" Synchronous (fsync) write to disk of " +
+                  streamPathMap.get(fos).getAbsolutePath() +
+                  " took %.2fs.", writeSec));
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
       }
 
       // Something went wrong and did not finish reading.
@@ -334,6 +397,38 @@ public static MD5Hash receiveFile(String url, List<File> localPaths,
     }
   }
 
+  /**
+   * Flush the data written so far to disk. Failures are only logged, the
+   * final fsync of the file reports them.
+   */
+  private static void syncQuietly(List<FileOutputStream> streams) {
+    for (FileOutputStream fos : streams) {
+      try {
+        fos.getChannel().force(false);
+      } catch (IOException e) {
+        LOG.debug("Background sync of a downloaded file failed", e);
+      }
+    }
+  }
+
+  /**
+   * Wait for a background sync to finish.
+   * @return true if the wait was interrupted.
+   */
+  private static boolean awaitQuietly(Future<?> future) {
+    if (future == null) {
+      return false;
+    }
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      return true;
+    } catch (ExecutionException e) {
+      LOG.debug("Background sync of a downloaded file failed", e);
+    }
+    return false;
+  }
+
   private static void deleteTmpFiles(List<File> files) {
     if (files == null) {
       return;
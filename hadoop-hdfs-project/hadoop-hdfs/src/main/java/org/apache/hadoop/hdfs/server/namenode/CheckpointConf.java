@@ -42,6 +42,15 @@ public class CheckpointConf {
   /** checkpoint once every this many transactions, regardless of time */
   private final long checkpointTxnCount;
 
+  /**
+   * minimum uncheckpointed txns, relative to the namespace size, for a
+   * periodic checkpoint
+   */
+  private final double minChurnRatio;
+
+  /** longest a periodic checkpoint may be deferred for low churn */
+  private final long maxCheckpointPeriod; // in seconds
+
   /** maxium number of retries when merge errors occur */
   private final int maxRetriesOnMergeError;
 
@@ -63,6 +72,11 @@ public CheckpointConf(Configuration conf) {
         DFS_NAMENODE_CHECKPOINT_PERIOD_DEFAULT, TimeUnit.SECONDS);
     checkpointTxnCount = conf.getLong(DFS_NAMENODE_CHECKPOINT_TXNS_KEY, 
                                   DFS_NAMENODE_CHECKPOINT_TXNS_DEFAULT);
+    minChurnRatio = conf.getDouble(DFS_NAMENODE_CHECKPOINT_MIN_CHURN_RATIO_KEY,
+        DFS_NAMENODE_CHECKPOINT_MIN_CHURN_RATIO_DEFAULT);
+    maxCheckpointPeriod = conf.getTimeDuration(
+        DFS_NAMENODE_CHECKPOINT_MAX_PERIOD_KEY,
+        DFS_NAMENODE_CHECKPOINT_MAX_PERIOD_DEFAULT, TimeUnit.SECONDS);
     maxRetriesOnMergeError = conf.getInt(DFS_NAMENODE_CHECKPOINT_MAX_RETRIES_KEY,
                                   DFS_NAMENODE_CHECKPOINT_MAX_RETRIES_DEFAULT);
     legacyOivImageDir = conf.get(DFS_NAMENODE_LEGACY_OIV_IMAGE_DIR_KEY);
@@ -95,6 +109,31 @@ public long getTxnCount() {
     return checkpointTxnCount;
   }
 
+  public double getMinChurnRatio() {
+    return minChurnRatio;
+  }
+
+  public long getMaxPeriod() {
+    return maxCheckpointPeriod;
+  }
+
+  /**
+   * Whether a checkpoint that is due because of the checkpoint period should
+   * be deferred, since too few transactions touched the namespace to make
+   * rewriting the whole image worthwhile.
+   *
+   * @param uncheckpointedTxns txns since the last checkpoint.
+   * @param namespaceObjects files, directories and blocks in the namespace.
+   * @param secsSinceLast seconds since the last checkpoint.
+   */
+  public boolean shouldDeferPeriodicCheckpoint(long uncheckpointedTxns,
+      long namespaceObjects, long secsSinceLast) {
+    if (minChurnRatio <= 0 || secsSinceLast >= maxCheckpointPeriod) {
+      return false;
+    }
+    return uncheckpointedTxns < minChurnRatio * namespaceObjects;
+  }
+
   public int getMaxRetriesOnMergeError() {
     return maxRetriesOnMergeError;
   }
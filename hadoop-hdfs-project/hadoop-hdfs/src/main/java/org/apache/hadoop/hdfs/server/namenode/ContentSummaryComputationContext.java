@@ -22,6 +22,7 @@
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.fs.permission.FsAction;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockStoragePolicySuite;
+import org.apache.hadoop.hdfs.util.ReadOnlyList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.fs.XAttr;
@@ -31,6 +32,12 @@
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import static org.apache.hadoop.hdfs.server.common.HdfsServerConstants.XATTR_ERASURECODING_POLICY;
 
 @InterfaceAudience.Private
@@ -44,8 +51,15 @@ public class ContentSummaryComputationContext {
   private long nextCountLimit = 0;
   private long limitPerRun = 0;
   private long yieldCount = 0;
+  private long sleepMicroSec = 0;
   private long sleepMilliSec = 0;
   private int sleepNanoSec = 0;
+  // only the first directory of a computation fans out its children.
+  private boolean mayFanOut = true;
+  private boolean interrupted = false;
+
+  /** The number of ranges of children per thread of the pool. */
+  private static final int RANGES_PER_THREAD = 4;
 
   public static final String REPLICATED = "Replicated";
   public static final Logger LOG = LoggerFactory
@@ -75,6 +89,7 @@ public ContentSummaryComputationContext(FSDirectory dir,
     this.nextCountLimit = limitPerRun;
     this.counts = new ContentCounts.Builder().build();
     this.snapshotCounts = new ContentCounts.Builder().build();
+    this.sleepMicroSec = sleepMicroSec;
     this.sleepMilliSec = sleepMicroSec/1000;
     this.sleepNanoSec = (int)((sleepMicroSec%1000)*1000);
     this.pc = pc;
@@ -116,35 +131,194 @@ public boolean yield() {
     // Update the next limit
     nextCountLimit = currentCount + limitPerRun;
 
+    if (!canRelinquishLocks()) {
+      return false;
+    }
+
+    // unlock
+    dir.readUnlock();
+    fsn.readUnlock("contentSummary");
+
+    try {
+      Thread.sleep(sleepMilliSec, sleepNanoSec);
+    } catch (InterruptedException ie) {
+    } finally {
+      // reacquire
+      fsn.readLock();
+      dir.readLock();
+    }
+    yieldCount++;
+    return true;
+  }
+
+  /**
+   * @return true if the calling thread holds exactly one read lock on both
+   * the namesystem and the directory, so they can be released temporarily.
+   */
+  private boolean canRelinquishLocks() {
     boolean hadDirReadLock = dir.hasReadLock();
     boolean hadDirWriteLock = dir.hasWriteLock();
     boolean hadFsnReadLock = fsn.hasReadLock();
     boolean hadFsnWriteLock = fsn.hasWriteLock();
 
     // sanity check.
-    if (!hadDirReadLock || !hadFsnReadLock || hadDirWriteLock ||
-        hadFsnWriteLock || dir.getReadHoldCount() != 1 ||
-        fsn.getReadHoldCount() != 1) {
-      // cannot relinquish
+    return hadDirReadLock && hadFsnReadLock && !hadDirWriteLock &&
+        !hadFsnWriteLock && dir.getReadHoldCount() == 1 &&
+        fsn.getReadHoldCount() == 1;
+  }
+
+  /**
+   * Compute the content summary of the children of the given directory on
+   * the content summary pool, split into a few ranges of children per thread
+   * of the pool.  Each task takes the read locks once for its range and
+   * yields them on its own, while the calling thread releases its
+   * locks until all tasks are done, so the counts may be off just like after
+   * a yield.  Only a subtree with at least the configured number of inodes
+   * is computed in parallel, as told by its quota usage when the directory
+   * has a quota, or else by its number of children; a smaller subtree is
+   * computed faster in place.
+   *
+   * @return false if the children were not computed, because no pool is
+   *         configured, yielding is disabled, the subtree is too small or a
+   *         directory closer to where the computation started already fanned
+   *         out.
+   */
+  boolean computeInParallel(final INodeDirectory parent,
+      final ReadOnlyList<INode> children, final int snapshotId)
+      throws AccessControlException {
+    if (!mayFanOut) {
+      return false;
+    }
+    final ForkJoinPool pool = dir != null ? dir.getContentSummaryPool() : null;
+    if (pool == null || limitPerRun <= 0 || !canRelinquishLocks()) {
+      mayFanOut = false;
+      return false;
+    }
+    if (children.size() < 2 || getSubtreeSize(parent, children) <
+        dir.getContentSummaryParallelThreshold()) {
+      // nothing to gain here, but a larger subtree below may fan out.
       return false;
     }
+    mayFanOut = false;
 
-    // unlock
+    // the tasks look the children up again once they hold the locks, since
+    // the children may be removed as soon as the locks are released.
+    final String opType = FSPermissionChecker.getOperationType();
+    final byte[][] names = new byte[children.size()][];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = children.get(i).getLocalNameBytes();
+    }
+    final int numRanges = Math.min(names.length,
+        pool.getParallelism() * RANGES_PER_THREAD);
+    List<Future<ContentSummaryComputationContext>> tasks =
+        new ArrayList<>(numRanges);
+    for (int r = 0; r < numRanges; r++) {
+      final int from = (int) ((long) names.length * r / numRanges);
+      final int to = (int) ((long) names.length * (r + 1) / numRanges);
+      tasks.add(pool.submit(() -> computeChildren(parent, names, from, to,
+          snapshotId, opType)));
+    }
+
+    // release the locks, so that the tasks can take turns with writers.
     dir.readUnlock();
     fsn.readUnlock("contentSummary");
-
+    AccessControlException ace = null;
     try {
-      Thread.sleep(sleepMilliSec, sleepNanoSec);
-    } catch (InterruptedException ie) {
+      for (Future<ContentSummaryComputationContext> task : tasks) {
+        ContentSummaryComputationContext c;
+        try {
+          c = task.get();
+        } catch (InterruptedException ie) {
+          for (Future<ContentSummaryComputationContext> t : tasks) {
+            t.cancel(false);
+          }
+          // the counts are incomplete, the caller fails the computation.
+          interrupted = true;
+          break;
+        } catch (ExecutionException ee) {
+          final Throwable cause = ee.getCause();
+          if (cause instanceof AccessControlException) {
+            ace = (AccessControlException) cause;
+            continue;
+          } else if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          } else if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(
+              "Failed to compute content summary", cause);
+        }
+        counts.addContents(c.getCounts());
+        snapshotCounts.addContents(c.getSnapshotCounts());
+        yieldCount += c.getYieldCount();
+      }
     } finally {
-      // reacquire
       fsn.readLock();
       dir.readLock();
     }
     yieldCount++;
+    if (ace != null) {
+      throw ace;
+    }
     return true;
   }
 
+  private static long getSubtreeSize(INodeDirectory parent,
+      ReadOnlyList<INode> children) {
+    final DirectoryWithQuotaFeature q = parent.getDirectoryWithQuotaFeature();
+    return q != null ?
+        q.getSpaceConsumed().getNameSpace() : children.size();
+  }
+
+  /**
+   * Compute the content summary of the children with the names in
+   * [from, to), holding the read locks once for all of them.
+   */
+  private ContentSummaryComputationContext computeChildren(
+      INodeDirectory parent, byte[][] names, int from, int to,
+      int snapshotId, String opType) throws AccessControlException {
+    FSPermissionChecker.setOperationType(opType);
+    ContentSummaryComputationContext c = new ContentSummaryComputationContext(
+        dir, fsn, limitPerRun, sleepMicroSec, pc);
+    c.bsps = bsps;
+    c.mayFanOut = false;
+    fsn.readLock();
+    dir.readLock();
+    try {
+      // skip the children removed while no lock was held, like a yield.
+      for (int i = from; i < to
+          && (parent.isRoot() || parent.getParent() != null); i++) {
+        final INode child = parent.getChild(names[i], snapshotId);
+        if (child != null) {
+          child.computeContentSummary(snapshotId, c);
+        }
+      }
+    } finally {
+      dir.readUnlock();
+      fsn.readUnlock("contentSummary");
+    }
+    return c;
+  }
+
+  /**
+   * @return true if the computation was interrupted while it waited for
+   *         the subtrees computed in parallel, so the counts are incomplete.
+   */
+  public boolean isInterrupted() {
+    return interrupted;
+  }
+
+  /**
+   * @throws InterruptedIOException if the computation was interrupted.
+   */
+  void checkInterrupted() throws InterruptedIOException {
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while computing the content summary");
+    }
+  }
+
   /** Get the content counts */
   public ContentCounts getCounts() {
     return counts;
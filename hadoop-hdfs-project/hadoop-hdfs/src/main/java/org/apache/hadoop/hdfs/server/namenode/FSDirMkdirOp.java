@@ -218,8 +218,8 @@ private static INodesInPath unprotectedMkdir(FSDirectory fsd, long inodeId,
       throw new FileAlreadyExistsException("Parent path is not a directory: " +
           parent.getPath() + " " + DFSUtil.bytes2String(name));
     }
-    final INodeDirectory dir = new INodeDirectory(inodeId, name, permission,
-        timestamp);
+    final INodeDirectory dir = new INodeDirectory(inodeId,
+        fsd.internName(name), permission, timestamp);
 
     INodesInPath iip =
         fsd.addLastINode(parent, dir, permission.getPermission(), true);
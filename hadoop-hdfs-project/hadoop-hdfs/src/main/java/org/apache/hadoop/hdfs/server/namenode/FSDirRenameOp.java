@@ -735,7 +735,7 @@ long removeDst() {
 
     INodesInPath addSourceToDestination() {
       final INode dstParent = dstParentIIP.getLastINode();
-      final byte[] dstChildName = dstIIP.getLastLocalName();
+      final byte[] dstChildName = fsd.internName(dstIIP.getLastLocalName());
       final INode toDst;
       if (withCount == null) {
         srcChild.setLocalName(dstChildName);
@@ -45,8 +45,10 @@
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.List;
 
 import static org.apache.hadoop.util.Time.now;
 
@@ -261,26 +263,9 @@ private static DirectoryListing getListing(FSDirectory fsd, INodesInPath iip,
         listing[i] = createFileStatus(fsd, iip, child, childStoragePolicy,
             needLocation, false);
         listingCnt++;
-        if (listing[i] instanceof HdfsLocatedFileStatus) {
-          // Once we hit lsLimit locations, stop.
-          // This helps to prevent excessively large response payloads.
-          LocatedBlocks blks =
-              ((HdfsLocatedFileStatus) listing[i]).getLocatedBlocks();
-          if (blks != null) {
-            ErasureCodingPolicy ecPolicy = listing[i].getErasureCodingPolicy();
-            if (ecPolicy != null && !ecPolicy.isReplicationPolicy()) {
-              // Approximate #locations with locatedBlockCount() *
-              // internalBlocksNum.
-              locationBudget -= blks.locatedBlockCount() *
-                  (ecPolicy.getNumDataUnits() + ecPolicy.getNumParityUnits());
-            } else {
-              // Approximate #locations with locatedBlockCount() *
-              // replicationFactor.
-              locationBudget -=
-                  blks.locatedBlockCount() * listing[i].getReplication();
-            }
-          }
-        }
+        // Once we hit lsLimit locations, stop.
+        // This helps to prevent excessively large response payloads.
+        locationBudget -= getNumLocations(listing[i]);
       }
       // truncate return array if necessary
       if (listingCnt < numOfListing) {
@@ -293,6 +278,194 @@ private static DirectoryListing getListing(FSDirectory fsd, INodesInPath iip,
     }
   }
 
+  /**
+   * @return the approximate number of block locations of the file status.
+   */
+  private static int getNumLocations(HdfsFileStatus status) {
+    if (!(status instanceof HdfsLocatedFileStatus)) {
+      return 0;
+    }
+    LocatedBlocks blks = ((HdfsLocatedFileStatus) status).getLocatedBlocks();
+    if (blks == null) {
+      return 0;
+    }
+    ErasureCodingPolicy ecPolicy = status.getErasureCodingPolicy();
+    if (ecPolicy != null && !ecPolicy.isReplicationPolicy()) {
+      // Approximate #locations with locatedBlockCount() *
+      // internalBlocksNum.
+      return blks.locatedBlockCount() *
+          (ecPolicy.getNumDataUnits() + ecPolicy.getNumParityUnits());
+    }
+    // Approximate #locations with locatedBlockCount() *
+    // replicationFactor.
+    return blks.locatedBlockCount() * status.getReplication();
+  }
+
+  /**
+   * Get a partial recursive listing of the indicated directory, in
+   * depth-first pre-order. The local name of each returned status is its
+   * path relative to the directory.
+   *
+   * We will stop when any of the following conditions is met:
+   * 1) this.recursiveLsLimit files have been added
+   * 2) needLocation is true AND enough files have been added such
+   * that at least this.recursiveLsLimit block locations are in the response
+   *
+   * The caller resumes the listing with the last returned relative path,
+   * so the lock is only held for one batch at a time.
+   *
+   * @param fsd FSDirectory
+   * @param pc The permission checker
+   * @param srcArg The string representation of the path to the directory
+   * @param startAfter the relative path to start listing after
+   * @param needLocation if block locations are returned
+   * @return a partial listing starting after startAfter
+   */
+  static DirectoryListing getRecursiveListingInt(FSDirectory fsd,
+      FSPermissionChecker pc, final String srcArg, byte[] startAfter,
+      boolean needLocation) throws IOException {
+    final INodesInPath iip = fsd.resolvePath(pc, srcArg, DirOp.READ);
+    if (FSDirectory.isExactReservedName(iip.getPathComponents())
+        || iip.isDotSnapshotDir()) {
+      throw new IOException(
+          "Recursive listing is not supported for " + srcArg);
+    }
+
+    fsd.readLock();
+    try {
+      final INode targetNode = iip.getLastINode();
+      if (targetNode == null) {
+        return null;
+      }
+
+      byte parentStoragePolicy = targetNode.getStoragePolicyID();
+
+      if (!targetNode.isDirectory()) {
+        if (startAfter.length > 0) {
+          return new DirectoryListing(new HdfsFileStatus[0], 0);
+        }
+        return new DirectoryListing(
+            new HdfsFileStatus[]{ createFileStatus(
+                fsd, iip, null, parentStoragePolicy, needLocation, false)
+            }, 0);
+      }
+
+      final byte[][] cursor = startAfter.length == 0 ? null
+          : DFSUtil.bytes2byteArray(startAfter, (byte) Path.SEPARATOR_CHAR);
+      final RecursiveListing listing = new RecursiveListing(
+          fsd.getRecursiveLsLimit(), needLocation);
+      final boolean complete = listRecursively(fsd, pc, iip,
+          HdfsFileStatus.EMPTY_NAME, cursor, 0, parentStoragePolicy,
+          listing);
+      return new DirectoryListing(listing.toArray(), complete ? 0 : 1);
+    } finally {
+      fsd.readUnlock();
+    }
+  }
+
+  /** The statuses of a recursive listing and its remaining budget. */
+  private static final class RecursiveListing {
+    private final List<HdfsFileStatus> statuses = new ArrayList<>();
+    private final int limit;
+    private final boolean needLocation;
+    private int locationBudget;
+
+    RecursiveListing(int limit, boolean needLocation) {
+      this.limit = limit;
+      this.needLocation = needLocation;
+      this.locationBudget = limit;
+    }
+
+    boolean isFull() {
+      return statuses.size() >= limit || locationBudget <= 0;
+    }
+
+    void add(HdfsFileStatus status) {
+      statuses.add(status);
+      locationBudget -= getNumLocations(status);
+    }
+
+    HdfsFileStatus[] toArray() {
+      return statuses.toArray(new HdfsFileStatus[statuses.size()]);
+    }
+  }
+
+  /**
+   * List the subtree of the last inode of the iip, skipping the entries up
+   * to the cursor.
+   *
+   * @param prefix the path of the directory relative to the listed one
+   * @param cursor the components of the relative path to start after, or
+   *               null to list the whole directory
+   * @param depth the index of the cursor component of this directory
+   * @return true if the whole subtree has been listed, false if the listing
+   *         is full.
+   */
+  private static boolean listRecursively(FSDirectory fsd,
+      FSPermissionChecker pc, INodesInPath iip, byte[] prefix,
+      byte[][] cursor, int depth, byte storagePolicy,
+      RecursiveListing listing) throws IOException {
+    if (fsd.isPermissionEnabled()) {
+      fsd.checkPathAccess(pc, iip, FsAction.READ_EXECUTE);
+    }
+    final ReadOnlyList<INode> contents = iip.getLastINode().asDirectory()
+        .getChildrenList(iip.getPathSnapshotId());
+    int startChild = 0;
+    if (cursor != null && depth < cursor.length) {
+      final int index = ReadOnlyList.Util.binarySearch(contents,
+          cursor[depth]);
+      if (index >= 0) {
+        // the child has been listed, but maybe not all of its subtree.
+        final INode child = contents.get(index);
+        if (child.isDirectory() && !listRecursively(fsd, pc,
+            INodesInPath.append(iip, child, child.getLocalNameBytes()),
+            getRelativeName(prefix, child), cursor, depth + 1,
+            getStoragePolicyID(child.getLocalStoragePolicyID(),
+                storagePolicy), listing)) {
+          return false;
+        }
+        startChild = index + 1;
+      } else {
+        // the child has been deleted since, continue with the next one.
+        startChild = -index - 1;
+      }
+    }
+
+    for (int i = startChild; i < contents.size(); i++) {
+      if (listing.isFull()) {
+        return false;
+      }
+      final INode child = contents.get(i);
+      final byte[] name = getRelativeName(prefix, child);
+      final byte childStoragePolicy =
+          !child.isSymlink()
+              ? getStoragePolicyID(child.getLocalStoragePolicyID(),
+                  storagePolicy)
+              : storagePolicy;
+      listing.add(createFileStatus(fsd, iip, child, name, childStoragePolicy,
+          listing.needLocation, false));
+      if (child.isDirectory() && !listRecursively(fsd, pc,
+          INodesInPath.append(iip, child, child.getLocalNameBytes()),
+          name, null, depth + 1, childStoragePolicy, listing)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] getRelativeName(byte[] prefix, INode child) {
+    final byte[] localName = child.getLocalNameBytes();
+    if (prefix.length == 0) {
+      return localName;
+    }
+    final byte[] name = new byte[prefix.length + 1 + localName.length];
+    System.arraycopy(prefix, 0, name, 0, prefix.length);
+    name[prefix.length] = (byte) Path.SEPARATOR_CHAR;
+    System.arraycopy(localName, 0, name, prefix.length + 1,
+        localName.length);
+    return name;
+  }
+
   /**
    * Get a listing of all the snapshots of a snapshottable directory
    */
@@ -411,13 +584,28 @@ static HdfsFileStatus createFileStatusForEditLog(
   private static HdfsFileStatus createFileStatus(
       FSDirectory fsd, INodesInPath iip, INode child, byte storagePolicy,
       boolean needLocation, boolean needBlockToken) throws IOException {
-    assert fsd.hasReadLock();
     // only directory listing sets the status name.
-    byte[] name = HdfsFileStatus.EMPTY_NAME;
+    byte[] name = child != null
+        ? child.getLocalNameBytes() : HdfsFileStatus.EMPTY_NAME;
+    return createFileStatus(fsd, iip, child, name, storagePolicy,
+        needLocation, needBlockToken);
+  }
+
+  /**
+   * create a hdfs file status with the given name from an iip.
+   *
+   * @param name the local name of the file status
+   * @see #createFileStatus(FSDirectory, INodesInPath, INode, byte, boolean,
+   *      boolean)
+   */
+  private static HdfsFileStatus createFileStatus(
+      FSDirectory fsd, INodesInPath iip, INode child, byte[] name,
+      byte storagePolicy, boolean needLocation, boolean needBlockToken)
+      throws IOException {
+    assert fsd.hasReadLock();
     if (child != null) {
-      name = child.getLocalNameBytes();
       // have to do this for EC and EZ lookups...
-      iip = INodesInPath.append(iip, child, name);
+      iip = INodesInPath.append(iip, child, child.getLocalNameBytes());
     }
 
     long size = 0;     // length is zero for directories
@@ -536,6 +724,7 @@ private static ContentSummary getContentSummaryInt(FSDirectory fsd,
         ContentSummary cs = targetNode.computeAndConvertContentSummary(
             iip.getPathSnapshotId(), cscc);
         fsd.addYieldCount(cscc.getYieldCount());
+        cscc.checkInterrupted();
         return cs;
       }
     } finally {
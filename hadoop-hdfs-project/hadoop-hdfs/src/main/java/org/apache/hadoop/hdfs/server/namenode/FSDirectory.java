@@ -63,6 +63,7 @@
 import org.apache.hadoop.hdfs.util.ByteArray;
 import org.apache.hadoop.hdfs.util.EnumCounters;
 import org.apache.hadoop.hdfs.util.ReadOnlyList;
+import org.apache.hadoop.hdfs.util.RwLockMode;
 import org.apache.hadoop.security.AccessControlException;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.util.Time;
@@ -159,8 +160,13 @@ private static INodeDirectory createRoot(FSNamesystem namesystem) {
   private final int maxComponentLength;
   private final int maxDirItems;
   private final int lsLimit;  // max list limit
+  private final int recursiveLsLimit;  // max recursive list limit
   private final int contentCountLimit; // max content summary counts per run
   private final long contentSleepMicroSec;
+  // shared by concurrent content summary computations, null if disabled.
+  private final ForkJoinPool contentSummaryPool;
+  // min inodes of a subtree computed on the pool.
+  private final long contentSummaryParallelThreshold;
   private final INodeMap inodeMap; // Synchronized by dirLock
   private long yieldCount = 0; // keep track of lock yield count.
   private int quotaInitThreads;
@@ -261,27 +267,28 @@ public void setINodeAttributeProvider(
    * remain as placeholders only
    */
   void readLock() {
-    assert namesystem.hasReadLock() : "Should hold namesystem read lock";
+    assert hasReadLock() : "Should hold namesystem read lock";
   }
 
   void readUnlock() {
-    assert namesystem.hasReadLock() : "Should hold namesystem read lock";
+    assert hasReadLock() : "Should hold namesystem read lock";
   }
 
   void writeLock() {
-    assert namesystem.hasWriteLock() : "Should hold namesystem write lock";
+    assert hasWriteLock() : "Should hold namesystem write lock";
   }
 
   void writeUnlock() {
-    assert namesystem.hasWriteLock() : "Should hold namesystem write lock";
+    assert hasWriteLock() : "Should hold namesystem write lock";
   }
 
+  /** The namespace only needs the namespace domain of the lock. */
   boolean hasWriteLock() {
-    return namesystem.hasWriteLock();
+    return namesystem.hasWriteLock(RwLockMode.FS);
   }
 
   boolean hasReadLock() {
-    return namesystem.hasReadLock();
+    return namesystem.hasReadLock(RwLockMode.FS);
   }
 
   @Deprecated // dirLock is obsolete, use namesystem.fsLock instead
@@ -306,6 +313,8 @@ public int getListLimit() {
    * byte[] objects and reduce heap usage.
    */
   private final NameCache<ByteArray> nameCache;
+  /** Shares the local names of all inodes, if enabled. */
+  private final NameDictionary nameDictionary;
 
   // used to specify path resolution type. *_LINK will return symlinks instead
   // of throwing an unresolved exception
@@ -369,12 +378,26 @@ public enum DirOp {
         DFSConfigKeys.DFS_LIST_LIMIT, DFSConfigKeys.DFS_LIST_LIMIT_DEFAULT);
     this.lsLimit = configuredLimit>0 ?
         configuredLimit : DFSConfigKeys.DFS_LIST_LIMIT_DEFAULT;
+    int configuredRecursiveLimit = conf.getInt(
+        DFSConfigKeys.DFS_LIST_RECURSIVE_LIMIT,
+        DFSConfigKeys.DFS_LIST_RECURSIVE_LIMIT_DEFAULT);
+    this.recursiveLsLimit = configuredRecursiveLimit > 0 ?
+        configuredRecursiveLimit
+        : DFSConfigKeys.DFS_LIST_RECURSIVE_LIMIT_DEFAULT;
     this.contentCountLimit = conf.getInt(
         DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_KEY,
         DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_DEFAULT);
     this.contentSleepMicroSec = conf.getLong(
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_KEY,
         DFSConfigKeys.DFS_CONTENT_SUMMARY_SLEEP_MICROSEC_DEFAULT);
+    int contentSummaryThreads = conf.getInt(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLEL_THREADS_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLEL_THREADS_DEFAULT);
+    this.contentSummaryPool = contentSummaryThreads > 0 ?
+        new ForkJoinPool(contentSummaryThreads) : null;
+    this.contentSummaryParallelThreshold = conf.getLong(
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLEL_THRESHOLD_KEY,
+        DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLEL_THRESHOLD_DEFAULT);
     
     // filesystem limits
     this.maxComponentLength = (int) conf.getLongBytes(
@@ -414,6 +437,13 @@ public enum DirOp {
     NameNode.LOG.info("Caching file names occurring more than " + threshold
         + " times");
     nameCache = new NameCache<ByteArray>(threshold);
+    if (conf.getBoolean(DFSConfigKeys.DFS_NAMENODE_NAME_DICTIONARY_ENABLED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_NAME_DICTIONARY_ENABLED_DEFAULT)) {
+      NameNode.LOG.info("Sharing the names of all inodes");
+      nameDictionary = new NameDictionary();
+    } else {
+      nameDictionary = null;
+    }
     namesystem = ns;
     this.editLog = ns.getEditLog();
     ezManager = new EncryptionZoneManager(this, conf);
@@ -642,6 +672,10 @@ int getLsLimit() {
     return lsLimit;
   }
 
+  int getRecursiveLsLimit() {
+    return recursiveLsLimit;
+  }
+
   int getContentCountLimit() {
     return contentCountLimit;
   }
@@ -650,6 +684,14 @@ long getContentSleepMicroSec() {
     return contentSleepMicroSec;
   }
 
+  ForkJoinPool getContentSummaryPool() {
+    return contentSummaryPool;
+  }
+
+  long getContentSummaryParallelThreshold() {
+    return contentSummaryParallelThreshold;
+  }
+
   int getInodeXAttrsLimit() {
     return inodeXAttrsLimit;
   }
@@ -1597,6 +1639,9 @@ void reset() {
       inodeMap.clear();
       addToInodeMap(rootDir);
       nameCache.reset();
+      if (nameDictionary != null) {
+        nameDictionary.clear();
+      }
       inodeId.setCurrentValue(INodeId.LAST_RESERVED_ID);
     } finally {
       writeUnlock();
@@ -1613,9 +1658,18 @@ static INode resolveLastINode(INodesInPath iip) throws FileNotFoundException {
 
   /**
    * Caches frequently used file names to reuse file name objects and
-   * reduce heap size.
+   * reduce heap size. With the name dictionary enabled, the names of all
+   * inodes are shared instead.
    */
   void cacheName(INode inode) {
+    if (nameDictionary != null) {
+      final byte[] name = inode.getLocalNameBytes();
+      final byte[] internal = nameDictionary.intern(name);
+      if (internal != name) {
+        inode.setLocalName(internal);
+      }
+      return;
+    }
     // Name is cached only for files
     if (!inode.isFile()) {
       return;
@@ -1627,9 +1681,28 @@ void cacheName(INode inode) {
     }
   }
   
+  /**
+   * @return the shared instance of the given local name if the name
+   *         dictionary is enabled, otherwise the name itself.
+   */
+  byte[] internName(byte[] name) {
+    return nameDictionary != null ? nameDictionary.intern(name) : name;
+  }
+
+  /** @return the name dictionary, or null if it is disabled. */
+  NameDictionary getNameDictionary() {
+    return nameDictionary;
+  }
+
   void shutdown() {
     nameCache.reset();
+    if (nameDictionary != null) {
+      nameDictionary.clear();
+    }
     inodeMap.clear();
+    if (contentSummaryPool != null) {
+      contentSummaryPool.shutdownNow();
+    }
   }
   
   /**
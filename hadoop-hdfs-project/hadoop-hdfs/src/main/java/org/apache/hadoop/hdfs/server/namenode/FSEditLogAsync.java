@@ -25,6 +25,7 @@
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -57,6 +58,13 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
 
   private long lastFull = 0;
 
+  // only accessed by syncing thread.  tracks the edits waiting in syncWaitQ
+  // that block their caller, and when the current batch started.
+  private final GroupCommitPolicy groupCommit;
+  private int blockingEditsInBatch = 0;
+  private long batchStartNanos = 0;
+  private long batchWaitNanos = 0;
+
   FSEditLogAsync(Configuration conf, NNStorage storage, List<URI> editsDirs) {
     super(conf, storage, editsDirs);
     // op instances cannot be shared due to queuing for background thread.
@@ -67,6 +75,13 @@ class FSEditLogAsync extends FSEditLog implements Runnable {
             DFS_NAMENODE_EDITS_ASYNC_LOGGING_PENDING_QUEUE_SIZE_DEFAULT);
 
     editPendingQ = new ArrayBlockingQueue<>(editPendingQSize);
+    long groupCommitMaxWaitMs = conf.getTimeDuration(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS,
+        DFSConfigKeys.
+            DFS_NAMENODE_EDITS_ASYNC_LOGGING_GROUP_COMMIT_MAX_WAIT_MS_DEFAULT,
+        TimeUnit.MILLISECONDS);
+    groupCommit = new GroupCommitPolicy(
+        TimeUnit.MILLISECONDS.toNanos(groupCommitMaxWaitMs));
   }
 
   private boolean isSyncThreadAlive() {
@@ -238,7 +253,23 @@ private void enqueueEdit(Edit edit) {
 
   private Edit dequeueEdit() throws InterruptedException {
     // only block for next edit if no pending syncs.
-    return syncWaitQ.isEmpty() ? editPendingQ.take() : editPendingQ.poll();
+    if (syncWaitQ.isEmpty()) {
+      return editPendingQ.take();
+    }
+    Edit edit = editPendingQ.poll();
+    // the queue ran dry.  if only rpc edits are waiting, their handlers are
+    // already free so briefly holding back the sync lets more edits share
+    // the journal flush.  callers blocked in logSync are never delayed.
+    if (edit == null && blockingEditsInBatch == 0) {
+      long now = Time.monotonicNowNanos();
+      long waitNanos = groupCommit.getWaitNanos(
+          syncWaitQ.size(), now - batchStartNanos);
+      if (waitNanos > 0) {
+        edit = editPendingQ.poll(waitNanos, TimeUnit.NANOSECONDS);
+        batchWaitNanos += Time.monotonicNowNanos() - now;
+      }
+    }
+    return edit;
   }
 
   @Override
@@ -251,6 +282,12 @@ public void run() {
         if (edit != null) {
           // sync if requested by edit log.
           doSync = edit.logEdit();
+          if (syncWaitQ.isEmpty()) {
+            batchStartNanos = Time.monotonicNowNanos();
+          }
+          if (!(edit instanceof RpcEdit)) {
+            blockingEditsInBatch++;
+          }
           syncWaitQ.add(edit);
           metrics.setPendingEditsCount(editPendingQ.size() + 1);
         } else {
@@ -262,11 +299,24 @@ public void run() {
           // normally edit log exceptions cause the NN to terminate, but tests
           // relying on ExitUtil.terminate need to see the exception.
           RuntimeException syncEx = null;
+          long syncStart = Time.monotonicNowNanos();
           try {
             logSync(getLastWrittenTxId());
           } catch (RuntimeException ex) {
             syncEx = ex;
           }
+          // edits queued during the flush approximate the number of handlers
+          // contending for the log, which sizes the next batch.
+          groupCommit.update(Time.monotonicNowNanos() - syncStart,
+              editPendingQ.size());
+          if (groupCommit.isEnabled()) {
+            metrics.setEditLogGroupCommitTarget(
+                groupCommit.getTargetBatchSize());
+            metrics.addEditLogGroupCommitWait(
+                TimeUnit.NANOSECONDS.toMicros(batchWaitNanos));
+          }
+          blockingEditsInBatch = 0;
+          batchWaitNanos = 0;
           while ((edit = syncWaitQ.poll()) != null) {
             edit.logSyncNotify(syncEx);
           }
@@ -285,6 +335,59 @@ private void terminate(Throwable t) {
     ExitUtil.terminate(1, message);
   }
 
+  /**
+   * Adaptive group commit for the sync thread.  The target batch size follows
+   * the number of edits that arrive while a flush is in progress, and a batch
+   * smaller than the target may be held back for at most half of the average
+   * flush latency, capped by the configured maximum wait.  Lightly loaded
+   * logs have a target of one edit and therefore never wait.
+   */
+  @VisibleForTesting
+  static class GroupCommitPolicy {
+    // weight of the newest sample in the moving averages.
+    private static final double ALPHA = 0.2;
+
+    private final long maxWaitNanos;
+    private double avgSyncNanos = 0;
+    private double avgArrivals = 0;
+
+    GroupCommitPolicy(long maxWaitNanos) {
+      this.maxWaitNanos = maxWaitNanos;
+    }
+
+    boolean isEnabled() {
+      return maxWaitNanos > 0;
+    }
+
+    int getTargetBatchSize() {
+      return Math.max(1, (int) Math.round(avgArrivals));
+    }
+
+    /**
+     * @param batchSize number of edits already in the batch.
+     * @param batchAgeNanos time since the first edit joined the batch.
+     * @return how long to wait for another edit before syncing, or 0 to
+     *         sync immediately.
+     */
+    long getWaitNanos(int batchSize, long batchAgeNanos) {
+      if (!isEnabled() || batchSize >= getTargetBatchSize()) {
+        return 0;
+      }
+      long budget = Math.min(maxWaitNanos, (long) (avgSyncNanos / 2));
+      return Math.max(0, budget - batchAgeNanos);
+    }
+
+    void update(long syncNanos, int arrivals) {
+      if (avgSyncNanos == 0) {
+        avgSyncNanos = syncNanos;
+        avgArrivals = arrivals;
+      } else {
+        avgSyncNanos += ALPHA * (syncNanos - avgSyncNanos);
+        avgArrivals += ALPHA * (arrivals - avgArrivals);
+      }
+    }
+  }
+
   private Edit getEditInstance(FSEditLogOp op) {
     final Edit edit;
     final Server.Call rpcCall = Server.getCurCall().get();
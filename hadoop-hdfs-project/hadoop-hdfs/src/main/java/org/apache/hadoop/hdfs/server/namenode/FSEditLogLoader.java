@@ -21,11 +21,15 @@
 
 import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
 import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -114,6 +118,7 @@
 import org.apache.hadoop.hdfs.util.Holder;
 import org.apache.hadoop.log.LogThrottlingHelper;
 import org.apache.hadoop.util.ChunkedArrayList;
+import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.Timer;
 
 import org.apache.hadoop.classification.VisibleForTesting;
@@ -142,6 +147,8 @@ public class FSEditLogLoader {
   private long lastAppliedTxId;
   /** Total number of end transactions loaded. */
   private int totalEdits = 0;
+  /** Number of ops decoded ahead of replay, or 0 to decode inline. */
+  private int prefetchOps = 0;
   
   public FSEditLogLoader(FSNamesystem fsNamesys, long lastAppliedTxId) {
     this(fsNamesys, lastAppliedTxId, new Timer());
@@ -235,13 +242,16 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
     Counter counter = prog.getCounter(Phase.LOADING_EDITS, step);
     long lastLogTime = timer.monotonicNow();
     long lastInodeId = fsNamesys.dir.getLastInodeId();
+    // recovery may resync the stream, which requires decoding inline.
+    PrefetchingOpReader prefetcher = prefetchOps > 0 && recovery == null ?
+        new PrefetchingOpReader(in, prefetchOps) : null;
     
     try {
       while (true) {
         try {
           FSEditLogOp op;
           try {
-            op = in.readOp();
+            op = prefetcher != null ? prefetcher.readOp() : in.readOp();
             if (op == null) {
               break;
             }
@@ -263,7 +273,7 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
             continue;
           }
           recentOpcodeOffsets[(int)(numEdits % recentOpcodeOffsets.length)] =
-            in.getPosition();
+            prefetcher != null ? prefetcher.getPosition() : in.getPosition();
           if (op.hasTransactionId()) {
             if (op.getTransactionId() > expectedTxId) { 
               MetaRecoveryContext.editLogLoaderPrompt("There appears " +
@@ -286,7 +296,8 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
                   + ", numEdits=" + numEdits + ", totalEdits=" + totalEdits);
             }
             long inodeId = applyEditLogOp(op, fsDir, startOpt,
-                in.getVersion(true), lastInodeId);
+                prefetcher != null ? prefetcher.getVersion() :
+                    in.getVersion(true), lastInodeId);
             if (lastInodeId < inodeId) {
               lastInodeId = inodeId;
             }
@@ -338,6 +349,9 @@ long loadEditRecords(EditLogInputStream in, boolean closeOnExit,
       }
     } finally {
       fsNamesys.dir.resetLastInodeId(lastInodeId);
+      if (prefetcher != null) {
+        prefetcher.close();
+      }
       if(closeOnExit) {
         in.close();
       }
@@ -1423,6 +1437,143 @@ public long skip(long amt) throws IOException {
     }
   }
 
+  /**
+   * Decodes ops from an {@link EditLogInputStream} on a background thread so
+   * that reading, deserializing and checksumming the next ops overlaps with
+   * applying the current one under the namesystem write lock.  Ops are handed
+   * over strictly in stream order, so transactions are still applied one at a
+   * time in txid order.  The decoder may run ahead of the caller by up to the
+   * queue capacity, so the stream must not be read again afterwards.
+   */
+  @VisibleForTesting
+  static class PrefetchingOpReader {
+    private static final Object END_OF_STREAM = new Object();
+
+    private static final class DecodedOp {
+      private final FSEditLogOp op;
+      private final long position;
+      private final int version;
+
+      DecodedOp(FSEditLogOp op, long position, int version) {
+        this.op = op;
+        this.position = position;
+        this.version = version;
+      }
+    }
+
+    private final EditLogInputStream in;
+    // holds DecodedOp, END_OF_STREAM or the Throwable that stopped decoding.
+    private final BlockingQueue<Object> queue;
+    private final Daemon decoder;
+    private volatile boolean closed = false;
+    private boolean done = false;
+    private long position;
+    private int version;
+
+    PrefetchingOpReader(EditLogInputStream in, int capacity) {
+      this.in = in;
+      this.queue = new ArrayBlockingQueue<>(capacity);
+      this.decoder = new Daemon(this::decode);
+      decoder.setName("Edit log prefetcher for " + in.getName());
+      decoder.start();
+    }
+
+    private void decode() {
+      // the decoded ops outlive the next readOp, so they must not be reused.
+      FSEditLogOp.OpInstanceCache.disableForCurrentThread();
+      try {
+        FSEditLogOp op;
+        do {
+          op = in.readOp();
+          Object next = op == null ? END_OF_STREAM :
+              new DecodedOp(op, in.getPosition(), in.getVersion(true));
+          if (!handOff(next)) {
+            return;
+          }
+        } while (op != null);
+      } catch (Throwable t) {
+        handOff(t);
+      }
+    }
+
+    private boolean handOff(Object next) {
+      try {
+        while (!closed) {
+          if (queue.offer(next, 100, TimeUnit.MILLISECONDS)) {
+            return true;
+          }
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+      return false;
+    }
+
+    /**
+     * @return the next op, or null at the end of the stream.  Errors raised
+     * while decoding are rethrown in stream order.
+     */
+    FSEditLogOp readOp() throws IOException {
+      if (done) {
+        return null;
+      }
+      Object next;
+      try {
+        next = queue.take();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted waiting for edit log op from " + in.getName());
+      }
+      if (next instanceof DecodedOp) {
+        DecodedOp decoded = (DecodedOp) next;
+        position = decoded.position;
+        version = decoded.version;
+        return decoded.op;
+      }
+      done = true;
+      if (next == END_OF_STREAM) {
+        return null;
+      }
+      Throwable t = (Throwable) next;
+      if (t instanceof IOException) {
+        throw (IOException) t;
+      } else if (t instanceof RuntimeException) {
+        throw (RuntimeException) t;
+      } else if (t instanceof Error) {
+        throw (Error) t;
+      }
+      throw new IOException(t);
+    }
+
+    /** @return the stream position after the op last returned. */
+    long getPosition() {
+      return position;
+    }
+
+    /** @return the log version of the op last returned. */
+    int getVersion() {
+      return version;
+    }
+
+    void close() {
+      closed = true;
+      try {
+        decoder.join();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Decode up to the given number of ops ahead of replay on a background
+   * thread.  0 decodes ops inline.
+   */
+  void setPrefetchOps(int prefetchOps) {
+    this.prefetchOps = prefetchOps;
+  }
+
   public long getLastAppliedTxId() {
     return lastAppliedTxId;
   }
@@ -168,6 +168,8 @@ protected OpInstanceCacheMap initialValue() {
     @SuppressWarnings("serial")
     static final class OpInstanceCacheMap extends
         EnumMap<FSEditLogOpCodes, FSEditLogOp> {
+      private boolean enabled = true;
+
       OpInstanceCacheMap() {
         super(FSEditLogOpCodes.class);
         for (FSEditLogOpCodes opCode : FSEditLogOpCodes.values()) {
@@ -186,9 +188,23 @@ public OpInstanceCache get() {
       return this;
     }
 
+    /**
+     * Stop reusing op instances on the current thread, for threads that hand
+     * the ops they decode over to other threads.
+     */
+    static void disableForCurrentThread() {
+      CACHE.get().enabled = false;
+    }
+
     @SuppressWarnings("unchecked")
     public <T extends FSEditLogOp> T get(FSEditLogOpCodes opCode) {
-      return useCache ? (T)CACHE.get().get(opCode) : (T)newInstance(opCode);
+      if (useCache) {
+        OpInstanceCacheMap map = CACHE.get();
+        if (map.enabled) {
+          return (T)map.get(opCode);
+        }
+      }
+      return (T)newInstance(opCode);
     }
 
     private static FSEditLogOp newInstance(FSEditLogOpCodes opCode) {
@@ -111,6 +111,9 @@ public class FSImage implements Closeable {
 
   final private Configuration conf;
 
+  /** Number of edit log ops decoded ahead of replay. */
+  private final int editLogReplayPrefetchOps;
+
   protected NNStorageRetentionManager archivalManager;
 
   /**
@@ -173,6 +176,9 @@ protected FSImage(Configuration conf,
     this.editLog = FSEditLog.newInstance(conf, storage, editsDirs);
     archivalManager = new NNStorageRetentionManager(conf, storage, editLog);
     FSImageFormatProtobuf.initParallelLoad(conf);
+    editLogReplayPrefetchOps = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_DEFAULT);
   }
  
   void format(FSNamesystem fsn, String clusterId, boolean force)
@@ -900,6 +906,7 @@ public long loadEdits(Iterable<EditLogInputStream> editStreams,
     long remainingReadTxns = maxTxnsToRead;
     try {    
       FSEditLogLoader loader = new FSEditLogLoader(target, lastAppliedTxId);
+      loader.setPrefetchOps(editLogReplayPrefetchOps);
       
       // Load latest edits
       for (EditLogInputStream editIn : editStreams) {
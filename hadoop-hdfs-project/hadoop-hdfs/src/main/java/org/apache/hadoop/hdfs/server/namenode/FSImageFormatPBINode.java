@@ -18,17 +18,23 @@
 
 package org.apache.hadoop.hdfs.server.namenode;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -275,6 +281,8 @@ void loadINodeDirectorySection(InputStream in) throws IOException {
           break;
         }
         INodeDirectory p = dir.getInode(e.getParent()).asDirectory();
+        p.ensureChildrenCapacityAtLoading(
+            e.getChildrenCount() + e.getRefChildrenCount());
         for (long id : e.getChildrenList()) {
           INode child = dir.getInode(id);
           if (!addToParent(p, child)) {
@@ -389,6 +397,10 @@ private int loadINodesInSection(InputStream in, Counter counter)
           synchronized(this) {
             dir.addToInodeMap(n);
           }
+          if (!n.isFile()) {
+            // the names of files are cached along with the blocks map update
+            dir.cacheName(n);
+          }
           fillUpInodeList(inodeList, n);
         }
         cntr++;
@@ -626,6 +638,9 @@ private void loadRootINode(INodeSection.INode p) {
   // the saver can directly write out fields referencing serial numbers.
   // the serial number maps will be compacted when loading.
   public final static class Saver {
+    /** Maximum number of inodes encoded by one task in a parallel save. */
+    private static final int PARALLEL_SAVE_BATCH_SIZE = 10000;
+
     private long numImageErrors;
 
     private static long buildPermissionStatus(INodeAttributes n) {
@@ -805,23 +820,114 @@ void serializeINodeSection(OutputStream out) throws IOException {
       INodeSection s = b.build();
       s.writeDelimitedTo(out);
 
-      int i = 0;
       Iterator<INodeWithAdditionalFields> iter = inodesMap.getMapIterator();
+      ExecutorService executor = parent.getParallelSaveExecutor();
+      if (executor != null) {
+        serializeINodesInParallel(out, iter, executor);
+      } else {
+        int i = 0;
+        while (iter.hasNext()) {
+          INodeWithAdditionalFields n = iter.next();
+          save(out, n);
+          ++i;
+          if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
+            context.checkCancelled();
+          }
+          if (i % parent.getInodesPerSubSection() == 0) {
+            parent.commitSubSection(summary,
+                FSImageFormatProtobuf.SectionName.INODE_SUB);
+          }
+        }
+      }
+      parent.commitSectionAndSubSection(summary,
+          FSImageFormatProtobuf.SectionName.INODE,
+          FSImageFormatProtobuf.SectionName.INODE_SUB);
+    }
+
+    /**
+     * Encode the inodes in batches on the given executor and write the
+     * encoded batches in iteration order, so the output and the sub-section
+     * boundaries are identical to a serial save. The inode map is only
+     * iterated by the calling thread, and the number of batches in flight is
+     * bounded to limit the memory held by encoded data.
+     */
+    private void serializeINodesInParallel(OutputStream out,
+        Iterator<INodeWithAdditionalFields> iter, ExecutorService executor)
+        throws IOException {
+      final int inodesPerSubSection = parent.getInodesPerSubSection();
+      final int batchSize = Math.min(inodesPerSubSection,
+          PARALLEL_SAVE_BATCH_SIZE);
+      final int maxPendingBatches = 2 * parent.getParallelSaveThreads();
+      final Deque<EncodedBatch> pending = new ArrayDeque<>();
+      List<INodeWithAdditionalFields> batch = new ArrayList<>(batchSize);
+      int i = 0;
       while (iter.hasNext()) {
-        INodeWithAdditionalFields n = iter.next();
-        save(out, n);
+        batch.add(iter.next());
         ++i;
         if (i % FSImageFormatProtobuf.Saver.CHECK_CANCEL_INTERVAL == 0) {
           context.checkCancelled();
         }
-        if (i % parent.getInodesPerSubSection() == 0) {
-          parent.commitSubSection(summary,
-              FSImageFormatProtobuf.SectionName.INODE_SUB);
+        boolean endsSubSection = i % inodesPerSubSection == 0;
+        if (endsSubSection || batch.size() == batchSize) {
+          pending.add(encodeBatch(executor, batch, endsSubSection));
+          batch = new ArrayList<>(batchSize);
+          if (pending.size() >= maxPendingBatches) {
+            writeEncodedBatch(out, pending.poll());
+          }
         }
       }
-      parent.commitSectionAndSubSection(summary,
-          FSImageFormatProtobuf.SectionName.INODE,
-          FSImageFormatProtobuf.SectionName.INODE_SUB);
+      if (!batch.isEmpty()) {
+        pending.add(encodeBatch(executor, batch, false));
+      }
+      while (!pending.isEmpty()) {
+        writeEncodedBatch(out, pending.poll());
+      }
+    }
+
+    private EncodedBatch encodeBatch(ExecutorService executor,
+        final List<INodeWithAdditionalFields> inodes, boolean endsSubSection) {
+      Future<ByteArrayOutputStream> data = executor.submit(() -> {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (INodeWithAdditionalFields n : inodes) {
+          save(bytes, n);
+        }
+        return bytes;
+      });
+      return new EncodedBatch(data, endsSubSection);
+    }
+
+    private void writeEncodedBatch(OutputStream out, EncodedBatch batch)
+        throws IOException {
+      try {
+        batch.data.get().writeTo(out);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while saving the INode section");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        throw new IOException("Failed to encode inodes", cause);
+      }
+      if (batch.endsSubSection) {
+        parent.commitSubSection(summary,
+            FSImageFormatProtobuf.SectionName.INODE_SUB);
+      }
+    }
+
+    /** Inodes encoded by a worker thread, in iteration order. */
+    private static final class EncodedBatch {
+      private final Future<ByteArrayOutputStream> data;
+      /** Whether a sub-section is committed after writing this batch. */
+      private final boolean endsSubSection;
+
+      private EncodedBatch(Future<ByteArrayOutputStream> data,
+          boolean endsSubSection) {
+        this.data = data;
+        this.endsSubSection = endsSubSection;
+      }
     }
 
     void serializeFilesUCSection(OutputStream out) throws IOException {
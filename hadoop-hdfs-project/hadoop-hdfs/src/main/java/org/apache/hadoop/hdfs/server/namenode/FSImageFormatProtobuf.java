@@ -617,6 +617,9 @@ public static final class Saver {
     public static final int CHECK_CANCEL_INTERVAL = 4096;
     private boolean writeSubSections = false;
     private int inodesPerSubSection = Integer.MAX_VALUE;
+    private int parallelSaveThreads = 1;
+    /** Encodes inodes in parallel, or null for a serial save. */
+    private ExecutorService parallelSaveExecutor;
 
     private final SaveNamespaceContext context;
     private final SaverContext saverContext;
@@ -653,6 +656,14 @@ public int getInodesPerSubSection() {
       return inodesPerSubSection;
     }
 
+    ExecutorService getParallelSaveExecutor() {
+      return parallelSaveExecutor;
+    }
+
+    int getParallelSaveThreads() {
+      return parallelSaveThreads;
+    }
+
     /**
      * Commit the length and offset of a fsimage section to the summary index,
      * including the sub section, which will be committed before the section is
@@ -726,6 +737,12 @@ private void flushSectionOutputStream() throws IOException {
      */
     long save(File file, FSImageCompression compression) throws IOException {
       enableSubSectionsIfRequired();
+      if (writeSubSections && parallelSaveThreads > 1) {
+        parallelSaveExecutor =
+            Executors.newFixedThreadPool(parallelSaveThreads);
+        LOG.info("The INode section will be encoded in parallel using {} " +
+            "threads", parallelSaveThreads);
+      }
       FileOutputStream fout = new FileOutputStream(file);
       fileChannel = fout.getChannel();
       try {
@@ -739,6 +756,10 @@ long save(File file, FSImageCompression compression) throws IOException {
         return numErrors;
       } finally {
         fout.close();
+        if (parallelSaveExecutor != null) {
+          parallelSaveExecutor.shutdownNow();
+          parallelSaveExecutor = null;
+        }
       }
     }
 
@@ -771,6 +792,9 @@ private void enableSubSectionsIfRequired() {
               DFSConfigKeys.DFS_IMAGE_PARALLEL_INODE_THRESHOLD_DEFAULT;
         }
         int inodeCount = context.getSourceNamesystem().dir.getInodeMapSize();
+        parallelSaveThreads = conf.getInt(
+            DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY,
+            DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_DEFAULT);
         // Only enable parallel sections if there are enough inodes
         if (inodeCount >= inodeThreshold) {
           writeSubSections = true;
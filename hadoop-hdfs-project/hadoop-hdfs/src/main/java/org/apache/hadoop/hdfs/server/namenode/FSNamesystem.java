@@ -136,6 +136,7 @@
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.hadoop.util.StringUtils;
 import org.apache.hadoop.util.VersionInfo;
+import org.apache.hadoop.util.functional.CallableRaisingIOE;
 
 import static org.apache.hadoop.util.Time.now;
 import static org.apache.hadoop.util.Time.monotonicNow;
@@ -171,6 +172,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ExecutorService;
@@ -315,6 +317,7 @@
 import org.apache.hadoop.hdfs.server.protocol.StorageReport;
 import org.apache.hadoop.hdfs.server.protocol.VolumeFailureSummary;
 import org.apache.hadoop.hdfs.util.LightWeightHashSet;
+import org.apache.hadoop.hdfs.util.RwLockMode;
 import org.apache.hadoop.hdfs.web.JsonUtil;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.Text;
@@ -619,6 +622,9 @@ private boolean isFromProxyUser(CallerContext ctx) {
   // Maximum number of paths that can be listed per batched call.
   private final int batchedListingLimit;
 
+  // Maximum number of files that can be created per batched call.
+  private final int batchedCreateLimit;
+
   private final int numCommittedAllowed;
 
   /** Lock to protect FSNamesystem. */
@@ -976,6 +982,13 @@ static FSNamesystem loadFromDisk(Configuration conf) throws IOException {
           batchedListingLimit > 0,
           DFSConfigKeys.DFS_NAMENODE_BATCHED_LISTING_LIMIT +
               " must be greater than zero");
+      this.batchedCreateLimit = conf.getInt(
+          DFSConfigKeys.DFS_NAMENODE_BATCHED_CREATE_LIMIT_KEY,
+          DFSConfigKeys.DFS_NAMENODE_BATCHED_CREATE_LIMIT_DEFAULT);
+      Preconditions.checkArgument(
+          batchedCreateLimit > 0,
+          DFSConfigKeys.DFS_NAMENODE_BATCHED_CREATE_LIMIT_KEY +
+              " must be greater than zero");
       this.numCommittedAllowed = conf.getInt(
           DFSConfigKeys.DFS_NAMENODE_FILE_CLOSE_NUM_COMMITTED_ALLOWED_KEY,
           DFSConfigKeys.DFS_NAMENODE_FILE_CLOSE_NUM_COMMITTED_ALLOWED_DEFAULT);
@@ -1356,6 +1369,12 @@ void startCommonServices(Configuration conf, HAContext haContext) throws IOExcep
     
     registerMXBean();
     DefaultMetricsSystem.instance().register(this);
+    if (fsLock.getProfiler().isEnabled()) {
+      DefaultMetricsSystem.instance().register(
+          FSNamesystemLockProfiler.METRICS_SOURCE_NAME,
+          "Namesystem lock waits and holds by operation",
+          fsLock.getProfiler());
+    }
     if (inodeAttributeProvider != null) {
       inodeAttributeProvider.start();
       dir.setINodeAttributeProvider(inodeAttributeProvider);
@@ -1842,11 +1861,46 @@ public void writeUnlock(String opName,
 
   @Override
   public boolean hasWriteLock() {
-    return this.fsLock.isWriteLockedByCurrentThread();
+    return this.fsLock.isWriteLockedByCurrentThread(RwLockMode.GLOBAL);
   }
   @Override
   public boolean hasReadLock() {
-    return this.fsLock.getReadHoldCount() > 0 || hasWriteLock();
+    return this.fsLock.hasReadLock(RwLockMode.GLOBAL);
+  }
+
+  @Override
+  public void readLock(RwLockMode lockMode) {
+    this.fsLock.readLock(lockMode);
+  }
+
+  @Override
+  public void readUnlock(RwLockMode lockMode, String opName) {
+    this.fsLock.readUnlock(lockMode, opName);
+  }
+
+  public void readUnlock(RwLockMode lockMode, String opName,
+      Supplier<String> lockReportInfoSupplier) {
+    this.fsLock.readUnlock(lockMode, opName, lockReportInfoSupplier);
+  }
+
+  @Override
+  public boolean hasReadLock(RwLockMode lockMode) {
+    return this.fsLock.hasReadLock(lockMode);
+  }
+
+  @Override
+  public void writeLock(RwLockMode lockMode) {
+    this.fsLock.writeLock(lockMode);
+  }
+
+  @Override
+  public void writeUnlock(RwLockMode lockMode, String opName) {
+    this.fsLock.writeUnlock(lockMode, opName);
+  }
+
+  @Override
+  public boolean hasWriteLock(RwLockMode lockMode) {
+    return this.fsLock.isWriteLockedByCurrentThread(lockMode);
   }
 
   public int getReadHoldCount() {
@@ -2192,33 +2246,17 @@ LocatedBlocks getBlockLocations(String clientMachine, String srcArg,
     FSPermissionChecker.setOperationType(operationName);
     final INode inode;
     try {
-      readLock();
-      try {
-        checkOperation(OperationCategory.READ);
-        res = FSDirStatAndListingOp.getBlockLocations(
-            dir, pc, srcArg, offset, length, true);
-        inode = res.getIIp().getLastINode();
-        if (isInSafeMode()) {
-          for (LocatedBlock b : res.blocks.getLocatedBlocks()) {
-            // if safemode & no block locations yet then throw safemodeException
-            if ((b.getLocations() == null) || (b.getLocations().length == 0)) {
-              SafeModeException se = newSafemodeException(
-                  "Zero blocklocations for " + srcArg);
-              if (haEnabled && haContext != null &&
-                  (haContext.getState().getServiceState() == ACTIVE ||
-                      haContext.getState().getServiceState() == OBSERVER)) {
-                throw new RetriableException(se);
-              } else {
-                throw se;
-              }
-            }
-          }
-        } else if (isObserver()) {
-          checkBlockLocationsWhenObserver(res.blocks, srcArg);
+      res = readOptimistically(
+          () -> getBlockLocationsInt(pc, srcArg, offset, length));
+      if (res == null) {
+        readLock();
+        try {
+          res = getBlockLocationsInt(pc, srcArg, offset, length);
+        } finally {
+          readUnlock(operationName, getLockReportInfoSupplier(srcArg));
         }
-      } finally {
-        readUnlock(operationName, getLockReportInfoSupplier(srcArg));
       }
+      inode = res.getIIp().getLastINode();
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, srcArg);
       throw e;
@@ -2259,6 +2297,75 @@ LocatedBlocks getBlockLocations(String clientMachine, String srcArg,
     return blocks;
   }
 
+  private GetBlockLocationsResult getBlockLocationsInt(FSPermissionChecker pc,
+      String srcArg, long offset, long length) throws IOException {
+    checkOperation(OperationCategory.READ);
+    GetBlockLocationsResult res = FSDirStatAndListingOp.getBlockLocations(
+        dir, pc, srcArg, offset, length, true);
+    if (isInSafeMode()) {
+      for (LocatedBlock b : res.blocks.getLocatedBlocks()) {
+        // if safemode & no block locations yet then throw safemodeException
+        if ((b.getLocations() == null) || (b.getLocations().length == 0)) {
+          SafeModeException se = newSafemodeException(
+              "Zero blocklocations for " + srcArg);
+          if (haEnabled && haContext != null &&
+              (haContext.getState().getServiceState() == ACTIVE ||
+                  haContext.getState().getServiceState() == OBSERVER)) {
+            throw new RetriableException(se);
+          } else {
+            throw se;
+          }
+        }
+      }
+    } else if (isObserver()) {
+      checkBlockLocationsWhenObserver(res.blocks, srcArg);
+    }
+    return res;
+  }
+
+  /**
+   * Run a read operation without the read lock if optimistic reads are
+   * enabled and no writer holds the lock.
+   * @see FSNamesystemLock#tryOptimisticRead()
+   *
+   * @param op the read operation, which must not have side effects on the
+   *           namespace since it may run concurrently with a writer.
+   * @return the result of the operation, or null if it has to be repeated
+   *         under the read lock.
+   * @throws IOException if the operation failed without a concurrent writer.
+   */
+  private <T> T readOptimistically(CallableRaisingIOE<T> op)
+      throws IOException {
+    final long stamp = fsLock.tryOptimisticRead();
+    if (stamp == FSNamesystemLock.INVALID_STAMP) {
+      return null;
+    }
+    T result = null;
+    IOException ioe = null;
+    RuntimeException re = null;
+    boolean valid;
+    try {
+      result = op.apply();
+    } catch (IOException e) {
+      ioe = e;
+    } catch (RuntimeException e) {
+      // may be caused by inconsistent state seen during a concurrent write.
+      re = e;
+    } finally {
+      valid = fsLock.validate(stamp);
+    }
+    if (!valid) {
+      return null;
+    }
+    if (ioe != null) {
+      throw ioe;
+    }
+    if (re != null) {
+      throw re;
+    }
+    return result;
+  }
+
   private void sortLocatedBlocks(String clientMachine, LocatedBlocks blocks) {
     if (blocks != null) {
       List<LocatedBlock> blkList = blocks.getLocatedBlocks();
@@ -2842,6 +2949,178 @@ private HdfsFileStatus startFileInt(String src,
     return stat;
   }
 
+  /**
+   * Create many new file entries in the namespace at once.
+   *
+   * For description of parameters and exceptions thrown see
+   * {@link ClientProtocol#createFiles}.
+   */
+  HdfsFileStatus[] startFiles(String[] srcs, PermissionStatus permissions,
+      String holder, String clientMachine, EnumSet<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize)
+      throws IOException {
+    HdfsFileStatus[] status;
+    try {
+      status = startFilesInt(srcs, permissions, holder, clientMachine, flag,
+          createParent, replication, blockSize);
+    } catch (AccessControlException e) {
+      for (String src : srcs) {
+        logAuditEvent(false, "create", src);
+      }
+      throw e;
+    }
+    for (int i = 0; i < srcs.length; i++) {
+      if (status[i] != null) {
+        logAuditEvent(true, "create", srcs[i], status[i]);
+      } else {
+        logAuditEvent(false, "create", srcs[i]);
+      }
+    }
+    return status;
+  }
+
+  private HdfsFileStatus[] startFilesInt(String[] srcs,
+      PermissionStatus permissions, String holder, String clientMachine,
+      EnumSet<CreateFlag> flag, boolean createParent, short replication,
+      long blockSize) throws IOException {
+    NameNode.stateChangeLog.debug("DIR* NameSystem.startFiles: {} files, " +
+        "holder={}, clientMachine={}, createParent={}, replication={}, " +
+        "createFlag={}, blockSize={}", srcs.length, holder, clientMachine,
+        createParent, replication, flag, blockSize);
+    if (srcs.length > batchedCreateLimit) {
+      throw new IOException(String.format(
+          "Too many files to create (%d > %d)", srcs.length,
+          batchedCreateLimit));
+    }
+    for (String src : srcs) {
+      if (!DFSUtil.isValidName(src) ||
+          FSDirectory.isExactReservedName(src) ||
+          (FSDirectory.isReservedName(src)
+              && !FSDirectory.isReservedRawName(src)
+              && !FSDirectory.isReservedInodesName(src))) {
+        throw new InvalidPathException(src);
+      }
+    }
+    if (blockSize < minBlockSize) {
+      throw new IOException("Specified block size " + blockSize +
+          " is less than configured minimum value " +
+          DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY + "=" + minBlockSize);
+    }
+
+    boolean skipSync = true; // until we do something that might create edits
+    final HdfsFileStatus[] stats = new HdfsFileStatus[srcs.length];
+    BlocksMapUpdateInfo toRemoveBlocks = null;
+
+    checkOperation(OperationCategory.WRITE);
+    final FSPermissionChecker pc = getPermissionChecker();
+    FSPermissionChecker.setOperationType(null);
+    writeLock();
+    try {
+      checkOperation(OperationCategory.WRITE);
+      checkNameNodeSafeMode("Cannot create files");
+
+      // check all the files before creating any of them.
+      final Set<String> paths = new HashSet<>();
+      for (String src : srcs) {
+        INodesInPath iip = FSDirWriteFileOp.resolvePathForStartFile(
+            dir, pc, src, flag, createParent);
+        if (!paths.add(iip.getPath())) {
+          throw new HadoopIllegalArgumentException(
+              "Duplicate file " + iip.getPath());
+        }
+        // creating a file in an encryption zone requires the lock to be
+        // released while the key of the file is generated.
+        if (!iip.isRaw() && provider != null &&
+            FSDirEncryptionZoneOp.isInAnEZ(dir, iip)) {
+          throw new IOException("Cannot create " + iip.getPath() +
+              " in a batch since it is in an encryption zone");
+        }
+        blockManager.verifyReplication(src, replication, clientMachine);
+      }
+
+      skipSync = false; // following might generate edits
+      toRemoveBlocks = new BlocksMapUpdateInfo();
+      dir.writeLock();
+      try {
+        for (int i = 0; i < srcs.length; i++) {
+          // resolve again since the parent may have been created by an
+          // earlier file of the batch. Every file logs the retry cache entry
+          // of the batch, see getStartedFilesStatus.
+          try {
+            INodesInPath iip = FSDirWriteFileOp.resolvePathForStartFile(
+                dir, pc, srcs[i], flag, createParent);
+            stats[i] = FSDirWriteFileOp.startFile(this, iip, permissions,
+                holder, clientMachine, flag, createParent, replication,
+                blockSize, null, toRemoveBlocks, true, null, null, true);
+          } catch (StandbyException e) {
+            skipSync = true;
+            throw e;
+          } catch (IOException e) {
+            // the other files are still created, the client creates this
+            // one on its own to get the error.
+            NameNode.stateChangeLog.info("DIR* NameSystem.startFiles: " +
+                "failed to create {} in a batch: {}", srcs[i], e.toString());
+          }
+        }
+      } finally {
+        dir.writeUnlock();
+      }
+    } finally {
+      writeUnlock("createFiles");
+      // There might be transactions logged while trying to recover the lease.
+      // They need to be sync'ed even when an exception was thrown.
+      if (!skipSync) {
+        getEditLog().logSync();
+        if (toRemoveBlocks != null) {
+          blockManager.addBLocksToMarkedDeleteQueue(
+              toRemoveBlocks.getToDeleteList());
+        }
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Get the status of the files of a batched create which is retried, when
+   * its retry cache entry was loaded from the edit log. Every file created by
+   * the batch logs the entry, but it only keeps the status of the last one,
+   * so the status of the files is read from the namespace instead. The
+   * client has not received the response of the batch, so the files it
+   * created are still open by the client.
+   *
+   * @return the status of the files, or null for the files which are not
+   *         open by the client, and so were not created by the batch.
+   */
+  HdfsFileStatus[] getStartedFilesStatus(String[] srcs, String holder)
+      throws IOException {
+    final HdfsFileStatus[] stats = new HdfsFileStatus[srcs.length];
+    checkOperation(OperationCategory.WRITE);
+    final FSPermissionChecker pc = getPermissionChecker();
+    readLock(RwLockMode.FS);
+    try {
+      checkOperation(OperationCategory.WRITE);
+      for (int i = 0; i < srcs.length; i++) {
+        final INodesInPath iip;
+        try {
+          iip = dir.resolvePath(pc, srcs[i], DirOp.READ);
+        } catch (FileNotFoundException e) {
+          continue;
+        }
+        final INode inode = iip.getLastINode();
+        if (inode != null && inode.isFile() &&
+            inode.asFile().isUnderConstruction() &&
+            holder.equals(inode.asFile().getFileUnderConstructionFeature()
+                .getClientName())) {
+          stats[i] = FSDirStatAndListingOp.getFileInfo(dir, iip, false,
+              false);
+        }
+      }
+    } finally {
+      readUnlock(RwLockMode.FS, "createFiles");
+    }
+    return stats;
+  }
+
   /**
    * Recover lease;
    * Immediately revoke the lease of the current lease holder and start lease
@@ -3242,6 +3521,59 @@ boolean completeFile(final String src, String holder,
     return success;
   }
 
+  /**
+   * Complete in-progress writes to the given files.
+   * @return for each file, true if successful, false if the client should
+   *         continue to retry, or null if the file could not be completed
+   *         (eg lease mismatch, file not open, file deleted).
+   * @throws IOException if the batch is invalid, or on an error of the
+   *         namesystem
+   */
+  Boolean[] completeFiles(String[] srcs, String holder, ExtendedBlock[] last,
+      long[] fileIds) throws IOException {
+    if (srcs.length != last.length || srcs.length != fileIds.length) {
+      throw new HadoopIllegalArgumentException("The number of files " +
+          srcs.length + " does not match the number of last blocks " +
+          last.length + " or file ids " + fileIds.length);
+    }
+    if (srcs.length > batchedCreateLimit) {
+      throw new IOException(String.format(
+          "Too many files to complete (%d > %d)", srcs.length,
+          batchedCreateLimit));
+    }
+    final Boolean[] success = new Boolean[srcs.length];
+    checkOperation(OperationCategory.WRITE);
+    final FSPermissionChecker pc = getPermissionChecker();
+    FSPermissionChecker.setOperationType(null);
+    writeLock();
+    try {
+      checkOperation(OperationCategory.WRITE);
+      checkNameNodeSafeMode("Cannot complete files");
+      for (int i = 0; i < srcs.length; i++) {
+        try {
+          success[i] = FSDirWriteFileOp.completeFile(this, pc, srcs[i],
+              holder, last[i], fileIds[i]);
+        } catch (IOException e) {
+          // the other files are still completed, the client completes this
+          // one on its own to get the error.
+          NameNode.stateChangeLog.info("DIR* NameSystem.completeFiles: " +
+              "failed to complete {} in a batch: {}", srcs[i], e.toString());
+        }
+      }
+    } finally {
+      writeUnlock("completeFiles");
+      // the files completed before an error need to be sync'ed as well.
+      getEditLog().logSync();
+    }
+    for (int i = 0; i < srcs.length; i++) {
+      if (Boolean.TRUE.equals(success[i])) {
+        NameNode.stateChangeLog.info("DIR* completeFile: " + srcs[i]
+            + " is closed by " + holder);
+      }
+    }
+    return success;
+  }
+
   /**
    * Create new block with a unique block id and a new generation stamp.
    * @param blockType is the file under striping or contiguous layout?
@@ -3466,13 +3798,26 @@ HdfsFileStatus getFileInfo(final String src, boolean resolveLink,
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(operationName);
     try {
-      readLock();
-      try {
+      Optional<HdfsFileStatus> optimisticStat = readOptimistically(() -> {
         checkOperation(OperationCategory.READ);
-        stat = FSDirStatAndListingOp.getFileInfo(
-            dir, pc, src, resolveLink, needLocation, needBlockToken);
-      } finally {
-        readUnlock(operationName, getLockReportInfoSupplier(src));
+        return Optional.ofNullable(FSDirStatAndListingOp.getFileInfo(
+            dir, pc, src, resolveLink, needLocation, needBlockToken));
+      });
+      if (optimisticStat != null) {
+        stat = optimisticStat.orElse(null);
+      } else {
+        // the block locations are block management state.
+        final RwLockMode lockMode =
+            needLocation ? RwLockMode.GLOBAL : RwLockMode.FS;
+        readLock(lockMode);
+        try {
+          checkOperation(OperationCategory.READ);
+          stat = FSDirStatAndListingOp.getFileInfo(
+              dir, pc, src, resolveLink, needLocation, needBlockToken);
+        } finally {
+          readUnlock(lockMode, operationName,
+              getLockReportInfoSupplier(src));
+        }
       }
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
@@ -3496,12 +3841,13 @@ boolean isFileClosed(final String src) throws IOException {
     FSPermissionChecker.setOperationType(operationName);
     boolean success = false;
     try {
-      readLock();
+      readLock(RwLockMode.FS);
       try {
         checkOperation(OperationCategory.READ);
         success = FSDirStatAndListingOp.isFileClosed(dir, pc, src);
       } finally {
-        readUnlock(operationName, getLockReportInfoSupplier(src));
+        readUnlock(RwLockMode.FS, operationName,
+            getLockReportInfoSupplier(src));
       }
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
@@ -3939,7 +4285,7 @@ BlockInfo getStoredBlock(Block block) {
 
   @Override
   public boolean isInSnapshot(long blockCollectionID) {
-    assert hasReadLock();
+    assert hasReadLock(RwLockMode.BM);
     final INodeFile bc = getBlockCollection(blockCollectionID);
     if (bc == null || !bc.isUnderConstruction()) {
       return false;
@@ -3976,7 +4322,10 @@ INodeFile getBlockCollection(BlockInfo b) {
 
   @Override
   public INodeFile getBlockCollection(long id) {
-    assert hasReadLock() : "Accessing INode id = " + id + " without read lock";
+    // Namespace changes hold the global lock, so the block management lock
+    // is enough to look up an inode.
+    assert hasReadLock(RwLockMode.BM) :
+        "Accessing INode id = " + id + " without read lock";
     INode inode = getFSDirectory().getInode(id);
     return inode == null ? null : inode.asFile();
   }
@@ -4217,6 +4566,49 @@ DirectoryListing getListing(String src, byte[] startAfter,
     return dl;
   }
 
+  /**
+   * Get a partial recursive listing of the indicated directory
+   *
+   * @param src the directory name
+   * @param startAfter the relative path to start after
+   * @param needLocation if blockLocations need to be returned
+   * @return a partial listing starting after startAfter
+   *
+   * @throws AccessControlException if access is denied
+   * @throws UnresolvedLinkException if symbolic link is encountered
+   * @throws IOException if other I/O error occurred
+   */
+  DirectoryListing getRecursiveListing(String src, byte[] startAfter,
+      boolean needLocation) throws IOException {
+    checkOperation(OperationCategory.READ);
+    final String operationName = "listStatusRecursive";
+    DirectoryListing dl = null;
+    final FSPermissionChecker pc = getPermissionChecker();
+    FSPermissionChecker.setOperationType(operationName);
+    try {
+      readLock();
+      try {
+        checkOperation(NameNode.OperationCategory.READ);
+        dl = getRecursiveListingInt(dir, pc, src, startAfter, needLocation);
+      } finally {
+        readUnlock(operationName, getLockReportInfoSupplier(src));
+      }
+    } catch (AccessControlException e) {
+      logAuditEvent(false, operationName, src);
+      throw e;
+    }
+    if (dl != null && needLocation && isObserver()) {
+      for (HdfsFileStatus fs : dl.getPartialListing()) {
+        if (fs instanceof HdfsLocatedFileStatus) {
+          LocatedBlocks lbs = ((HdfsLocatedFileStatus) fs).getLocatedBlocks();
+          checkBlockLocationsWhenObserver(lbs, fs.toString());
+        }
+      }
+    }
+    logAuditEvent(true, operationName, src);
+    return dl;
+  }
+
   public byte[] getSrcPathsHash(String[] srcs) {
     synchronized (digest) {
       for (String src : srcs) {
@@ -4952,6 +5344,25 @@ public long getNumOfWriteLockLongHold() {
     return fsLock.getNumOfWriteLockLongHold();
   }
 
+  /** @return the profiler of the namesystem lock. */
+  FSNamesystemLockProfiler getLockProfiler() {
+    return fsLock.getProfiler();
+  }
+
+  @Metric(value = {"OptimisticReadCount", "The number of reads which " +
+          "completed without the read lock"},
+          type = Metric.Type.COUNTER)
+  public long getNumOfOptimisticReads() {
+    return fsLock.getNumOfOptimisticReads();
+  }
+
+  @Metric(value = {"OptimisticReadRetryCount", "The number of reads which " +
+          "were repeated under the read lock because of a concurrent writer"},
+          type = Metric.Type.COUNTER)
+  public long getNumOfOptimisticReadRetries() {
+    return fsLock.getNumOfOptimisticReadRetries();
+  }
+
   int getNumberOfDatanodes(DatanodeReportType type) {
     readLock();
     try {
@@ -5330,11 +5741,12 @@ NamenodeCommand startCheckpoint(NamenodeRegistration backupNode,
   public void processIncrementalBlockReport(final DatanodeID nodeID,
       final StorageReceivedDeletedBlocks srdb)
       throws IOException {
-    writeLock();
+    final RwLockMode lockMode = blockManager.getBlockReportLockMode();
+    writeLock(lockMode);
     try {
       blockManager.processIncrementalBlockReport(nodeID, srdb);
     } finally {
-      writeUnlock("processIncrementalBlockReport");
+      writeUnlock(lockMode, "processIncrementalBlockReport");
     }
   }
   
@@ -5399,6 +5811,29 @@ public long getFilesTotal() {
     return this.dir.totalInodes();
   }
 
+  @Metric({"NameDictionarySize",
+      "Number of distinct inode names in the name dictionary"})
+  public long getNameDictionarySize() {
+    NameDictionary dictionary = dir.getNameDictionary();
+    return dictionary != null ? dictionary.size() : 0;
+  }
+
+  @Metric(value = {"NameDictionaryHits",
+      "Number of inode names replaced by a shared name"},
+      type = Metric.Type.COUNTER)
+  public long getNameDictionaryHits() {
+    NameDictionary dictionary = dir.getNameDictionary();
+    return dictionary != null ? dictionary.getHits() : 0;
+  }
+
+  @Metric({"NameDictionaryBytesSaved",
+      "Estimated heap bytes of the inode names replaced by the shared names"
+      + " in use, less the heap bytes of the name dictionary"})
+  public long getNameDictionaryBytesSaved() {
+    NameDictionary dictionary = dir.getNameDictionary();
+    return dictionary != null ? dictionary.getBytesSaved() : 0;
+  }
+
   /**
    * Get aggregated count of all blocks pending to be reconstructed.
    */
@@ -8083,12 +8518,13 @@ AclStatus getAclStatus(String src) throws IOException {
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(operationName);
     try {
-      readLock();
+      readLock(RwLockMode.FS);
       try {
         checkOperation(OperationCategory.READ);
         ret = FSDirAclOp.getAclStatus(dir, pc, src);
       } finally {
-        readUnlock(operationName, getLockReportInfoSupplier(src));
+        readUnlock(RwLockMode.FS, operationName,
+            getLockReportInfoSupplier(src));
       }
     } catch(AccessControlException ace) {
       logAuditEvent(false, operationName, src);
@@ -8630,12 +9066,13 @@ List<XAttr> getXAttrs(final String src, List<XAttr> xAttrs)
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(operationName);
     try {
-      readLock();
+      readLock(RwLockMode.FS);
       try {
         checkOperation(OperationCategory.READ);
         fsXattrs = FSDirXAttrOp.getXAttrs(dir, pc, src, xAttrs);
       } finally {
-        readUnlock(operationName, getLockReportInfoSupplier(src));
+        readUnlock(RwLockMode.FS, operationName,
+            getLockReportInfoSupplier(src));
       }
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
@@ -8652,12 +9089,13 @@ List<XAttr> listXAttrs(String src) throws IOException {
     final FSPermissionChecker pc = getPermissionChecker();
     FSPermissionChecker.setOperationType(operationName);
     try {
-      readLock();
+      readLock(RwLockMode.FS);
       try {
         checkOperation(OperationCategory.READ);
         fsXattrs = FSDirXAttrOp.listXAttrs(dir, pc, src);
       } finally {
-        readUnlock(operationName, getLockReportInfoSupplier(src));
+        readUnlock(RwLockMode.FS, operationName,
+            getLockReportInfoSupplier(src));
       }
     } catch (AccessControlException e) {
       logAuditEvent(false, operationName, src);
@@ -29,6 +29,7 @@
 
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.util.RwLockMode;
 import org.apache.hadoop.ipc.Server;
 import org.apache.hadoop.log.LogThrottlingHelper;
 import org.apache.hadoop.metrics2.lib.MutableRatesWithAggregation;
@@ -40,8 +41,16 @@
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_LOCK_SUPPRESS_WARNING_INTERVAL_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FAIR_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FAIR_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FINE_GRAINED_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_DETAILED_METRICS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_DETAILED_METRICS_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_PROFILER_ENABLED_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_PROFILER_ENABLED_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_PROFILER_MAX_USERS_DEFAULT;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_LOCK_PROFILER_MAX_USERS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_READ_LOCK_REPORTING_THRESHOLD_MS_DEFAULT;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_READ_LOCK_REPORTING_THRESHOLD_MS_KEY;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_WRITE_LOCK_REPORTING_THRESHOLD_MS_DEFAULT;
@@ -63,13 +72,61 @@
  * most recent snapshot will be lost due to the use of
  * {@link MutableRatesWithAggregation}. However since threads are re-used
  * between operations this should not generally be an issue.
+ *
+ * When {@link org.apache.hadoop.hdfs.DFSConfigKeys#DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY}
+ * is true, block management state is protected by a separate lock, and
+ * callers choose the domain they need with a {@link RwLockMode}. The
+ * {@link RwLockMode#GLOBAL} mode always acquires the namespace lock before
+ * the block management lock, so holders of {@link RwLockMode#BM} alone must
+ * never try to acquire the namespace lock. Lock hold reporting and detailed
+ * metrics only cover the namespace lock.
+ *
+ * When {@link org.apache.hadoop.hdfs.DFSConfigKeys#DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_KEY}
+ * is true, readers may run without the lock between
+ * {@link #tryOptimisticRead()} and {@link #validate(long)}, in the manner of
+ * {@link java.util.concurrent.locks.StampedLock}. The read locks taken by the
+ * thread in between are no-ops, and the result of the read must be discarded
+ * unless {@link #validate(long)} confirms that no write lock of any domain was
+ * held meanwhile.
+ *
+ * Independently of the detailed metrics, the waits for and the holds of the
+ * namespace lock are accounted by operation and by user in a
+ * {@link FSNamesystemLockProfiler} unless
+ * {@link org.apache.hadoop.hdfs.DFSConfigKeys#DFS_NAMENODE_LOCK_PROFILER_ENABLED_KEY}
+ * is false.
  */
 class FSNamesystemLock {
   @VisibleForTesting
   protected ReentrantReadWriteLock coarseLock;
 
+  /**
+   * Lock protecting block management state when fine-grained locking is
+   * enabled, otherwise unused.
+   */
+  private final ReentrantReadWriteLock bmLock;
+  private final boolean fineGrainedLockEnabled;
+
+  /** Returned by {@link #tryOptimisticRead()} if a writer is active. */
+  static final long INVALID_STAMP = -1;
+  private final boolean optimisticReadEnabled;
+  /** The number of write lock holds over all the lock domains. */
+  private final AtomicInteger numWriteHolds = new AtomicInteger(0);
+  /** Incremented whenever a write lock is acquired or released. */
+  private final AtomicLong writeVersion = new AtomicLong(0);
+  /** Whether the current thread is in an optimistic read. */
+  private final ThreadLocal<Boolean> optimisticRead =
+      new ThreadLocal<Boolean>() {
+        @Override
+        public Boolean initialValue() {
+          return Boolean.FALSE;
+        }
+      };
+  private final LongAdder numOptimisticReads = new LongAdder();
+  private final LongAdder numOptimisticReadRetries = new LongAdder();
+
   private volatile boolean metricsEnabled;
   private final MutableRatesWithAggregation detailedHoldTimeMetrics;
+  private final FSNamesystemLockProfiler profiler;
   private final Timer timer;
 
   /**
@@ -82,6 +139,8 @@ class FSNamesystemLock {
   private volatile long writeLockReportingThresholdMs;
   /** Last time stamp for write lock. Keep the longest one for multi-entrance.*/
   private long writeLockHeldTimeStampNanos;
+  /** Time waited for the write lock by its current holder. */
+  private long writeLockWaitNanos;
   /** Frequency limiter used for reporting long write lock hold times. */
   private final LogThrottlingHelper writeLockReportLogger;
 
@@ -99,6 +158,9 @@ public Long initialValue() {
           return Long.MAX_VALUE;
         }
       };
+  /** Time waited for the read lock by the current thread. */
+  private final ThreadLocal<Long> readLockWaitNanos =
+      ThreadLocal.withInitial(() -> 0L);
   private final AtomicInteger numReadLockWarningsSuppressed =
       new AtomicInteger(0);
   /** Time stamp (ms) of the last time a read lock report was written. */
@@ -141,6 +203,16 @@ public Long initialValue() {
         DFS_NAMENODE_FSLOCK_FAIR_DEFAULT);
     FSNamesystem.LOG.info("fsLock is fair: " + fair);
     this.coarseLock = new ReentrantReadWriteLock(fair);
+    this.fineGrainedLockEnabled = conf.getBoolean(
+        DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY,
+        DFS_NAMENODE_FSLOCK_FINE_GRAINED_DEFAULT);
+    FSNamesystem.LOG.info("fsLock is fine-grained: " + fineGrainedLockEnabled);
+    this.bmLock = new ReentrantReadWriteLock(fair);
+    this.optimisticReadEnabled = conf.getBoolean(
+        DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_KEY,
+        DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_DEFAULT);
+    FSNamesystem.LOG.info("fsLock optimistic reads enabled: " +
+        optimisticReadEnabled);
     this.timer = timer;
 
     this.writeLockReportingThresholdMs = conf.getLong(
@@ -160,14 +232,30 @@ public Long initialValue() {
     FSNamesystem.LOG.info("Detailed lock hold time metrics enabled: " +
         this.metricsEnabled);
     this.detailedHoldTimeMetrics = detailedHoldTimeMetrics;
+    this.profiler = new FSNamesystemLockProfiler(
+        conf.getBoolean(DFS_NAMENODE_LOCK_PROFILER_ENABLED_KEY,
+            DFS_NAMENODE_LOCK_PROFILER_ENABLED_DEFAULT),
+        conf.getInt(DFS_NAMENODE_LOCK_PROFILER_MAX_USERS_KEY,
+            DFS_NAMENODE_LOCK_PROFILER_MAX_USERS_DEFAULT),
+        timer);
+    FSNamesystem.LOG.info("Lock profiler enabled: " + profiler.isEnabled());
+  }
+
+  /** @return the profiler of the lock waits and holds. */
+  FSNamesystemLockProfiler getProfiler() {
+    return profiler;
   }
 
   public void readLock() {
-    doLock(false);
+    doLock(RwLockMode.GLOBAL, false);
+  }
+
+  public void readLock(RwLockMode lockMode) {
+    doLock(lockMode, false);
   }
 
   public void readLockInterruptibly() throws InterruptedException {
-    doLockInterruptibly(false);
+    doLockInterruptibly(RwLockMode.GLOBAL, false);
   }
 
   public void readUnlock() {
@@ -180,6 +268,24 @@ public void readUnlock(String opName) {
 
   public void readUnlock(String opName,
       Supplier<String> lockReportInfoSupplier) {
+    readUnlock(RwLockMode.GLOBAL, opName, lockReportInfoSupplier);
+  }
+
+  public void readUnlock(RwLockMode lockMode, String opName) {
+    readUnlock(lockMode, opName, null);
+  }
+
+  public void readUnlock(RwLockMode lockMode, String opName,
+      Supplier<String> lockReportInfoSupplier) {
+    if (isOptimisticRead()) {
+      return;
+    }
+    if (usesBmLock(lockMode)) {
+      bmLock.readLock().unlock();
+    }
+    if (!usesCoarseLock(lockMode)) {
+      return;
+    }
     final boolean needReport = coarseLock.getReadHoldCount() == 1;
     final long readLockIntervalNanos =
         timer.monotonicNowNanos() - readLockHeldTimeStampNanos.get();
@@ -188,7 +294,10 @@ public void readUnlock(String opName,
 
     if (needReport) {
       addMetric(opName, readLockIntervalNanos, false);
+      profiler.record(opName, false, readLockWaitNanos.get(),
+          readLockIntervalNanos);
       readLockHeldTimeStampNanos.remove();
+      readLockWaitNanos.remove();
     }
     final long readLockIntervalMs =
         TimeUnit.NANOSECONDS.toMillis(readLockIntervalNanos);
@@ -240,11 +349,15 @@ public void readUnlock(String opName,
   }
   
   public void writeLock() {
-    doLock(true);
+    doLock(RwLockMode.GLOBAL, true);
+  }
+
+  public void writeLock(RwLockMode lockMode) {
+    doLock(lockMode, true);
   }
 
   public void writeLockInterruptibly() throws InterruptedException {
-    doLockInterruptibly(true);
+    doLockInterruptibly(RwLockMode.GLOBAL, true);
   }
 
   /**
@@ -289,6 +402,16 @@ public void writeUnlock(String opName, boolean suppressWriteLockReport) {
     writeUnlock(opName, suppressWriteLockReport, null);
   }
 
+  /**
+   * Unlocks FSNameSystem write lock in the given mode.
+   *
+   * @param lockMode The lock domain to release.
+   * @param opName Operation name.
+   */
+  public void writeUnlock(RwLockMode lockMode, String opName) {
+    writeUnlock(lockMode, opName, false, null);
+  }
+
   /**
    * Unlocks FSNameSystem write lock.
    *
@@ -299,10 +422,28 @@ public void writeUnlock(String opName, boolean suppressWriteLockReport) {
    */
   private void writeUnlock(String opName, boolean suppressWriteLockReport,
       Supplier<String> lockReportInfoSupplier) {
+    writeUnlock(RwLockMode.GLOBAL, opName, suppressWriteLockReport,
+        lockReportInfoSupplier);
+  }
+
+  private void writeUnlock(RwLockMode lockMode, String opName,
+      boolean suppressWriteLockReport,
+      Supplier<String> lockReportInfoSupplier) {
+    if (optimisticReadEnabled) {
+      writeVersion.incrementAndGet();
+      numWriteHolds.decrementAndGet();
+    }
+    if (usesBmLock(lockMode)) {
+      bmLock.writeLock().unlock();
+    }
+    if (!usesCoarseLock(lockMode)) {
+      return;
+    }
     final boolean needReport = !suppressWriteLockReport && coarseLock
         .getWriteHoldCount() == 1 && coarseLock.isWriteLockedByCurrentThread();
     final long writeLockIntervalNanos =
         timer.monotonicNowNanos() - writeLockHeldTimeStampNanos;
+    final long waitNanos = writeLockWaitNanos;
     final long currentTimeMs = timer.now();
     final long writeLockIntervalMs =
         TimeUnit.NANOSECONDS.toMillis(writeLockIntervalNanos);
@@ -333,6 +474,7 @@ private void writeUnlock(String opName, boolean suppressWriteLockReport,
 
     if (needReport) {
       addMetric(opName, writeLockIntervalNanos, true);
+      profiler.record(opName, true, waitNanos, writeLockIntervalNanos);
     }
 
     if (logAction.shouldLog()) {
@@ -360,6 +502,96 @@ public boolean isWriteLockedByCurrentThread() {
     return coarseLock.isWriteLockedByCurrentThread();
   }
 
+  /**
+   * @return true if the current thread holds the write lock of every domain
+   * covered by the given mode.
+   */
+  public boolean isWriteLockedByCurrentThread(RwLockMode lockMode) {
+    boolean locked = true;
+    if (usesCoarseLock(lockMode)) {
+      locked = coarseLock.isWriteLockedByCurrentThread();
+    }
+    if (usesBmLock(lockMode)) {
+      locked &= bmLock.isWriteLockedByCurrentThread();
+    }
+    return locked;
+  }
+
+  /**
+   * @return true if the current thread holds the read or write lock of every
+   * domain covered by the given mode.
+   */
+  public boolean hasReadLock(RwLockMode lockMode) {
+    if (isOptimisticRead()) {
+      return true;
+    }
+    boolean locked = true;
+    if (usesCoarseLock(lockMode)) {
+      locked = coarseLock.getReadHoldCount() > 0 ||
+          coarseLock.isWriteLockedByCurrentThread();
+    }
+    if (usesBmLock(lockMode)) {
+      locked &= bmLock.getReadHoldCount() > 0 ||
+          bmLock.isWriteLockedByCurrentThread();
+    }
+    return locked;
+  }
+
+  public boolean isFineGrainedLockEnabled() {
+    return fineGrainedLockEnabled;
+  }
+
+  public boolean isOptimisticReadEnabled() {
+    return optimisticReadEnabled;
+  }
+
+  /**
+   * Start an optimistic read by the current thread, which must not hold any
+   * lock. Until {@link #validate(long)} is called, the read locks taken by the
+   * thread are no-ops and it must not take any write lock.
+   *
+   * @return a stamp to validate the read with, or {@link #INVALID_STAMP} if
+   *         optimistic reads are disabled or a writer holds the lock, in
+   *         which case the read must be done under the read lock.
+   */
+  public long tryOptimisticRead() {
+    if (!optimisticReadEnabled) {
+      return INVALID_STAMP;
+    }
+    final long stamp = writeVersion.get();
+    if (numWriteHolds.get() > 0) {
+      numOptimisticReadRetries.increment();
+      return INVALID_STAMP;
+    }
+    optimisticRead.set(Boolean.TRUE);
+    return stamp;
+  }
+
+  /**
+   * End the optimistic read of the current thread.
+   *
+   * @param stamp the stamp returned by {@link #tryOptimisticRead()}
+   * @return true if no write lock was held since the read started, so that
+   *         its result is consistent.
+   */
+  public boolean validate(long stamp) {
+    optimisticRead.set(Boolean.FALSE);
+    // A successful compare-and-set is also a volatile write, which keeps the
+    // reads of the operation from being reordered after the check.
+    final boolean valid = writeVersion.compareAndSet(stamp, stamp)
+        && numWriteHolds.get() == 0;
+    if (valid) {
+      numOptimisticReads.increment();
+    } else {
+      numOptimisticReadRetries.increment();
+    }
+    return valid;
+  }
+
+  private boolean isOptimisticRead() {
+    return optimisticReadEnabled && optimisticRead.get();
+  }
+
   public Condition newWriteLockCondition() {
     return coarseLock.writeLock().newCondition();
   }
@@ -397,6 +629,21 @@ public long getNumOfWriteLockLongHold() {
     return numWriteLockLongHold.longValue();
   }
 
+  /**
+   * @return the number of optimistic reads which were validated.
+   */
+  public long getNumOfOptimisticReads() {
+    return numOptimisticReads.longValue();
+  }
+
+  /**
+   * @return the number of optimistic reads which had to be repeated under
+   * the read lock.
+   */
+  public long getNumOfOptimisticReadRetries() {
+    return numOptimisticReadRetries.longValue();
+  }
+
   /**
    * Add the lock hold time for a recent operation to the metrics.
    * @param operationName Name of the operation for which to record the time
@@ -414,37 +661,113 @@ private void addMetric(String operationName, long value, boolean isWrite) {
         isWrite ? Timing.LOCKEXCLUSIVE : Timing.LOCKSHARED, value);
   }
 
-  private void doLock(boolean isWrite) {
+  /**
+   * @return true if the given mode is backed by the namespace lock. Without
+   * fine-grained locking every mode is.
+   */
+  private boolean usesCoarseLock(RwLockMode lockMode) {
+    return !fineGrainedLockEnabled || lockMode != RwLockMode.BM;
+  }
+
+  /**
+   * @return true if the given mode is backed by the block management lock.
+   * Without fine-grained locking no mode is.
+   */
+  private boolean usesBmLock(RwLockMode lockMode) {
+    return fineGrainedLockEnabled && lockMode != RwLockMode.FS;
+  }
+
+  private void doLock(RwLockMode lockMode, boolean isWrite) {
+    if (skipOptimisticReadLock(isWrite)) {
+      return;
+    }
     long startNanos = timer.monotonicNowNanos();
-    if (isWrite) {
-      coarseLock.writeLock().lock();
-    } else {
-      coarseLock.readLock().lock();
+    if (usesCoarseLock(lockMode)) {
+      if (isWrite) {
+        coarseLock.writeLock().lock();
+      } else {
+        coarseLock.readLock().lock();
+      }
     }
-    updateLockWait(startNanos, isWrite);
+    if (usesBmLock(lockMode)) {
+      if (isWrite) {
+        bmLock.writeLock().lock();
+      } else {
+        bmLock.readLock().lock();
+      }
+    }
+    updateLockWait(lockMode, startNanos, isWrite);
   }
 
-  private void doLockInterruptibly(boolean isWrite)
+  private void doLockInterruptibly(RwLockMode lockMode, boolean isWrite)
       throws InterruptedException {
+    if (skipOptimisticReadLock(isWrite)) {
+      return;
+    }
     long startNanos = timer.monotonicNowNanos();
+    if (usesCoarseLock(lockMode)) {
+      if (isWrite) {
+        coarseLock.writeLock().lockInterruptibly();
+      } else {
+        coarseLock.readLock().lockInterruptibly();
+      }
+    }
+    if (usesBmLock(lockMode)) {
+      try {
+        if (isWrite) {
+          bmLock.writeLock().lockInterruptibly();
+        } else {
+          bmLock.readLock().lockInterruptibly();
+        }
+      } catch (InterruptedException e) {
+        if (usesCoarseLock(lockMode)) {
+          if (isWrite) {
+            coarseLock.writeLock().unlock();
+          } else {
+            coarseLock.readLock().unlock();
+          }
+        }
+        throw e;
+      }
+    }
+    updateLockWait(lockMode, startNanos, isWrite);
+  }
+
+  /**
+   * @return true if the lock must not be taken since the current thread is
+   * in an optimistic read.
+   */
+  private boolean skipOptimisticReadLock(boolean isWrite) {
+    if (!isOptimisticRead()) {
+      return false;
+    }
     if (isWrite) {
-      coarseLock.writeLock().lockInterruptibly();
-    } else {
-      coarseLock.readLock().lockInterruptibly();
+      throw new IllegalStateException(
+          "Cannot acquire the write lock in an optimistic read");
     }
-    updateLockWait(startNanos, isWrite);
+    return true;
   }
 
-  private void updateLockWait(long startNanos, boolean isWrite) {
+  private void updateLockWait(RwLockMode lockMode, long startNanos,
+      boolean isWrite) {
+    if (isWrite && optimisticReadEnabled) {
+      numWriteHolds.incrementAndGet();
+      writeVersion.incrementAndGet();
+    }
     long now = timer.monotonicNowNanos();
     updateProcessingDetails(Timing.LOCKWAIT, now - startNanos);
+    if (!usesCoarseLock(lockMode)) {
+      return;
+    }
     if (isWrite) {
       if (coarseLock.getWriteHoldCount() == 1) {
         writeLockHeldTimeStampNanos = now;
+        writeLockWaitNanos = now - startNanos;
       }
     } else {
       if (coarseLock.getReadHoldCount() == 1) {
         readLockHeldTimeStampNanos.set(now);
+        readLockWaitNanos.set(now - startNanos);
       }
     }
   }
@@ -0,0 +1,273 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.ipc.Server;
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.util.Timer;
+
+/**
+ * Accounts the time the operations wait for and hold the
+ * {@link FSNamesystemLock}, by operation and by the user of the RPC call.
+ * Unlike the detailed lock metrics, the times are also kept as histograms,
+ * so that the operations causing the lock contention can be found without
+ * taking stack traces. The accounting only takes a few counter increments
+ * per lock hold, so it can be always on.
+ * <p>
+ * The times are exposed as a metrics source, by operation, and as JSON by
+ * {@link LockProfileServlet}, by operation and by user.
+ */
+@InterfaceAudience.Private
+public class FSNamesystemLockProfiler implements MetricsSource {
+  static final String METRICS_SOURCE_NAME = "FSNamesystemLockProfile";
+  /** The name the users beyond the maximum number are accounted under. */
+  static final String OTHER_USERS = "OTHER";
+
+  /** Upper bounds of the histogram buckets; the last bucket is unbounded. */
+  static final long[] BUCKET_BOUNDS_NANOS = {
+      TimeUnit.MICROSECONDS.toNanos(100),
+      TimeUnit.MILLISECONDS.toNanos(1),
+      TimeUnit.MILLISECONDS.toNanos(10),
+      TimeUnit.MILLISECONDS.toNanos(100),
+      TimeUnit.SECONDS.toNanos(1)};
+  private static final String[] BUCKET_NAMES = {
+      "Le100us", "Le1ms", "Le10ms", "Le100ms", "Le1s", "Gt1s"};
+
+  /** The wait and hold times of the read or the write lock. */
+  static final class LockTimes {
+    private final LongAdder numOps = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder holdNanos = new LongAdder();
+    private final LongAdder[] waitHistogram = newHistogram();
+    private final LongAdder[] holdHistogram = newHistogram();
+
+    private static LongAdder[] newHistogram() {
+      final LongAdder[] histogram = new LongAdder[BUCKET_NAMES.length];
+      for (int i = 0; i < histogram.length; i++) {
+        histogram[i] = new LongAdder();
+      }
+      return histogram;
+    }
+
+    private static int getBucket(long nanos) {
+      int i = 0;
+      while (i < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[i]) {
+        i++;
+      }
+      return i;
+    }
+
+    void add(long wait, long hold) {
+      numOps.increment();
+      waitNanos.add(wait);
+      holdNanos.add(hold);
+      waitHistogram[getBucket(wait)].increment();
+      holdHistogram[getBucket(hold)].increment();
+    }
+
+    long getNumOps() {
+      return numOps.longValue();
+    }
+
+    long getWaitNanos() {
+      return waitNanos.longValue();
+    }
+
+    long getHoldNanos() {
+      return holdNanos.longValue();
+    }
+
+    long getWaitCount(int bucket) {
+      return waitHistogram[bucket].longValue();
+    }
+
+    long getHoldCount(int bucket) {
+      return holdHistogram[bucket].longValue();
+    }
+  }
+
+  /** The lock times of an operation or a user. */
+  static final class Profile {
+    private final LockTimes read = new LockTimes();
+    private final LockTimes write = new LockTimes();
+
+    LockTimes get(boolean isWrite) {
+      return isWrite ? write : read;
+    }
+  }
+
+  private final boolean enabled;
+  private final int maxUsers;
+  private final Timer timer;
+  private final long startNanos;
+  private final ConcurrentMap<String, Profile> byOperation =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Profile> byUser =
+      new ConcurrentHashMap<>();
+
+  FSNamesystemLockProfiler(boolean enabled, int maxUsers, Timer timer) {
+    this.enabled = enabled;
+    this.maxUsers = maxUsers;
+    this.timer = timer;
+    this.startNanos = timer.monotonicNowNanos();
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Account a lock hold.
+   * @param opName the name of the operation which held the lock.
+   * @param isWrite whether the write lock was held.
+   * @param waitNanos the time waited for the lock.
+   * @param holdNanos the time the lock was held.
+   */
+  void record(String opName, boolean isWrite, long waitNanos,
+      long holdNanos) {
+    if (!enabled) {
+      return;
+    }
+    getProfile(byOperation, opName).get(isWrite).add(waitNanos, holdNanos);
+    final UserGroupInformation ugi = Server.getRemoteUser();
+    if (ugi != null) {
+      String user = ugi.getShortUserName();
+      if (!byUser.containsKey(user) && byUser.size() >= maxUsers) {
+        user = OTHER_USERS;
+      }
+      getProfile(byUser, user).get(isWrite).add(waitNanos, holdNanos);
+    }
+  }
+
+  private static Profile getProfile(ConcurrentMap<String, Profile> profiles,
+      String name) {
+    final Profile profile = profiles.get(name);
+    return profile != null ? profile :
+        profiles.computeIfAbsent(name, k -> new Profile());
+  }
+
+  @VisibleForTesting
+  Profile getOperationProfile(String opName) {
+    return byOperation.get(opName);
+  }
+
+  @VisibleForTesting
+  Profile getUserProfile(String user) {
+    return byUser.get(user);
+  }
+
+  @Override
+  public void getMetrics(MetricsCollector collector, boolean all) {
+    final MetricsRecordBuilder rb = collector.addRecord(METRICS_SOURCE_NAME)
+        .setContext("dfs");
+    for (Map.Entry<String, Profile> e : byOperation.entrySet()) {
+      final String opName = StringUtils.capitalize(e.getKey());
+      addMetrics(rb, "FSNReadLock" + opName, e.getValue().read);
+      addMetrics(rb, "FSNWriteLock" + opName, e.getValue().write);
+    }
+  }
+
+  private static void addMetrics(MetricsRecordBuilder rb, String prefix,
+      LockTimes times) {
+    if (times.getNumOps() == 0) {
+      return;
+    }
+    rb.addCounter(Interns.info(prefix + "NumOps",
+        "Number of lock holds"), times.getNumOps());
+    rb.addCounter(Interns.info(prefix + "WaitNanos",
+        "Total time waited for the lock"), times.getWaitNanos());
+    rb.addCounter(Interns.info(prefix + "HoldNanos",
+        "Total time the lock was held"), times.getHoldNanos());
+    for (int i = 0; i < BUCKET_NAMES.length; i++) {
+      rb.addCounter(Interns.info(prefix + "Wait" + BUCKET_NAMES[i],
+          "Number of lock waits in the time range"), times.getWaitCount(i));
+      rb.addCounter(Interns.info(prefix + "Hold" + BUCKET_NAMES[i],
+          "Number of lock holds in the time range"), times.getHoldCount(i));
+    }
+  }
+
+  /**
+   * Write the lock times by operation and by user as JSON. Besides the
+   * totals and the histograms, the handler occupancy is the average number
+   * of handlers which waited for or held the lock since the start.
+   */
+  void writeJson(JsonGenerator json) throws IOException {
+    final long elapsedNanos = timer.monotonicNowNanos() - startNanos;
+    json.writeStartObject();
+    json.writeBooleanField("enabled", enabled);
+    json.writeNumberField("elapsedTime",
+        TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    json.writeArrayFieldStart("bucketBoundsNanos");
+    for (long bound : BUCKET_BOUNDS_NANOS) {
+      json.writeNumber(bound);
+    }
+    json.writeEndArray();
+    writeProfiles(json, "operations", byOperation, elapsedNanos);
+    writeProfiles(json, "users", byUser, elapsedNanos);
+    json.writeEndObject();
+  }
+
+  private static void writeProfiles(JsonGenerator json, String field,
+      Map<String, Profile> profiles, long elapsedNanos) throws IOException {
+    json.writeObjectFieldStart(field);
+    for (Map.Entry<String, Profile> e : new TreeMap<>(profiles).entrySet()) {
+      json.writeObjectFieldStart(e.getKey());
+      writeLockTimes(json, "read", e.getValue().read, elapsedNanos);
+      writeLockTimes(json, "write", e.getValue().write, elapsedNanos);
+      json.writeEndObject();
+    }
+    json.writeEndObject();
+  }
+
+  private static void writeLockTimes(JsonGenerator json, String field,
+      LockTimes times, long elapsedNanos) throws IOException {
+    json.writeObjectFieldStart(field);
+    json.writeNumberField("numOps", times.getNumOps());
+    json.writeNumberField("waitNanos", times.getWaitNanos());
+    json.writeNumberField("holdNanos", times.getHoldNanos());
+    json.writeNumberField("handlerOccupancy", elapsedNanos <= 0 ? 0.0 :
+        (double) (times.getWaitNanos() + times.getHoldNanos()) / elapsedNanos);
+    json.writeArrayFieldStart("waitHistogram");
+    for (int i = 0; i < BUCKET_NAMES.length; i++) {
+      json.writeNumber(times.getWaitCount(i));
+    }
+    json.writeEndArray();
+    json.writeArrayFieldStart("holdHistogram");
+    for (int i = 0; i < BUCKET_NAMES.length; i++) {
+      json.writeNumber(times.getHoldCount(i));
+    }
+    json.writeEndArray();
+    json.writeEndObject();
+  }
+}
@@ -160,6 +160,10 @@ public static void setOperationType(String opType) {
     operationType.set(opType);
   }
 
+  static String getOperationType() {
+    return operationType.get();
+  }
+
   public boolean isMemberOfGroup(String group) {
     return groups.contains(group);
   }
@@ -24,6 +24,7 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.apache.hadoop.fs.PathIsNotDirectoryException;
 import org.apache.hadoop.fs.permission.FsAction;
@@ -74,6 +75,18 @@ public static INodeDirectory valueOf(INode inode, Object path
   static final byte[] ROOT_NAME = DFSUtil.string2Bytes("");
 
   private List<INode> children = null;
+
+  /**
+   * The id of the latest snapshot with a diff of an inode in the subtree of
+   * this directory, or {@link Snapshot#NO_SNAPSHOT_ID}. The id is only ever
+   * increased, hence a subtree with an id less than the id of a snapshot has
+   * no change after the snapshot. The id is also updated when the diff index
+   * is built under the read lock, so it is only increased by CAS.
+   */
+  private volatile int lastSubtreeDiffSnapshotId = Snapshot.NO_SNAPSHOT_ID;
+  private static final AtomicIntegerFieldUpdater<INodeDirectory>
+      LAST_SUBTREE_DIFF_SNAPSHOT_ID = AtomicIntegerFieldUpdater.newUpdater(
+          INodeDirectory.class, "lastSubtreeDiffSnapshotId");
   
   /** constructor */
   public INodeDirectory(long id, byte[] name, PermissionStatus permissions,
@@ -93,6 +106,7 @@ public INodeDirectory(INodeDirectory other, boolean adopt,
       Feature... featuresToCopy) {
     super(other);
     this.children = other.children;
+    this.lastSubtreeDiffSnapshotId = other.lastSubtreeDiffSnapshotId;
     if (adopt && this.children != null) {
       for (INode child : children) {
         child.setParent(this);
@@ -270,6 +284,41 @@ public boolean isDescendantOfSnapshotRoot(INodeDirectory snapshotRootDir) {
     return false;
   }
 
+  /**
+   * @return the id of the latest snapshot with a diff of an inode in the
+   *         subtree of this directory, or {@link Snapshot#NO_SNAPSHOT_ID}.
+   */
+  public int getLastSubtreeDiffSnapshotId() {
+    return lastSubtreeDiffSnapshotId;
+  }
+
+  /**
+   * Update the id of the latest snapshot with a diff in the subtree of this
+   * directory, but not of its ancestors.
+   * @param snapshotId the id of a snapshot with a diff in the subtree.
+   */
+  public void updateLastSubtreeDiffSnapshotId(int snapshotId) {
+    for (int last; (last = lastSubtreeDiffSnapshotId) < snapshotId;) {
+      if (LAST_SUBTREE_DIFF_SNAPSHOT_ID.compareAndSet(this, last,
+          snapshotId)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Record a new diff of the given snapshot in the subtree of this directory,
+   * for this directory and all its ancestors. The ancestors are not skipped
+   * once one of them has a later id, since a renamed subtree may carry the
+   * ids of the diffs recorded at its old location.
+   * @param snapshotId the id of the snapshot of the diff.
+   */
+  public void recordSubtreeDiff(int snapshotId) {
+    for (INodeDirectory dir = this; dir != null; dir = dir.getParent()) {
+      dir.updateLastSubtreeDiffSnapshotId(snapshotId);
+    }
+  }
+
   public Snapshot getSnapshot(byte[] snapshotName) {
     return getDirectorySnapshottableFeature().getSnapshot(snapshotName);
   }
@@ -591,6 +640,17 @@ public boolean addChild(INode node) {
     return true;
   }
 
+  /**
+   * During image loading, allocate the children list with the number of
+   * children serialized for this directory, so that large directories do not
+   * keep the slack of repeated list growth on the heap.
+   */
+  void ensureChildrenCapacityAtLoading(int numChildren) {
+    if (children == null && numChildren > 0) {
+      children = new ArrayList<>(numChildren);
+    }
+  }
+
   /**
    * During image loading, the search is unnecessary since the insert position
    * should always be at the end of the map given the sequence they are
@@ -712,6 +772,9 @@ protected ContentSummaryComputationContext computeDirectoryContentSummary(
     // throws exception if failing the permission check
     summary.checkPermission(this, snapshotId, FsAction.READ_EXECUTE);
     ReadOnlyList<INode> childrenList = getChildrenList(snapshotId);
+    if (summary.computeInParallel(this, childrenList, snapshotId)) {
+      childrenList = ReadOnlyList.Util.emptyList();
+    }
     // Explicit traversing is done to enable repositioning after relinquishing
     // and reacquiring locks.
     for (int i = 0;  i < childrenList.size(); i++) {
@@ -727,6 +790,10 @@ protected ContentSummaryComputationContext computeDirectoryContentSummary(
       if (lastYieldCount == summary.getYieldCount()) {
         continue;
       }
+      // The counts are incomplete anyway if the computation was interrupted.
+      if (summary.isInterrupted()) {
+        break;
+      }
       // The locks were released and reacquired. Check parent first.
       if (!isRoot() && getParent() == null) {
         // Stop further counting and return whatever we have so far.
@@ -20,12 +20,15 @@
 import static org.apache.hadoop.util.Time.monotonicNow;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
@@ -46,6 +49,7 @@
 import org.apache.hadoop.hdfs.protocol.OpenFilesIterator;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfo;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
+import org.apache.hadoop.hdfs.util.TimingWheel;
 import org.apache.hadoop.util.Daemon;
 import org.apache.hadoop.util.Lists;
 import org.apache.hadoop.util.Time;
@@ -77,6 +81,13 @@
  * 2.9) Namenode removes f from the lease
  *      and removes the lease once all files have been removed
  * 2.10) Namenode commit changes to edit log
+ *
+ * The leases are scheduled to be checked at their hard limits in a
+ * hierarchical {@link TimingWheel}, so that the Monitor does not scan all
+ * the leases. Renewing a lease does not reschedule it; a lease which is
+ * found renewed when it is checked is scheduled again. The expired leases
+ * are released in batches, releasing the FSNamesystem write lock between
+ * the batches.
  */
 @InterfaceAudience.Private
 public class LeaseManager {
@@ -87,6 +98,10 @@ public class LeaseManager {
   private long hardLimit;
   static final int INODE_FILTER_WORKER_COUNT_MAX = 4;
   static final int INODE_FILTER_WORKER_TASK_MIN = 512;
+  // The expiry wheel spans 64^4 ticks of 100ms, about 19 days
+  private static final long LEASE_EXPIRY_TICK_MS = 100;
+  private static final int LEASE_EXPIRY_WHEEL_SIZE = 64;
+  private static final int LEASE_EXPIRY_WHEEL_LEVELS = 4;
   private long lastHolderUpdateTime;
   private String internalLeaseHolder;
 
@@ -97,6 +112,12 @@ public class LeaseManager {
   private final HashMap<String, Lease> leases = new HashMap<>();
   // INodeID -> Lease
   private final TreeMap<Long, Lease> leasesById = new TreeMap<>();
+  // The leases to be checked at their hard limits
+  private final TimingWheel<Lease> expiryWheel = new TimingWheel<>(
+      LEASE_EXPIRY_TICK_MS, LEASE_EXPIRY_WHEEL_SIZE,
+      LEASE_EXPIRY_WHEEL_LEVELS, Time.monotonicNow());
+  // The leases which expired the hard limit, from the oldest
+  private final Set<Lease> expiredLeases = new LinkedHashSet<>();
 
   private Daemon lmthread;
   private volatile boolean shouldRunMonitor;
@@ -353,6 +374,7 @@ synchronized Lease addLease(String holder, long inodeId) {
     if (lease == null) {
       lease = new Lease(holder);
       leases.put(holder, lease);
+      scheduleExpiry(lease);
     } else {
       renewLease(lease);
     }
@@ -381,6 +403,8 @@ private synchronized void removeLease(Lease lease, long inodeId) {
       if (leases.remove(lease.holder) == null) {
         LOG.error("{} not found", lease);
       }
+      expiryWheel.remove(lease.expiryNode);
+      expiredLeases.remove(lease);
     }
   }
 
@@ -400,6 +424,8 @@ synchronized void removeLease(String holder, INodeFile src) {
   synchronized void removeAllLeases() {
     leasesById.clear();
     leases.clear();
+    expiryWheel.clear();
+    expiredLeases.clear();
   }
 
   /**
@@ -424,9 +450,24 @@ synchronized void renewLease(String holder) {
   synchronized void renewLease(Lease lease) {
     if (lease != null) {
       lease.renew();
+      // a scheduled lease is rescheduled when it is checked.
+      if (expiredLeases.remove(lease)) {
+        scheduleExpiry(lease);
+      }
     }
   }
 
+  /**
+   * Schedule the lease to be checked at its hard limit.
+   */
+  private void scheduleExpiry(Lease lease) {
+    long deadline = lease.lastUpdate + hardLimit;
+    if (deadline < lease.lastUpdate) {
+      deadline = Long.MAX_VALUE;
+    }
+    expiryWheel.add(lease.expiryNode, deadline);
+  }
+
   /**
    * Renew all of the currently open leases.
    */
@@ -447,6 +488,8 @@ class Lease {
     private final String holder;
     private long lastUpdate;
     private final HashSet<Long> files = new HashSet<>();
+    private final TimingWheel.Node<Lease> expiryNode =
+        new TimingWheel.Node<>(this);
 
     /** Only LeaseManager object can create a lease */
     private Lease(String h) {
@@ -504,20 +547,33 @@ long getLastUpdate() {
     }
   }
 
-  public void setLeasePeriod(long softLimit, long hardLimit) {
+  public synchronized void setLeasePeriod(long softLimit, long hardLimit) {
     this.softLimit = softLimit;
-    this.hardLimit = hardLimit; 
+    this.hardLimit = hardLimit;
+    // reschedule the leases at the new hard limit.
+    expiryWheel.clear();
+    expiredLeases.clear();
+    for (Lease lease : leases.values()) {
+      scheduleExpiry(lease);
+    }
   }
 
-  private synchronized Collection<Lease> getExpiredCandidateLeases() {
+  /**
+   * Advance the expiry wheel, moving the leases which expired the hard
+   * limit to the expired leases and rescheduling the renewed ones.
+   * @return the expired leases, from the oldest.
+   */
+  @VisibleForTesting
+  synchronized Deque<Lease> getExpiredCandidateLeases() {
     final long now = Time.monotonicNow();
-    Collection<Lease> expired = new HashSet<>();
-    for (Lease lease : leases.values()) {
+    for (Lease lease : expiryWheel.advance(now)) {
       if (lease.expiredHardLimit(now)) {
-        expired.add(lease);
+        expiredLeases.add(lease);
+      } else {
+        scheduleExpiry(lease);
       }
     }
-    return expired;
+    return new ArrayDeque<>(expiredLeases);
   }
   
   /******************************************************
@@ -531,27 +587,30 @@ class Monitor implements Runnable {
     @Override
     public void run() {
       for(; shouldRunMonitor && fsnamesystem.isRunning(); ) {
-        boolean needSync = false;
         try {
           // sleep now to avoid infinite loop if an exception was thrown.
           Thread.sleep(fsnamesystem.getLeaseRecheckIntervalMs());
 
           // pre-filter the leases w/o the fsn lock.
-          Collection<Lease> candidates = getExpiredCandidateLeases();
-          if (candidates.isEmpty()) {
-            continue;
-          }
-
-          fsnamesystem.writeLockInterruptibly();
-          try {
-            if (!fsnamesystem.isInSafeMode()) {
+          Deque<Lease> candidates = getExpiredCandidateLeases();
+
+          // release the expired leases in batches, each of which holds the
+          // lock for at most the max lock hold to release lease.
+          while (!candidates.isEmpty() && shouldRunMonitor
+              && fsnamesystem.isRunning()) {
+            boolean needSync = false;
+            fsnamesystem.writeLockInterruptibly();
+            try {
+              if (fsnamesystem.isInSafeMode()) {
+                break;
+              }
               needSync = checkLeases(candidates);
-            }
-          } finally {
-            fsnamesystem.writeUnlock("leaseManager");
-            // lease reassignments should to be sync'ed.
-            if (needSync) {
-              fsnamesystem.getEditLog().logSync();
+            } finally {
+              fsnamesystem.writeUnlock("leaseManager");
+              // lease reassignments should to be sync'ed.
+              if (needSync) {
+                fsnamesystem.getEditLog().logSync();
+              }
             }
           }
         } catch(InterruptedException ie) {
@@ -563,7 +622,7 @@ public void run() {
     }
   }
 
-  /** Check the leases beginning from the oldest.
+  /** Check a batch of the expired leases beginning from the oldest.
    *  @return true is sync is needed.
    */
   @VisibleForTesting
@@ -571,19 +630,33 @@ synchronized boolean checkLeases() {
     return checkLeases(getExpiredCandidateLeases());
   }
 
-  private synchronized boolean checkLeases(Collection<Lease> leasesToCheck) {
+  /**
+   * Check the leases from the head of the queue until the max lock hold to
+   * release lease is reached. The checked leases are removed from the
+   * queue, except for a lease whose check was interrupted after some of its
+   * files were released, which is checked further by the next batch.
+   * @return true is sync is needed.
+   */
+  private synchronized boolean checkLeases(Deque<Lease> leasesToCheck) {
     boolean needSync = false;
     assert fsnamesystem.hasWriteLock();
 
     long start = monotonicNow();
-    for (Lease leaseToCheck : leasesToCheck) {
-      if (isMaxLockHoldToReleaseLease(start)) {
+    boolean checked = false;
+    while (!leasesToCheck.isEmpty()) {
+      // check at least one lease, so that every batch makes progress.
+      if (checked && isMaxLockHoldToReleaseLease(start)) {
         break;
       }
+      checked = true;
+      final Lease leaseToCheck = leasesToCheck.peek();
       if (!leaseToCheck.expiredHardLimit(Time.monotonicNow())) {
+        leasesToCheck.poll();
         continue;
       }
       LOG.info("{} has expired hard limit", leaseToCheck);
+      final int numFiles = leaseToCheck.files.size();
+      boolean interrupted = false;
       final List<Long> removing = new ArrayList<>();
       // need to create a copy of the oldest lease files, because
       // internalReleaseLease() removes files corresponding to empty files,
@@ -637,6 +710,7 @@ private synchronized boolean checkLeases(Collection<Lease> leasesToCheck) {
         if (isMaxLockHoldToReleaseLease(start)) {
           LOG.debug("Breaking out of checkLeases after {} ms.",
               fsnamesystem.getMaxLockHoldToReleaseLeaseMs());
+          interrupted = true;
           break;
         }
       }
@@ -644,6 +718,9 @@ private synchronized boolean checkLeases(Collection<Lease> leasesToCheck) {
       for(Long id : removing) {
         removeLease(leaseToCheck, id);
       }
+      if (!interrupted || leaseToCheck.files.size() >= numFiles) {
+        leasesToCheck.poll();
+      }
     }
     return needSync;
   }
@@ -660,6 +737,7 @@ public synchronized String toString() {
     return getClass().getSimpleName() + "= {"
         + "\n leases=" + leases
         + "\n leasesById=" + leasesById
+        + "\n expiredLeases=" + expiredLeases
         + "\n}";
   }
 
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.http.HttpServer2;
+import org.apache.hadoop.io.IOUtils;
+
+/**
+ * Servlet that provides a JSON representation of the times the operations
+ * and the users waited for and held the namesystem lock. Like the other
+ * instrumentation servlets, it requires administrator access if
+ * hadoop.security.instrumentation.requires.admin is true.
+ */
+@InterfaceAudience.Private
+@SuppressWarnings("serial")
+public class LockProfileServlet extends DfsServlet {
+
+  public static final String SERVLET_NAME = "lockProfile";
+  public static final String PATH_SPEC = "/lockProfile";
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp)
+      throws IOException {
+    if (!HttpServer2.isInstrumentationAccessAllowed(getServletContext(),
+        req, resp)) {
+      return;
+    }
+    final NameNode nn = NameNodeHttpServer.getNameNodeFromContext(
+        getServletContext());
+    final FSNamesystem namesystem = nn.getNamesystem();
+    if (namesystem == null) {
+      resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "The namesystem is not initialized yet");
+      return;
+    }
+    resp.setContentType("application/json; charset=UTF-8");
+    JsonGenerator json = new JsonFactory().createGenerator(resp.getWriter());
+    try {
+      namesystem.getLockProfiler().writeJson(json);
+    } finally {
+      IOUtils.cleanupWithLogger(LOG, json);
+    }
+  }
+}
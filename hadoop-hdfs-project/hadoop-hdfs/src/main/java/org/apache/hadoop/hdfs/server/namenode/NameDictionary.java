@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+/**
+ * A dictionary of the local names of inodes, so that all the inodes with
+ * the same name share one byte array.
+ *
+ * Unlike {@link NameCache}, names are added whenever an inode is loaded,
+ * created or renamed. The dictionary only holds weak references to the
+ * names, so the garbage collector drops a name once no inode refers to it
+ * anymore, and deletes do not have to be tracked.
+ *
+ * This class is thread safe.
+ */
+class NameDictionary {
+  /** The estimated heap size of a byte array without its content. */
+  private static final int ARRAY_HEADER_BYTES = 16;
+  /**
+   * The estimated heap size of an {@link Entry}: the object header, the
+   * fields of {@link WeakReference}, the hash, the next entry and the
+   * replaced bytes.
+   */
+  private static final int ENTRY_BYTES = 56;
+  /** The estimated heap size of a slot of the table. */
+  private static final int SLOT_BYTES = 8;
+  private static final int INITIAL_CAPACITY = 1 << 16;
+  private static final float LOAD_FACTOR = 0.75f;
+
+  private static final class Entry extends WeakReference<byte[]> {
+    private final int hash;
+    private Entry next;
+    /** estimated heap bytes of the names replaced by this one */
+    private long replacedBytes;
+
+    Entry(byte[] name, int hash, Entry next, ReferenceQueue<byte[]> queue) {
+      super(name, queue);
+      this.hash = hash;
+      this.next = next;
+    }
+  }
+
+  private final ReferenceQueue<byte[]> queue = new ReferenceQueue<>();
+  private Entry[] table = new Entry[INITIAL_CAPACITY];
+  private int size = 0;
+  /** number of names replaced by a name of the dictionary */
+  private long hits = 0;
+  /** estimated heap bytes of the names replaced by the names in the table */
+  private long replacedBytes = 0;
+
+  private static int hash(byte[] name) {
+    int h = Arrays.hashCode(name);
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Look up the given name, adding it if it is not in the dictionary yet.
+   * @return the name of the dictionary equal to the given name.
+   */
+  synchronized byte[] intern(byte[] name) {
+    if (name == null || name.length == 0) {
+      return name;
+    }
+    expungeStaleEntries();
+    final int hash = hash(name);
+    final int index = hash & (table.length - 1);
+    for (Entry e = table[index]; e != null; e = e.next) {
+      if (e.hash != hash) {
+        continue;
+      }
+      byte[] existing = e.get();
+      if (existing != null && Arrays.equals(existing, name)) {
+        if (existing != name) {
+          hits++;
+          e.replacedBytes += ARRAY_HEADER_BYTES + name.length;
+          replacedBytes += ARRAY_HEADER_BYTES + name.length;
+        }
+        return existing;
+      }
+    }
+    table[index] = new Entry(name, hash, table[index], queue);
+    if (++size > table.length * LOAD_FACTOR) {
+      resize();
+    }
+    return name;
+  }
+
+  /**
+   * Remove the entries of the names which have been garbage collected.
+   * No inode refers to such a name anymore, so the names it replaced do not
+   * save any heap either.
+   */
+  private void expungeStaleEntries() {
+    for (Object x; (x = queue.poll()) != null;) {
+      final Entry stale = (Entry) x;
+      final int index = stale.hash & (table.length - 1);
+      Entry prev = null;
+      for (Entry e = table[index]; e != null; prev = e, e = e.next) {
+        if (e == stale) {
+          if (prev == null) {
+            table[index] = e.next;
+          } else {
+            prev.next = e.next;
+          }
+          size--;
+          replacedBytes -= e.replacedBytes;
+          break;
+        }
+      }
+    }
+  }
+
+  private void resize() {
+    final Entry[] newTable = new Entry[table.length << 1];
+    for (Entry head : table) {
+      for (Entry e = head; e != null;) {
+        final Entry next = e.next;
+        final int index = e.hash & (newTable.length - 1);
+        e.next = newTable[index];
+        newTable[index] = e;
+        e = next;
+      }
+    }
+    table = newTable;
+  }
+
+  /** @return the number of names in the dictionary. */
+  synchronized int size() {
+    expungeStaleEntries();
+    return size;
+  }
+
+  /** @return the number of names replaced by a name of the dictionary. */
+  synchronized long getHits() {
+    return hits;
+  }
+
+  /** @return the estimated heap bytes of the entries and the table. */
+  synchronized long getOverheadBytes() {
+    expungeStaleEntries();
+    return (long) size * ENTRY_BYTES + (long) table.length * SLOT_BYTES;
+  }
+
+  /**
+   * @return the estimated heap bytes of the names replaced by the names
+   *         still in the dictionary, less the heap bytes of the dictionary
+   *         itself. It is negative while the dictionary costs more than it
+   *         saves. Inodes deleted while their name is still in use by other
+   *         inodes are not subtracted, so this is an upper bound.
+   */
+  synchronized long getBytesSaved() {
+    expungeStaleEntries();
+    return replacedBytes - getOverheadBytes();
+  }
+
+  synchronized void clear() {
+    while (queue.poll() != null) {
+      // drain the references of the old table
+    }
+    table = new Entry[INITIAL_CAPACITY];
+    size = 0;
+    replacedBytes = 0;
+  }
+}
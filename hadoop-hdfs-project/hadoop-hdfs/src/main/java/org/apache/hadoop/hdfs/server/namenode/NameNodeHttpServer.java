@@ -251,6 +251,8 @@ private static void setupServlets(HttpServer2 httpServer) {
         IsNameNodeActiveServlet.class);
     httpServer.addInternalServlet(NetworkTopologyServlet.SERVLET_NAME,
         NetworkTopologyServlet.PATH_SPEC, NetworkTopologyServlet.class);
+    httpServer.addInternalServlet(LockProfileServlet.SERVLET_NAME,
+        LockProfileServlet.PATH_SPEC, LockProfileServlet.class);
   }
 
   static FSImage getFsImageFromContext(ServletContext context) {
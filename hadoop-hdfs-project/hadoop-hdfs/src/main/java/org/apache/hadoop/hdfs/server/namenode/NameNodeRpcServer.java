@@ -157,6 +157,7 @@
 import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenIdentifier;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManager;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockManagerFaultInjector;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockReportResolver;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.NamenodeRole;
 import org.apache.hadoop.hdfs.server.common.HttpGetFailedException;
@@ -839,6 +840,51 @@ public HdfsFileStatus create(String src, FsPermission masked,
     return status;
   }
 
+  @Override // ClientProtocol
+  public HdfsFileStatus[] createFiles(String[] srcs, FsPermission masked,
+      String clientName, EnumSetWritable<CreateFlag> flag,
+      boolean createParent, short replication, long blockSize)
+      throws IOException {
+    checkNNStartup();
+    String clientMachine = getClientMachine();
+    stateChangeLog.debug("*DIR* NameNode.createFiles: {} files for {} at {}.",
+        srcs.length, clientName, clientMachine);
+    for (String src : srcs) {
+      if (!checkPathLength(src)) {
+        throw new IOException("createFiles: Pathname " + src + " too long." +
+            "  Limit " + MAX_PATH_LENGTH + " characters, " + MAX_PATH_DEPTH +
+            " levels.");
+      }
+    }
+    namesystem.checkOperation(OperationCategory.WRITE);
+    CacheEntryWithPayload cacheEntry = getCacheEntryWithPayload(null);
+    if (cacheEntry != null && cacheEntry.isSuccess()) {
+      if (cacheEntry.getPayload() instanceof HdfsFileStatus[]) {
+        return (HdfsFileStatus[]) cacheEntry.getPayload();
+      }
+      // the entry was loaded from the edit log with one file of the batch.
+      return namesystem.getStartedFilesStatus(srcs, clientName);
+    }
+
+    HdfsFileStatus[] status = null;
+    try {
+      PermissionStatus perm = new PermissionStatus(getRemoteUser()
+          .getShortUserName(), null, masked);
+      status = namesystem.startFiles(srcs, perm, clientName, clientMachine,
+          flag.get(), createParent, replication, blockSize);
+    } finally {
+      RetryCache.setState(cacheEntry, status != null, status);
+    }
+
+    for (HdfsFileStatus stat : status) {
+      if (stat != null) {
+        metrics.incrFilesCreated();
+        metrics.incrCreateFileOps();
+      }
+    }
+    return status;
+  }
+
   @Override // ClientProtocol
   public LastBlockWithStatus append(String src, String clientName,
       EnumSetWritable<CreateFlag> flag) throws IOException {
@@ -983,6 +1029,22 @@ public boolean complete(String src, String clientName,
     return namesystem.completeFile(src, clientName, last, fileId);
   }
 
+  @Override // ClientProtocol
+  public Boolean[] completeFiles(String[] srcs, String clientName,
+      ExtendedBlock[] last, long[] fileIds) throws IOException {
+    checkNNStartup();
+    stateChangeLog.debug("*DIR* NameNode.completeFiles: {} files for {}",
+        srcs.length, clientName);
+    for (String src : srcs) {
+      if (!checkPathLength(src)) {
+        throw new IOException("completeFiles: Pathname " + src + " too long." +
+            "  Limit " + MAX_PATH_LENGTH + " characters, " + MAX_PATH_DEPTH +
+            " levels.");
+      }
+    }
+    return namesystem.completeFiles(srcs, clientName, last, fileIds);
+  }
+
   /**
    * The client has detected an error on the specified located blocks 
    * and is reporting them to the server.  For now, the namenode will 
@@ -1201,6 +1263,19 @@ public DirectoryListing getListing(String src, byte[] startAfter,
     return files;
   }
 
+  @Override // ClientProtocol
+  public DirectoryListing getRecursiveListing(String src, byte[] startAfter,
+      boolean needLocation) throws IOException {
+    checkNNStartup();
+    DirectoryListing files = namesystem.getRecursiveListing(
+        src, startAfter, needLocation);
+    if (files != null) {
+      metrics.incrGetListingOps();
+      metrics.incrFilesInGetListingOps(files.getPartialListing().length);
+    }
+    return files;
+  }
+
   @Override // ClientProtocol
   public BatchedDirectoryListing getBatchedListing(
       String[] srcs,
@@ -1640,6 +1715,10 @@ public DatanodeCommand blockReport(final DatanodeRegistration nodeReg,
     boolean noStaleStorages = false;
     try {
       if (bm.checkBlockReportLease(context, nodeReg)) {
+        // look up the reported blocks of all storages in parallel before
+        // queueing them, if enabled.
+        final BlockReportResolver.Resolution[] resolutions =
+            bm.resolveBlockReports(reports);
         for (int r = 0; r < reports.length; r++) {
           final BlockListAsLongs blocks = reports[r].getBlocks();
           //
@@ -1648,9 +1727,11 @@ public DatanodeCommand blockReport(final DatanodeRegistration nodeReg,
           // call of this loop is the final updated value for noStaleStorage.
           //
           final int index = r;
+          final BlockReportResolver.Resolution resolution =
+              resolutions != null ? resolutions[r] : null;
           noStaleStorages = bm.runBlockOp(() ->
             bm.processReport(nodeReg, reports[index].getStorage(),
-                blocks, context));
+                blocks, context, resolution));
         }
       } else {
         throw new InvalidBlockReportLeaseException(context.getReportId(), context.getLeaseId());
@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.audit;
+
+import static org.apache.commons.text.StringEscapeUtils.escapeJava;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.FLAG_ADDR;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.FLAG_ALLOWED;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.FLAG_CALLER_CONTEXT;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.FLAG_DST;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.FLAG_SRC;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.FLAG_STATUS;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.MAGIC;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.NO_DICT_ID;
+import static org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogger.VERSION;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Reads the files written by {@link BinaryAuditLogger} and renders each
+ * record in the text format of the default audit logger, prefixed with the
+ * time of the event.  A record cut short at the end of the file, by a
+ * NameNode that died while writing it, is treated as the end of the file.
+ */
+@InterfaceAudience.Private
+public class BinaryAuditLogReader implements Closeable {
+  private final DataInputStream in;
+  private final DataInputBuffer record = new DataInputBuffer();
+  private byte[] recordBytes = new byte[0];
+  private final List<String> dict = new ArrayList<>();
+  private final SimpleDateFormat dateFormat =
+      new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS");
+  private final StringBuilder sb = new StringBuilder();
+
+  public BinaryAuditLogReader(InputStream in) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(in));
+    byte[] magic = new byte[MAGIC.length];
+    this.in.readFully(magic);
+    if (!Arrays.equals(MAGIC, magic)) {
+      throw new IOException("Not a binary audit log");
+    }
+    int version = WritableUtils.readVInt(this.in);
+    if (version != VERSION) {
+      throw new IOException("Unsupported binary audit log version " + version
+          + ", expected " + VERSION);
+    }
+  }
+
+  /**
+   * @return the next audit record as text, or null at the end of the file.
+   * @throws IOException if the file is corrupt.
+   */
+  public String next() throws IOException {
+    try {
+      int length = WritableUtils.readVInt(in);
+      if (length < 0) {
+        throw new IOException("Invalid record length " + length);
+      }
+      if (recordBytes.length < length) {
+        recordBytes = new byte[length];
+      }
+      in.readFully(recordBytes, 0, length);
+      record.reset(recordBytes, length);
+    } catch (EOFException e) {
+      return null;
+    }
+    long time = WritableUtils.readVLong(record);
+    int flags = WritableUtils.readVInt(record);
+    String userName = readDictString();
+    String cmd = readDictString();
+    String proto = readDictString();
+    String ipAddr = "null";
+    if ((flags & FLAG_ADDR) != 0) {
+      byte[] ip = new byte[WritableUtils.readVInt(record)];
+      record.readFully(ip);
+      ipAddr = "/" + InetAddress.getByAddress(ip).getHostAddress();
+    }
+    String src = (flags & FLAG_SRC) != 0 ? Text.readString(record) : null;
+    String dst = (flags & FLAG_DST) != 0 ? Text.readString(record) : null;
+
+    sb.setLength(0);
+    sb.append(dateFormat.format(new Date(time))).append(" ")
+        .append("allowed=").append((flags & FLAG_ALLOWED) != 0).append("\t")
+        .append("ugi=").append(userName).append("\t")
+        .append("ip=").append(ipAddr).append("\t")
+        .append("cmd=").append(cmd).append("\t")
+        .append("src=").append(escapeJava(src)).append("\t")
+        .append("dst=").append(escapeJava(dst)).append("\t");
+    if ((flags & FLAG_STATUS) != 0) {
+      String owner = readDictString();
+      String group = readDictString();
+      FsPermission perm =
+          new FsPermission((short) WritableUtils.readVInt(record));
+      sb.append("perm=").append(owner).append(":").append(group).append(":")
+          .append(perm);
+    } else {
+      sb.append("perm=null");
+    }
+    sb.append("\t").append("proto=").append(proto);
+    if ((flags & FLAG_CALLER_CONTEXT) != 0) {
+      sb.append("\t").append("callerContext=")
+          .append(Text.readString(record));
+    }
+    return sb.toString();
+  }
+
+  private String readDictString() throws IOException {
+    int id = WritableUtils.readVInt(record);
+    if (id == NO_DICT_ID) {
+      return Text.readString(record);
+    } else if (id == dict.size()) {
+      dict.add(Text.readString(record));
+    } else if (id < 0 || id > dict.size()) {
+      throw new IOException("Invalid dictionary id " + id);
+    }
+    return dict.get(id);
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+}
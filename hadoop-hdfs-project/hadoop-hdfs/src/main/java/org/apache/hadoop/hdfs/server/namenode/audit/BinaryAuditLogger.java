@@ -0,0 +1,476 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.audit;
+
+import static org.apache.commons.text.StringEscapeUtils.escapeJava;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_ENABLED_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_ENABLED_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_MAX_SIZE_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_MAX_SIZE_KEY;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_SIGNATURE_MAX_SIZE_DEFAULT;
+import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.HADOOP_CALLER_CONTEXT_SIGNATURE_MAX_SIZE_KEY;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.security.token.delegation.DelegationTokenSecretManager;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.server.namenode.HdfsAuditLogger;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.ipc.CallerContext;
+import org.apache.hadoop.ipc.Server;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.ShutdownHookManager;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link HdfsAuditLogger} that keeps formatting off the RPC handlers.
+ * Handlers only capture the arguments of an event into a bounded queue; a
+ * writer thread encodes the events as compact binary records and appends
+ * them to rolling files, deleting the oldest files beyond
+ * {@link DFSConfigKeys#DFS_NAMENODE_AUDIT_BINARY_LOG_MAX_FILES_KEY}.  User
+ * names, commands, protocols, owners and groups are written once per file
+ * and referenced by id afterwards.
+ * Each record is prefixed with its length.  When a write fails, the file is
+ * truncated back to the last record flushed completely; if the NameNode dies
+ * in the middle of a record, the reader skips the truncated record at the end
+ * of the file.  {@link BinaryAuditLogReader} converts the records back to the
+ * text format of the default audit logger.
+ * <p>
+ * Like the default audit logger, the commands of
+ * {@link DFSConfigKeys#DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST} are only logged
+ * while {@link FSNamesystem#AUDIT_LOG} is at debug level.
+ * <p>
+ * Delegation token tracking ids are not recorded.
+ */
+@InterfaceAudience.Private
+public class BinaryAuditLogger extends HdfsAuditLogger {
+  public static final Logger LOG =
+      LoggerFactory.getLogger(BinaryAuditLogger.class);
+
+  static final byte[] MAGIC =
+      "HDFSAUDB".getBytes(StandardCharsets.US_ASCII);
+  static final int VERSION = 2;
+  static final String FILE_PREFIX = "hdfs-audit.";
+  static final String FILE_SUFFIX = ".bin";
+
+  static final int FLAG_ALLOWED = 1;
+  static final int FLAG_SRC = 1 << 1;
+  static final int FLAG_DST = 1 << 2;
+  static final int FLAG_STATUS = 1 << 3;
+  static final int FLAG_CALLER_CONTEXT = 1 << 4;
+  static final int FLAG_ADDR = 1 << 5;
+
+  /** Id of a dictionary string written inline instead of referenced. */
+  static final int NO_DICT_ID = -1;
+  /** Dictionary entries per file, to bound the writer's memory. */
+  static final int MAX_DICT_SIZE = 1 << 16;
+
+  /** Number of events written between flushes at most. */
+  private static final int WRITE_BATCH_SIZE = 1024;
+  private static final int SHUTDOWN_HOOK_PRIORITY = 10;
+
+  /** The arguments of one audit event, captured on the handler thread. */
+  private static final class Event {
+    private final long time;
+    private final boolean succeeded;
+    private final String userName;
+    private final InetAddress addr;
+    private final String cmd;
+    private final String src;
+    private final String dst;
+    private final FileStatus status;
+    private final String proto;
+    private final CallerContext callerContext;
+
+    Event(boolean succeeded, String userName, InetAddress addr, String cmd,
+        String src, String dst, FileStatus status, String proto,
+        CallerContext callerContext) {
+      this.time = Time.now();
+      this.succeeded = succeeded;
+      this.userName = userName;
+      this.addr = addr;
+      this.cmd = cmd;
+      this.src = src;
+      this.dst = dst;
+      this.status = status;
+      this.proto = proto;
+      this.callerContext = callerContext;
+    }
+  }
+
+  private final Set<String> debugCmdSet = new HashSet<>();
+  private boolean isCallerContextEnabled;
+  private int callerContextMaxLen;
+  private int callerSignatureMaxLen;
+
+  private File dir;
+  private long rollSize;
+  private int maxFiles;
+  private BlockingQueue<Event> queue;
+  private Daemon writer;
+  private final Runnable shutdownHook = this::close;
+  private volatile boolean running;
+
+  // only accessed by the writer thread, or by close() after it stopped.
+  private FileOutputStream fileOut;
+  private DataOutputStream out;
+  /** Length of the file up to the last record flushed completely. */
+  private long flushedLength;
+  private final DataOutputBuffer record = new DataOutputBuffer();
+  private final Map<String, Integer> dict = new HashMap<>();
+
+  @Override
+  public void initialize(Configuration conf) {
+    String dirName = conf.getTrimmed(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_DIR_KEY, "");
+    if (dirName.isEmpty()) {
+      dirName = System.getProperty("hadoop.log.dir", "");
+    }
+    if (dirName.isEmpty()) {
+      throw new IllegalArgumentException(
+          DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_DIR_KEY
+          + " must be set for " + getClass().getSimpleName());
+    }
+    dir = new File(dirName);
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      throw new IllegalArgumentException(
+          "Cannot create binary audit log directory " + dir);
+    }
+    rollSize = conf.getLongBytes(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_ROLL_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_ROLL_SIZE_DEFAULT);
+    maxFiles = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_MAX_FILES_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_MAX_FILES_DEFAULT);
+    queue = new ArrayBlockingQueue<>(conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_QUEUE_SIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_QUEUE_SIZE_DEFAULT));
+    isCallerContextEnabled = conf.getBoolean(
+        HADOOP_CALLER_CONTEXT_ENABLED_KEY,
+        HADOOP_CALLER_CONTEXT_ENABLED_DEFAULT);
+    callerContextMaxLen = conf.getInt(
+        HADOOP_CALLER_CONTEXT_MAX_SIZE_KEY,
+        HADOOP_CALLER_CONTEXT_MAX_SIZE_DEFAULT);
+    callerSignatureMaxLen = conf.getInt(
+        HADOOP_CALLER_CONTEXT_SIGNATURE_MAX_SIZE_KEY,
+        HADOOP_CALLER_CONTEXT_SIGNATURE_MAX_SIZE_DEFAULT);
+    debugCmdSet.addAll(Arrays.asList(conf.getTrimmedStrings(
+        DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST)));
+
+    running = true;
+    writer = new Daemon(this::writeEvents);
+    writer.setName(getClass().getSimpleName() + " writer");
+    writer.start();
+    ShutdownHookManager.get().addShutdownHook(shutdownHook,
+        SHUTDOWN_HOOK_PRIORITY);
+  }
+
+  @Override
+  public void logAuditEvent(boolean succeeded, String userName,
+      InetAddress addr, String cmd, String src, String dst,
+      FileStatus status, CallerContext callerContext, UserGroupInformation ugi,
+      DelegationTokenSecretManager dtSecretManager) {
+    if (!running || (debugCmdSet.contains(cmd)
+        && !FSNamesystem.AUDIT_LOG.isDebugEnabled())) {
+      return;
+    }
+    Event event = new Event(succeeded, userName, addr, cmd, src, dst, status,
+        Server.getProtocol(), isCallerContextEnabled ? callerContext : null);
+    try {
+      queue.put(event);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while queueing audit event cmd={} src={}",
+          cmd, src);
+    }
+  }
+
+  @Override
+  public void logAuditEvent(boolean succeeded, String userName,
+      InetAddress addr, String cmd, String src, String dst,
+      FileStatus status, UserGroupInformation ugi,
+      DelegationTokenSecretManager dtSecretManager) {
+    logAuditEvent(succeeded, userName, addr, cmd, src, dst, status,
+        null /*CallerContext*/, ugi, dtSecretManager);
+  }
+
+  /**
+   * Stop the writer thread after writing all queued events.
+   */
+  public synchronized void close() {
+    if (writer == null) {
+      return;
+    }
+    ShutdownHookManager shutdownHooks = ShutdownHookManager.get();
+    if (!shutdownHooks.isShutdownInProgress()) {
+      shutdownHooks.removeShutdownHook(shutdownHook);
+    }
+    running = false;
+    writer.interrupt();
+    try {
+      writer.join();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    List<Event> remaining = new ArrayList<>();
+    queue.drainTo(remaining);
+    writeBatch(remaining);
+    IOUtils.cleanupWithLogger(LOG, out);
+    fileOut = null;
+    out = null;
+    writer = null;
+  }
+
+  private void writeEvents() {
+    List<Event> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+    while (running) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException ie) {
+        break;
+      }
+      queue.drainTo(batch, WRITE_BATCH_SIZE - 1);
+      writeBatch(batch);
+      batch.clear();
+    }
+  }
+
+  private void writeBatch(List<Event> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      for (Event event : batch) {
+        if (out == null || out.size() >= rollSize) {
+          roll();
+        }
+        writeEvent(event);
+      }
+      out.flush();
+      flushedLength = fileOut.getChannel().position();
+    } catch (IOException e) {
+      LOG.error("Failed to write {} audit events to {}", batch.size(), dir, e);
+      abort();
+    }
+  }
+
+  /**
+   * Close the current file without flushing the buffered records, and drop
+   * any part of a record that reached it.  The next event starts a new file.
+   */
+  private void abort() {
+    if (fileOut != null) {
+      try {
+        fileOut.getChannel().truncate(flushedLength);
+      } catch (IOException e) {
+        LOG.warn("Failed to truncate binary audit log to {} bytes",
+            flushedLength, e);
+      }
+      IOUtils.cleanupWithLogger(LOG, fileOut);
+    }
+    fileOut = null;
+    out = null;
+  }
+
+  private void roll() throws IOException {
+    if (out != null) {
+      out.flush();
+      IOUtils.cleanupWithLogger(LOG, out);
+    }
+    fileOut = null;
+    out = null;
+    File file = new File(dir, FILE_PREFIX + Time.now() + FILE_SUFFIX);
+    for (int i = 1; file.exists(); i++) {
+      file = new File(dir, FILE_PREFIX + Time.now() + "-" + i + FILE_SUFFIX);
+    }
+    fileOut = new FileOutputStream(file);
+    flushedLength = 0;
+    out = new DataOutputStream(new BufferedOutputStream(fileOut));
+    out.write(MAGIC);
+    WritableUtils.writeVInt(out, VERSION);
+    out.flush();
+    flushedLength = fileOut.getChannel().position();
+    dict.clear();
+    LOG.info("Writing binary audit log to {}", file);
+    deleteOldFiles();
+  }
+
+  /** Delete the oldest files, so that at most maxFiles are left. */
+  private void deleteOldFiles() {
+    if (maxFiles <= 0) {
+      return;
+    }
+    List<File> files = listLogFiles(dir);
+    for (int i = 0; i < files.size() - maxFiles; i++) {
+      File file = files.get(i);
+      if (file.delete()) {
+        LOG.info("Deleted binary audit log {}", file);
+      } else {
+        LOG.warn("Failed to delete binary audit log {}", file);
+      }
+    }
+  }
+
+  /**
+   * @return the binary audit log files in the given directory, oldest first.
+   */
+  static List<File> listLogFiles(File dir) {
+    List<File> files = new ArrayList<>();
+    File[] listed = dir.listFiles();
+    if (listed != null) {
+      for (File file : listed) {
+        if (file.isFile() && parseFileName(file.getName()) != null) {
+          files.add(file);
+        }
+      }
+    }
+    files.sort(Comparator.comparingLong(
+        (File file) -> parseFileName(file.getName())[0])
+        .thenComparingLong(file -> parseFileName(file.getName())[1]));
+    return files;
+  }
+
+  /**
+   * Parse the name of a file created by {@link #roll()}.
+   * @return the creation time and the index of the file among those created
+   *         in the same millisecond, or null if it is not a binary audit log.
+   */
+  private static long[] parseFileName(String name) {
+    if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+      return null;
+    }
+    String id = name.substring(FILE_PREFIX.length(),
+        name.length() - FILE_SUFFIX.length());
+    int dash = id.indexOf('-');
+    try {
+      if (dash < 0) {
+        return new long[] {Long.parseLong(id), 0};
+      }
+      return new long[] {Long.parseLong(id.substring(0, dash)),
+          Long.parseLong(id.substring(dash + 1))};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private void writeEvent(Event event) throws IOException {
+    record.reset();
+    encodeEvent(event);
+    WritableUtils.writeVInt(out, record.getLength());
+    out.write(record.getData(), 0, record.getLength());
+  }
+
+  private void encodeEvent(Event event) throws IOException {
+    FileStatus status = event.status;
+    String context = formatCallerContext(event.callerContext);
+    int flags = (event.succeeded ? FLAG_ALLOWED : 0)
+        | (event.src != null ? FLAG_SRC : 0)
+        | (event.dst != null ? FLAG_DST : 0)
+        | (status != null ? FLAG_STATUS : 0)
+        | (context != null ? FLAG_CALLER_CONTEXT : 0)
+        | (event.addr != null ? FLAG_ADDR : 0);
+    WritableUtils.writeVLong(record, event.time);
+    WritableUtils.writeVInt(record, flags);
+    writeDictString(event.userName);
+    writeDictString(event.cmd);
+    writeDictString(event.proto);
+    if (event.addr != null) {
+      byte[] ip = event.addr.getAddress();
+      WritableUtils.writeVInt(record, ip.length);
+      record.write(ip);
+    }
+    if (event.src != null) {
+      Text.writeString(record, event.src);
+    }
+    if (event.dst != null) {
+      Text.writeString(record, event.dst);
+    }
+    if (status != null) {
+      writeDictString(status.getOwner());
+      writeDictString(status.getGroup());
+      WritableUtils.writeVInt(record, status.getPermission().toShort());
+    }
+    if (context != null) {
+      Text.writeString(record, context);
+    }
+  }
+
+  private void writeDictString(String s) throws IOException {
+    s = String.valueOf(s);
+    Integer id = dict.get(s);
+    if (id != null) {
+      WritableUtils.writeVInt(record, id);
+    } else if (dict.size() < MAX_DICT_SIZE) {
+      // a new id is followed by the string it stands for.
+      id = dict.size();
+      dict.put(s, id);
+      WritableUtils.writeVInt(record, id);
+      Text.writeString(record, s);
+    } else {
+      WritableUtils.writeVInt(record, NO_DICT_ID);
+      Text.writeString(record, s);
+    }
+  }
+
+  /**
+   * Format the caller context as the default audit logger does, or return
+   * null if it should not be logged.
+   */
+  private String formatCallerContext(CallerContext callerContext) {
+    if (callerContext == null || !callerContext.isContextValid()) {
+      return null;
+    }
+    String context = escapeJava(callerContext.getContext());
+    if (context.length() > callerContextMaxLen) {
+      context = context.substring(0, callerContextMaxLen);
+    }
+    byte[] signature = callerContext.getSignature();
+    if (signature != null && signature.length > 0
+        && signature.length <= callerSignatureMaxLen) {
+      context = context + ":" + escapeJava(
+          new String(signature, CallerContext.SIGNATURE_ENCODING));
+    }
+    return context;
+  }
+}
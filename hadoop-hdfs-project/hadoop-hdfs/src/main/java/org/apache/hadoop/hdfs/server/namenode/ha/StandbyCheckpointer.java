@@ -384,6 +384,8 @@ private long countUncheckpointedTxns() {
   private class CheckpointerThread extends Thread {
     private volatile boolean shouldRun = true;
     private volatile long preventCheckpointsUntil = 0;
+    /** Whether the periodic checkpoint is being deferred for low churn. */
+    private boolean checkpointDeferred = false;
 
     private CheckpointerThread() {
       super("Standby State Checkpointer");
@@ -459,13 +461,39 @@ private void doWork() {
                 uncheckpointed, checkpointConf.getTxnCount());
             needCheckpoint = true;
           } else if (secsSinceLast >= checkpointConf.getPeriod()) {
-            LOG.info("Triggering checkpoint because it has been {} seconds " +
-                "since the last checkpoint, which exceeds the configured " +
-                "interval {}", secsSinceLast, checkpointConf.getPeriod());
-            needCheckpoint = true;
+            long namespaceObjects =
+                namesystem.getFilesTotal() + namesystem.getBlocksTotal();
+            if (checkpointConf.shouldDeferPeriodicCheckpoint(uncheckpointed,
+                namespaceObjects, secsSinceLast)) {
+              // only the start of a deferral is logged at info level, not
+              // every check period.
+              if (!checkpointDeferred) {
+                checkpointDeferred = true;
+                LOG.info("Deferring checkpoint since only {} txns touched {} "
+                    + "namespace objects in the last {} seconds, which is "
+                    + "below the configured churn ratio {}", uncheckpointed,
+                    namespaceObjects, secsSinceLast,
+                    checkpointConf.getMinChurnRatio());
+              } else {
+                LOG.debug("Still deferring checkpoint: {} txns touched {} "
+                    + "namespace objects in the last {} seconds",
+                    uncheckpointed, namespaceObjects, secsSinceLast);
+              }
+            } else {
+              LOG.info("Triggering checkpoint because it has been {} " +
+                  "seconds since the last checkpoint, which exceeds the " +
+                  "configured interval {}", secsSinceLast,
+                  checkpointConf.getPeriod());
+              needCheckpoint = true;
+            }
           }
 
           if (needCheckpoint) {
+            if (checkpointDeferred) {
+              checkpointDeferred = false;
+              LOG.info("No longer deferring checkpoint after {} seconds",
+                  secsSinceLast);
+            }
             synchronized (cancelLock) {
               if (now < preventCheckpointsUntil) {
                 LOG.info("But skipping this checkpoint since we are about to failover!");
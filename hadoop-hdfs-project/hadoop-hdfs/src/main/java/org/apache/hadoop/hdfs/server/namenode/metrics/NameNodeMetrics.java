@@ -89,6 +89,8 @@ public class NameNodeMetrics {
   MutableCounterLong blockOpsBatched;
   @Metric("Number of pending edits")
   MutableGaugeInt pendingEditsCount;
+  @Metric("Target number of edits per async edit log sync")
+  MutableGaugeInt editLogGroupCommitTarget;
   @Metric("Number of delete blocks Queued")
   MutableGaugeInt deleteBlocksQueued;
   @Metric("Number of pending deletion blocks")
@@ -127,6 +129,9 @@ public long totalFileOps(){
   MutableCounterLong transactionsBatchedInSync;
   @Metric("Journal transactions batched in sync")
   final MutableQuantiles[] numTransactionsBatchedInSync;
+  @Metric("Time async edit logging delayed syncs to grow batches in micros")
+  MutableRate editLogGroupCommitWait;
+  private final MutableQuantiles[] editLogGroupCommitWaitQuantiles;
   @Metric("Number of blockReports from individual storages")
   MutableRate storageBlockReport;
   final MutableQuantiles[] storageBlockReportQuantiles;
@@ -175,6 +180,7 @@ public long totalFileOps(){
     final int len = intervals.length;
     syncsQuantiles = new MutableQuantiles[len];
     numTransactionsBatchedInSync = new MutableQuantiles[len];
+    editLogGroupCommitWaitQuantiles = new MutableQuantiles[len];
     storageBlockReportQuantiles = new MutableQuantiles[len];
     cacheReportQuantiles = new MutableQuantiles[len];
     generateEDEKTimeQuantiles = new MutableQuantiles[len];
@@ -194,6 +200,9 @@ public long totalFileOps(){
           "numTransactionsBatchedInSync" + interval + "s",
           "Number of Transactions batched in sync", "ops",
           "count", interval);
+      editLogGroupCommitWaitQuantiles[i] = registry.newQuantiles(
+          "editLogGroupCommitWait" + interval + "s",
+          "Edit log group commit wait", "ops", "latencyMicros", interval);
       storageBlockReportQuantiles[i] = registry.newQuantiles(
           "storageBlockReport" + interval + "s",
           "Storage block report", "ops", "latency", interval);
@@ -365,6 +374,17 @@ public void setPendingEditsCount(int size) {
     pendingEditsCount.set(size);
   }
 
+  public void setEditLogGroupCommitTarget(int size) {
+    editLogGroupCommitTarget.set(size);
+  }
+
+  public void addEditLogGroupCommitWait(long micros) {
+    editLogGroupCommitWait.add(micros);
+    for (MutableQuantiles q : editLogGroupCommitWaitQuantiles) {
+      q.add(micros);
+    }
+  }
+
   public void addTransaction(long latency) {
     transactions.add(latency);
   }
@@ -115,6 +115,11 @@ public final void deleteSnapshotDiff(INode.ReclaimContext reclaimContext,
 
   /** Add an {@link AbstractINodeDiff} for the given snapshot. */
   final D addDiff(int latestSnapshotId, N currentINode) {
+    final INodeDirectory dir = currentINode.isDirectory() ?
+        currentINode.asDirectory() : currentINode.getParent();
+    if (dir != null) {
+      dir.recordSubtreeDiff(latestSnapshotId);
+    }
     return addLast(createDiff(latestSnapshotId, currentINode));
   }
 
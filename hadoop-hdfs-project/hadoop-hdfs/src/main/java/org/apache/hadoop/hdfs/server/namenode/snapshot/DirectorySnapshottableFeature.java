@@ -20,6 +20,7 @@
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -69,6 +70,12 @@ public class DirectorySnapshottableFeature extends DirectoryWithSnapshotFeature
   private final List<Snapshot> snapshotsByNames = new ArrayList<Snapshot>();
   /** Number of snapshots allowed. */
   private int snapshotQuota = SNAPSHOT_QUOTA_DEFAULT;
+  /**
+   * Whether the ids of the latest snapshots with diffs in the subtrees of the
+   * directories under this directory have been computed, see
+   * {@link #buildDiffIndex(INodeDirectory)}.
+   */
+  private boolean diffIndexBuilt = false;
 
   public DirectorySnapshottableFeature(DirectoryWithSnapshotFeature feature) {
     super(feature == null ? null : feature.getDiffs());
@@ -311,6 +318,7 @@ SnapshotDiffInfo computeDiff(final INodeDirectory snapshotRootDir,
     if (from != null && from.equals(to)) {
       return null;
     }
+    buildDiffIndex(snapshotRootDir);
     SnapshotDiffInfo diffs = new SnapshotDiffInfo(snapshotRootDir,
         snapshotDiffScopeDir, fromSnapshot, toSnapshot);
     // The snapshot diff scope dir is passed in as the snapshot dir
@@ -360,6 +368,7 @@ SnapshotDiffListingInfo computeDiff(final INodeDirectory snapshotRootDir,
     if (from.equals(to)) {
       return null;
     }
+    buildDiffIndex(snapshotRootDir);
     SnapshotDiffListingInfo diffs =
         new SnapshotDiffListingInfo(snapshotRootDir, snapshotDiffScopeDir,
             fromSnapshot, toSnapshot, snapshotDiffReportEntriesLimit);
@@ -369,6 +378,70 @@ SnapshotDiffListingInfo computeDiff(final INodeDirectory snapshotRootDir,
     return diffs;
   }
 
+  /**
+   * The ids of the latest snapshots with diffs in the subtrees of the
+   * directories are maintained as the diffs are added, but not for the diffs
+   * loaded from the fsimage. Hence, compute them once for the tree of the
+   * snapshot root before its first diff, so that the later diffs only visit
+   * the subtrees changed after the earlier snapshot.
+   */
+  private synchronized void buildDiffIndex(INodeDirectory snapshotRootDir) {
+    if (!diffIndexBuilt) {
+      buildDiffIndexRecursively(snapshotRootDir,
+          Collections.newSetFromMap(new IdentityHashMap<>()));
+      diffIndexBuilt = true;
+    }
+  }
+
+  private static int buildDiffIndexRecursively(INodeDirectory dir,
+      Set<INodeDirectory> visited) {
+    // a directory renamed under snapshots is reached through each reference.
+    if (!visited.add(dir)) {
+      return dir.getLastSubtreeDiffSnapshotId();
+    }
+    final DirectoryDiffList diffs = dir.getDiffs();
+    int last = getLastDiffSnapshotId(diffs);
+    for (INode child : dir.getChildrenList(Snapshot.CURRENT_STATE_ID)) {
+      last = Math.max(last, buildDiffIndexRecursively(child, visited));
+    }
+    // the children deleted from the current tree, or renamed out of it, are
+    // still visited by the diffs against the snapshots they are in.
+    if (diffs != null) {
+      for (DirectoryDiff diff : diffs) {
+        for (INode child : diff.getChildrenDiff().getDeletedUnmodifiable()) {
+          last = Math.max(last, buildDiffIndexRecursively(child, visited));
+        }
+      }
+    }
+    dir.updateLastSubtreeDiffSnapshotId(last);
+    return dir.getLastSubtreeDiffSnapshotId();
+  }
+
+  private static int buildDiffIndexRecursively(INode child,
+      Set<INodeDirectory> visited) {
+    if (child.isDirectory()) {
+      return buildDiffIndexRecursively(child.asDirectory(), visited);
+    } else if (child.isFile()) {
+      return getLastDiffSnapshotId(child.asFile().getDiffs());
+    }
+    return Snapshot.NO_SNAPSHOT_ID;
+  }
+
+  private static int getLastDiffSnapshotId(
+      AbstractINodeDiffList<?, ?, ?> diffs) {
+    return diffs == null || diffs.getLast() == null ?
+        Snapshot.NO_SNAPSHOT_ID : diffs.getLastSnapshotId();
+  }
+
+  /**
+   * @return false if the subtree of the directory has no diff after the given
+   *         snapshot, in which case it has no change to report.
+   */
+  private static boolean isChangedSince(INodeDirectory dir,
+      Snapshot snapshot) {
+    return dir.getLastSubtreeDiffSnapshotId() >= snapshot.getId();
+  }
+
   /**
    * Find the snapshot matching the given name.
    *
@@ -413,6 +486,9 @@ private void computeDiffRecursively(final INodeDirectory snapshotDir,
     if (node.isDirectory()) {
       final ChildrenDiff diff = new ChildrenDiff();
       INodeDirectory dir = node.asDirectory();
+      if (!isChangedSince(dir, earlierSnapshot)) {
+        return;
+      }
       DirectoryWithSnapshotFeature sf = dir.getDirectoryWithSnapshotFeature();
       if (sf != null) {
         boolean change = sf.computeDiffBetweenSnapshots(earlierSnapshot,
@@ -488,6 +564,10 @@ private boolean computeDiffRecursively(final INodeDirectory snapshotDir,
     if (node.isDirectory()) {
       final ChildrenDiff diff = new ChildrenDiff();
       INodeDirectory dir = node.asDirectory();
+      // the subtree with the resume path is always visited to find the path.
+      if (processFlag && !isChangedSince(dir, earlier)) {
+        return true;
+      }
       if (processFlag) {
         DirectoryWithSnapshotFeature sf = dir.getDirectoryWithSnapshotFeature();
         if (sf != null) {
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.tools;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.server.namenode.audit.BinaryAuditLogReader;
+import org.apache.hadoop.util.ExitUtil;
+
+/**
+ * Prints files written by the binary audit logger in the text format of the
+ * default audit logger.
+ */
+@InterfaceAudience.Private
+public class BinaryAuditLogViewer {
+  static final String USAGE =
+      "Usage: hdfs org.apache.hadoop.hdfs.tools.BinaryAuditLogViewer "
+      + "<binary audit log file>...";
+
+  private BinaryAuditLogViewer() {
+  }
+
+  static void print(String file, PrintStream out) throws IOException {
+    try (BinaryAuditLogReader reader =
+        new BinaryAuditLogReader(new FileInputStream(file))) {
+      String line;
+      while ((line = reader.next()) != null) {
+        out.println(line);
+      }
+    }
+  }
+
+  public static void main(String[] args) {
+    if (args.length == 0) {
+      System.err.println(USAGE);
+      ExitUtil.terminate(1);
+    }
+    try {
+      for (String file : args) {
+        print(file, System.out);
+      }
+    } catch (IOException e) {
+      System.err.println("Failed to read binary audit log: " + e);
+      ExitUtil.terminate(1);
+    }
+  }
+}
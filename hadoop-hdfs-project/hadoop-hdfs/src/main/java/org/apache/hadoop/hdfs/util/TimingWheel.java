@@ -0,0 +1,299 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.util.Preconditions;
+
+/**
+ * A hierarchical timing wheel, which expires elements at their deadlines.
+ * Adding and removing an element takes constant time, and advancing the
+ * wheel only touches the elements which expire, move down a level or are
+ * due in the current tick. Advancing skips the empty slots, at most a
+ * whole round of each level at a time, rather than visiting every tick.
+ *
+ * Each level of the wheel has the same number of slots, and a slot of a
+ * level spans all the slots of the level below. An element is kept in the
+ * lowest level which spans its deadline, and is moved down as the wheel
+ * advances. The elements with deadlines beyond the span of the top level
+ * are kept in the top level until their deadlines come into its span.
+ *
+ * The elements are linked into the wheel by their {@link Node}s, so that
+ * an element which keeps its node is rescheduled without any allocation.
+ *
+ * This class is not thread safe.
+ */
+@InterfaceAudience.Private
+public class TimingWheel<E> {
+  /**
+   * Links an element into a {@link TimingWheel}.
+   */
+  public static final class Node<E> {
+    private final E element;
+    private long deadline;
+    private long deadlineTick;
+    private Node<E> prev;
+    private Node<E> next;
+
+    public Node(E element) {
+      this.element = element;
+    }
+
+    public E getElement() {
+      return element;
+    }
+
+    /** @return the deadline the node was last added with. */
+    public long getDeadline() {
+      return deadline;
+    }
+
+    /** @return true if the node is in a wheel. */
+    public boolean isScheduled() {
+      return prev != null;
+    }
+  }
+
+  private final long tickMs;
+  private final int wheelSize;
+  /** The number of ticks spanned by a slot of each level. */
+  private final long[] slotTicks;
+  /** The heads of the slot lists, by level and slot. */
+  private final Node<E>[][] slots;
+  /** The head of the list of the nodes added past their deadlines. */
+  private final Node<E> due = newHead();
+  /** The ticks before this one have been expired. */
+  private long nextTick;
+  private int size;
+
+  /**
+   * @param tickMs the time spanned by a slot of the lowest level.
+   * @param wheelSize the number of slots of each level.
+   * @param levels the number of levels, at least 2.
+   * @param nowMs the current time.
+   */
+  @SuppressWarnings("unchecked")
+  public TimingWheel(long tickMs, int wheelSize, int levels, long nowMs) {
+    Preconditions.checkArgument(tickMs > 0, "tickMs must be positive");
+    Preconditions.checkArgument(wheelSize > 1, "wheelSize must be > 1");
+    // the deadlines beyond the span of the wheel wait in the top level,
+    // which is cascaded into the levels below.
+    Preconditions.checkArgument(levels > 1, "levels must be > 1");
+    this.tickMs = tickMs;
+    this.wheelSize = wheelSize;
+    this.slotTicks = new long[levels];
+    this.slots = (Node<E>[][]) new Node<?>[levels][wheelSize];
+    long ticks = 1;
+    for (int level = 0; level < levels; level++) {
+      slotTicks[level] = ticks;
+      ticks = Math.multiplyExact(ticks, wheelSize);
+      for (int slot = 0; slot < wheelSize; slot++) {
+        slots[level][slot] = newHead();
+      }
+    }
+    this.nextTick = Math.floorDiv(nowMs, tickMs);
+  }
+
+  private static <E> Node<E> newHead() {
+    final Node<E> head = new Node<>(null);
+    head.prev = head;
+    head.next = head;
+    return head;
+  }
+
+  /** @return the number of elements in the wheel. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Add a node to expire at the deadline.
+   * @param node the node of the element, which must not be in a wheel.
+   * @param deadline the time the element expires after.
+   */
+  public void add(Node<E> node, long deadline) {
+    Preconditions.checkArgument(!node.isScheduled(),
+        "The node is already scheduled");
+    node.deadline = deadline;
+    node.deadlineTick = Math.floorDiv(deadline, tickMs);
+    insert(node);
+    size++;
+  }
+
+  private void insert(Node<E> node) {
+    if (node.deadlineTick < nextTick) {
+      link(due, node);
+      return;
+    }
+    final long delta = node.deadlineTick - nextTick;
+    final int top = slotTicks.length - 1;
+    for (int level = 0; level < top; level++) {
+      if (delta < slotTicks[level] * wheelSize) {
+        link(getSlot(level, node.deadlineTick), node);
+        return;
+      }
+    }
+    // keep the deadlines beyond the span of the wheel in its last slot.
+    final long span = slotTicks[top] * wheelSize;
+    link(getSlot(top, delta < span ? node.deadlineTick : nextTick + span - 1),
+        node);
+  }
+
+  private Node<E> getSlot(int level, long tick) {
+    return slots[level][(int) Math.floorMod(
+        Math.floorDiv(tick, slotTicks[level]), (long) wheelSize)];
+  }
+
+  private static <E> void link(Node<E> head, Node<E> node) {
+    node.prev = head.prev;
+    node.next = head;
+    head.prev.next = node;
+    head.prev = node;
+  }
+
+  private static <E> void unlink(Node<E> node) {
+    node.prev.next = node.next;
+    node.next.prev = node.prev;
+    node.prev = null;
+    node.next = null;
+  }
+
+  /**
+   * Remove a node from the wheel.
+   * @return true if the node was in the wheel.
+   */
+  public boolean remove(Node<E> node) {
+    if (!node.isScheduled()) {
+      return false;
+    }
+    unlink(node);
+    size--;
+    return true;
+  }
+
+  /**
+   * Advance the wheel and remove the elements which expired.
+   * @param nowMs the current time.
+   * @return the elements whose deadlines are before the current time, in
+   *         the order of the ticks of their deadlines.
+   */
+  public List<E> advance(long nowMs) {
+    final List<E> expired = new ArrayList<>();
+    drain(due, expired);
+    final long endTick = Math.floorDiv(nowMs, tickMs);
+    while (nextTick < endTick && size > 0) {
+      cascade(nextTick);
+      drain(getSlot(0, nextTick), expired);
+      nextTick = getNextBusyTick(nextTick + 1, endTick);
+    }
+    // an empty wheel skips the ticks at once.
+    nextTick = Math.max(nextTick, endTick);
+    if (size > 0) {
+      // the current tick is partly over. Cascading its slots again when it
+      // is over is harmless, since no node is added to them meanwhile.
+      cascade(nextTick);
+      final Node<E> head = getSlot(0, nextTick);
+      Node<E> node = head.next;
+      while (node != head) {
+        final Node<E> next = node.next;
+        if (node.deadline < nowMs) {
+          unlink(node);
+          size--;
+          expired.add(node.element);
+        }
+        node = next;
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Find the first tick from the given one at which a slot starts that has
+   * nodes: a slot of the lowest level to drain, or a slot of a higher level
+   * to cascade. The ticks before it have nothing to do.
+   * Each level is scanned for one round of its slots at most, which covers
+   * all of its slots.
+   * @return the first busy tick before the limit, or the limit.
+   */
+  private long getNextBusyTick(long fromTick, long limitTick) {
+    long busyTick = limitTick;
+    for (int level = 0; level < slotTicks.length; level++) {
+      final long ticks = slotTicks[level];
+      // the slot containing fromTick started before it, and was cascaded.
+      long tick = Math.floorDiv(fromTick + ticks - 1, ticks) * ticks;
+      for (int i = 0; i < wheelSize && tick < busyTick; i++, tick += ticks) {
+        final Node<E> head = getSlot(level, tick);
+        if (head.next != head) {
+          busyTick = tick;
+          break;
+        }
+      }
+    }
+    return busyTick;
+  }
+
+  /** Move the nodes of the slots which start at the tick down a level. */
+  private void cascade(long tick) {
+    for (int level = slotTicks.length - 1; level > 0; level--) {
+      if (Math.floorMod(tick, slotTicks[level]) == 0) {
+        cascade(getSlot(level, tick));
+      }
+    }
+  }
+
+  /** Move the nodes of a slot down to the lower levels. */
+  private void cascade(Node<E> head) {
+    Node<E> node = head.next;
+    head.prev = head;
+    head.next = head;
+    while (node != head) {
+      final Node<E> next = node.next;
+      insert(node);
+      node = next;
+    }
+  }
+
+  private void drain(Node<E> head, List<E> expired) {
+    while (head.next != head) {
+      final Node<E> node = head.next;
+      unlink(node);
+      size--;
+      expired.add(node.element);
+    }
+  }
+
+  /** Remove all the nodes from the wheel. */
+  public void clear() {
+    clear(due);
+    for (Node<E>[] level : slots) {
+      for (Node<E> head : level) {
+        clear(head);
+      }
+    }
+    size = 0;
+  }
+
+  private static <E> void clear(Node<E> head) {
+    while (head.next != head) {
+      unlink(head.next);
+    }
+  }
+}
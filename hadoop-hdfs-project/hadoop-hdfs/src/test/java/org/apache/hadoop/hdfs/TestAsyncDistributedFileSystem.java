@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options.Rename;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.ipc.Client;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AsyncDistributedFileSystem}.
+ */
+public class TestAsyncDistributedFileSystem {
+  private static final int NUM_DIRS = 50;
+
+  private static MiniDFSCluster cluster;
+  private static DistributedFileSystem fs;
+  private static AsyncDistributedFileSystem adfs;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(CommonConfigurationKeys.IPC_CLIENT_ASYNC_CALLS_MAX_KEY,
+        2 * NUM_DIRS);
+    // list the directories with several calls.
+    conf.setInt(DFSConfigKeys.DFS_LIST_LIMIT, NUM_DIRS / 4);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+    adfs = fs.getAsyncDistributedFileSystem();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  private static <T> List<T> join(List<CompletableFuture<T>> futures) {
+    List<T> values = new ArrayList<>();
+    for (CompletableFuture<T> future : futures) {
+      values.add(future.join());
+    }
+    return values;
+  }
+
+  @Test
+  public void testNamespaceOperations() throws Exception {
+    Path root = new Path("/ops");
+    FsPermission permission = new FsPermission((short) 0700);
+    List<CompletableFuture<Boolean>> mkdirs = new ArrayList<>();
+    for (int i = 0; i < NUM_DIRS; i++) {
+      mkdirs.add(adfs.mkdirs(new Path(root, "dir" + i), permission));
+    }
+    for (boolean created : join(mkdirs)) {
+      assertTrue(created);
+    }
+    assertFalse(Client.isAsynchronousMode());
+
+    FileStatus[] listing = adfs.listStatus(root).get();
+    assertEquals(NUM_DIRS, listing.length);
+    for (FileStatus status : listing) {
+      assertEquals(fs.getFileStatus(status.getPath()), status);
+      assertEquals(permission, status.getPermission());
+    }
+    assertEquals(NUM_DIRS,
+        adfs.getContentSummary(root).get().getDirectoryCount() - 1);
+
+    List<CompletableFuture<FileStatus>> statuses = new ArrayList<>();
+    for (int i = 0; i < NUM_DIRS; i++) {
+      Path renamed = new Path(root, "renamed" + i);
+      statuses.add(adfs.rename(new Path(root, "dir" + i), renamed)
+          .thenCompose(v -> adfs.setPermission(renamed,
+              FsPermission.getDirDefault()))
+          .thenCompose(v -> adfs.getFileStatus(renamed)));
+    }
+    for (FileStatus status : join(statuses)) {
+      assertTrue(status.getPath().getName().startsWith("renamed"));
+      assertEquals(FsPermission.getDirDefault(), status.getPermission());
+    }
+    assertFalse(fs.exists(new Path(root, "dir0")));
+
+    List<CompletableFuture<Boolean>> deletes = new ArrayList<>();
+    for (int i = 0; i < NUM_DIRS; i++) {
+      deletes.add(adfs.delete(new Path(root, "renamed" + i), false));
+    }
+    for (boolean deleted : join(deletes)) {
+      assertTrue(deleted);
+    }
+    assertEquals(0, fs.listStatus(root).length);
+  }
+
+  @Test
+  public void testExceptions() throws Exception {
+    Path missing = new Path("/missing");
+    LambdaTestUtils.intercept(FileNotFoundException.class,
+        () -> unwrap(adfs.getFileStatus(missing)));
+    LambdaTestUtils.intercept(FileNotFoundException.class,
+        () -> unwrap(adfs.listStatus(missing)));
+    LambdaTestUtils.intercept(FileNotFoundException.class,
+        () -> unwrap(adfs.setPermission(missing,
+            FsPermission.getDirDefault())));
+
+    Path src = new Path("/exceptions/src");
+    Path dst = new Path("/exceptions/dst");
+    assertTrue(fs.mkdirs(src));
+    assertTrue(fs.mkdirs(dst));
+    LambdaTestUtils.intercept(FileAlreadyExistsException.class,
+        () -> unwrap(adfs.rename(src, dst)));
+    adfs.rename(src, dst, Rename.OVERWRITE).get();
+    assertFalse(fs.exists(src));
+  }
+
+  @Test
+  public void testBlockingAction() throws Exception {
+    Path dir = new Path("/blocking");
+    assertTrue(fs.mkdirs(dir));
+    CountDownLatch latch = new CountDownLatch(1);
+    CompletableFuture<Void> blocked = adfs.getFileStatus(dir)
+        .thenAccept(status -> {
+          try {
+            latch.await();
+          } catch (InterruptedException e) {
+            throw new CompletionException(e);
+          }
+        });
+    // the other calls are still completed while an action blocks.
+    for (int i = 0; i < 3; i++) {
+      assertTrue(adfs.getFileStatus(dir).get(10, TimeUnit.SECONDS)
+          .isDirectory());
+    }
+    assertFalse(blocked.isDone());
+    latch.countDown();
+    blocked.get(10, TimeUnit.SECONDS);
+  }
+
+  private static <T> T unwrap(CompletableFuture<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      throw (Exception) e.getCause();
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.HadoopIllegalArgumentException;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FileAlreadyExistsException;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.NSQuotaExceededException;
+import org.apache.hadoop.hdfs.server.namenode.NameNodeAdapter;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
+import org.apache.hadoop.io.EnumSetWritable;
+import org.apache.hadoop.test.LambdaTestUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the batched creation of small files.
+ */
+public class TestCreateSmallFiles {
+  private static final int LIMIT = 10;
+  private static final long BLOCK_SIZE = 1024 * 1024;
+
+  private static MiniDFSCluster cluster;
+  private static DistributedFileSystem fs;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_BATCHED_CREATE_LIMIT_KEY, LIMIT);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(2).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  private static Map<Path, byte[]> getFiles(Path dir, int numFiles) {
+    Map<Path, byte[]> files = new LinkedHashMap<>();
+    for (int i = 0; i < numFiles; i++) {
+      files.put(new Path(dir, "sub" + (i % 3) + "/file" + i),
+          DFSUtil.string2Bytes(dir.getName() + " file " + i));
+    }
+    return files;
+  }
+
+  private static void verifyFiles(Map<Path, byte[]> files) throws Exception {
+    for (Map.Entry<Path, byte[]> file : files.entrySet()) {
+      FileStatus status = fs.getFileStatus(file.getKey());
+      assertEquals(file.getValue().length, status.getLen());
+      assertEquals(2, status.getReplication());
+      assertTrue(fs.isFileClosed(file.getKey()));
+      assertArrayEquals(file.getValue(),
+          DFSTestUtil.readFileAsBytes(fs, file.getKey()));
+    }
+  }
+
+  @Test
+  public void testCreateSmallFiles() throws Exception {
+    Map<Path, byte[]> files = getFiles(new Path("/small"), LIMIT);
+    files.put(new Path("/small/empty"), new byte[0]);
+    files.remove(new Path("/small/sub0/file0"));
+    fs.createSmallFiles(files, FsPermission.getFileDefault(), false,
+        (short) 2, BLOCK_SIZE);
+    verifyFiles(files);
+    assertEquals(0, NameNodeAdapter.getLeaseManager(cluster.getNamesystem())
+        .countLease());
+  }
+
+  @Test
+  public void testOverwrite() throws Exception {
+    Map<Path, byte[]> files = getFiles(new Path("/overwrite"), 4);
+    fs.createSmallFiles(files, FsPermission.getFileDefault(), false,
+        (short) 2, BLOCK_SIZE);
+    LambdaTestUtils.intercept(FileAlreadyExistsException.class,
+        () -> fs.createSmallFiles(files, FsPermission.getFileDefault(),
+            false, (short) 2, BLOCK_SIZE));
+
+    for (Map.Entry<Path, byte[]> file : files.entrySet()) {
+      file.setValue(DFSUtil.string2Bytes("overwritten " + file.getKey()));
+    }
+    fs.createSmallFiles(files, FsPermission.getFileDefault(), true,
+        (short) 2, BLOCK_SIZE);
+    verifyFiles(files);
+  }
+
+  @Test
+  public void testInvalidBatches() throws Exception {
+    Map<Path, byte[]> files = getFiles(new Path("/invalid"), LIMIT + 1);
+    LambdaTestUtils.intercept(IOException.class, "Too many files",
+        () -> fs.createSmallFiles(files, FsPermission.getFileDefault(),
+            false, (short) 2, BLOCK_SIZE));
+    assertFalse(fs.exists(new Path("/invalid")));
+
+    NamenodeProtocols nn = cluster.getNameNodeRpc();
+    String[] srcs = {"/invalid/a", "/invalid/b", "/invalid/a"};
+    LambdaTestUtils.intercept(HadoopIllegalArgumentException.class,
+        "Duplicate",
+        () -> nn.createFiles(srcs, FsPermission.getFileDefault(),
+            fs.getClient().getClientName(),
+            new EnumSetWritable<>(EnumSet.of(CreateFlag.CREATE)), true,
+            (short) 2, BLOCK_SIZE));
+    assertFalse(fs.exists(new Path("/invalid")));
+  }
+
+  @Test
+  public void testCompleteFilesPartialBatch() throws Exception {
+    NamenodeProtocols nn = cluster.getNameNodeRpc();
+    String clientName = fs.getClient().getClientName();
+    String[] created = {"/complete/a", "/complete/b"};
+    HdfsFileStatus[] stats = nn.createFiles(created,
+        FsPermission.getFileDefault(), clientName,
+        new EnumSetWritable<>(EnumSet.of(CreateFlag.CREATE)), true,
+        (short) 2, BLOCK_SIZE);
+
+    // a file which was never created does not stop the others.
+    String[] srcs = {created[0], "/complete/missing", created[1]};
+    long[] fileIds = {stats[0].getFileId(), stats[1].getFileId() + 100,
+        stats[1].getFileId()};
+    Boolean[] completed = nn.completeFiles(srcs, clientName,
+        new ExtendedBlock[srcs.length], fileIds);
+    assertEquals(Boolean.TRUE, completed[0]);
+    assertNull(completed[1]);
+    assertEquals(Boolean.TRUE, completed[2]);
+    assertTrue(fs.isFileClosed(new Path(created[0])));
+    assertTrue(fs.isFileClosed(new Path(created[1])));
+
+    String[] tooMany = new String[LIMIT + 1];
+    for (int i = 0; i < tooMany.length; i++) {
+      tooMany[i] = "/complete/file" + i;
+    }
+    LambdaTestUtils.intercept(IOException.class, "Too many files",
+        () -> nn.completeFiles(tooMany, clientName,
+            new ExtendedBlock[tooMany.length], new long[tooMany.length]));
+  }
+
+  @Test
+  public void testPartialBatch() throws Exception {
+    Path dir = new Path("/quota");
+    fs.mkdirs(dir);
+    // the directory itself counts against its quota.
+    fs.setQuota(dir, 4, HdfsConstants.QUOTA_DONT_SET);
+    Map<Path, byte[]> files = new LinkedHashMap<>();
+    for (int i = 0; i < 4; i++) {
+      files.put(new Path(dir, "file" + i),
+          DFSUtil.string2Bytes("quota file " + i));
+    }
+    LambdaTestUtils.intercept(NSQuotaExceededException.class,
+        () -> fs.createSmallFiles(files, FsPermission.getFileDefault(),
+            false, (short) 2, BLOCK_SIZE));
+
+    // the files created by the batch are still written and completed.
+    assertFalse(fs.exists(new Path(dir, "file3")));
+    files.remove(new Path(dir, "file3"));
+    verifyFiles(files);
+    assertEquals(0, NameNodeAdapter.getLeaseManager(cluster.getNamesystem())
+        .countLease());
+  }
+}
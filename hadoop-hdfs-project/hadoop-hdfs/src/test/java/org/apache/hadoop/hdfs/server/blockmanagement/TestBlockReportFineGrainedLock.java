@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.hdfs.util.RwLockMode;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Test;
+
+/**
+ * Tests block report processing with the block management lock split from
+ * the namespace lock.
+ */
+public class TestBlockReportFineGrainedLock {
+
+  @Test(timeout = 120000)
+  public void testBlockReportsUnderBlockManagementLock() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY, true);
+    conf.setLong(DFS_BLOCK_SIZE_KEY, 1024 * 1024);
+    try (MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(3).build()) {
+      cluster.waitActive();
+      FSNamesystem fsn = cluster.getNamesystem();
+      BlockManager bm = fsn.getBlockManager();
+      assertEquals(RwLockMode.BM, bm.getBlockReportLockMode());
+
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/testBlockReportsUnderBlockManagementLock");
+      long fileLen = 3 * 1024 * 1024 + 1;
+      DFSTestUtil.createFile(fs, file, fileLen, (short) 3, 0L);
+      DFSTestUtil.waitReplication(fs, file, (short) 3);
+
+      cluster.triggerBlockReports();
+      bm.flushBlockOps();
+
+      // Blocks completed through incremental block reports went through the
+      // deferred completion path and must account the actual file length.
+      assertEquals(fileLen, fs.getFileStatus(file).getLen());
+      assertEquals(fileLen * 3,
+          fs.getContentSummary(file.getParent()).getSpaceConsumed());
+      for (LocatedBlock lb : DFSTestUtil.getAllBlocks(fs, file)) {
+        assertEquals(3, lb.getLocations().length);
+      }
+      assertEquals(0, bm.getLowRedundancyBlocksCount());
+      assertTrue(fs.isFileClosed(file));
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testFirstBlockReportAfterSafeMode() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY, true);
+    try (MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(2).build()) {
+      cluster.waitActive();
+      FSNamesystem fsn = cluster.getNamesystem();
+      BlockManager bm = fsn.getBlockManager();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/testFirstBlockReportAfterSafeMode");
+      DFSTestUtil.createFile(fs, file, 1024, (short) 2, 0L);
+      DFSTestUtil.waitReplication(fs, file, (short) 2);
+
+      // the re-registered datanode sends a first block report again, which is
+      // processed under the block management lock out of safe mode.
+      assertEquals(RwLockMode.BM, bm.getBlockReportLockMode());
+      cluster.restartDataNode(0, true);
+      cluster.waitActive();
+      final DatanodeDescriptor dd = bm.getDatanodeManager()
+          .getDatanode(cluster.getDataNodes().get(0).getDatanodeId());
+      GenericTestUtils.waitFor(() -> {
+        for (DatanodeStorageInfo storage : dd.getStorageInfos()) {
+          if (storage.getBlockReportCount() == 0) {
+            return false;
+          }
+        }
+        return true;
+      }, 100, 60000);
+      assertEquals(1, dd.numBlocks());
+      DFSTestUtil.waitReplication(fs, file, (short) 2);
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testNamespaceReadsWithoutBlockManagementLock()
+      throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY, true);
+    try (MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build()) {
+      cluster.waitActive();
+      FSNamesystem fsn = cluster.getNamesystem();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path file = new Path("/testNamespaceReadsWithoutBlockManagementLock");
+      DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+
+      // the handlers serve the namespace reads while block management is
+      // locked, as it is by block reports.
+      fsn.writeLock(RwLockMode.BM);
+      try {
+        assertEquals(1024, fs.getFileStatus(file).getLen());
+        assertTrue(fs.isFileClosed(file));
+        assertTrue(fs.getAclStatus(file).getEntries().isEmpty());
+        assertTrue(fs.getXAttrs(file).isEmpty());
+      } finally {
+        fsn.writeUnlock(RwLockMode.BM, "testNamespaceReads");
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_BLOCK_SIZE_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_BLOCKREPORT_RESOLVER_THREADS_KEY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
+import org.apache.hadoop.hdfs.protocol.BlockListAsLongs.BlockReportReplica;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.hdfs.server.protocol.StorageBlockReport;
+import org.junit.Test;
+
+/**
+ * Tests looking up the blocks of full block reports before processing them.
+ */
+public class TestBlockReportResolver {
+  private static final int NUM_FILES = 10;
+
+  private static Configuration getConf() {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFS_NAMENODE_BLOCKREPORT_RESOLVER_THREADS_KEY, 4);
+    conf.setLong(DFS_BLOCK_SIZE_KEY, 1024);
+    return conf;
+  }
+
+  private static void checkLocations(DistributedFileSystem fs, int first,
+      int replication) throws Exception {
+    for (int i = first; i < NUM_FILES; i++) {
+      Path file = new Path("/file" + i);
+      for (LocatedBlock lb : DFSTestUtil.getAllBlocks(fs, file)) {
+        assertEquals(replication, lb.getLocations().length);
+      }
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testRestartWithResolvedReports() throws Exception {
+    try (MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(getConf()).numDataNodes(2).build()) {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < NUM_FILES; i++) {
+        DFSTestUtil.createFile(fs, new Path("/file" + i), 4 * 1024,
+            (short) 2, i);
+      }
+
+      // first block reports after a restart.
+      cluster.restartNameNode(true);
+      fs = cluster.getFileSystem();
+      BlockManager bm = cluster.getNamesystem().getBlockManager();
+      checkLocations(fs, 0, 2);
+      assertEquals(0, bm.getMissingBlocksCount());
+
+      // later block reports, which are diffed against the known replicas.
+      fs.delete(new Path("/file0"), false);
+      cluster.triggerBlockReports();
+      bm.flushBlockOps();
+      checkLocations(fs, 1, 2);
+      assertEquals(0, bm.getLowRedundancyBlocksCount());
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testResolutionOfDeletedBlocks() throws Exception {
+    try (MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(getConf()).numDataNodes(1).build()) {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < NUM_FILES; i++) {
+        DFSTestUtil.createFile(fs, new Path("/file" + i), 2 * 1024,
+            (short) 1, i);
+      }
+      BlockManager bm = cluster.getNamesystem().getBlockManager();
+      DataNode dn = cluster.getDataNodes().get(0);
+      Map<DatanodeStorage, BlockListAsLongs> reportMap =
+          dn.getFSDataset().getBlockReports(cluster.getNamesystem()
+              .getBlockPoolId());
+      List<StorageBlockReport> reports = new ArrayList<>();
+      for (Map.Entry<DatanodeStorage, BlockListAsLongs> e :
+          reportMap.entrySet()) {
+        reports.add(new StorageBlockReport(e.getKey(), e.getValue()));
+      }
+
+      BlockReportResolver.Resolution[] resolutions = bm.resolveBlockReports(
+          reports.toArray(new StorageBlockReport[0]));
+      assertEquals(reports.size(), resolutions.length);
+      int resolved = 0;
+      for (int r = 0; r < resolutions.length; r++) {
+        assertNotNull(resolutions[r]);
+        assertTrue(resolutions[r].isValid(bm.getBlocksMapClearCount()));
+        int i = 0;
+        for (BlockReportReplica replica : reports.get(r).getBlocks()) {
+          assertSame(bm.getStoredBlock(replica),
+              resolutions[r].getStoredBlock(i++));
+          resolved++;
+        }
+      }
+      assertEquals(2 * NUM_FILES, resolved);
+
+      // other changes to the blocks map only make the lookups of the
+      // deleted blocks stale.
+      DFSTestUtil.createFile(fs, new Path("/another"), 1024, (short) 1, 0L);
+      fs.delete(new Path("/file0"), false);
+      int stale = 0;
+      for (int r = 0; r < resolutions.length; r++) {
+        assertTrue(resolutions[r].isValid(bm.getBlocksMapClearCount()));
+        int i = 0;
+        for (BlockReportReplica replica : reports.get(r).getBlocks()) {
+          BlockInfo storedBlock = resolutions[r].getStoredBlock(i++);
+          if (storedBlock == null) {
+            assertNull(bm.getStoredBlock(replica));
+            stale++;
+          } else {
+            assertSame(bm.getStoredBlock(replica), storedBlock);
+          }
+        }
+      }
+      assertEquals(2, stale);
+    }
+  }
+}
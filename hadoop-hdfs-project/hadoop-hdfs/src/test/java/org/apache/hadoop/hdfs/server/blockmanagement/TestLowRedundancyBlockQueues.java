@@ -18,6 +18,7 @@
 
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -138,6 +139,38 @@ public void testDeletedBlocks() throws Exception {
     assertEquals(1, blocks.get(2).get(0).getBlockId());
   }
 
+  /**
+   * Tests that the deleted blocks are left in the queues, so that iterating
+   * the queues is not interrupted, when the caller removes them later.
+   */
+  @Test
+  public void testDeletedBlocksLeftInQueues() throws Exception {
+    LowRedundancyBlocks queues = new LowRedundancyBlocks();
+    BlockInfo deleted = genBlockInfo(0, true);
+    BlockInfo corruptDeleted = genBlockInfo(1, true);
+    queues.add(deleted, 2, 0, 0, 3);
+    queues.add(corruptDeleted, 0, 0, 0, 3);
+    queues.add(genBlockInfo(2), 2, 0, 0, 3);
+
+    Iterator<BlockInfo> corrupt =
+        queues.iterator(LowRedundancyBlocks.QUEUE_WITH_CORRUPT_BLOCKS);
+    List<BlockInfo> deletedBlocks = new ArrayList<>();
+    List<List<BlockInfo>> blocks =
+        queues.chooseLowRedundancyBlocks(3, false, deletedBlocks);
+    assertEquals(1, blocks.get(2).size());
+    assertEquals(2, blocks.get(2).get(0).getBlockId());
+    assertEquals(2, deletedBlocks.size());
+    assertTrue(deletedBlocks.contains(deleted));
+    assertTrue(deletedBlocks.contains(corruptDeleted));
+    assertEquals(3, queues.size());
+    assertEquals(corruptDeleted, corrupt.next());
+
+    for (BlockInfo block : deletedBlocks) {
+      assertTrue(queues.remove(block, LowRedundancyBlocks.LEVEL));
+    }
+    assertEquals(1, queues.size());
+  }
+
   @Test
   public void testQueuePositionCanBeReset() throws Throwable {
     LowRedundancyBlocks queues = new LowRedundancyBlocks();
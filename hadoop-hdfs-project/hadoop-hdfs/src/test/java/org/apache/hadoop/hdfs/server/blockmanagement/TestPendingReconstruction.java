@@ -59,6 +59,7 @@
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.test.GenericTestUtils.LogCapturer;
+import org.apache.hadoop.util.Time;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.slf4j.LoggerFactory;
@@ -186,6 +187,46 @@ public void testPendingReconstruction() {
     pendingReconstructions.stop();
   }
 
+  /**
+   * Test that a reconstruction which is requested again is timed out
+   * relative to the latest request, after older requests.
+   */
+  @Test
+  public void testTimeoutOfRenewedReconstruction() throws Exception {
+    NameNode.initMetrics(new Configuration(),
+        HdfsServerConstants.NamenodeRole.NAMENODE);
+    PendingReconstructionBlocks pendingReconstructions =
+        new PendingReconstructionBlocks(1000);
+    DatanodeStorageInfo[] storages = DFSTestUtil.createDatanodeStorageInfos(2);
+    BlockInfo renewed = genBlockInfo(1, 1, 0);
+    BlockInfo old = genBlockInfo(2, 2, 0);
+    PendingReconstructionBlocks.PendingReconstructionMonitor monitor =
+        pendingReconstructions.new PendingReconstructionMonitor();
+    pendingReconstructions.increment(renewed, storages[0]);
+    pendingReconstructions.increment(old, storages[0]);
+    final long requested = Time.monotonicNow();
+    GenericTestUtils.waitFor(() -> Time.monotonicNow() > requested + 1000,
+        100, 10000);
+    pendingReconstructions.increment(renewed, storages[1]);
+
+    monitor.pendingReconstructionCheck();
+    Block[] timedOut = pendingReconstructions.getTimedOutBlocks();
+    assertNotNull(timedOut);
+    assertEquals(1, timedOut.length);
+    assertEquals(old, timedOut[0]);
+    assertEquals(2, pendingReconstructions.getNumReplicas(renewed));
+
+    GenericTestUtils.waitFor(() -> {
+      monitor.pendingReconstructionCheck();
+      return pendingReconstructions.size() == 0;
+    }, 100, 10000);
+    timedOut = pendingReconstructions.getTimedOutBlocks();
+    assertNotNull(timedOut);
+    assertEquals(1, timedOut.length);
+    assertEquals(renewed, timedOut[0]);
+    assertEquals(0, pendingReconstructions.size());
+  }
+
 /* Test that processpendingReconstructions will use the most recent
  * blockinfo from the blocksmap by placing a larger genstamp into
  * the blocksmap.
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.common;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link Util#receiveFile}, which writes the downloaded images behind
+ * the transfer.
+ */
+public class TestReceiveFile {
+  private static final int LENGTH = 1024 * 1024;
+
+  private final byte[] data = new byte[LENGTH];
+  private File dir;
+
+  @Before
+  public void setUp() throws Exception {
+    new Random(0).nextBytes(data);
+    dir = GenericTestUtils.getRandomizedTestDir();
+    assertTrue(dir.mkdirs());
+  }
+
+  @After
+  public void tearDown() {
+    Thread.interrupted();
+    FileUtil.fullyDelete(dir);
+  }
+
+  private MD5Hash receive(List<File> files, InputStream in)
+      throws Exception {
+    // sync several times in the background during the transfer.
+    return Util.receiveFile("http://localhost/image", files, null, true,
+        LENGTH, MD5Hash.digest(data), null, in, null, LENGTH / 8);
+  }
+
+  private void verify(List<File> files) throws Exception {
+    for (File f : files) {
+      assertArrayEquals(data, Files.readAllBytes(f.toPath()));
+    }
+  }
+
+  @Test
+  public void testReceiveFile() throws Exception {
+    List<File> files = Arrays.asList(new File(dir, "image1"),
+        new File(dir, "image2"));
+    assertEquals(MD5Hash.digest(data),
+        receive(files, new ByteArrayInputStream(data)));
+    verify(files);
+  }
+
+  @Test
+  public void testInterruptedReceiveFile() throws Exception {
+    List<File> files = Arrays.asList(new File(dir, "image"));
+    // the downloading thread is interrupted once the whole image is read.
+    InputStream in = new ByteArrayInputStream(data) {
+      @Override
+      public synchronized int read(byte[] b, int off, int len) {
+        int n = super.read(b, off, len);
+        if (n < 0) {
+          Thread.currentThread().interrupt();
+        }
+        return n;
+      }
+    };
+    assertEquals(MD5Hash.digest(data), receive(files, in));
+    // the files are synced before the interrupt is restored.
+    assertTrue(Thread.interrupted());
+    verify(files);
+  }
+}
@@ -2518,6 +2518,29 @@ public void testActiveRejectSmallerTxidDeltaImage() throws Exception {
     }
   }
 
+  /**
+   * Test that periodic checkpoints are deferred while churn is low, but never
+   * beyond the maximum checkpoint period.
+   */
+  @Test
+  public void testDeferPeriodicCheckpointForLowChurn() {
+    Configuration conf = new HdfsConfiguration();
+    CheckpointConf checkpointConf = new CheckpointConf(conf);
+    // disabled by default.
+    assertFalse(checkpointConf.shouldDeferPeriodicCheckpoint(0, 1000000, 3600));
+
+    conf.setDouble(DFSConfigKeys.DFS_NAMENODE_CHECKPOINT_MIN_CHURN_RATIO_KEY,
+        0.01);
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_CHECKPOINT_MAX_PERIOD_KEY, 7200);
+    checkpointConf = new CheckpointConf(conf);
+    assertTrue(checkpointConf.shouldDeferPeriodicCheckpoint(
+        9999, 1000000, 3600));
+    assertFalse(checkpointConf.shouldDeferPeriodicCheckpoint(
+        10000, 1000000, 3600));
+    assertFalse(checkpointConf.shouldDeferPeriodicCheckpoint(
+        9999, 1000000, 7200));
+  }
+
   /**
    * Test that even with txid and time delta threshold, by having time
    * relaxation, SBN can still upload images to ANN.
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.hdfs.server.namenode.FSEditLogAsync.GroupCommitPolicy;
+import org.junit.Test;
+
+/**
+ * Tests the adaptive group commit policy of {@link FSEditLogAsync}.
+ */
+public class TestFSEditLogAsyncGroupCommit {
+
+  private static final long MAX_WAIT = TimeUnit.MILLISECONDS.toNanos(2);
+
+  @Test
+  public void testDisabledNeverWaits() {
+    GroupCommitPolicy policy = new GroupCommitPolicy(0);
+    assertFalse(policy.isEnabled());
+    policy.update(TimeUnit.MILLISECONDS.toNanos(10), 100);
+    assertEquals(0, policy.getWaitNanos(1, 0));
+  }
+
+  @Test
+  public void testLightLoadNeverWaits() {
+    GroupCommitPolicy policy = new GroupCommitPolicy(MAX_WAIT);
+    assertTrue(policy.isEnabled());
+    for (int i = 0; i < 10; i++) {
+      policy.update(TimeUnit.MILLISECONDS.toNanos(1), 0);
+    }
+    assertEquals(1, policy.getTargetBatchSize());
+    assertEquals(0, policy.getWaitNanos(1, 0));
+  }
+
+  @Test
+  public void testWaitIsBoundedByFlushLatencyAndMaximum() {
+    GroupCommitPolicy policy = new GroupCommitPolicy(MAX_WAIT);
+    long flush = TimeUnit.MICROSECONDS.toNanos(800);
+    policy.update(flush, 50);
+    assertEquals(50, policy.getTargetBatchSize());
+    // half of the flush latency, less the time the batch already waited.
+    assertEquals(flush / 2, policy.getWaitNanos(10, 0));
+    assertEquals(flush / 2 - 100, policy.getWaitNanos(10, 100));
+    assertEquals(0, policy.getWaitNanos(10, flush));
+    // full batches are synced immediately.
+    assertEquals(0, policy.getWaitNanos(50, 0));
+
+    // slow journals are capped by the configured maximum.
+    policy = new GroupCommitPolicy(MAX_WAIT);
+    policy.update(TimeUnit.MILLISECONDS.toNanos(20), 50);
+    assertEquals(MAX_WAIT, policy.getWaitNanos(10, 0));
+  }
+
+  @Test
+  public void testTargetFollowsArrivals() {
+    GroupCommitPolicy policy = new GroupCommitPolicy(MAX_WAIT);
+    policy.update(TimeUnit.MILLISECONDS.toNanos(1), 100);
+    for (int i = 0; i < 50; i++) {
+      policy.update(TimeUnit.MILLISECONDS.toNanos(1), 10);
+    }
+    assertEquals(10, policy.getTargetBatchSize());
+  }
+}
@@ -20,6 +20,8 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doNothing;
@@ -838,6 +840,81 @@ public void testLoadFSEditLogThrottling() throws Exception {
     assertTrue(capture.getOutput().contains("total size 2.0"));
   }
 
+  @Test
+  public void testPrefetchingOpReader() throws IOException {
+    EditLogInputStream in = getFakeEditLogInputStream(1, 2);
+    FSEditLogOp op1 = mock(FSEditLogOp.class);
+    FSEditLogOp op2 = mock(FSEditLogOp.class);
+    when(in.readOp()).thenReturn(op1, op2, null);
+    when(in.getPosition()).thenReturn(10L, 20L, 20L);
+    when(in.getVersion(true)).thenReturn(
+        NameNodeLayoutVersion.CURRENT_LAYOUT_VERSION);
+
+    FSEditLogLoader.PrefetchingOpReader reader =
+        new FSEditLogLoader.PrefetchingOpReader(in, 1);
+    try {
+      assertSame(op1, reader.readOp());
+      assertEquals(10L, reader.getPosition());
+      assertEquals(NameNodeLayoutVersion.CURRENT_LAYOUT_VERSION,
+          reader.getVersion());
+      assertSame(op2, reader.readOp());
+      assertEquals(20L, reader.getPosition());
+      assertNull(reader.readOp());
+      assertNull(reader.readOp());
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testPrefetchingOpReaderRethrowsInOrder() throws IOException {
+    EditLogInputStream in = getFakeEditLogInputStream(1, 2);
+    FSEditLogOp op1 = mock(FSEditLogOp.class);
+    when(in.readOp()).thenReturn(op1)
+        .thenThrow(new IOException("corrupt op"));
+
+    FSEditLogLoader.PrefetchingOpReader reader =
+        new FSEditLogLoader.PrefetchingOpReader(in, 4);
+    try {
+      assertSame(op1, reader.readOp());
+      reader.readOp();
+      fail("Expected the decoding error to be rethrown");
+    } catch (IOException e) {
+      GenericTestUtils.assertExceptionContains("corrupt op", e);
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testReplayWithPrefetch() throws IOException {
+    Configuration conf = getConf();
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_EDITS_REPLAY_PREFETCH_OPS_KEY, 4);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(NUM_DATA_NODES)
+          .build();
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      for (int i = 0; i < 20; i++) {
+        fs.mkdirs(new Path("/prefetch/dir" + i));
+      }
+      fs.rename(new Path("/prefetch/dir0"), new Path("/prefetch/dir0.moved"));
+      fs.delete(new Path("/prefetch/dir1"), true);
+
+      cluster.restartNameNode();
+      fs = cluster.getFileSystem();
+      assertTrue(fs.exists(new Path("/prefetch/dir0.moved")));
+      assertFalse(fs.exists(new Path("/prefetch/dir0")));
+      assertFalse(fs.exists(new Path("/prefetch/dir1")));
+      assertTrue(fs.exists(new Path("/prefetch/dir19")));
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
   private EditLogInputStream getFakeEditLogInputStream(long startTx, long endTx)
       throws IOException {
     EditLogInputStream fakeStream = mock(EditLogInputStream.class);
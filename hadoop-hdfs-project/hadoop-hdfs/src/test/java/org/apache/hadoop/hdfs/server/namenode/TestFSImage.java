@@ -32,8 +32,12 @@
 import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
 
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.hdfs.StripedFileTestUtil;
@@ -49,6 +53,7 @@
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfoStriped;
 import org.apache.hadoop.hdfs.protocol.BlockType;
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.StartupOption;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
 import org.apache.hadoop.hdfs.server.namenode.snapshot.SnapshotTestHelper;
 import org.apache.hadoop.io.erasurecode.ECSchema;
 import org.apache.hadoop.ipc.RemoteException;
@@ -79,6 +84,7 @@
 import org.apache.hadoop.hdfs.util.MD5FileUtils;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.test.PathUtils;
+import org.apache.hadoop.test.Whitebox;
 import org.apache.hadoop.test.LambdaTestUtils;
 import org.apache.hadoop.util.Time;
 import org.junit.Assert;
@@ -1119,6 +1125,64 @@ public void testParallelSaveAndLoad() throws IOException {
     }
   }
 
+  @Test
+  public void testParallelEncodingMatchesSerialSave() throws Exception {
+    Configuration conf = new Configuration();
+
+    MiniDFSCluster cluster = null;
+    try {
+      // the image loaded on restart was encoded by 4 threads, in batches of
+      // the inodes of a sub-section.
+      cluster = createAndLoadParallelFSImage(conf);
+      DistributedFileSystem fs = cluster.getFileSystem();
+      fs.setSafeMode(SafeModeAction.ENTER);
+
+      fs.saveNamespace();
+      List<Long> parallelSubSections = new ArrayList<>();
+      byte[] parallel = getINodeSection(cluster, parallelSubSections);
+      assertEquals(4, parallelSubSections.size());
+
+      Configuration imageConf = (Configuration) Whitebox.getInternalState(
+          FSImageTestUtil.getFSImage(cluster.getNameNode()), "conf");
+      imageConf.setInt(DFSConfigKeys.DFS_IMAGE_PARALLEL_THREADS_KEY, 1);
+      fs.saveNamespace();
+      List<Long> serialSubSections = new ArrayList<>();
+      byte[] serial = getINodeSection(cluster, serialSubSections);
+
+      assertArrayEquals(serial, parallel);
+      assertEquals(serialSubSections, parallelSubSections);
+      fs.setSafeMode(SafeModeAction.LEAVE);
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+
+  /**
+   * @return the INode section of the latest image, and adds the lengths of
+   *         its sub-sections to the given list.
+   */
+  private static byte[] getINodeSection(MiniDFSCluster cluster,
+      List<Long> subSectionLengths) throws IOException {
+    File image = FSImageTestUtil.findLatestImageFile(FSImageTestUtil
+        .getFSImage(cluster.getNameNode()).getStorage().getStorageDir(0));
+    try (RandomAccessFile raFile = new RandomAccessFile(image, "r")) {
+      byte[] section = null;
+      for (Section s : FSImageUtil.loadSummary(raFile).getSectionsList()) {
+        if (s.getName().equals(SectionName.INODE.toString())) {
+          section = new byte[(int) s.getLength()];
+          raFile.seek(s.getOffset());
+          raFile.readFully(section);
+        } else if (s.getName().equals(SectionName.INODE_SUB.toString())) {
+          subSectionLengths.add(s.getLength());
+        }
+      }
+      assertNotNull(section);
+      return section;
+    }
+  }
+
   @Test
   public void testNoParallelSectionsWithCompressionEnabled()
       throws IOException {
@@ -1229,4 +1293,55 @@ public void testUpdateBlocksMapAndNameCacheAsync() throws IOException {
     SnapshotTestHelper.compareDumpedTreeInFile(
         preRestartTree, postRestartTree, true);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testChildrenListsLoadedInOrder() throws Exception {
+    Configuration conf = new Configuration();
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(0).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      final int numChildren = 37;
+      Path large = new Path("/children/large");
+      for (int i = numChildren - 1; i >= 0; i--) {
+        fs.mkdirs(new Path(large, "child" + i));
+      }
+      fs.mkdirs(new Path("/children/small/child"));
+      fs.mkdirs(new Path("/children/empty"));
+
+      fs.setSafeMode(SafeModeAction.ENTER);
+      fs.saveNamespace();
+      fs.setSafeMode(SafeModeAction.LEAVE);
+      cluster.restartNameNode();
+      cluster.waitActive();
+
+      FSDirectory fsdir = cluster.getNamesystem().getFSDirectory();
+      List<String> names = new ArrayList<>();
+      for (int i = 0; i < numChildren; i++) {
+        names.add("child" + i);
+      }
+      Collections.sort(names);
+      checkChildren(fsdir, "/children/large", names);
+      checkChildren(fsdir, "/children/small", Arrays.asList("child"));
+      checkChildren(fsdir, "/children/empty", Collections.emptyList());
+      checkChildren(fsdir, "/children",
+          Arrays.asList("empty", "large", "small"));
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  /** Check the children loaded from the image, in the order they are kept. */
+  private static void checkChildren(FSDirectory fsdir, String path,
+      List<String> expected) throws Exception {
+    INodeDirectory dir = fsdir.getINode(path).asDirectory();
+    List<String> names = new ArrayList<>();
+    for (INode child : dir.getChildrenList(Snapshot.CURRENT_STATE_ID)) {
+      names.add(child.getLocalName());
+    }
+    assertEquals(expected, names);
+    assertEquals(expected.size(),
+        dir.getChildrenNum(Snapshot.CURRENT_STATE_ID));
+  }
+}
@@ -19,19 +19,33 @@
 package org.apache.hadoop.hdfs.server.namenode;
 
 import java.util.function.Supplier;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.util.RwLockMode;
 import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.metrics2.lib.MetricsRegistry;
 import org.apache.hadoop.metrics2.lib.MutableRatesWithAggregation;
+import org.apache.hadoop.net.NetUtils;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hadoop.test.GenericTestUtils;
 import org.apache.hadoop.test.GenericTestUtils.LogCapturer;
+import org.apache.hadoop.test.LambdaTestUtils;
 import org.apache.hadoop.test.MetricsAsserts;
 import org.apache.hadoop.util.FakeTimer;
 import org.apache.hadoop.util.Time;
 import org.junit.Test;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -43,6 +57,8 @@
 
 import static org.junit.Assert.*;
 import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FAIR_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY;
+import static org.apache.hadoop.hdfs.DFSConfigKeys.DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_KEY;
 import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
 import static org.apache.hadoop.test.MetricsAsserts.assertGauge;
 
@@ -445,4 +461,221 @@ public void testFSWriteLockReportSuppressed() throws Exception {
         "Number of suppressed write-lock reports:"));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testFineGrainedLockModes() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_FINE_GRAINED_KEY, true);
+    final FSNamesystemLock fsnLock = new FSNamesystemLock(conf, null);
+    assertTrue(fsnLock.isFineGrainedLockEnabled());
+
+    fsnLock.writeLock(RwLockMode.BM);
+    assertTrue(fsnLock.isWriteLockedByCurrentThread(RwLockMode.BM));
+    assertFalse(fsnLock.isWriteLockedByCurrentThread(RwLockMode.FS));
+    assertFalse(fsnLock.isWriteLockedByCurrentThread(RwLockMode.GLOBAL));
+
+    // A namespace reader on another thread is not blocked by a BM writer.
+    ExecutorService helper = Executors.newSingleThreadExecutor();
+    try {
+      assertTrue(helper.submit(() -> {
+        fsnLock.readLock(RwLockMode.FS);
+        try {
+          return fsnLock.hasReadLock(RwLockMode.FS);
+        } finally {
+          fsnLock.readUnlock(RwLockMode.FS, "testFineGrainedLockModes");
+        }
+      }).get(10, TimeUnit.SECONDS));
+    } finally {
+      helper.shutdownNow();
+    }
+    fsnLock.writeUnlock(RwLockMode.BM, "testFineGrainedLockModes");
+    assertFalse(fsnLock.isWriteLockedByCurrentThread(RwLockMode.BM));
+
+    fsnLock.writeLock();
+    assertTrue(fsnLock.isWriteLockedByCurrentThread(RwLockMode.GLOBAL));
+    assertTrue(fsnLock.isWriteLockedByCurrentThread(RwLockMode.FS));
+    assertTrue(fsnLock.isWriteLockedByCurrentThread(RwLockMode.BM));
+    fsnLock.writeUnlock();
+    assertFalse(fsnLock.isWriteLockedByCurrentThread(RwLockMode.FS));
+    assertFalse(fsnLock.isWriteLockedByCurrentThread(RwLockMode.BM));
+
+    fsnLock.readLock(RwLockMode.FS);
+    assertTrue(fsnLock.hasReadLock(RwLockMode.FS));
+    assertFalse(fsnLock.hasReadLock(RwLockMode.BM));
+    assertFalse(fsnLock.hasReadLock(RwLockMode.GLOBAL));
+    fsnLock.readUnlock(RwLockMode.FS, "testFineGrainedLockModes");
+  }
+
+  @Test
+  public void testLockModesWithoutFineGrainedLock() {
+    final FSNamesystemLock fsnLock =
+        new FSNamesystemLock(new Configuration(), null);
+    assertFalse(fsnLock.isFineGrainedLockEnabled());
+
+    // Every mode maps to the single namespace lock.
+    fsnLock.writeLock(RwLockMode.BM);
+    assertTrue(fsnLock.isWriteLockedByCurrentThread());
+    assertTrue(fsnLock.isWriteLockedByCurrentThread(RwLockMode.FS));
+    assertTrue(fsnLock.isWriteLockedByCurrentThread(RwLockMode.GLOBAL));
+    fsnLock.writeUnlock(RwLockMode.BM, "testLockModesWithoutFineGrainedLock");
+    assertEquals(0, fsnLock.getWriteHoldCount());
+
+    fsnLock.readLock(RwLockMode.FS);
+    assertEquals(1, fsnLock.getReadHoldCount());
+    assertTrue(fsnLock.hasReadLock(RwLockMode.BM));
+    fsnLock.readUnlock(RwLockMode.FS, "testLockModesWithoutFineGrainedLock");
+    assertEquals(0, fsnLock.getReadHoldCount());
+  }
+
+  @Test
+  public void testOptimisticRead() throws Exception {
+    FSNamesystemLock fsnLock = new FSNamesystemLock(new Configuration(), null);
+    assertEquals(FSNamesystemLock.INVALID_STAMP, fsnLock.tryOptimisticRead());
+
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_KEY, true);
+    final FSNamesystemLock lock = new FSNamesystemLock(conf, null);
+    long stamp = lock.tryOptimisticRead();
+    assertNotEquals(FSNamesystemLock.INVALID_STAMP, stamp);
+    // read locks are no-ops in an optimistic read.
+    lock.readLock();
+    assertEquals(0, lock.getReadHoldCount());
+    assertTrue(lock.hasReadLock(RwLockMode.GLOBAL));
+    lock.readUnlock();
+    LambdaTestUtils.intercept(IllegalStateException.class,
+        () -> lock.writeLock());
+    assertTrue(lock.validate(stamp));
+    assertFalse(lock.hasReadLock(RwLockMode.GLOBAL));
+    assertEquals(1, lock.getNumOfOptimisticReads());
+
+    // a write during the read invalidates it.
+    stamp = lock.tryOptimisticRead();
+    ExecutorService helper = Executors.newSingleThreadExecutor();
+    try {
+      helper.submit(() -> {
+        lock.writeLock();
+        lock.writeUnlock();
+      }).get(10, TimeUnit.SECONDS);
+    } finally {
+      helper.shutdownNow();
+    }
+    assertFalse(lock.validate(stamp));
+    assertEquals(1, lock.getNumOfOptimisticReadRetries());
+
+    // no optimistic read while a writer holds the lock.
+    lock.writeLock(RwLockMode.BM);
+    assertEquals(FSNamesystemLock.INVALID_STAMP, lock.tryOptimisticRead());
+    lock.writeUnlock(RwLockMode.BM, "testOptimisticRead");
+    assertEquals(2, lock.getNumOfOptimisticReadRetries());
+    stamp = lock.tryOptimisticRead();
+    assertTrue(lock.validate(stamp));
+    assertEquals(2, lock.getNumOfOptimisticReads());
+  }
+
+  @Test
+  public void testOptimisticReadsOfNamesystem() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFS_NAMENODE_FSLOCK_OPTIMISTIC_READ_KEY, true);
+    try (MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build()) {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      FSNamesystem fsn = cluster.getNamesystem();
+      Path file = new Path("/file");
+      DFSTestUtil.createFile(fs, file, 1024, (short) 1, 0L);
+
+      long reads = fsn.getNumOfOptimisticReads();
+      assertEquals(1024, fs.getFileStatus(file).getLen());
+      assertNull(fsn.getFileInfo("/missing", true, false, false));
+      assertEquals(1, DFSTestUtil.getAllBlocks(fs, file).size());
+      LambdaTestUtils.intercept(FileNotFoundException.class,
+          () -> fs.open(new Path("/missing")));
+      assertTrue(fsn.getNumOfOptimisticReads() > reads);
+    }
+  }
+
+  @Test
+  public void testLockProfiler() throws Exception {
+    Configuration conf = new Configuration();
+    FakeTimer timer = new FakeTimer();
+    MetricsRegistry registry = new MetricsRegistry("Test");
+    MutableRatesWithAggregation rates =
+        registry.newRatesWithAggregation("Test");
+    assertFalse(new FSNamesystemLock(conf, rates, timer).getProfiler()
+        .isEnabled());
+
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_LOCK_PROFILER_ENABLED_KEY,
+        true);
+    FSNamesystemLock fsLock = new FSNamesystemLock(conf, rates, timer);
+    FSNamesystemLockProfiler profiler = fsLock.getProfiler();
+    assertTrue(profiler.isEnabled());
+
+    fsLock.readLock();
+    timer.advanceNanos(50000);
+    fsLock.readUnlock("foo");
+    fsLock.readLock();
+    timer.advance(2);
+    fsLock.readLock();
+    timer.advance(1);
+    fsLock.readUnlock("foo");
+    fsLock.readUnlock("foo");
+
+    fsLock.writeLock();
+    timer.advance(2000);
+    fsLock.writeUnlock("bar", false);
+
+    FSNamesystemLockProfiler.LockTimes read =
+        profiler.getOperationProfile("foo").get(false);
+    assertEquals(2, read.getNumOps());
+    assertEquals(3050000, read.getHoldNanos());
+    assertEquals(0, read.getWaitNanos());
+    assertEquals(2, read.getWaitCount(0));
+    assertEquals(1, read.getHoldCount(0));
+    assertEquals(1, read.getHoldCount(2));
+    assertEquals(0, profiler.getOperationProfile("foo").get(true).getNumOps());
+    // the locks were not taken by RPC calls.
+    assertNull(profiler.getUserProfile(
+        UserGroupInformation.getCurrentUser().getShortUserName()));
+
+    MetricsRecordBuilder rb = MetricsAsserts.getMetrics(profiler);
+    assertCounter("FSNReadLockFooNumOps", 2L, rb);
+    assertCounter("FSNReadLockFooHoldNanos", 3050000L, rb);
+    assertCounter("FSNReadLockFooHoldLe100us", 1L, rb);
+    assertCounter("FSNReadLockFooHoldLe10ms", 1L, rb);
+    assertCounter("FSNWriteLockBarNumOps", 1L, rb);
+    assertCounter("FSNWriteLockBarHoldGt1s", 1L, rb);
+    assertCounter("FSNWriteLockBarHoldLe1s", 0L, rb);
+
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_LOCK_PROFILER_ENABLED_KEY,
+        false);
+    fsLock = new FSNamesystemLock(conf, rates, timer);
+    fsLock.readLock();
+    fsLock.readUnlock("foo");
+    assertNull(fsLock.getProfiler().getOperationProfile("foo"));
+  }
+
+  @Test
+  public void testLockProfileServlet() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_LOCK_PROFILER_ENABLED_KEY,
+        true);
+    try (MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(0).build()) {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      assertTrue(fs.mkdirs(new Path("/profile")));
+
+      URL url = new URL("http://" + NetUtils.getHostPortString(
+          cluster.getNameNode().getHttpAddress())
+          + LockProfileServlet.PATH_SPEC);
+      Map<?, ?> profile =
+          new ObjectMapper().readValue(DFSTestUtil.urlGet(url), Map.class);
+      assertEquals(Boolean.TRUE, profile.get("enabled"));
+      Map<?, ?> mkdirs = (Map<?, ?>)
+          ((Map<?, ?>) profile.get("operations")).get("mkdirs");
+      Map<?, ?> write = (Map<?, ?>) mkdirs.get("write");
+      assertTrue(((Number) write.get("numOps")).longValue() > 0);
+      assertTrue(((Map<?, ?>) profile.get("users")).containsKey(
+          UserGroupInformation.getCurrentUser().getShortUserName()));
+    }
+  }
+}
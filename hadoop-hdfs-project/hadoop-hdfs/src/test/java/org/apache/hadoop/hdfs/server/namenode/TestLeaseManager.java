@@ -103,6 +103,36 @@ public void testCheckLease() throws InterruptedException {
     assertTrue(lm.countLease() < numLease);
   }
 
+  /**
+   * Test that the leases are checked at their hard limits, and that the
+   * renewed leases are rescheduled rather than checked.
+   */
+  @Test
+  public void testExpiredCandidateLeases() throws Exception {
+    LeaseManager lm = new LeaseManager(makeMockFsNameSystem());
+    lm.setLeasePeriod(100L, 1000L);
+    lm.addLease("holder1", INodeId.ROOT_INODE_ID + 1);
+    lm.addLease("holder2", INodeId.ROOT_INODE_ID + 2);
+    lm.addLease("holder3", INodeId.ROOT_INODE_ID + 3);
+    assertTrue(lm.getExpiredCandidateLeases().isEmpty());
+
+    Thread.sleep(600);
+    lm.renewLease("holder1");
+    Thread.sleep(600);
+    assertEquals(Arrays.asList(lm.getLease("holder2"), lm.getLease("holder3")),
+        new ArrayList<>(lm.getExpiredCandidateLeases()));
+
+    // the expired leases are checked until they are renewed or removed.
+    lm.renewLease("holder2");
+    lm.removeLease(INodeId.ROOT_INODE_ID + 3);
+    assertTrue(lm.getExpiredCandidateLeases().isEmpty());
+
+    Thread.sleep(1100);
+    assertEquals(Arrays.asList(lm.getLease("holder1"), lm.getLease("holder2")),
+        new ArrayList<>(lm.getExpiredCandidateLeases()));
+    assertEquals(2, lm.getExpiredCandidateLeases().size());
+  }
+
   /**
    * Test whether the internal lease holder name is updated properly.
    */
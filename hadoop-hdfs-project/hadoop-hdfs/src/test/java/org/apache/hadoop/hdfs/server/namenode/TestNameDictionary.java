@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Test;
+
+/**
+ * Tests for {@link NameDictionary}.
+ */
+public class TestNameDictionary {
+
+  @Test
+  public void testIntern() {
+    NameDictionary dictionary = new NameDictionary();
+    byte[] first = DFSUtil.string2Bytes("part-00000");
+    byte[] second = DFSUtil.string2Bytes("part-00000");
+    byte[] other = DFSUtil.string2Bytes("part-00001");
+    assertSame(first, dictionary.intern(first));
+    assertSame(first, dictionary.intern(second));
+    assertSame(other, dictionary.intern(other));
+    assertSame(first, dictionary.intern(first));
+    assertEquals(2, dictionary.size());
+    assertEquals(1, dictionary.getHits());
+    // an entry for each distinct name, and the slots of the table.
+    assertEquals(2 * 56 + (1 << 16) * 8, dictionary.getOverheadBytes());
+    assertEquals(16 + second.length - dictionary.getOverheadBytes(),
+        dictionary.getBytesSaved());
+
+    // enough distinct names to resize the table.
+    for (int i = 0; i < 100000; i++) {
+      dictionary.intern(DFSUtil.string2Bytes("dt=" + i));
+    }
+    assertSame(first, dictionary.intern(second));
+    assertTrue(dictionary.size() <= 100002);
+
+    dictionary.clear();
+    assertEquals(0, dictionary.size());
+    assertEquals(-dictionary.getOverheadBytes(), dictionary.getBytesSaved());
+    assertSame(second, dictionary.intern(second));
+  }
+
+  private static void internTwice(NameDictionary dictionary, String name) {
+    dictionary.intern(DFSUtil.string2Bytes(name));
+    dictionary.intern(DFSUtil.string2Bytes(name));
+  }
+
+  @Test
+  public void testBytesSavedOfCollectedNames() throws Exception {
+    NameDictionary dictionary = new NameDictionary();
+    byte[] kept = DFSUtil.string2Bytes("kept");
+    dictionary.intern(kept);
+    dictionary.intern(DFSUtil.string2Bytes("kept"));
+    internTwice(dictionary, "collected");
+
+    // the savings of a name go away with the name.
+    GenericTestUtils.waitFor(() -> {
+      System.gc();
+      return dictionary.size() == 1;
+    }, 100, 10000);
+    assertEquals(16 + kept.length - dictionary.getOverheadBytes(),
+        dictionary.getBytesSaved());
+    assertSame(kept, dictionary.intern(DFSUtil.string2Bytes("kept")));
+  }
+
+  private static byte[] getName(FSDirectory fsdir, String path)
+      throws Exception {
+    return fsdir.getINode(path).getLocalNameBytes();
+  }
+
+  @Test
+  public void testSharedNamesInNamespace() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_NAME_DICTIONARY_ENABLED_KEY,
+        true);
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      for (String table : new String[] {"/t1", "/t2"}) {
+        DFSTestUtil.createFile(fs, new Path(table + "/dt=2024-01-01/part-0"),
+            0, (short) 1, 0L);
+      }
+      fs.mkdirs(new Path("/t3/tmp"));
+      fs.rename(new Path("/t3/tmp"), new Path("/t3/dt=2024-01-01"));
+
+      FSDirectory fsdir = cluster.getNamesystem().getFSDirectory();
+      byte[] dir = getName(fsdir, "/t1/dt=2024-01-01");
+      assertSame(dir, getName(fsdir, "/t2/dt=2024-01-01"));
+      assertSame(dir, getName(fsdir, "/t3/dt=2024-01-01"));
+      assertSame(getName(fsdir, "/t1/dt=2024-01-01/part-0"),
+          getName(fsdir, "/t2/dt=2024-01-01/part-0"));
+      assertTrue(cluster.getNamesystem().getNameDictionaryHits() >= 3);
+
+      // names loaded from the image are shared as well.
+      fs.setSafeMode(SafeModeAction.ENTER);
+      fs.saveNamespace();
+      fs.setSafeMode(SafeModeAction.LEAVE);
+      cluster.restartNameNode();
+      fsdir = cluster.getNamesystem().getFSDirectory();
+      dir = getName(fsdir, "/t1/dt=2024-01-01");
+      assertSame(dir, getName(fsdir, "/t2/dt=2024-01-01"));
+      assertSame(dir, getName(fsdir, "/t3/dt=2024-01-01"));
+      assertSame(getName(fsdir, "/t1/dt=2024-01-01/part-0"),
+          getName(fsdir, "/t2/dt=2024-01-01/part-0"));
+      assertTrue(cluster.getNamesystem().getNameDictionarySize() > 0);
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+  }
+}
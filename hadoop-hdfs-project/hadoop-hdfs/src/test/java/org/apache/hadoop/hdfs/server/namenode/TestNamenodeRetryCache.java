@@ -251,6 +251,39 @@ public void testCreate() throws Exception {
     }
   }
   
+  /**
+   * Test for creating a batch of files
+   */
+  @Test
+  public void testCreateFiles() throws Exception {
+    String[] srcs = {"/testNamenodeRetryCache/testCreateFiles/a",
+        "/testNamenodeRetryCache/testCreateFiles/b"};
+    EnumSetWritable<CreateFlag> flag =
+        new EnumSetWritable<CreateFlag>(EnumSet.of(CreateFlag.CREATE));
+    // Two retried calls succeed
+    newCall();
+    HdfsFileStatus[] status = nnRpc.createFiles(srcs, perm, "holder", flag,
+        true, (short) 1, BlockSize);
+    Assert.assertArrayEquals(status, nnRpc.createFiles(srcs, perm, "holder",
+        flag, true, (short) 1, BlockSize));
+
+    // The retry cache entry loaded from the edit log returns the same files
+    cluster.restartNameNode();
+    nnRpc = cluster.getNameNode().getRpcServer();
+    HdfsFileStatus[] rebuilt = nnRpc.createFiles(srcs, perm, "holder", flag,
+        true, (short) 1, BlockSize);
+    assertEquals(status.length, rebuilt.length);
+    for (int i = 0; i < status.length; i++) {
+      assertEquals(status[i].getFileId(), rebuilt[i].getFileId());
+    }
+
+    // A non-retried call fails to create any of the files
+    newCall();
+    Assert.assertArrayEquals(new HdfsFileStatus[srcs.length],
+        nnRpc.createFiles(srcs, perm, "holder", flag, true, (short) 1,
+            BlockSize));
+  }
+
   /**
    * Test for rename1
    */
@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InterruptedIOException;
+import java.security.PrivilegedExceptionAction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.ContentSummary;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.QuotaUsage;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.snapshot.Snapshot;
+import org.apache.hadoop.hdfs.util.ReadOnlyList;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests content summary computation on the content summary pool.
+ */
+public class TestParallelContentSummary {
+  private static final short REPLICATION = 1;
+  private static final long BLOCKSIZE = 1024;
+  private static final int DIRS = 8;
+  private static final int FILES_PER_DIR = 20;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem dfs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, BLOCKSIZE);
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLEL_THREADS_KEY, 4);
+    // yield often, so the workers interleave with each other.
+    conf.setInt(DFSConfigKeys.DFS_CONTENT_SUMMARY_LIMIT_KEY, 7);
+    conf.setLong(DFSConfigKeys.DFS_CONTENT_SUMMARY_PARALLEL_THRESHOLD_KEY,
+        DIRS);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(REPLICATION)
+        .build();
+    cluster.waitActive();
+    dfs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private void createTree(Path root) throws Exception {
+    for (int i = 0; i < DIRS; i++) {
+      Path dir = new Path(root, "dir" + i);
+      dfs.mkdirs(new Path(dir, "sub"));
+      for (int j = 0; j < FILES_PER_DIR; j++) {
+        DFSTestUtil.createFile(dfs, new Path(dir, "file" + j), 10,
+            REPLICATION, 0L);
+      }
+    }
+  }
+
+  @Test
+  public void testParallelContentSummary() throws Exception {
+    final Path root = new Path("/parallel");
+    createTree(root);
+    dfs.setQuota(root, 10000, 1000000);
+
+    ContentSummary summary = dfs.getContentSummary(root);
+    assertEquals(1 + 2 * DIRS, summary.getDirectoryCount());
+    assertEquals(DIRS * FILES_PER_DIR, summary.getFileCount());
+    assertEquals(10L * DIRS * FILES_PER_DIR, summary.getLength());
+    assertEquals(10L * DIRS * FILES_PER_DIR * REPLICATION,
+        summary.getSpaceConsumed());
+
+    // the cached quota usage must agree with the computed summary.
+    QuotaUsage usage = dfs.getQuotaUsage(root);
+    assertEquals(summary.getDirectoryCount() + summary.getFileCount(),
+        usage.getFileAndDirectoryCount());
+    assertEquals(summary.getSpaceConsumed(), usage.getSpaceConsumed());
+
+    // a single child defers the fan out to the next level.
+    summary = dfs.getContentSummary(new Path("/"));
+    assertEquals(2 + 2 * DIRS, summary.getDirectoryCount());
+    assertEquals(DIRS * FILES_PER_DIR, summary.getFileCount());
+  }
+
+  @Test
+  public void testParallelContentSummaryPermission() throws Exception {
+    final Path root = new Path("/parallelPermission");
+    createTree(root);
+    dfs.setPermission(root, new FsPermission((short) 0777));
+    dfs.setPermission(new Path(root, "dir5/sub"), new FsPermission((short) 0));
+
+    UserGroupInformation user = UserGroupInformation.createUserForTesting(
+        "user", new String[] {"group"});
+    try {
+      user.doAs(new PrivilegedExceptionAction<ContentSummary>() {
+        @Override
+        public ContentSummary run() throws Exception {
+          return cluster.getNameNodeRpc().getContentSummary(root.toString());
+        }
+      });
+      fail("getContentSummary should fail for a subtree without access");
+    } catch (AccessControlException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("sub"));
+    }
+  }
+
+  private ContentSummaryComputationContext newContext() {
+    FSNamesystem fsn = cluster.getNamesystem();
+    return new ContentSummaryComputationContext(fsn.getFSDirectory(), fsn,
+        7, 0);
+  }
+
+  @Test
+  public void testSmallSubtree() throws Exception {
+    final Path root = new Path("/small");
+    for (int i = 0; i < DIRS - 1; i++) {
+      dfs.mkdirs(new Path(root, "dir" + i));
+    }
+    FSNamesystem fsn = cluster.getNamesystem();
+    FSDirectory fsd = fsn.getFSDirectory();
+    INodeDirectory dir = fsd.getINode(root.toString()).asDirectory();
+    ContentSummaryComputationContext context = newContext();
+    fsn.readLock();
+    fsd.readLock();
+    try {
+      assertFalse(context.computeInParallel(dir,
+          dir.getChildrenList(Snapshot.CURRENT_STATE_ID),
+          Snapshot.CURRENT_STATE_ID));
+    } finally {
+      fsd.readUnlock();
+      fsn.readUnlock();
+    }
+    assertEquals(DIRS - 1, dfs.getContentSummary(root).getDirectoryCount());
+  }
+
+  @Test
+  public void testRemovedChildren() throws Exception {
+    final Path root = new Path("/removed");
+    createTree(root);
+    FSNamesystem fsn = cluster.getNamesystem();
+    FSDirectory fsd = fsn.getFSDirectory();
+    INodeDirectory dir = fsd.getINode(root.toString()).asDirectory();
+    ReadOnlyList<INode> children =
+        dir.getChildrenList(Snapshot.CURRENT_STATE_ID);
+    // the children listed before the locks are released are gone after.
+    dfs.delete(new Path(root, "dir0"), true);
+
+    ContentSummaryComputationContext context = newContext();
+    fsn.readLock();
+    fsd.readLock();
+    try {
+      assertTrue(context.computeInParallel(dir, children,
+          Snapshot.CURRENT_STATE_ID));
+    } finally {
+      fsd.readUnlock();
+      fsn.readUnlock();
+    }
+    assertEquals(2 * (DIRS - 1),
+        context.getCounts().getDirectoryCount());
+    assertEquals((DIRS - 1) * FILES_PER_DIR,
+        context.getCounts().getFileCount());
+  }
+
+  @Test
+  public void testInterrupted() throws Exception {
+    final Path root = new Path("/interrupted");
+    createTree(root);
+    FSNamesystem fsn = cluster.getNamesystem();
+    FSDirectory fsd = fsn.getFSDirectory();
+    INodeDirectory dir = fsd.getINode(root.toString()).asDirectory();
+    ContentSummaryComputationContext context = newContext();
+    fsn.readLock();
+    fsd.readLock();
+    try {
+      Thread.currentThread().interrupt();
+      assertTrue(context.computeInParallel(dir,
+          dir.getChildrenList(Snapshot.CURRENT_STATE_ID),
+          Snapshot.CURRENT_STATE_ID));
+      assertTrue(context.isInterrupted());
+      context.checkInterrupted();
+      fail("an interrupted computation should fail");
+    } catch (InterruptedIOException e) {
+      // the partial counts are not returned.
+      assertTrue(Thread.interrupted());
+    } finally {
+      Thread.interrupted();
+      fsd.readUnlock();
+      fsn.readUnlock();
+    }
+  }
+}
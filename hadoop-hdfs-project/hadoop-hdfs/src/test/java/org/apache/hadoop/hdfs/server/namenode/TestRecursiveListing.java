@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.LocatedFileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.server.protocol.NamenodeProtocols;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the recursive listing of a directory.
+ */
+public class TestRecursiveListing {
+  private static final int LIMIT = 3;
+  private static final Path DIR = new Path("/dir");
+  private static final String[] FILES = {
+      "a/f1", "a/f2", "a/b/f3", "d/e/f/f4", "z"};
+
+  private static MiniDFSCluster cluster;
+  private static DistributedFileSystem fs;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_LIST_RECURSIVE_LIMIT, LIMIT);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  private static Path createTree(String name) throws Exception {
+    Path root = new Path(DIR, name);
+    for (String file : FILES) {
+      DFSTestUtil.createFile(fs, new Path(root, file), 1024, (short) 1, 0L);
+    }
+    fs.mkdirs(new Path(root, "c"));
+    return root;
+  }
+
+  private static List<String> getRelativePaths(
+      RemoteIterator<? extends FileStatus> it, Path root) throws Exception {
+    List<String> paths = new ArrayList<>();
+    String prefix = fs.makeQualified(root).toString() + Path.SEPARATOR;
+    while (it.hasNext()) {
+      String path = it.next().getPath().toString();
+      assertTrue(path, path.startsWith(prefix));
+      paths.add(path.substring(prefix.length()));
+    }
+    return paths;
+  }
+
+  private static List<String> getNames(DirectoryListing listing) {
+    List<String> names = new ArrayList<>();
+    for (HdfsFileStatus status : listing.getPartialListing()) {
+      names.add(status.getLocalName());
+    }
+    return names;
+  }
+
+  @Test
+  public void testListStatusRecursive() throws Exception {
+    Path root = createTree("full");
+    List<String> expected = Arrays.asList("a", "a/b", "a/b/f3", "a/f1",
+        "a/f2", "c", "d", "d/e", "d/e/f", "d/e/f/f4", "z");
+    assertEquals(expected,
+        getRelativePaths(fs.listStatusRecursive(root), root));
+
+    RemoteIterator<LocatedFileStatus> located =
+        fs.listLocatedStatusRecursive(root);
+    List<String> files = new ArrayList<>();
+    while (located.hasNext()) {
+      LocatedFileStatus status = located.next();
+      if (status.isFile()) {
+        assertEquals(1, status.getBlockLocations().length);
+        files.add(status.getPath().getName());
+      }
+    }
+    assertEquals(Arrays.asList("f3", "f1", "f2", "f4", "z"), files);
+  }
+
+  @Test
+  public void testBatches() throws Exception {
+    Path root = createTree("batches");
+    NamenodeProtocols nn = cluster.getNameNodeRpc();
+    String src = root.toString();
+    DirectoryListing listing = nn.getRecursiveListing(src,
+        HdfsFileStatus.EMPTY_NAME, false);
+    assertEquals(Arrays.asList("a", "a/b", "a/b/f3"), getNames(listing));
+    assertTrue(listing.hasMore());
+
+    // the listing resumes after the last entry even if it was deleted.
+    fs.delete(new Path(root, "a/b"), true);
+    listing = nn.getRecursiveListing(src, listing.getLastName(), false);
+    assertEquals(Arrays.asList("a/f1", "a/f2", "c"), getNames(listing));
+    listing = nn.getRecursiveListing(src, listing.getLastName(), false);
+    assertEquals(Arrays.asList("d", "d/e", "d/e/f"), getNames(listing));
+    assertTrue(listing.hasMore());
+    listing = nn.getRecursiveListing(src, listing.getLastName(), false);
+    assertEquals(Arrays.asList("d/e/f/f4", "z"), getNames(listing));
+    assertFalse(listing.hasMore());
+
+    // a missing directory of the cursor is skipped as a whole.
+    listing = nn.getRecursiveListing(src,
+        DFSUtil.string2Bytes("a/b/f3"), false);
+    assertEquals(Arrays.asList("a/f1", "a/f2", "c"), getNames(listing));
+  }
+
+  @Test
+  public void testFile() throws Exception {
+    Path root = createTree("file");
+    Path file = new Path(root, "z");
+    RemoteIterator<FileStatus> it = fs.listStatusRecursive(file);
+    assertTrue(it.hasNext());
+    assertEquals(fs.makeQualified(file), it.next().getPath());
+    assertFalse(it.hasNext());
+
+    try {
+      fs.listStatusRecursive(new Path(root, "missing"));
+      fail("Listing a missing directory should fail");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.server.namenode.AuditLogger;
+import org.apache.hadoop.hdfs.server.namenode.FSNamesystem;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.event.Level;
+
+/**
+ * Tests for {@link BinaryAuditLogger} and {@link BinaryAuditLogReader}.
+ */
+public class TestBinaryAuditLogger {
+
+  private File logDir;
+
+  @Before
+  public void setUp() {
+    logDir = GenericTestUtils.getTestDir("TestBinaryAuditLogger");
+    FileUtil.fullyDelete(logDir);
+  }
+
+  private Configuration getConf() {
+    Configuration conf = new HdfsConfiguration();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_DIR_KEY,
+        logDir.getAbsolutePath());
+    return conf;
+  }
+
+  private List<String> readAll() throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (File file : BinaryAuditLogger.listLogFiles(logDir)) {
+      try (BinaryAuditLogReader reader =
+          new BinaryAuditLogReader(new FileInputStream(file))) {
+        String line;
+        while ((line = reader.next()) != null) {
+          lines.add(line);
+        }
+      }
+    }
+    return lines;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    BinaryAuditLogger logger = new BinaryAuditLogger();
+    logger.initialize(getConf());
+    InetAddress addr = InetAddress.getByName("127.0.0.1");
+    FileStatus status = new FileStatus(0, true, 0, 0, 0, 0,
+        new FsPermission((short) 0755), "alice", "staff", new Path("/a"));
+    logger.logAuditEvent(true, "alice", addr, "mkdirs", "/a", null, status);
+    logger.logAuditEvent(false, "bob", null, "rename", "/a\tb", "/c",
+        null);
+    logger.logAuditEvent(true, "alice", addr, "mkdirs", "/d", null, status);
+    logger.close();
+
+    List<String> lines = readAll();
+    assertEquals(3, lines.size());
+    assertTrue(lines.get(0), lines.get(0).endsWith(
+        "allowed=true\tugi=alice\tip=/127.0.0.1\tcmd=mkdirs\tsrc=/a\t"
+        + "dst=null\tperm=alice:staff:rwxr-xr-x\tproto=null"));
+    assertTrue(lines.get(1), lines.get(1).endsWith(
+        "allowed=false\tugi=bob\tip=null\tcmd=rename\tsrc=/a\\tb\t"
+        + "dst=/c\tperm=null\tproto=null"));
+    assertTrue(lines.get(2), lines.get(2).endsWith(
+        "allowed=true\tugi=alice\tip=/127.0.0.1\tcmd=mkdirs\tsrc=/d\t"
+        + "dst=null\tperm=alice:staff:rwxr-xr-x\tproto=null"));
+  }
+
+  @Test
+  public void testRollAndDebugCommands() throws IOException {
+    Configuration conf = getConf();
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_ROLL_SIZE_KEY, 1);
+    conf.set(DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST, "getfileinfo");
+    BinaryAuditLogger logger = new BinaryAuditLogger();
+    logger.initialize(conf);
+    for (int i = 0; i < 5; i++) {
+      logger.logAuditEvent(true, "alice", null, "open", "/f" + i, null, null);
+      logger.logAuditEvent(true, "alice", null, "getfileinfo", "/f" + i, null,
+          null);
+    }
+    logger.close();
+
+    // every record starts a new file, and repeats its dictionary entries.
+    assertEquals(5, logDir.listFiles().length);
+    List<String> lines = readAll();
+    assertEquals(5, lines.size());
+    for (String line : lines) {
+      assertTrue(line, line.contains("ugi=alice\tip=null\tcmd=open\t"));
+    }
+  }
+
+  @Test
+  public void testMaxFiles() throws IOException {
+    Configuration conf = getConf();
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_ROLL_SIZE_KEY, 1);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_AUDIT_BINARY_LOG_MAX_FILES_KEY, 2);
+    assertTrue(logDir.mkdirs());
+    File other = new File(logDir, "other.log");
+    assertTrue(other.createNewFile());
+    BinaryAuditLogger logger = new BinaryAuditLogger();
+    logger.initialize(conf);
+    for (int i = 0; i < 5; i++) {
+      logger.logAuditEvent(true, "alice", null, "open", "/f" + i, null, null);
+    }
+    logger.close();
+
+    // only the newest files are kept, other files are left alone.
+    assertEquals(2, BinaryAuditLogger.listLogFiles(logDir).size());
+    assertTrue(other.exists());
+    List<String> lines = readAll();
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(0), lines.get(0).contains("\tsrc=/f3\t"));
+    assertTrue(lines.get(1), lines.get(1).contains("\tsrc=/f4\t"));
+  }
+
+  @Test
+  public void testDebugCommandsAtDebugLevel() throws IOException {
+    Configuration conf = getConf();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_AUDIT_LOG_DEBUG_CMDLIST, "getfileinfo");
+    BinaryAuditLogger logger = new BinaryAuditLogger();
+    logger.initialize(conf);
+    GenericTestUtils.setLogLevel(FSNamesystem.AUDIT_LOG, Level.DEBUG);
+    try {
+      logger.logAuditEvent(true, "alice", null, "open", "/f", null, null);
+      logger.logAuditEvent(true, "alice", null, "getfileinfo", "/f", null,
+          null);
+    } finally {
+      GenericTestUtils.setLogLevel(FSNamesystem.AUDIT_LOG, Level.INFO);
+    }
+    logger.close();
+
+    List<String> lines = readAll();
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(1), lines.get(1).contains("\tcmd=getfileinfo\t"));
+  }
+
+  @Test
+  public void testTruncatedRecord() throws IOException {
+    BinaryAuditLogger logger = new BinaryAuditLogger();
+    logger.initialize(getConf());
+    logger.logAuditEvent(true, "alice", null, "open", "/f0", null, null);
+    logger.logAuditEvent(true, "alice", null, "open", "/f1", null, null);
+    logger.close();
+
+    // a NameNode that dies while writing the last record.
+    File file = logDir.listFiles()[0];
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      byte[] magic = new byte[BinaryAuditLogger.MAGIC.length];
+      raf.readFully(magic);
+      assertEquals("HDFSAUDB", new String(magic, "US-ASCII"));
+      raf.setLength(raf.length() - 3);
+    }
+    List<String> lines = readAll();
+    assertEquals(1, lines.size());
+    assertTrue(lines.get(0), lines.get(0).contains("\tsrc=/f0\t"));
+  }
+
+  @Test
+  public void testWithNameNode() throws IOException {
+    Configuration conf = getConf();
+    conf.set(DFSConfigKeys.DFS_NAMENODE_AUDIT_LOGGERS_KEY,
+        BinaryAuditLogger.class.getName());
+    MiniDFSCluster cluster = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(0).build();
+      cluster.waitActive();
+      FileSystem fs = cluster.getFileSystem();
+      fs.mkdirs(new Path("/binary-audit"));
+      fs.getFileStatus(new Path("/binary-audit"));
+
+      List<AuditLogger> loggers =
+          cluster.getNamesystem().getAuditLoggers();
+      BinaryAuditLogger logger = null;
+      for (AuditLogger l : loggers) {
+        if (l instanceof BinaryAuditLogger) {
+          logger = (BinaryAuditLogger) l;
+        }
+      }
+      logger.close();
+    } finally {
+      if (cluster != null) {
+        cluster.shutdown();
+      }
+    }
+
+    String mkdirs = null;
+    for (String line : readAll()) {
+      if (line.contains("cmd=mkdirs")) {
+        assertNull(mkdirs);
+        mkdirs = line;
+      }
+    }
+    assertTrue(mkdirs, mkdirs.contains("allowed=true\t"));
+    assertTrue(mkdirs, mkdirs.contains("\tsrc=/binary-audit\t"));
+    assertTrue(mkdirs, mkdirs.contains("\tproto=rpc"));
+  }
+}
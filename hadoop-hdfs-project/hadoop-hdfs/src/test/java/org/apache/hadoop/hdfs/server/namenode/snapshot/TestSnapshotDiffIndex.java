@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.fs.permission.PermissionStatus;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DFSUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.HdfsConstants.SafeModeAction;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffReportEntry;
+import org.apache.hadoop.hdfs.protocol.SnapshotDiffReport.DiffType;
+import org.apache.hadoop.hdfs.server.namenode.FSDirectory;
+import org.apache.hadoop.hdfs.server.namenode.INodeDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the ids of the latest snapshots with diffs in the subtrees of the
+ * directories, which let the snapshot diff skip the unchanged subtrees.
+ */
+public class TestSnapshotDiffIndex {
+  {
+    SnapshotTestHelper.disableLogs();
+  }
+
+  private static final long SEED = 0;
+  private static final short REPLICATION = 1;
+  private static final long BLOCKSIZE = 1024;
+
+  private final Path root = new Path("/index");
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem hdfs;
+
+  @Before
+  public void setUp() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    cluster.waitActive();
+    hdfs = cluster.getFileSystem();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  private FSDirectory getFSDirectory() {
+    return cluster.getNamesystem().getFSDirectory();
+  }
+
+  private int getLastSubtreeDiffSnapshotId(Path dir) throws Exception {
+    return getFSDirectory().getINode(dir.toString()).asDirectory()
+        .getLastSubtreeDiffSnapshotId();
+  }
+
+  private int getSnapshotId(String name) throws Exception {
+    return getFSDirectory().getINode(root.toString()).asDirectory()
+        .getSnapshot(DFSUtil.string2Bytes(name)).getId();
+  }
+
+  private void verifyDiffReport() throws Exception {
+    DFSTestUtil.verifySnapshotDiffReport(hdfs, root, "s0", "s1",
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("")),
+        new DiffReportEntry(DiffType.CREATE, DFSUtil.string2Bytes("z")),
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("b/b1/f")),
+        new DiffReportEntry(DiffType.MODIFY, DFSUtil.string2Bytes("c")),
+        new DiffReportEntry(DiffType.CREATE, DFSUtil.string2Bytes("c/c2")));
+  }
+
+  @Test
+  public void testUnchangedSubtrees() throws Exception {
+    for (String file : new String[] {"a/a1/f", "b/b1/f", "c/c1/f"}) {
+      DFSTestUtil.createFile(hdfs, new Path(root, file), BLOCKSIZE,
+          REPLICATION, SEED);
+    }
+    SnapshotTestHelper.createSnapshot(hdfs, root, "s0");
+    DFSTestUtil.createFile(hdfs, new Path(root, "z"), BLOCKSIZE, REPLICATION,
+        SEED);
+    hdfs.setReplication(new Path(root, "b/b1/f"), (short) 2);
+    hdfs.mkdirs(new Path(root, "c/c2"));
+    SnapshotTestHelper.createSnapshot(hdfs, root, "s1");
+
+    final int s0 = getSnapshotId("s0");
+    assertTrue(getLastSubtreeDiffSnapshotId(new Path(root, "a")) < s0);
+    assertTrue(getLastSubtreeDiffSnapshotId(new Path(root, "c/c1")) < s0);
+    assertTrue(getLastSubtreeDiffSnapshotId(new Path(root, "b/b1")) >= s0);
+    assertTrue(getLastSubtreeDiffSnapshotId(new Path(root, "c")) >= s0);
+    verifyDiffReport();
+
+    // the ids are not saved in the fsimage but computed for the first diff.
+    hdfs.setSafeMode(SafeModeAction.ENTER);
+    hdfs.saveNamespace();
+    hdfs.setSafeMode(SafeModeAction.LEAVE);
+    cluster.restartNameNode(true);
+    assertEquals(Snapshot.NO_SNAPSHOT_ID,
+        getLastSubtreeDiffSnapshotId(new Path(root, "b/b1")));
+    verifyDiffReport();
+    assertTrue(getLastSubtreeDiffSnapshotId(new Path(root, "a")) < s0);
+    assertTrue(getLastSubtreeDiffSnapshotId(new Path(root, "b/b1")) >= s0);
+    assertTrue(getLastSubtreeDiffSnapshotId(new Path(root, "c")) >= s0);
+  }
+
+  @Test
+  public void testRenamedSubtree() throws Exception {
+    final Path dir = new Path(root, "a/a1");
+    final Path outside = new Path("/outside");
+    DFSTestUtil.createFile(hdfs, new Path(dir, "f"), BLOCKSIZE, REPLICATION,
+        SEED);
+    hdfs.mkdirs(new Path(root, "b"));
+    hdfs.mkdirs(outside);
+    SnapshotTestHelper.createSnapshot(hdfs, root, "s0");
+
+    // modify the directory while it is out of the snapshot root.
+    hdfs.rename(dir, new Path(outside, "a1"));
+    DFSTestUtil.appendFile(hdfs, new Path(outside, "a1/f"), 10);
+    hdfs.rename(new Path(outside, "a1"), new Path(root, "b/a1"));
+    SnapshotTestHelper.createSnapshot(hdfs, root, "s1");
+
+    assertTrue(getLastSubtreeDiffSnapshotId(new Path(root, "b/a1"))
+        >= getSnapshotId("s0"));
+    SnapshotDiffReport report = hdfs.getSnapshotDiffReport(root, "s0", "s1");
+    assertTrue(report.getDiffList().contains(
+        new DiffReportEntry(DiffType.RENAME, DFSUtil.string2Bytes("a/a1"),
+            DFSUtil.string2Bytes("b/a1"))));
+    assertTrue(report.getDiffList().contains(
+        new DiffReportEntry(DiffType.MODIFY,
+            DFSUtil.string2Bytes("a/a1/f"))));
+  }
+
+  @Test
+  public void testSnapshotOnlySubtreesAfterRestart() throws Exception {
+    final Path outside = new Path("/outside");
+    for (String file : new String[] {"a/a1/f", "b/b1/f"}) {
+      DFSTestUtil.createFile(hdfs, new Path(root, file), BLOCKSIZE,
+          REPLICATION, SEED);
+    }
+    hdfs.mkdirs(outside);
+    SnapshotTestHelper.createSnapshot(hdfs, root, "s0");
+    hdfs.setReplication(new Path(root, "a/a1/f"), (short) 2);
+    hdfs.setReplication(new Path(root, "b/b1/f"), (short) 2);
+    SnapshotTestHelper.createSnapshot(hdfs, root, "s1");
+
+    // the changed subtrees are only left in the snapshots.
+    hdfs.delete(new Path(root, "a"), true);
+    hdfs.rename(new Path(root, "b"), new Path(outside, "b"));
+
+    hdfs.setSafeMode(SafeModeAction.ENTER);
+    hdfs.saveNamespace();
+    hdfs.setSafeMode(SafeModeAction.LEAVE);
+    cluster.restartNameNode(true);
+    hdfs = cluster.getFileSystem();
+
+    SnapshotDiffReport report = hdfs.getSnapshotDiffReport(root, "s0", "s1");
+    assertTrue(report.getDiffList().contains(
+        new DiffReportEntry(DiffType.MODIFY,
+            DFSUtil.string2Bytes("a/a1/f"))));
+    assertTrue(report.getDiffList().contains(
+        new DiffReportEntry(DiffType.MODIFY,
+            DFSUtil.string2Bytes("b/b1/f"))));
+  }
+
+  @Test
+  public void testConcurrentUpdates() throws Exception {
+    INodeDirectory dir = new INodeDirectory(1, DFSUtil.string2Bytes("d"),
+        new PermissionStatus("user", "group", FsPermission.getDefault()), 0);
+    final int threads = 4;
+    final int ids = 10000;
+    Thread[] updaters = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final int first = t;
+      // the threads race to record interleaved ids.
+      updaters[t] = new Thread(() -> {
+        for (int id = first; id < ids; id += threads) {
+          dir.updateLastSubtreeDiffSnapshotId(id);
+        }
+      });
+      updaters[t].start();
+    }
+    for (Thread updater : updaters) {
+      updater.join();
+    }
+    assertEquals(ids - 1, dir.getLastSubtreeDiffSnapshotId());
+
+    // the id is never decreased.
+    dir.updateLastSubtreeDiffSnapshotId(0);
+    assertEquals(ids - 1, dir.getLastSubtreeDiffSnapshotId());
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link TimingWheel}.
+ */
+public class TestTimingWheel {
+
+  private static TimingWheel.Node<Long> add(TimingWheel<Long> wheel,
+      long deadline) {
+    TimingWheel.Node<Long> node = new TimingWheel.Node<>(deadline);
+    wheel.add(node, deadline);
+    return node;
+  }
+
+  @Test
+  public void testAdvance() {
+    // the wheel spans 10 * 4 * 4 = 160 ms.
+    TimingWheel<Long> wheel = new TimingWheel<>(10, 4, 2, 0);
+    for (long deadline : new long[] {1000, 100, 35, 5, 15, -5}) {
+      add(wheel, deadline);
+    }
+    assertEquals(6, wheel.size());
+    assertEquals(Arrays.asList(-5L), wheel.advance(1));
+    assertEquals(Collections.emptyList(), wheel.advance(5));
+    assertEquals(Arrays.asList(5L), wheel.advance(6));
+    assertEquals(Arrays.asList(15L, 35L), wheel.advance(36));
+    assertEquals(Collections.emptyList(), wheel.advance(100));
+    assertEquals(Arrays.asList(100L), wheel.advance(101));
+    assertEquals(Collections.emptyList(), wheel.advance(1000));
+    assertEquals(Arrays.asList(1000L), wheel.advance(5000));
+    assertEquals(0, wheel.size());
+
+    // an element added past its deadline expires at the next advance.
+    add(wheel, 10);
+    assertEquals(Arrays.asList(10L), wheel.advance(5000));
+  }
+
+  @Test(timeout = 60000)
+  public void testAdvanceOverManyTicks() {
+    // 10^12 ticks, which could not be visited one by one.
+    TimingWheel<Long> wheel = new TimingWheel<>(1, 64, 4, 0);
+    final long far = 1000L * 1000 * 1000 * 1000;
+    for (long deadline : new long[] {far, far / 2, 70000, 300}) {
+      add(wheel, deadline);
+    }
+    assertEquals(Arrays.asList(300L), wheel.advance(301));
+    assertEquals(Arrays.asList(70000L), wheel.advance(far / 2));
+    assertEquals(Arrays.asList(far / 2), wheel.advance(far / 2 + 1));
+    assertEquals(Collections.emptyList(), wheel.advance(far));
+    assertEquals(Arrays.asList(far), wheel.advance(far + 1));
+    assertEquals(0, wheel.size());
+  }
+
+  @Test
+  public void testRemoveAndClear() {
+    TimingWheel<Long> wheel = new TimingWheel<>(10, 4, 2, 0);
+    TimingWheel.Node<Long> node = add(wheel, 20);
+    add(wheel, 30);
+    assertTrue(node.isScheduled());
+    assertTrue(wheel.remove(node));
+    assertFalse(node.isScheduled());
+    assertFalse(wheel.remove(node));
+    assertEquals(1, wheel.size());
+
+    // a removed node can be added again.
+    wheel.add(node, 500);
+    wheel.clear();
+    assertEquals(0, wheel.size());
+    assertFalse(node.isScheduled());
+    assertEquals(Collections.emptyList(), wheel.advance(1000));
+  }
+
+  @Test
+  public void testRandomDeadlines() {
+    final Random random = new Random(0);
+    final long start = -12345;
+    TimingWheel<Long> wheel = new TimingWheel<>(7, 8, 3, start);
+    Set<Long> pending = new HashSet<>();
+    long now = start;
+    for (int i = 0; i < 1000; i++) {
+      for (int j = random.nextInt(10); j > 0; j--) {
+        long deadline = now + random.nextInt(20000) - 100;
+        if (pending.add(deadline)) {
+          add(wheel, deadline);
+        }
+      }
+      now += random.nextInt(50);
+
+      List<Long> expected = new ArrayList<>();
+      for (long deadline : pending) {
+        if (deadline < now) {
+          expected.add(deadline);
+        }
+      }
+      List<Long> expired = wheel.advance(now);
+      Collections.sort(expected);
+      Collections.sort(expired);
+      assertEquals(expected, expired);
+      pending.removeAll(expired);
+      assertEquals(pending.size(), wheel.size());
+    }
+  }
+}